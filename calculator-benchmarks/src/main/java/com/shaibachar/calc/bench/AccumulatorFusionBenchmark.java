@@ -0,0 +1,110 @@
+package com.shaibachar.calc.bench;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.eval.Environment;
+import com.shaibachar.calc.eval.StatementExecutor;
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.lexer.Lexer;
+import com.shaibachar.calc.lexer.TokenBuffer;
+import com.shaibachar.calc.optimizer.AccumulatorFusion;
+import com.shaibachar.calc.parser.stmt.Stmt;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a pre-parsed, accumulation-heavy script run as parsed ({@code unfused}) and after
+ * {@link AccumulatorFusion} ({@code fused}). After defining a few inputs and {@code counterCount} counters, the
+ * script adds to or subtracts from one counter at a time, in runs of {@code runLength} lines, so with
+ * {@code runLength=1} there is nothing to merge and {@code fused} shows the cost of the pass's bookkeeping only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccumulatorFusionBenchmark {
+    private static final int INPUT_COUNT = 8;
+
+    @Param({"10000"})
+    public int lineCount;
+
+    @Param({"16"})
+    public int counterCount;
+
+    @Param({"1", "8", "64"})
+    public int runLength;
+
+    @Param({"TREE", "VM"})
+    public Backend backend;
+
+    private final SymbolTable symbols = new SymbolTable();
+    private List<Stmt> statements;
+    private List<Stmt> fused;
+
+    @Setup
+    public void setUp() {
+        TokenBuffer tokens = new TokenBuffer();
+        statements = new ArrayList<>(lineCount);
+        for (String line : script()) {
+            statements.add(backend.parse(new Lexer(line).tokenizeInto(tokens), symbols));
+        }
+        fused = new AccumulatorFusion(symbols).fuse(statements);
+    }
+
+    @Benchmark
+    public Environment unfused() {
+        return run(statements);
+    }
+
+    @Benchmark
+    public Environment fused() {
+        return run(fused);
+    }
+
+    private Environment run(List<Stmt> script) {
+        Environment env = new Environment(symbols);
+        StatementExecutor executor = backend.create(env);
+        for (Stmt stmt : script) {
+            executor.execute(stmt);
+        }
+        return env;
+    }
+
+    private List<String> script() {
+        Random random = new Random(42L);
+        List<String> lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < INPUT_COUNT; i++) {
+            lines.add("in" + i + " = " + (random.nextInt(1000) + 1));
+        }
+        for (int i = 0; i < counterCount; i++) {
+            lines.add("total" + i + " = 0");
+        }
+        while (lines.size() < lineCount) {
+            String counter = "total" + random.nextInt(counterCount);
+            for (int i = 0; i < runLength && lines.size() < lineCount; i++) {
+                String input = "in" + random.nextInt(INPUT_COUNT);
+                lines.add(counter + switch (random.nextInt(3)) {
+                    case 0 -> " += 1";
+                    case 1 -> " -= " + input;
+                    default -> " += " + input + " * " + (random.nextInt(9) + 1);
+                });
+            }
+        }
+        return lines;
+    }
+}
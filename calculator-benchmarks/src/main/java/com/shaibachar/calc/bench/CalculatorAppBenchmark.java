@@ -0,0 +1,57 @@
+package com.shaibachar.calc.bench;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.CalculatorApp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the full pipeline (lex, parse, evaluate, format) through {@link CalculatorApp#execute(List, Backend)},
+ * once per execution backend.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalculatorAppBenchmark {
+    @Param({"100", "10000"})
+    public int lineCount;
+
+    @Param({"8", "256"})
+    public int variableCount;
+
+    @Param({"3"})
+    public int depth;
+
+    @Param({"LONG", "DOUBLE", "MIXED"})
+    public Workloads.NumberMix mix;
+
+    @Param({"TREE", "CLOSURE", "VM", "ITERATIVE", "BYTECODE"})
+    public Backend backend;
+
+    private List<String> lines;
+
+    @Setup
+    public void setUp() {
+        lines = Workloads.script(lineCount, variableCount, depth, mix, 42L);
+    }
+
+    @Benchmark
+    public String execute() {
+        return CalculatorApp.execute(lines, backend);
+    }
+}
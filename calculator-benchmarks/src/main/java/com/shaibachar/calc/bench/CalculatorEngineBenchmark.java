@@ -0,0 +1,87 @@
+package com.shaibachar.calc.bench;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.CalculatorApp;
+import com.shaibachar.calc.CalculatorEngine;
+import com.shaibachar.calc.ScriptResult;
+import com.shaibachar.calc.cache.ParseCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a batch of small independent scripts, drawn from a pool of {@code distinctScripts}, one by one through
+ * {@link CalculatorApp#execute(List, Backend, ParseCache)} ({@code oneByOne}) and through
+ * {@link CalculatorEngine#executeAll(List)} with {@code parallelism} workers ({@code engine}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalculatorEngineBenchmark {
+    @Param({"10000"})
+    public int scriptCount;
+
+    @Param({"500"})
+    public int distinctScripts;
+
+    @Param({"8"})
+    public int linesPerScript;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    @Param({"VM"})
+    public Backend backend;
+
+    private List<List<String>> scripts;
+    private CalculatorEngine engine;
+    private ParseCache parseCache;
+
+    @Setup
+    public void setUp() {
+        List<List<String>> pool = new ArrayList<>();
+        for (int i = 0; i < distinctScripts; i++) {
+            pool.add(Workloads.script(linesPerScript, 4, 3, Workloads.NumberMix.MIXED, i));
+        }
+        scripts = new ArrayList<>(scriptCount);
+        for (int i = 0; i < scriptCount; i++) {
+            scripts.add(pool.get(i % distinctScripts));
+        }
+        engine = new CalculatorEngine(backend, parallelism, 16_384);
+        parseCache = new ParseCache(16_384);
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Benchmark
+    public void oneByOne(Blackhole blackhole) {
+        for (List<String> script : scripts) {
+            blackhole.consume(CalculatorApp.execute(script, backend, parseCache));
+        }
+    }
+
+    @Benchmark
+    public List<ScriptResult> engine() {
+        return engine.executeAll(scripts);
+    }
+}
@@ -0,0 +1,122 @@
+package com.shaibachar.calc.bench;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.concurrent.ConcurrentEnvironment;
+import com.shaibachar.calc.concurrent.ConcurrentSession;
+import com.shaibachar.calc.eval.Environment;
+import com.shaibachar.calc.eval.StatementExecutor;
+import com.shaibachar.calc.lexer.Lexer;
+import com.shaibachar.calc.lexer.TokenBuffer;
+import com.shaibachar.calc.parser.stmt.Stmt;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the throughput of several threads updating one variable space, each running pre-parsed statements
+ * ({@code +=}, {@code -=} and plain assignments over {@code variableCount} shared variables): through
+ * {@link ConcurrentSession}s over a {@link ConcurrentEnvironment} ({@code concurrent}), and through one plain
+ * {@link Environment} and executor behind a lock ({@code synchronizedWrapper}). With 4 variables most updates
+ * contend for the same variable; with 1024 they rarely do. Run with {@code -t} to change the thread count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ConcurrentEnvironmentBenchmark {
+    private static final int STATEMENTS_PER_THREAD = 4096;
+
+    @Param({"4", "1024"})
+    public int variableCount;
+
+    @Param({"TREE", "VM"})
+    public Backend backend;
+
+    private ConcurrentEnvironment shared;
+    private Environment lockedEnv;
+    private StatementExecutor lockedExecutor;
+    private final AtomicLong seeds = new AtomicLong(42L);
+
+    @Setup
+    public void setUp() {
+        shared = new ConcurrentEnvironment(backend);
+        lockedEnv = new Environment();
+        lockedExecutor = backend.create(lockedEnv);
+        ConcurrentSession session = shared.newSession();
+        TokenBuffer tokens = new TokenBuffer();
+        for (int i = 0; i < variableCount; i++) {
+            String line = "v" + i + " = " + i;
+            session.execute(line);
+            lockedExecutor.execute(backend.parse(new Lexer(line).tokenizeInto(tokens), lockedEnv.symbols()));
+        }
+    }
+
+    /**
+     * One benchmark thread's statements, parsed for its session and for the shared locked environment.
+     */
+    @State(Scope.Thread)
+    public static class Worker {
+        ConcurrentSession session;
+        Stmt[] sessionStatements;
+        Stmt[] lockedStatements;
+        int next;
+
+        @Setup
+        public void setUp(ConcurrentEnvironmentBenchmark benchmark) {
+            Random random = new Random(benchmark.seeds.getAndIncrement());
+            session = benchmark.shared.newSession();
+            sessionStatements = new Stmt[STATEMENTS_PER_THREAD];
+            lockedStatements = new Stmt[STATEMENTS_PER_THREAD];
+            TokenBuffer tokens = new TokenBuffer();
+            for (int i = 0; i < STATEMENTS_PER_THREAD; i++) {
+                String target = "v" + random.nextInt(benchmark.variableCount);
+                String source = "v" + random.nextInt(benchmark.variableCount);
+                String line = switch (random.nextInt(4)) {
+                    case 0, 1 -> target + " += " + (random.nextInt(100) + 1);
+                    case 2 -> target + " -= " + source;
+                    default -> target + " = " + source + " * 3 + 1";
+                };
+                sessionStatements[i] = benchmark.backend.parse(new Lexer(line).tokenizeInto(tokens), session.symbols());
+                synchronized (benchmark) {
+                    lockedStatements[i] = benchmark.backend.parse(new Lexer(line).tokenizeInto(tokens),
+                            benchmark.lockedEnv.symbols());
+                }
+            }
+        }
+
+        int nextIndex() {
+            int index = next;
+            next = index + 1 == STATEMENTS_PER_THREAD ? 0 : index + 1;
+            return index;
+        }
+    }
+
+    @Benchmark
+    public void concurrent(Worker worker) {
+        worker.session.execute(worker.sessionStatements[worker.nextIndex()]);
+    }
+
+    @Benchmark
+    public void synchronizedWrapper(Worker worker) {
+        Stmt stmt = worker.lockedStatements[worker.nextIndex()];
+        synchronized (this) {
+            lockedExecutor.execute(stmt);
+        }
+    }
+}
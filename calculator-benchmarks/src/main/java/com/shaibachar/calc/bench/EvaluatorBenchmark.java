@@ -0,0 +1,155 @@
+package com.shaibachar.calc.bench;
+
+import com.shaibachar.calc.closure.ClosureCompiler;
+import com.shaibachar.calc.closure.ClosureExecutor;
+import com.shaibachar.calc.closure.CompiledStatement;
+import com.shaibachar.calc.eval.Environment;
+import com.shaibachar.calc.eval.Evaluator;
+import com.shaibachar.calc.eval.SlotResolver;
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.lexer.Lexer;
+import com.shaibachar.calc.optimizer.Optimizer;
+import com.shaibachar.calc.parser.Parser;
+import com.shaibachar.calc.parser.flat.AstArena;
+import com.shaibachar.calc.parser.stmt.Stmt;
+import com.shaibachar.calc.vm.Compiler;
+import com.shaibachar.calc.vm.Program;
+import com.shaibachar.calc.vm.VirtualMachine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Evaluator#execute} over a pre-parsed script, so lexing and parsing are excluded.
+ * Each invocation starts from an empty {@link Environment}. {@code executeResolved} runs the same script after
+ * a {@link SlotResolver} pass, so variables are accessed by slot; {@code executeOptimized} additionally runs
+ * the {@link Optimizer} first. {@code executeVm} runs the optimized script, compiled ahead of time, on the
+ * {@link VirtualMachine}, and {@code executeClosures} runs it precompiled by the {@link ClosureCompiler}, for
+ * comparison with the tree-walking {@code executeOptimized}. {@code executeArena} runs the optimized script
+ * parsed into a flat {@link AstArena}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluatorBenchmark {
+    @Param({"1000"})
+    public int lineCount;
+
+    @Param({"8", "256"})
+    public int variableCount;
+
+    @Param({"2", "6"})
+    public int depth;
+
+    @Param({"LONG", "DOUBLE", "MIXED"})
+    public Workloads.NumberMix mix;
+
+    private List<Stmt> statements;
+    private List<Stmt> resolved;
+    private List<Stmt> optimized;
+    private Program program;
+    private List<CompiledStatement> closures;
+    private AstArena arena;
+    private final SymbolTable symbols = new SymbolTable();
+
+    @Setup
+    public void setUp() {
+        statements = new ArrayList<>(lineCount);
+        for (String line : Workloads.script(lineCount, variableCount, depth, mix, 42L)) {
+            statements.add(new Parser(new Lexer(line).tokenize()).parseStatement());
+        }
+        SlotResolver resolver = new SlotResolver(symbols);
+        resolved = new ArrayList<>(lineCount);
+        for (Stmt stmt : statements) {
+            resolved.add(resolver.resolve(stmt));
+        }
+        Optimizer optimizer = new Optimizer();
+        optimized = new ArrayList<>(lineCount);
+        for (Stmt stmt : resolved) {
+            optimized.add(optimizer.optimize(stmt));
+        }
+        program = new Compiler(symbols).compile(optimized);
+        AstArena parsed = new AstArena(symbols);
+        for (String line : Workloads.script(lineCount, variableCount, depth, mix, 42L)) {
+            new Parser(new Lexer(line).tokenizeCompact(), symbols).parseStatement(parsed);
+        }
+        arena = optimizer.optimize(parsed);
+        ClosureCompiler closureCompiler = new ClosureCompiler(symbols);
+        closures = new ArrayList<>(lineCount);
+        for (Stmt stmt : optimized) {
+            closures.add(closureCompiler.compile(stmt));
+        }
+    }
+
+    @Benchmark
+    public Environment execute() {
+        Environment env = new Environment();
+        Evaluator evaluator = new Evaluator(env);
+        for (Stmt stmt : statements) {
+            evaluator.execute(stmt);
+        }
+        return env;
+    }
+
+    @Benchmark
+    public Environment executeResolved() {
+        Environment env = new Environment(symbols);
+        Evaluator evaluator = new Evaluator(env);
+        for (Stmt stmt : resolved) {
+            evaluator.execute(stmt);
+        }
+        return env;
+    }
+
+    @Benchmark
+    public Environment executeOptimized() {
+        Environment env = new Environment(symbols);
+        Evaluator evaluator = new Evaluator(env);
+        for (Stmt stmt : optimized) {
+            evaluator.execute(stmt);
+        }
+        return env;
+    }
+
+    @Benchmark
+    public Environment executeArena() {
+        Environment env = new Environment(symbols);
+        Evaluator evaluator = new Evaluator(env);
+        for (int statement = 0; statement < arena.statementCount(); statement++) {
+            evaluator.execute(arena, statement);
+        }
+        return env;
+    }
+
+    @Benchmark
+    public Environment executeVm() {
+        Environment env = new Environment(symbols);
+        new VirtualMachine(env).run(program);
+        return env;
+    }
+
+    @Benchmark
+    public Environment executeClosures() {
+        Environment env = new Environment(symbols);
+        ClosureExecutor executor = new ClosureExecutor(env);
+        for (CompiledStatement stmt : closures) {
+            executor.run(stmt);
+        }
+        return env;
+    }
+}
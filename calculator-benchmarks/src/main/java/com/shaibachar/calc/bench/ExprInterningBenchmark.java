@@ -0,0 +1,108 @@
+package com.shaibachar.calc.bench;
+
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.lexer.Lexer;
+import com.shaibachar.calc.lexer.TokenBuffer;
+import com.shaibachar.calc.parser.Parser;
+import com.shaibachar.calc.parser.expr.ExprFactory;
+import com.shaibachar.calc.parser.expr.InterningExprFactory;
+import com.shaibachar.calc.parser.stmt.Stmt;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses a script that repeats {@code distinctLines} update lines into a retained list of statements, with plain
+ * nodes and with an {@link InterningExprFactory}, and looks every statement up in a statement-keyed map. The
+ * {@code gc.alloc.rate.norm} of the parse benchmarks includes the candidate nodes that interning discards; the
+ * memory saved is in the statements kept, which share their repeated subtrees.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExprInterningBenchmark {
+    @Param({"10000"})
+    public int lineCount;
+
+    @Param({"100"})
+    public int distinctLines;
+
+    @Param({"6"})
+    public int depth;
+
+    private List<TokenBuffer> tokens;
+    private List<Stmt> plain;
+    private List<Stmt> interned;
+    private Map<Stmt, Stmt> index;
+
+    @Setup
+    public void setUp() {
+        tokens = new ArrayList<>(lineCount);
+        for (String line : Workloads.repeatedScript(lineCount, distinctLines, 8, depth, Workloads.NumberMix.MIXED,
+                42L)) {
+            tokens.add(new Lexer(line).tokenizeCompact());
+        }
+        plain = parse(ExprFactory.PLAIN);
+        interned = parse(new InterningExprFactory());
+        index = new HashMap<>();
+        for (Stmt stmt : interned) {
+            index.put(stmt, stmt);
+        }
+    }
+
+    @Benchmark
+    public List<Stmt> parsePlain() {
+        return parse(ExprFactory.PLAIN);
+    }
+
+    @Benchmark
+    public List<Stmt> parseInterning() {
+        return parse(new InterningExprFactory());
+    }
+
+    @Benchmark
+    public int lookupPlain() {
+        return lookup(plain);
+    }
+
+    @Benchmark
+    public int lookupInterned() {
+        return lookup(interned);
+    }
+
+    private int lookup(List<Stmt> statements) {
+        int found = 0;
+        for (Stmt stmt : statements) {
+            if (index.get(stmt) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private List<Stmt> parse(ExprFactory factory) {
+        SymbolTable symbols = new SymbolTable();
+        List<Stmt> statements = new ArrayList<>(tokens.size());
+        for (TokenBuffer buffer : tokens) {
+            statements.add(new Parser(buffer, symbols, factory).parseStatement());
+        }
+        return statements;
+    }
+}
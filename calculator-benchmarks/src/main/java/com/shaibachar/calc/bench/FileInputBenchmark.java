@@ -0,0 +1,68 @@
+package com.shaibachar.calc.bench;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.CalculatorApp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a script file of distinct lines through a reader ({@link CalculatorApp#execute(java.io.Reader, Backend)})
+ * and through a memory mapping ({@link CalculatorApp#executeFile(Path, Backend)}), with the parse cache disabled
+ * so that both lex every line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileInputBenchmark {
+    @Param({"100000"})
+    public int lineCount;
+
+    @Param({"4"})
+    public int depth;
+
+    @Param({"TREE"})
+    public Backend backend;
+
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("calc-script", ".txt");
+        String text = String.join("\n", Workloads.script(lineCount, 16, depth, Workloads.NumberMix.MIXED, 42L));
+        Files.writeString(file, text + "\n", StandardCharsets.UTF_8);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public String reader() throws IOException {
+        return CalculatorApp.execute(Files.newBufferedReader(file, StandardCharsets.UTF_8), backend);
+    }
+
+    @Benchmark
+    public String mapped() throws IOException {
+        return CalculatorApp.executeFile(file, backend);
+    }
+}
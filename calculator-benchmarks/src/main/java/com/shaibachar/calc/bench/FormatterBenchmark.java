@@ -0,0 +1,54 @@
+package com.shaibachar.calc.bench;
+
+import com.shaibachar.calc.util.Formatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Formatter#format(Map)} for environments of different sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatterBenchmark {
+    @Param({"8", "256", "4096"})
+    public int variableCount;
+
+    @Param({"LONG", "DOUBLE", "MIXED"})
+    public Workloads.NumberMix mix;
+
+    private Map<String, Number> values;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42L);
+        values = new LinkedHashMap<>();
+        for (int i = 0; i < variableCount; i++) {
+            boolean floating = mix == Workloads.NumberMix.DOUBLE
+                    || (mix == Workloads.NumberMix.MIXED && random.nextBoolean());
+            values.put("v" + i, floating ? (Number) random.nextDouble() : (Number) random.nextLong());
+        }
+    }
+
+    @Benchmark
+    public String format() {
+        return Formatter.format(values);
+    }
+}
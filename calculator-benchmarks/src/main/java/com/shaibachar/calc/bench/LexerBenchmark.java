@@ -0,0 +1,64 @@
+package com.shaibachar.calc.bench;
+
+import com.shaibachar.calc.lexer.Lexer;
+import com.shaibachar.calc.lexer.Token;
+import com.shaibachar.calc.lexer.TokenBuffer;
+import com.shaibachar.calc.lexer.Utf8Lexer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Lexer#tokenize()}, the compact {@link Lexer#tokenizeInto(TokenBuffer)} and the byte-oriented
+ * {@link Utf8Lexer} on a single generated line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexerBenchmark {
+    @Param({"2", "6", "10"})
+    public int depth;
+
+    @Param({"LONG", "DOUBLE", "MIXED"})
+    public Workloads.NumberMix mix;
+
+    private String line;
+    private byte[] bytes;
+    private final TokenBuffer buffer = new TokenBuffer();
+
+    @Setup
+    public void setUp() {
+        line = Workloads.line(depth, mix, 42L);
+        bytes = line.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<Token> tokenize() {
+        return new Lexer(line).tokenize();
+    }
+
+    @Benchmark
+    public TokenBuffer tokenizeCompact() {
+        return new Lexer(line).tokenizeInto(buffer);
+    }
+
+    @Benchmark
+    public TokenBuffer tokenizeUtf8() {
+        return new Utf8Lexer(bytes).tokenizeInto(buffer);
+    }
+}
@@ -0,0 +1,57 @@
+package com.shaibachar.calc.bench;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.CalculatorApp;
+import com.shaibachar.calc.cache.ParseCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link CalculatorApp#execute(List, Backend, ParseCache)} on a script that repeats
+ * {@code distinctLines} update lines, with the parse cache disabled ({@code parseCacheSize=0}) and enabled. With
+ * as many distinct lines as script lines, nearly every lookup misses and the benchmark shows the cost of the cache
+ * itself. Every invocation starts with an empty cache, as a new process would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseCacheBenchmark {
+    @Param({"10000"})
+    public int lineCount;
+
+    @Param({"100", "10000"})
+    public int distinctLines;
+
+    @Param({"0", "4096"})
+    public int parseCacheSize;
+
+    @Param({"TREE"})
+    public Backend backend;
+
+    private List<String> lines;
+
+    @Setup
+    public void setUp() {
+        lines = Workloads.repeatedScript(lineCount, distinctLines, 8, 3, Workloads.NumberMix.MIXED, 42L);
+    }
+
+    @Benchmark
+    public String execute() {
+        return CalculatorApp.execute(lines, backend, parseCacheSize > 0 ? new ParseCache(parseCacheSize) : null);
+    }
+}
@@ -0,0 +1,57 @@
+package com.shaibachar.calc.bench;
+
+import com.shaibachar.calc.lexer.Lexer;
+import com.shaibachar.calc.lexer.Token;
+import com.shaibachar.calc.lexer.TokenBuffer;
+import com.shaibachar.calc.parser.Parser;
+import com.shaibachar.calc.parser.stmt.Stmt;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Parser#parseStatement()} on pre-tokenized input, so lexing cost is excluded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+    @Param({"2", "6", "10"})
+    public int depth;
+
+    @Param({"LONG", "DOUBLE", "MIXED"})
+    public Workloads.NumberMix mix;
+
+    private List<Token> tokens;
+    private TokenBuffer buffer;
+
+    @Setup
+    public void setUp() {
+        tokens = new Lexer(Workloads.line(depth, mix, 42L)).tokenize();
+        buffer = new Lexer(Workloads.line(depth, mix, 42L)).tokenizeCompact();
+    }
+
+    @Benchmark
+    public Stmt parseStatement() {
+        return new Parser(tokens).parseStatement();
+    }
+
+    @Benchmark
+    public Stmt parseStatementCompact() {
+        return new Parser(buffer).parseStatement();
+    }
+}
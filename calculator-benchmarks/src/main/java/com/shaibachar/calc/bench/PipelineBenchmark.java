@@ -0,0 +1,59 @@
+package com.shaibachar.calc.bench;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.CalculatorApp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link CalculatorApp#executePipelined(Reader, Backend, int)} with {@code parseWorkers} parse threads
+ * against {@link CalculatorApp#execute(Reader, Backend)} ({@code parseWorkers=0}), with the parse cache disabled.
+ * The input is in memory, so the pipeline can only win by overlapping parsing with evaluation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+    @Param({"100000"})
+    public int lineCount;
+
+    @Param({"6"})
+    public int depth;
+
+    @Param({"0", "1", "3"})
+    public int parseWorkers;
+
+    @Param({"TREE"})
+    public Backend backend;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        text = String.join("\n", Workloads.script(lineCount, 16, depth, Workloads.NumberMix.MIXED, 42L));
+    }
+
+    @Benchmark
+    public String execute() throws IOException {
+        Reader input = new StringReader(text);
+        return parseWorkers == 0 ? CalculatorApp.execute(input, backend)
+                : CalculatorApp.executePipelined(input, backend, parseWorkers);
+    }
+}
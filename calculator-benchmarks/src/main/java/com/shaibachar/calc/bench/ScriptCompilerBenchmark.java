@@ -0,0 +1,87 @@
+package com.shaibachar.calc.bench;
+
+import com.shaibachar.calc.bytecode.CompiledScript;
+import com.shaibachar.calc.bytecode.ScriptCompiler;
+import com.shaibachar.calc.eval.Environment;
+import com.shaibachar.calc.eval.Evaluator;
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.lexer.Lexer;
+import com.shaibachar.calc.optimizer.Optimizer;
+import com.shaibachar.calc.parser.Parser;
+import com.shaibachar.calc.parser.stmt.Stmt;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the tree-walking {@link Evaluator} with a script compiled to JVM bytecode by {@link ScriptCompiler},
+ * on a 1M-line script. Both run the same resolved and optimized statements; {@code compile} measures the
+ * one-time cost of generating and loading the classes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ScriptCompilerBenchmark {
+    @Param({"1000000"})
+    public int lineCount;
+
+    @Param({"8", "256"})
+    public int variableCount;
+
+    @Param({"3"})
+    public int depth;
+
+    @Param({"MIXED"})
+    public Workloads.NumberMix mix;
+
+    private final SymbolTable symbols = new SymbolTable();
+    private List<Stmt> statements;
+    private CompiledScript script;
+
+    @Setup
+    public void setUp() {
+        Optimizer optimizer = new Optimizer();
+        statements = new ArrayList<>(lineCount);
+        for (String line : Workloads.script(lineCount, variableCount, depth, mix, 42L)) {
+            statements.add(optimizer.optimize(new Parser(new Lexer(line).tokenizeCompact(), symbols).parseStatement()));
+        }
+        script = new ScriptCompiler(symbols).compile(statements);
+    }
+
+    @Benchmark
+    public Environment evaluator() {
+        Environment env = new Environment(symbols);
+        Evaluator evaluator = new Evaluator(env);
+        for (Stmt stmt : statements) {
+            evaluator.execute(stmt);
+        }
+        return env;
+    }
+
+    @Benchmark
+    public Environment compiledScript() {
+        Environment env = new Environment(symbols);
+        script.run(env);
+        return env;
+    }
+
+    @Benchmark
+    public CompiledScript compile() {
+        return new ScriptCompiler(symbols).compile(statements);
+    }
+}
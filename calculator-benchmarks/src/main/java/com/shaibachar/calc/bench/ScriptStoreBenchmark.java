@@ -0,0 +1,81 @@
+package com.shaibachar.calc.bench;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.CalculatorApp;
+import com.shaibachar.calc.cache.ScriptStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Runs an unchanged script of distinct lines from source ({@link CalculatorApp#execute(java.io.Reader, Backend)},
+ * parse cache disabled) and from its precompiled form in a {@link ScriptStore}
+ * ({@link CalculatorApp#executeCached}, which hits on every invocation after set-up).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScriptStoreBenchmark {
+    @Param({"100000"})
+    public int lineCount;
+
+    @Param({"4"})
+    public int depth;
+
+    @Param({"TREE"})
+    public Backend backend;
+
+    private String text;
+    private byte[] source;
+    private Path directory;
+    private ScriptStore store;
+
+    @Setup
+    public void setUp() throws IOException {
+        text = String.join("\n", Workloads.script(lineCount, 16, depth, Workloads.NumberMix.MIXED, 42L)) + "\n";
+        source = text.getBytes(StandardCharsets.UTF_8);
+        directory = Files.createTempDirectory("calc-store");
+        store = new ScriptStore(directory);
+        CalculatorApp.executeCached(source, backend, store);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public String parseAndRun() throws IOException {
+        return CalculatorApp.execute(new StringReader(text), backend);
+    }
+
+    @Benchmark
+    public String loadAndRun() {
+        return CalculatorApp.executeCached(source, backend, store);
+    }
+}
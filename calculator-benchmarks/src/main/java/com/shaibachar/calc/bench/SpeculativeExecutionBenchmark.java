@@ -0,0 +1,70 @@
+package com.shaibachar.calc.bench;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.CalculatorApp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link CalculatorApp#executeSpeculative(List, Backend, ForkJoinPool)} with {@code parallelism} workers
+ * against sequential {@link CalculatorApp#execute(List, Backend)} ({@code parallelism=0}). With 16 variables
+ * nearly every chunk reads something an earlier chunk wrote and runs twice; with {@code variableCount} equal to
+ * {@code lineCount} every line defines a new variable from literals and no chunk conflicts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpeculativeExecutionBenchmark {
+    @Param({"100000"})
+    public int lineCount;
+
+    @Param({"16", "100000"})
+    public int variableCount;
+
+    @Param({"6"})
+    public int depth;
+
+    @Param({"0", "1", "4"})
+    public int parallelism;
+
+    @Param({"TREE"})
+    public Backend backend;
+
+    private List<String> lines;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        lines = Workloads.script(lineCount, variableCount, depth, Workloads.NumberMix.MIXED, 42L);
+        pool = parallelism > 0 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public String execute() {
+        return pool == null ? CalculatorApp.execute(lines, backend) : CalculatorApp.executeSpeculative(lines, backend, pool);
+    }
+}
@@ -0,0 +1,143 @@
+package com.shaibachar.calc.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic generator of synthetic calculator scripts used by the benchmarks.
+ * Every generated script is valid: variables are assigned before they are read,
+ * and division/modulo only ever use non-zero literal divisors, so a benchmark
+ * never measures the cost of an exception path by accident.
+ * Example usage:
+ * <pre>
+ * List&lt;String&gt; lines = Workloads.script(1_000, 16, 4, Workloads.NumberMix.MIXED, 42L);
+ * </pre>
+ */
+public final class Workloads {
+    private static final String[] ADDITIVE = {"+", "-"};
+    private static final String[] MULTIPLICATIVE = {"*", "/", "%"};
+    private static final String[] COMPOUND = {"=", "+=", "-=", "*="};
+
+    /**
+     * Controls which kind of numeric literals appear in the generated expressions.
+     */
+    public enum NumberMix {
+        LONG,
+        DOUBLE,
+        MIXED
+    }
+
+    private Workloads() {
+    }
+
+    /**
+     * Builds a script of {@code lineCount} lines over {@code variableCount} variables.
+     * The first {@code variableCount} lines define every variable with a literal, the remaining
+     * lines update a variable with an expression of the given nesting depth.
+     *
+     * @param lineCount total number of lines in the script
+     * @param variableCount number of distinct variables (at least one)
+     * @param depth nesting depth of the right-hand side expressions
+     * @param mix literal mix for the generated numbers
+     * @param seed random seed, so that every fork measures the same script
+     * @return the generated script lines
+     */
+    public static List<String> script(int lineCount, int variableCount, int depth, NumberMix mix, long seed) {
+        Random random = new Random(seed);
+        int vars = Math.max(1, variableCount);
+        List<String> lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            if (i < vars) {
+                lines.add(variable(i) + " = " + literal(random, mix));
+                continue;
+            }
+            String target = variable(random.nextInt(vars));
+            String op = COMPOUND[random.nextInt(COMPOUND.length)];
+            lines.add(target + " " + op + " " + expression(random, depth, vars, mix));
+        }
+        return lines;
+    }
+
+    /**
+     * Builds a script like {@link #script} whose update lines are drawn from a pool of {@code distinctLines}
+     * statements, as in scripts that repeat the same updates over and over.
+     *
+     * @param lineCount total number of lines in the script
+     * @param distinctLines number of distinct update lines
+     * @param variableCount number of distinct variables (at least one)
+     * @param depth nesting depth of the right-hand side expressions
+     * @param mix literal mix for the generated numbers
+     * @param seed random seed
+     * @return the generated script lines
+     */
+    public static List<String> repeatedScript(int lineCount, int distinctLines, int variableCount, int depth,
+                                              NumberMix mix, long seed) {
+        int vars = Math.max(1, variableCount);
+        List<String> pool = script(vars + distinctLines, vars, depth, mix, seed);
+        Random random = new Random(seed);
+        List<String> lines = new ArrayList<>(pool.subList(0, Math.min(vars, lineCount)));
+        while (lines.size() < lineCount) {
+            lines.add(pool.get(vars + random.nextInt(distinctLines)));
+        }
+        return lines;
+    }
+
+    /**
+     * Builds a single assignment line whose right-hand side is a literal-only expression of the given depth.
+     *
+     * @param depth nesting depth of the expression
+     * @param mix literal mix for the generated numbers
+     * @param seed random seed
+     * @return the generated line
+     */
+    public static String line(int depth, NumberMix mix, long seed) {
+        return "x = " + expression(new Random(seed), depth, 0, mix);
+    }
+
+    /**
+     * Builds an expression of the given depth. Each level combines two sub-expressions with an
+     * additive operator (wrapped in parentheses) or a multiplicative one with a literal divisor.
+     * Leaves are literals or, when {@code variableCount > 0}, variable reads and increments.
+     */
+    static String expression(Random random, int depth, int variableCount, NumberMix mix) {
+        if (depth <= 0) {
+            return leaf(random, variableCount, mix);
+        }
+        String left = expression(random, depth - 1, variableCount, mix);
+        if (random.nextBoolean()) {
+            String right = expression(random, depth - 1, variableCount, mix);
+            return "(" + left + " " + ADDITIVE[random.nextInt(ADDITIVE.length)] + " " + right + ")";
+        }
+        String op = MULTIPLICATIVE[random.nextInt(MULTIPLICATIVE.length)];
+        String right = "*".equals(op) ? expression(random, depth - 1, variableCount, mix) : literal(random, mix);
+        return left + " " + op + " " + right;
+    }
+
+    private static String leaf(Random random, int variableCount, NumberMix mix) {
+        if (variableCount == 0 || random.nextInt(3) == 0) {
+            return literal(random, mix);
+        }
+        String name = variable(random.nextInt(variableCount));
+        return switch (random.nextInt(8)) {
+            case 0 -> name + "++";
+            case 1 -> "--" + name;
+            case 2 -> "-" + name;
+            default -> name;
+        };
+    }
+
+    private static String literal(Random random, NumberMix mix) {
+        boolean floating = switch (mix) {
+            case LONG -> false;
+            case DOUBLE -> true;
+            case MIXED -> random.nextBoolean();
+        };
+        long whole = 1 + random.nextInt(999);
+        return floating ? whole + "." + (1 + random.nextInt(99)) : Long.toString(whole);
+    }
+
+    private static String variable(int index) {
+        return "v" + index;
+    }
+}
@@ -0,0 +1,148 @@
+package com.shaibachar.calc;
+
+import com.shaibachar.calc.bytecode.ScriptCompiler;
+import com.shaibachar.calc.closure.ClosureCompiler;
+import com.shaibachar.calc.closure.ClosureExecutor;
+import com.shaibachar.calc.eval.Environment;
+import com.shaibachar.calc.eval.Evaluator;
+import com.shaibachar.calc.eval.IterativeEvaluator;
+import com.shaibachar.calc.eval.StatementExecutor;
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.exceptions.ErrorMessages;
+import com.shaibachar.calc.lexer.TokenBuffer;
+import com.shaibachar.calc.optimizer.Optimizer;
+import com.shaibachar.calc.parser.IterativeParser;
+import com.shaibachar.calc.parser.Parser;
+import com.shaibachar.calc.parser.stmt.Stmt;
+import com.shaibachar.calc.vm.VirtualMachine;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The execution backends {@link CalculatorApp} can run statements with. All backends produce the same results
+ * and errors; they differ only in speed and in whether they run statements one by one or whole scripts. Selected
+ * on the command line with {@code --backend=<name>}.
+ */
+public enum Backend {
+    /** Tree-walking {@link Evaluator}, the reference implementation. */
+    TREE {
+        @Override
+        public StatementExecutor create(Environment env) {
+            return new Evaluator(env);
+        }
+    },
+    /** Compiles each statement into a tree of specialized closures, see {@link ClosureCompiler}. */
+    CLOSURE {
+        @Override
+        public StatementExecutor create(Environment env) {
+            return new ClosureExecutor(env);
+        }
+    },
+    /** Compiles each statement to bytecode and runs it on the stack-based {@link VirtualMachine}. */
+    VM {
+        @Override
+        public StatementExecutor create(Environment env) {
+            return new VirtualMachine(env);
+        }
+    },
+    /**
+     * Parses with the {@link IterativeParser} and runs statements on the {@link IterativeEvaluator}, neither of
+     * which recurses, so expression nesting is limited by the heap instead of the thread stack. Statements are not
+     * run through the {@link Optimizer}, which is recursive.
+     */
+    ITERATIVE {
+        @Override
+        public StatementExecutor create(Environment env) {
+            return new IterativeEvaluator(env);
+        }
+
+        @Override
+        public Stmt parse(TokenBuffer tokens, SymbolTable symbols) {
+            return new IterativeParser(tokens, symbols).parseStatement();
+        }
+
+        @Override
+        public boolean sharesParsedStatements() {
+            return false;
+        }
+    },
+    /**
+     * Compiles the whole script to JVM bytecode with {@link ScriptCompiler} and runs it as a hidden class, which
+     * needs every line before any of them runs: {@link CalculatorApp} parses all lines first. Statements run one
+     * at a time through {@link #create(Environment)}, e.g. by the concurrent execution modes, are interpreted by
+     * the {@link Evaluator} instead.
+     */
+    BYTECODE {
+        @Override
+        public StatementExecutor create(Environment env) {
+            return new Evaluator(env);
+        }
+
+        @Override
+        public boolean compilesWholeScripts() {
+            return true;
+        }
+    };
+
+    private static final Optimizer OPTIMIZER = new Optimizer();
+
+    /**
+     * Parses one line of tokens into the statement this backend executes. Identifiers are resolved to slots of
+     * the given symbol table while parsing, and the statement is simplified by the {@link Optimizer}.
+     *
+     * @param tokens the tokens of the line
+     * @param symbols the symbol table of the environment the statement will run against
+     * @return the statement
+     * @throws com.shaibachar.calc.exceptions.ParseException if the tokens are not a valid statement
+     */
+    public Stmt parse(TokenBuffer tokens, SymbolTable symbols) {
+        return OPTIMIZER.optimize(new Parser(tokens, symbols).parseStatement());
+    }
+
+    /**
+     * Returns whether the statements {@link #parse(TokenBuffer, SymbolTable)} returns can be cached and run by the
+     * other backends that share them, which is the case for every backend using the default parser.
+     *
+     * @return false for a backend with its own front end
+     */
+    public boolean sharesParsedStatements() {
+        return true;
+    }
+
+    /**
+     * Creates an executor of this backend over the given environment.
+     *
+     * @param env the environment the statements update
+     * @return a new executor
+     */
+    public abstract StatementExecutor create(Environment env);
+
+    /**
+     * Returns whether this backend compiles complete scripts, so that callers holding a whole script should hand
+     * it over at once rather than run it statement by statement through {@link #create(Environment)}, which works
+     * for every backend.
+     *
+     * @return true for whole-script backends
+     */
+    public boolean compilesWholeScripts() {
+        return false;
+    }
+
+    /**
+     * Returns the backend with the given name, ignoring case.
+     *
+     * @param name the backend name, e.g. {@code "vm"}
+     * @return the backend
+     * @throws IllegalArgumentException if no backend has that name
+     */
+    public static Backend fromName(String name) {
+        for (Backend backend : values()) {
+            if (backend.name().equalsIgnoreCase(name)) {
+                return backend;
+            }
+        }
+        throw new IllegalArgumentException(ErrorMessages.appUnknownBackend(name,
+                Arrays.toString(values()).toLowerCase(Locale.ROOT)));
+    }
+}
@@ -1,22 +1,53 @@
 package com.shaibachar.calc;
 
+import com.shaibachar.calc.bytecode.CompiledScript;
+import com.shaibachar.calc.cache.ParseCache;
+import com.shaibachar.calc.cache.ScriptCodec;
+import com.shaibachar.calc.cache.ScriptStore;
+import com.shaibachar.calc.dag.DagExecutor;
+import com.shaibachar.calc.bytecode.ScriptCompiler;
+import com.shaibachar.calc.bytecode.ScriptExecutionException;
 import com.shaibachar.calc.eval.Environment;
-import com.shaibachar.calc.eval.Evaluator;
+import com.shaibachar.calc.eval.StatementExecutor;
+import com.shaibachar.calc.eval.SymbolTable;
 import com.shaibachar.calc.exceptions.ErrorMessages;
 import com.shaibachar.calc.exceptions.EvalException;
 import com.shaibachar.calc.exceptions.ParseException;
+import com.shaibachar.calc.io.MappedLineReader;
 import com.shaibachar.calc.lexer.Lexer;
-import com.shaibachar.calc.lexer.Token;
-import com.shaibachar.calc.parser.Parser;
+import com.shaibachar.calc.lexer.TokenBuffer;
+import com.shaibachar.calc.lexer.Utf8Lexer;
+import com.shaibachar.calc.optimizer.AccumulatorFusion;
+import com.shaibachar.calc.parallel.ParallelParser;
+import com.shaibachar.calc.parallel.ParsedScript;
 import com.shaibachar.calc.parser.stmt.Stmt;
+import com.shaibachar.calc.pipeline.ScriptPipeline;
+import com.shaibachar.calc.server.CalculatorServer;
+import com.shaibachar.calc.speculative.SpeculativeExecutor;
 import com.shaibachar.calc.util.Formatter;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
@@ -33,9 +64,23 @@ public class CalculatorApp {
     }
 
     private static final Logger LOGGER = Logger.getLogger(CalculatorApp.class.getName());
+    private static final String BACKEND_OPTION = "--backend=";
+    private static final String PARSE_CACHE_OPTION = "--parse-cache-size=";
+    private static final String PARALLEL_OPTION = "--parallel";
+    private static final String DAG_OPTION = "--dag";
+    private static final String SPECULATIVE_OPTION = "--speculative";
+    private static final String CACHE_DIR_OPTION = "--cache-dir=";
+    private static final String FILE_OPTION = "--file";
+    private static final String PIPELINE_OPTION = "--pipeline";
+    private static final String SOCKET_OPTION = "--socket=";
+    private static final String PORT_OPTION = "--port=";
+    private static final int DEFAULT_PARSE_CACHE_SIZE = 4096;
 
-    public static void main(String[] args) throws IOException {
+    public static void main(String[] args) throws IOException, InterruptedException {
         configureLogging(args);
+        if (serve(args)) {
+            return;
+        }
 
         LOGGER.info("Starting calculator app");
         System.out.println("Text Calculator");
@@ -45,45 +90,911 @@ public class CalculatorApp {
         System.out.println("  macOS/Linux: Ctrl+D");
         System.out.println("Run command: mvn exec:java -Dexec.mainClass=\"com.shaibachar.calc.CalculatorApp\"");
 
-        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
-        List<String> lines = new ArrayList<>();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            lines.add(line);
+        Path cacheDir = cacheDir(args);
+        Path file = file(args);
+        if (cacheDir != null) {
+            byte[] source = file != null ? Files.readAllBytes(file) : System.in.readAllBytes();
+            System.out.println(executeCached(source, backend(args), new ScriptStore(cacheDir)));
+        } else if (file != null) {
+            System.out.println(executeFile(file, backend(args)));
+        } else if (pipelineWorkers(args) > 0) {
+            System.out.println(executePipelined(new InputStreamReader(System.in), backend(args),
+                    pipelineWorkers(args)));
+        } else if (Arrays.asList(args).contains(SPECULATIVE_OPTION)) {
+            System.out.println(executeSpeculative(new InputStreamReader(System.in), backend(args),
+                    ForkJoinPool.commonPool()));
+        } else if (Arrays.asList(args).contains(DAG_OPTION)) {
+            System.out.println(executeDag(new InputStreamReader(System.in), backend(args), ForkJoinPool.commonPool()));
+        } else if (Arrays.asList(args).contains(PARALLEL_OPTION)) {
+            System.out.println(executeParallel(new InputStreamReader(System.in), backend(args),
+                    ForkJoinPool.commonPool()));
+        } else {
+            System.out.println(execute(new InputStreamReader(System.in), backend(args), parseCache(args)));
         }
-        System.out.println(execute(lines));
     }
 
     public static String execute(List<String> lines) {
+        return execute(lines, Backend.TREE);
+    }
+
+    /**
+     * Executes the lines with the given execution backend.
+     *
+     * @param lines the script lines, in order
+     * @param backend the backend that runs the parsed statements
+     * @return the formatted final variable values
+     */
+    public static String execute(List<String> lines, Backend backend) {
+        return execute(lines, backend, null);
+    }
+
+    /**
+     * Executes the lines with the given execution backend, looking them up in a parse cache first (see
+     * {@link #execute(Iterator, Backend, ParseCache)}).
+     *
+     * @param lines the script lines, in order
+     * @param backend the backend that runs the parsed statements
+     * @param cache the parse cache, or null to parse every line
+     * @return the formatted final variable values
+     */
+    public static String execute(List<String> lines, Backend backend, ParseCache cache) {
         LOGGER.info("Executing calculator with " + lines.size() + " lines");
+        return execute(lines.iterator(), backend, cache);
+    }
+
+    /**
+     * Executes the lines with the given backend, lexing and parsing them in parallel on the common
+     * {@link ForkJoinPool}.
+     *
+     * @param lines the script lines, in order
+     * @param backend the backend that runs the parsed statements
+     * @return the formatted final variable values
+     * @see #executeParallel(List, Backend, ForkJoinPool)
+     */
+    public static String executeParallel(List<String> lines, Backend backend) {
+        return executeParallel(lines, backend, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Executes the lines with the given backend, lexing and parsing them in parallel on the given pool (see
+     * {@link ParallelParser}) and then evaluating the statements in line order on the calling thread. Results and
+     * errors are the same as {@link #execute(List, Backend)}: a line that fails to parse is reported only after
+     * the lines before it have run, and only if none of them failed. The script is parsed in windows of
+     * {@link ParallelParser#windowSize()} lines (all at once for backends that compile whole scripts), and the
+     * parse cache is not used.
+     *
+     * @param lines the script lines, in order
+     * @param backend the backend that runs the parsed statements
+     * @param pool the pool that lexes and parses the lines
+     * @return the formatted final variable values
+     */
+    public static String executeParallel(List<String> lines, Backend backend, ForkJoinPool pool) {
+        LOGGER.info("Executing calculator with " + lines.size() + " lines in parallel");
+        return executeParallel(lines.iterator(), backend, pool);
+    }
+
+    /**
+     * Executes a script read line by line from the given reader like {@link #executeParallel(List, Backend,
+     * ForkJoinPool)}, reading one window of lines at a time.
+     *
+     * @param input the script source; wrapped in a {@link BufferedReader} unless it already is one
+     * @param backend the backend that runs the parsed statements
+     * @param pool the pool that lexes and parses the lines
+     * @return the formatted final variable values
+     * @throws IOException if reading from the input fails
+     */
+    public static String executeParallel(Reader input, Backend backend, ForkJoinPool pool) throws IOException {
+        LOGGER.info("Executing calculator in parallel");
+        try {
+            return executeParallel(lines(input), backend, pool);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static String executeParallel(Iterator<String> lines, Backend backend, ForkJoinPool pool) {
         long startNs = System.nanoTime();
+        ParallelParser parser = new ParallelParser(backend, pool);
+        if (backend.compilesWholeScripts()) {
+            List<String> all = new ArrayList<>();
+            lines.forEachRemaining(all::add);
+            WholeScript script = new WholeScript(backend);
+            ParsedScript parsed = parser.parse(all, script.symbols);
+            for (int i = 0; i < parsed.parsedLines(); i++) {
+                Stmt stmt = parsed.statement(i);
+                if (stmt != null) {
+                    script.add(stmt, all.get(i), i + 1);
+                }
+            }
+            if (parsed.error() != null) {
+                int index = parsed.parsedLines();
+                script.fail(new ParseException(ErrorMessages.withLineContext(parsed.error().getMessage(), index + 1,
+                        all.get(index))));
+            }
+            return finish(script.run(), startNs, all.size());
+        }
         Environment env = new Environment();
-        Evaluator evaluator = new Evaluator(env);
+        StatementExecutor executor = backend.create(env);
+        // Read and parsed window by window, so that neither the lines nor the statements of the whole script are
+        // ever held at once
+        int windowSize = parser.windowSize();
+        List<String> window = new ArrayList<>(windowSize);
+        int from = 0;
+        while (lines.hasNext()) {
+            window.clear();
+            while (window.size() < windowSize && lines.hasNext()) {
+                window.add(lines.next());
+            }
+            ParsedScript parsed = parser.parse(window, executor.symbols());
+            for (int i = 0; i < parsed.parsedLines(); i++) {
+                Stmt stmt = parsed.statement(i);
+                if (stmt != null) {
+                    executeStatement(executor, stmt, window.get(i), from + i + 1);
+                }
+            }
+            if (parsed.error() != null) {
+                int index = parsed.parsedLines();
+                throw new ParseException(ErrorMessages.withLineContext(parsed.error().getMessage(),
+                        from + index + 1, window.get(index)));
+            }
+            from += window.size();
+        }
+        return finish(env, startNs, from);
+    }
 
-        for (int i = 0; i < lines.size(); i++) {
-            String line = lines.get(i);
+    /**
+     * Executes the lines with the given backend, running independent statements concurrently on the common
+     * {@link ForkJoinPool}.
+     *
+     * @param lines the script lines, in order
+     * @param backend the backend that runs the parsed statements
+     * @return the formatted final variable values
+     * @see #executeDag(List, Backend, ForkJoinPool)
+     */
+    public static String executeDag(List<String> lines, Backend backend) {
+        return executeDag(lines, backend, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Executes the lines with the given backend, running the statements on the pool in the order their
+     * dependencies allow (see {@link DagExecutor}): statements that share no variable, or only read the ones they
+     * share, run at the same time. Lines are parsed a window at a time, without the parse cache, and each window
+     * runs once it is complete. Results and errors are the same as {@link #execute(List, Backend)}. Statements run
+     * one by one, so a whole-script backend's statements are interpreted (see {@link Backend#create}).
+     *
+     * @param lines the script lines, in order
+     * @param backend the backend that runs the parsed statements
+     * @param pool the pool that runs the statements
+     * @return the formatted final variable values
+     */
+    public static String executeDag(List<String> lines, Backend backend, ForkJoinPool pool) {
+        LOGGER.info("Executing calculator with " + lines.size() + " lines by dependency graph");
+        return executeDag(lines.iterator(), backend, pool);
+    }
+
+    /**
+     * Executes a script read line by line from the given reader like {@link #executeDag(List, Backend,
+     * ForkJoinPool)}, reading one window of lines at a time.
+     *
+     * @param input the script source; wrapped in a {@link BufferedReader} unless it already is one
+     * @param backend the backend that runs the parsed statements
+     * @param pool the pool that runs the statements
+     * @return the formatted final variable values
+     * @throws IOException if reading from the input fails
+     */
+    public static String executeDag(Reader input, Backend backend, ForkJoinPool pool) throws IOException {
+        LOGGER.info("Executing calculator by dependency graph");
+        try {
+            return executeDag(lines(input), backend, pool);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static String executeDag(Iterator<String> lines, Backend backend, ForkJoinPool pool) {
+        long startNs = System.nanoTime();
+        DagExecutor executor = new DagExecutor(backend, pool);
+        int lineCount = executeInWindows(lines, backend, executor.symbols(), executor.windowSize(), executor::run);
+        return finish(executor.environment(), startNs, lineCount);
+    }
+
+    /**
+     * Executes the lines with the given backend, running chunks of statements speculatively in parallel on the
+     * common {@link ForkJoinPool}.
+     *
+     * @param lines the script lines, in order
+     * @param backend the backend that runs the parsed statements
+     * @return the formatted final variable values
+     * @see #executeSpeculative(List, Backend, ForkJoinPool)
+     */
+    public static String executeSpeculative(List<String> lines, Backend backend) {
+        return executeSpeculative(lines, backend, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Executes the lines with the given backend, running chunks of statements at the same time against the
+     * variables committed so far and re-running, in order, the chunks that read a variable an earlier chunk
+     * changed (see {@link SpeculativeExecutor}). Lines are parsed a window at a time and each window runs once it
+     * is complete; the conflict counts are logged at the end. Results and errors are the same as
+     * {@link #execute(List, Backend)}. Statements run one by one, so a whole-script backend's statements are
+     * interpreted (see {@link Backend#create}).
+     *
+     * @param lines the script lines, in order
+     * @param backend the backend that runs the parsed statements
+     * @param pool the pool that runs the chunks
+     * @return the formatted final variable values
+     */
+    public static String executeSpeculative(List<String> lines, Backend backend, ForkJoinPool pool) {
+        LOGGER.info("Executing calculator with " + lines.size() + " lines speculatively");
+        return executeSpeculative(lines.iterator(), backend, pool);
+    }
+
+    /**
+     * Executes a script read line by line from the given reader like {@link #executeSpeculative(List, Backend,
+     * ForkJoinPool)}, reading one window of lines at a time.
+     *
+     * @param input the script source; wrapped in a {@link BufferedReader} unless it already is one
+     * @param backend the backend that runs the parsed statements
+     * @param pool the pool that runs the chunks
+     * @return the formatted final variable values
+     * @throws IOException if reading from the input fails
+     */
+    public static String executeSpeculative(Reader input, Backend backend, ForkJoinPool pool) throws IOException {
+        LOGGER.info("Executing calculator speculatively");
+        try {
+            return executeSpeculative(lines(input), backend, pool);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static String executeSpeculative(Iterator<String> lines, Backend backend, ForkJoinPool pool) {
+        long startNs = System.nanoTime();
+        SpeculativeExecutor executor = new SpeculativeExecutor(backend, pool);
+        int lineCount;
+        try {
+            lineCount = executeInWindows(lines, backend, executor.symbols(), executor.windowSize(), executor::run);
+        } finally {
+            LOGGER.info("perf.component=speculative_execute " + executor);
+        }
+        return finish(executor.environment(), startNs, lineCount);
+    }
+
+    /**
+     * Returns the lines of a reader as they are read; a read failure surfaces as an {@link UncheckedIOException}.
+     */
+    private static Iterator<String> lines(Reader input) {
+        BufferedReader reader = input instanceof BufferedReader buffered ? buffered : new BufferedReader(input);
+        return reader.lines().iterator();
+    }
+
+    /**
+     * Parses the lines against {@code symbols}, without the parse cache so that every name the statements use is
+     * in the table, and hands them to {@code runner} a window at a time, with runs of updates of one variable
+     * merged by {@link AccumulatorFusion}. Only the text of the current window's lines is kept. A line that fails
+     * to parse is reported after the statements before it have run.
+     *
+     * @param runner runs a window of statements, reporting a failing statement by its index in the window
+     * @return the number of lines read
+     */
+    private static int executeInWindows(Iterator<String> lines, Backend backend, SymbolTable symbols, int windowSize,
+                                        Consumer<List<Stmt>> runner) {
+        TokenBuffer tokens = new TokenBuffer();
+        AccumulatorFusion fusion = new AccumulatorFusion(symbols);
+        List<Stmt> statements = new ArrayList<>(windowSize);
+        int[] lineNumbers = new int[windowSize];
+        String[] lineTexts = new String[windowSize];
+        int lineNumber = 0;
+        while (lines.hasNext()) {
+            String line = lines.next();
+            lineNumber++;
             if (line == null || line.trim().isEmpty()) {
                 continue;
             }
-
-            int lineNumber = i + 1;
             try {
-                List<Token> tokens = new Lexer(line).tokenize();
-                Stmt stmt = new Parser(tokens).parseStatement();
-                evaluator.execute(stmt);
+                statements.add(backend.parse(new Lexer(line).tokenizeInto(tokens), symbols));
             } catch (ParseException e) {
+                runWindow(runner, fusion, statements, lineNumbers, lineTexts);
                 throw new ParseException(ErrorMessages.withLineContext(e.getMessage(), lineNumber, line));
+            }
+            lineNumbers[statements.size() - 1] = lineNumber;
+            lineTexts[statements.size() - 1] = line;
+            if (statements.size() == windowSize) {
+                runWindow(runner, fusion, statements, lineNumbers, lineTexts);
+            }
+        }
+        runWindow(runner, fusion, statements, lineNumbers, lineTexts);
+        return lineNumber;
+    }
+
+    private static void runWindow(Consumer<List<Stmt>> runner, AccumulatorFusion fusion, List<Stmt> statements,
+                                  int[] lineNumbers, String[] lineTexts) {
+        try {
+            runner.accept(fusion.fuse(statements));
+        } catch (ScriptExecutionException e) {
+            int index = fusion.sourceIndex(e.statementIndex());
+            throw new EvalException(ErrorMessages.withLineContext(e.getMessage(), lineNumbers[index],
+                    lineTexts[index]));
+        }
+        statements.clear();
+    }
+
+    /**
+     * Executes a complete UTF-8 script, reusing its parsed statements from {@code store} when the same source was
+     * run before with a backend of the same front end. On a hit the script is neither lexed nor parsed: the
+     * statements are decoded from the memory-mapped file straight into the executor. On a miss every line is
+     * parsed first and, if all of them parse, the statements are stored before they run. Results and errors are
+     * the same as {@link #execute(List, Backend)}.
+     *
+     * @param source the script bytes
+     * @param backend the backend that runs the statements
+     * @param store the cache of parsed scripts
+     * @return the formatted final variable values
+     */
+    public static String executeCached(byte[] source, Backend backend, ScriptStore store) {
+        long startNs = System.nanoTime();
+        byte[] hash = ScriptCodec.sourceHash(source);
+        if (backend.compilesWholeScripts()) {
+            WholeScript script = new WholeScript(backend, lineNumber -> lineAt(source, lineNumber));
+            ParseException parseError = loadOrParse(source, hash, backend, store, script.symbols,
+                    (stmt, lineNumber) -> script.add(stmt, null, lineNumber));
+            if (parseError != null) {
+                script.fail(parseError);
+            }
+            return finish(script.run(), startNs, script.size());
+        }
+        Environment env = new Environment();
+        StatementExecutor executor = backend.create(env);
+        int[] executed = {0};
+        ObjIntConsumer<Stmt> sink = (stmt, lineNumber) -> {
+            executed[0]++;
+            try {
+                executor.execute(stmt);
             } catch (EvalException e) {
-                throw new EvalException(ErrorMessages.withLineContext(e.getMessage(), lineNumber, line));
+                throw new EvalException(ErrorMessages.withLineContext(e.getMessage(), lineNumber,
+                        lineAt(source, lineNumber)));
+            }
+        };
+        ParseException parseError = loadOrParse(source, hash, backend, store, executor.symbols(), sink);
+        if (parseError != null) {
+            throw parseError;
+        }
+        return finish(env, startNs, executed[0]);
+    }
+
+    /**
+     * Hands the statements of a script to {@code sink}, from the store if it has them, otherwise by parsing the
+     * script and storing the statements if every line parsed.
+     *
+     * @return the error of the first line that failed to parse, with line context, or null
+     */
+    private static ParseException loadOrParse(byte[] source, byte[] hash, Backend backend, ScriptStore store,
+                                              SymbolTable symbols, ObjIntConsumer<Stmt> sink) {
+        boolean optimized = backend.sharesParsedStatements();
+        if (store.load(hash, optimized, symbols, sink)) {
+            LOGGER.fine("Loaded precompiled script");
+            return null;
+        }
+        String text = new String(source, StandardCharsets.UTF_8);
+        List<Stmt> statements = new ArrayList<>();
+        int[] lineNumbers = new int[64];
+        ParseException parseError = null;
+        TokenBuffer tokens = new TokenBuffer();
+        int lineNumber = 0;
+        for (Iterator<String> lines = text.lines().iterator(); lines.hasNext(); ) {
+            String line = lines.next();
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                statements.add(parse(backend, tokens, symbols, null, line));
+            } catch (ParseException e) {
+                parseError = new ParseException(ErrorMessages.withLineContext(e.getMessage(), lineNumber, line));
+                break;
+            }
+            if (statements.size() > lineNumbers.length) {
+                lineNumbers = Arrays.copyOf(lineNumbers, lineNumbers.length * 2);
+            }
+            lineNumbers[statements.size() - 1] = lineNumber;
+        }
+        if (parseError == null) {
+            store.store(hash, optimized, statements, lineNumbers);
+        }
+        for (int i = 0; i < statements.size(); i++) {
+            sink.accept(statements.get(i), lineNumbers[i]);
+        }
+        return parseError;
+    }
+
+    /**
+     * Returns a line of a UTF-8 script by number, the way {@link BufferedReader#readLine()} splits lines. Only used
+     * for error messages, so the script is decoded here rather than on every run.
+     */
+    private static String lineAt(byte[] source, int lineNumber) {
+        return new String(source, StandardCharsets.UTF_8).lines().skip(lineNumber - 1L).findFirst().orElse("");
+    }
+
+    /**
+     * Executes a UTF-8 script file through a memory mapping (see {@link MappedLineReader}). Each line is lexed
+     * straight from the mapped bytes, so no {@code String} is created for it unless it is reported in an error.
+     * The parse cache is keyed by line text and is not used. Results and errors are the same as
+     * {@link #execute(Reader, Backend)}.
+     *
+     * @param file the script file
+     * @param backend the backend that runs the parsed statements
+     * @return the formatted final variable values
+     * @throws IOException if the file cannot be read
+     */
+    public static String executeFile(Path file, Backend backend) throws IOException {
+        return executeFile(file, backend, MappedLineReader.DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Executes a UTF-8 script file, mapping at most {@code windowSize} bytes of it at once.
+     *
+     * @param file the script file
+     * @param backend the backend that runs the parsed statements
+     * @param windowSize the size of the mapping windows, which bounds the length of a line
+     * @return the formatted final variable values
+     * @throws IOException if the file cannot be read or holds a line longer than a window
+     * @see #executeFile(Path, Backend)
+     */
+    public static String executeFile(Path file, Backend backend, int windowSize) throws IOException {
+        LOGGER.info("Executing calculator with mapped file " + file);
+        long startNs = System.nanoTime();
+        try (MappedLineReader reader = new MappedLineReader(file, windowSize)) {
+            TokenBuffer tokens = new TokenBuffer();
+            if (backend.compilesWholeScripts()) {
+                WholeScript script = new WholeScript(backend, lineNumber -> fileLineAt(file, lineNumber));
+                while (reader.next()) {
+                    if (reader.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        script.add(parse(backend, tokens, script.symbols, reader.line()), null, reader.lineNumber());
+                    } catch (ParseException e) {
+                        script.fail(new ParseException(ErrorMessages.withLineContext(e.getMessage(),
+                                reader.lineNumber(), reader.lineText())));
+                        break;
+                    }
+                }
+                return finish(script.run(), startNs, reader.lineNumber());
+            }
+            Environment env = new Environment();
+            StatementExecutor executor = backend.create(env);
+            while (reader.next()) {
+                if (reader.isBlank()) {
+                    continue;
+                }
+                try {
+                    executor.execute(parse(backend, tokens, executor.symbols(), reader.line()));
+                } catch (ParseException e) {
+                    throw new ParseException(ErrorMessages.withLineContext(e.getMessage(), reader.lineNumber(),
+                            reader.lineText()));
+                } catch (EvalException e) {
+                    throw new EvalException(ErrorMessages.withLineContext(e.getMessage(), reader.lineNumber(),
+                            reader.lineText()));
+                }
+            }
+            return finish(env, startNs, reader.lineNumber());
+        }
+    }
+
+    private static Stmt parse(Backend backend, TokenBuffer tokens, SymbolTable symbols, ByteBuffer line) {
+        return backend.parse(new Utf8Lexer(line).tokenizeInto(tokens), symbols);
+    }
+
+    private static String fileLineAt(Path file, int lineNumber) {
+        try {
+            return MappedLineReader.readLine(file, lineNumber);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Executes lines as they are produced by the iterator. Each line is lexed, parsed and evaluated
+     * before the next one is requested, so the iterator may generate lines lazily and memory use does
+     * not grow with the number of lines.
+     *
+     * @param lines the script lines, in order
+     * @return the formatted final variable values
+     */
+    public static String execute(Iterator<String> lines) {
+        return execute(lines, Backend.TREE);
+    }
+
+    /**
+     * Executes lines as they are produced by the iterator, with the given execution backend.
+     *
+     * @param lines the script lines, in order
+     * @param backend the backend that runs the parsed statements
+     * @return the formatted final variable values
+     * @see #execute(Iterator)
+     */
+    public static String execute(Iterator<String> lines, Backend backend) {
+        return execute(lines, backend, null);
+    }
+
+    /**
+     * Executes lines as they are produced by the iterator, with the given execution backend, looking the lines up
+     * in a parse cache first. The cache can be reused by later executions and shared by concurrent ones: a
+     * statement cached by another execution has its variables bound to this execution's slots on a hit.
+     *
+     * @param lines the script lines, in order
+     * @param backend the backend that runs the parsed statements
+     * @param cache the parse cache, or null to parse every line
+     * @return the formatted final variable values
+     */
+    public static String execute(Iterator<String> lines, Backend backend, ParseCache cache) {
+        long startNs = System.nanoTime();
+        if (backend.compilesWholeScripts()) {
+            WholeScript script = new WholeScript(backend, cache);
+            int lineNumber = 0;
+            while (lines.hasNext() && script.add(lines.next(), ++lineNumber)) {
+                // parsed into the script
+            }
+            return finish(script.run(), startNs, lineNumber);
+        }
+        Environment env = new Environment();
+        StatementExecutor executor = backend.create(env);
+        TokenBuffer tokens = new TokenBuffer();
+        int lineNumber = 0;
+        while (lines.hasNext()) {
+            executeLine(backend, executor, tokens, cache, lines.next(), ++lineNumber);
+        }
+        return finish(env, startNs, lineNumber);
+    }
+
+    /**
+     * Executes a script read line by line from the given reader. Work starts with the first line,
+     * without waiting for the end of input, and only the current line is held in memory.
+     *
+     * @param input the script source; wrapped in a {@link BufferedReader} unless it already is one
+     * @return the formatted final variable values
+     * @throws IOException if reading from the input fails
+     */
+    public static String execute(Reader input) throws IOException {
+        return execute(input, Backend.TREE);
+    }
+
+    /**
+     * Executes a script read line by line from the given reader, with the given execution backend.
+     *
+     * @param input the script source; wrapped in a {@link BufferedReader} unless it already is one
+     * @param backend the backend that runs the parsed statements
+     * @return the formatted final variable values
+     * @throws IOException if reading from the input fails
+     * @see #execute(Reader)
+     */
+    public static String execute(Reader input, Backend backend) throws IOException {
+        return execute(input, backend, null);
+    }
+
+    /**
+     * Executes a script read line by line from the given reader, with the given execution backend, looking the
+     * lines up in a parse cache first (see {@link #execute(Iterator, Backend, ParseCache)}).
+     *
+     * @param input the script source; wrapped in a {@link BufferedReader} unless it already is one
+     * @param backend the backend that runs the parsed statements
+     * @param cache the parse cache, or null to parse every line
+     * @return the formatted final variable values
+     * @throws IOException if reading from the input fails
+     */
+    public static String execute(Reader input, Backend backend, ParseCache cache) throws IOException {
+        long startNs = System.nanoTime();
+        BufferedReader reader = input instanceof BufferedReader buffered ? buffered : new BufferedReader(input);
+        if (backend.compilesWholeScripts()) {
+            WholeScript script = new WholeScript(backend, cache);
+            int lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null && script.add(line, ++lineNumber)) {
+                // parsed into the script
+            }
+            return finish(script.run(), startNs, lineNumber);
+        }
+        Environment env = new Environment();
+        StatementExecutor executor = backend.create(env);
+        TokenBuffer tokens = new TokenBuffer();
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            executeLine(backend, executor, tokens, cache, line, ++lineNumber);
+        }
+        return finish(env, startNs, lineNumber);
+    }
+
+    /**
+     * Executes a script read from the given reader as a pipeline (see {@link ScriptPipeline}): a reader thread,
+     * {@code parseWorkers} threads that lex and parse lines, and evaluation in line order on the calling thread,
+     * connected by bounded queues. Reading, parsing and evaluating overlap; results and errors are the same as
+     * {@link #execute(Reader, Backend)}. The occupancy of the queues is logged at the end of the run.
+     *
+     * @param input the script source; wrapped in a {@link BufferedReader} unless it already is one
+     * @param backend the backend that runs the parsed statements
+     * @param parseWorkers the number of parse threads
+     * @return the formatted final variable values
+     * @throws IOException if reading from the input fails
+     */
+    public static String executePipelined(Reader input, Backend backend, int parseWorkers) throws IOException {
+        long startNs = System.nanoTime();
+        BufferedReader reader = input instanceof BufferedReader buffered ? buffered : new BufferedReader(input);
+        ScriptPipeline pipeline = new ScriptPipeline(backend, parseWorkers, ScriptPipeline.DEFAULT_QUEUE_CAPACITY);
+        if (backend.compilesWholeScripts()) {
+            WholeScript script = new WholeScript(backend);
+            ParseException parseError = pipeline.run(reader, script::add);
+            if (parseError != null) {
+                script.fail(parseError);
+            }
+            return finish(script.run(), startNs, pipeline.lineCount());
+        }
+        Environment env = new Environment();
+        StatementExecutor executor = backend.create(env);
+        ParseException parseError = pipeline.run(reader,
+                (stmt, line, lineNumber) -> executeStatement(executor, stmt, line, lineNumber));
+        if (parseError != null) {
+            throw parseError;
+        }
+        return finish(env, startNs, pipeline.lineCount());
+    }
+
+    private static void executeLine(Backend backend, StatementExecutor executor, TokenBuffer tokens,
+                                    ParseCache cache, String line, int lineNumber) {
+        if (line == null || line.trim().isEmpty()) {
+            return;
+        }
+
+        try {
+            // Identifiers are resolved to environment slots while parsing
+            executor.execute(parse(backend, tokens, executor.symbols(), cache, line));
+        } catch (ParseException e) {
+            throw new ParseException(ErrorMessages.withLineContext(e.getMessage(), lineNumber, line));
+        } catch (EvalException e) {
+            throw new EvalException(ErrorMessages.withLineContext(e.getMessage(), lineNumber, line));
+        }
+    }
+
+    private static void executeStatement(StatementExecutor executor, Stmt stmt, String line, int lineNumber) {
+        try {
+            executor.execute(stmt);
+        } catch (EvalException e) {
+            throw new EvalException(ErrorMessages.withLineContext(e.getMessage(), lineNumber, line));
+        }
+    }
+
+    /**
+     * Parses a line with the backend's front end, going through the parse cache when there is one and the backend
+     * shares its statements: on a hit the lexer and parser are skipped entirely, and the statement's variables are
+     * bound to slots of {@code symbols} if it was parsed against another table. Only lines that parse are cached,
+     * and a miss lexes the original text, so errors report the same positions as without the cache.
+     */
+    private static Stmt parse(Backend backend, TokenBuffer tokens, SymbolTable symbols, ParseCache cache,
+                              String line) {
+        if (cache == null || !backend.sharesParsedStatements()) {
+            return backend.parse(new Lexer(line).tokenizeInto(tokens), symbols);
+        }
+        String key = ParseCache.normalize(line);
+        Stmt stmt = cache.get(key, symbols);
+        if (stmt == null) {
+            stmt = backend.parse(new Lexer(line).tokenizeInto(tokens), symbols);
+            cache.put(key, stmt);
+        }
+        return stmt;
+    }
+
+    /**
+     * Collects the statements of a script for a backend that compiles whole scripts, keeping enough of each line
+     * to report errors with the same line context as line-by-line execution. Parsing stops at the first line
+     * that fails; that error is reported after the lines before it have run, unless one of them fails first.
+     */
+    private static final class WholeScript {
+        private final Backend backend;
+        private final SymbolTable symbols = new SymbolTable();
+        private final TokenBuffer tokens = new TokenBuffer();
+        private final List<Stmt> statements = new ArrayList<>();
+        private final List<String> sources = new ArrayList<>();
+        private int[] lineNumbers = new int[64];
+        // Looks up lines added without their text, by line number
+        private final IntFunction<String> lineText;
+        // Used by add(String, int); may be null
+        private final ParseCache cache;
+        private ParseException parseError;
+
+        WholeScript(Backend backend) {
+            this(backend, null, null);
+        }
+
+        WholeScript(Backend backend, ParseCache cache) {
+            this(backend, null, cache);
+        }
+
+        WholeScript(Backend backend, IntFunction<String> lineText) {
+            this(backend, lineText, null);
+        }
+
+        private WholeScript(Backend backend, IntFunction<String> lineText, ParseCache cache) {
+            this.backend = backend;
+            this.lineText = lineText;
+            this.cache = cache;
+        }
+
+        int size() {
+            return statements.size();
+        }
+
+        /**
+         * Parses a line into the script.
+         *
+         * @return false if the line failed to parse, so the rest of the input is not needed
+         */
+        boolean add(String line, int lineNumber) {
+            if (line == null || line.trim().isEmpty()) {
+                return true;
             }
+            Stmt stmt;
+            try {
+                stmt = parse(backend, tokens, symbols, cache, line);
+            } catch (ParseException e) {
+                fail(new ParseException(ErrorMessages.withLineContext(e.getMessage(), lineNumber, line)));
+                return false;
+            }
+            add(stmt, line, lineNumber);
+            return true;
         }
 
+        /**
+         * Adds a statement that was already parsed against this script's symbol table. The line text may be null
+         * if the script was created with a line lookup.
+         */
+        void add(Stmt stmt, String line, int lineNumber) {
+            statements.add(stmt);
+            if (sources.size() == lineNumbers.length) {
+                lineNumbers = Arrays.copyOf(lineNumbers, lineNumbers.length * 2);
+            }
+            lineNumbers[sources.size()] = lineNumber;
+            sources.add(line);
+        }
+
+        /**
+         * Records the parse error, with line context, that ends the script.
+         */
+        void fail(ParseException e) {
+            parseError = e;
+        }
+
+        Environment run() {
+            AccumulatorFusion fusion = new AccumulatorFusion(symbols);
+            CompiledScript script = new ScriptCompiler(symbols).compile(fusion.fuse(statements));
+            Environment env = new Environment(symbols);
+            try {
+                script.run(env);
+            } catch (ScriptExecutionException e) {
+                int index = fusion.sourceIndex(e.statementIndex());
+                String line = sources.get(index) != null ? sources.get(index) : lineText.apply(lineNumbers[index]);
+                throw new EvalException(ErrorMessages.withLineContext(e.getMessage(), lineNumbers[index], line));
+            }
+            if (parseError != null) {
+                throw parseError;
+            }
+            return env;
+        }
+    }
+
+    private static String finish(Environment env, long startNs, int lineCount) {
         String output = Formatter.format(env.values());
         long elapsedMs = (System.nanoTime() - startNs) / 1_000_000;
-        LOGGER.info("perf.component=calculator_execute elapsed_ms=" + elapsedMs + " lines=" + lines.size());
+        LOGGER.info("perf.component=calculator_execute elapsed_ms=" + elapsedMs + " lines=" + lineCount);
         return output;
     }
 
+    /**
+     * Returns the backend selected with {@code --backend=<name>}, or {@link Backend#TREE} by default.
+     */
+    private static Backend backend(String[] args) {
+        Backend backend = Backend.TREE;
+        for (String arg : args) {
+            if (arg.startsWith(BACKEND_OPTION)) {
+                backend = Backend.fromName(arg.substring(BACKEND_OPTION.length()));
+            }
+        }
+        return backend;
+    }
+
+    /**
+     * Returns the directory given with {@code --cache-dir=<dir>}, or null if precompiled scripts are not cached.
+     */
+    private static Path cacheDir(String[] args) {
+        Path directory = null;
+        for (String arg : args) {
+            if (arg.startsWith(CACHE_DIR_OPTION)) {
+                directory = Path.of(arg.substring(CACHE_DIR_OPTION.length()));
+            }
+        }
+        return directory;
+    }
+
+    /**
+     * Returns the script file given with {@code --file <path>} or {@code --file=<path>}, or null to read standard
+     * input.
+     */
+    private static Path file(String[] args) {
+        Path file = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].startsWith(FILE_OPTION + "=")) {
+                file = Path.of(args[i].substring(FILE_OPTION.length() + 1));
+            } else if (args[i].equals(FILE_OPTION) && i + 1 < args.length) {
+                file = Path.of(args[++i]);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Returns the number of parse workers given with {@code --pipeline=<n>}, a default for {@code --pipeline}
+     * alone, or 0 if the pipeline is not used.
+     */
+    private static int pipelineWorkers(String[] args) {
+        int workers = 0;
+        for (String arg : args) {
+            if (arg.equals(PIPELINE_OPTION)) {
+                workers = Math.max(1, Runtime.getRuntime().availableProcessors() - 2);
+            } else if (arg.startsWith(PIPELINE_OPTION + "=")) {
+                workers = Integer.parseInt(arg.substring(PIPELINE_OPTION.length() + 1));
+            }
+        }
+        return workers;
+    }
+
+    /**
+     * Runs the calculator as a server on the Unix domain socket given with {@code --socket=<path>} and the
+     * loopback TCP port given with {@code --port=<n>}, until the process is stopped.
+     *
+     * @return false if neither option is present
+     */
+    private static boolean serve(String[] args) throws IOException, InterruptedException {
+        List<SocketAddress> addresses = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith(SOCKET_OPTION)) {
+                addresses.add(UnixDomainSocketAddress.of(arg.substring(SOCKET_OPTION.length())));
+            } else if (arg.startsWith(PORT_OPTION)) {
+                addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                        Integer.parseInt(arg.substring(PORT_OPTION.length()))));
+            }
+        }
+        if (addresses.isEmpty()) {
+            return false;
+        }
+        CalculatorServer server = new CalculatorServer(backend(args), parseCache(args));
+        // The hook is the one place the server is closed, whether the process is stopped or a bind fails
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                LOGGER.warning("Could not stop the server cleanly: " + e.getMessage());
+            }
+        }));
+        for (SocketAddress address : addresses) {
+            System.out.println("Calculator server listening on " + server.bind(address));
+        }
+        server.awaitClose();
+        return true;
+    }
+
+    /**
+     * Returns a parse cache of the size given with {@code --parse-cache-size=<n>}, 4096 by default, or null for
+     * a size of 0.
+     */
+    private static ParseCache parseCache(String[] args) {
+        int size = DEFAULT_PARSE_CACHE_SIZE;
+        for (String arg : args) {
+            if (arg.startsWith(PARSE_CACHE_OPTION)) {
+                size = Integer.parseInt(arg.substring(PARSE_CACHE_OPTION.length()));
+            }
+        }
+        return size > 0 ? new ParseCache(size) : null;
+    }
+
     private static void configureLogging(String[] args) {
         boolean verbose = false;
         for (String arg : args) {
@@ -0,0 +1,257 @@
+package com.shaibachar.calc;
+
+import com.shaibachar.calc.cache.ParseCache;
+import com.shaibachar.calc.eval.Environment;
+import com.shaibachar.calc.eval.StatementExecutor;
+import com.shaibachar.calc.exceptions.ErrorMessages;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.exceptions.ParseException;
+import com.shaibachar.calc.lexer.Lexer;
+import com.shaibachar.calc.lexer.TokenBuffer;
+import com.shaibachar.calc.parser.stmt.Stmt;
+import com.shaibachar.calc.util.Formatter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Thread-safe calculator for services that run many independent scripts, e.g. one per tenant. Unlike
+ * {@link CalculatorApp#execute(List, Backend)}, which builds its environment, executor and buffers on every call,
+ * the engine keeps them:
+ * <ul>
+ * <li>every worker of the engine's {@link ForkJoinPool} owns a token buffer, an environment and an executor,
+ * which are cleared and reused from one script to the next, and whose symbol table keeps the names seen so
+ * far, so that cached statements usually carry slots that are valid as they are and are otherwise bound to
+ * the worker's slots on a hit;</li>
+ * <li>parsed statements are shared by all workers through a parse cache split into stripes by line, so that
+ * workers rarely wait for each other's lookups.</li>
+ * </ul>
+ * {@link #executeAll(List)} runs a batch of scripts on the pool, which balances uneven scripts by work stealing.
+ * {@link #execute(List)} runs one script on the calling thread, with the pool's reusable state only when called
+ * from a worker. Results and errors are those of {@link CalculatorApp#execute(List, Backend)}. Backends that
+ * compile whole scripts run each script through {@link CalculatorApp} instead.
+ * <pre>
+ * try (CalculatorEngine engine = new CalculatorEngine(Backend.VM)) {
+ *     List&lt;ScriptResult&gt; results = engine.executeAll(scripts);
+ * }
+ * </pre>
+ */
+public final class CalculatorEngine implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(CalculatorEngine.class.getName());
+    private static final int DEFAULT_PARSE_CACHE_SIZE = 16_384;
+    // Batches are split into this many tasks per worker, so that idle workers have tasks to steal
+    private static final int TASKS_PER_WORKER = 8;
+    // A worker starts over with a fresh symbol table once its table holds this many names
+    private static final int MAX_RETAINED_NAMES = 4096;
+
+    private final Backend backend;
+    private final ForkJoinPool pool;
+    private final ParseCache[] cacheStripes;
+
+    /**
+     * Creates an engine with one worker per available processor.
+     *
+     * @param backend the backend that runs the statements
+     */
+    public CalculatorEngine(Backend backend) {
+        this(backend, Runtime.getRuntime().availableProcessors(), DEFAULT_PARSE_CACHE_SIZE);
+    }
+
+    /**
+     * Creates an engine.
+     *
+     * @param backend the backend that runs the statements
+     * @param parallelism the number of workers
+     * @param parseCacheSize the maximum number of cached statements over all stripes, or 0 to disable caching
+     */
+    public CalculatorEngine(Backend backend, int parallelism, int parseCacheSize) {
+        this.backend = backend;
+        this.pool = new ForkJoinPool(parallelism, Worker::new, null, false);
+        int stripes = parseCacheSize > 0 && backend.sharesParsedStatements()
+                ? Math.min(Integer.highestOneBit(parseCacheSize), Integer.highestOneBit(parallelism * 4 - 1) << 1)
+                : 0;
+        this.cacheStripes = new ParseCache[stripes];
+        for (int i = 0; i < stripes; i++) {
+            cacheStripes[i] = new ParseCache(parseCacheSize / stripes);
+        }
+    }
+
+    public Backend backend() {
+        return backend;
+    }
+
+    /**
+     * Runs one script on the calling thread.
+     *
+     * @param lines the script lines, in order
+     * @return the formatted final variable values
+     * @throws ParseException if a line fails to parse, after the lines before it have run
+     * @throws EvalException if a statement fails
+     */
+    public String execute(List<String> lines) {
+        if (backend.compilesWholeScripts()) {
+            return CalculatorApp.execute(lines, backend);
+        }
+        Thread thread = Thread.currentThread();
+        Scratch scratch = thread instanceof Worker worker && worker.getPool() == pool
+                ? worker.scratch(backend) : new Scratch(backend);
+        return run(lines, scratch);
+    }
+
+    /**
+     * Runs independent scripts on the engine's workers and waits for all of them. A script that fails does not
+     * affect the others.
+     *
+     * @param scripts the scripts, each a list of lines
+     * @return the result of each script, in the order of {@code scripts}
+     */
+    public List<ScriptResult> executeAll(List<? extends List<String>> scripts) {
+        long startNs = System.nanoTime();
+        ScriptResult[] results = new ScriptResult[scripts.size()];
+        int tasks = pool.getParallelism() * TASKS_PER_WORKER;
+        int batchSize = Math.max(1, (scripts.size() + tasks - 1) / tasks);
+        pool.invoke(new Batch(scripts, results, 0, scripts.size(), batchSize));
+        if (LOGGER.isLoggable(Level.INFO)) {
+            long elapsedMs = (System.nanoTime() - startNs) / 1_000_000;
+            LOGGER.info("perf.component=calculator_engine elapsed_ms=" + elapsedMs + " scripts=" + scripts.size());
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Returns the total hit count of the parse cache stripes.
+     *
+     * @return the number of lines whose statement was found in the cache
+     */
+    public long parseCacheHitCount() {
+        long hits = 0;
+        for (ParseCache stripe : cacheStripes) {
+            hits += stripe.hitCount();
+        }
+        return hits;
+    }
+
+    /**
+     * Shuts the workers down once the batches in progress have finished.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private String run(List<String> lines, Scratch scratch) {
+        scratch.reset();
+        int lineNumber = 0;
+        for (String line : lines) {
+            lineNumber++;
+            if (line == null || line.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                scratch.executor.execute(parse(line, scratch));
+            } catch (ParseException e) {
+                throw new ParseException(ErrorMessages.withLineContext(e.getMessage(), lineNumber, line));
+            } catch (EvalException e) {
+                throw new EvalException(ErrorMessages.withLineContext(e.getMessage(), lineNumber, line));
+            }
+        }
+        return Formatter.format(scratch.env.values());
+    }
+
+    private Stmt parse(String line, Scratch scratch) {
+        if (cacheStripes.length == 0) {
+            return backend.parse(new Lexer(line).tokenizeInto(scratch.tokens), scratch.env.symbols());
+        }
+        String key = ParseCache.normalize(line);
+        ParseCache stripe = cacheStripes[spread(key.hashCode()) & (cacheStripes.length - 1)];
+        Stmt stmt = stripe.get(key, scratch.env.symbols());
+        if (stmt == null) {
+            stmt = backend.parse(new Lexer(line).tokenizeInto(scratch.tokens), scratch.env.symbols());
+            stripe.put(key, stmt);
+        }
+        return stmt;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Per-worker state reused across scripts.
+     */
+    private static final class Scratch {
+        final TokenBuffer tokens = new TokenBuffer();
+        final Environment env = new Environment();
+        final StatementExecutor executor;
+
+        Scratch(Backend backend) {
+            this.executor = backend.create(env);
+        }
+
+        void reset() {
+            env.clear();
+        }
+    }
+
+    /**
+     * Pool thread carrying its scratch state.
+     */
+    private static final class Worker extends ForkJoinWorkerThread {
+        private Scratch scratch;
+
+        Worker(ForkJoinPool pool) {
+            super(pool);
+        }
+
+        Scratch scratch(Backend backend) {
+            if (scratch == null || scratch.env.symbols().size() > MAX_RETAINED_NAMES) {
+                scratch = new Scratch(backend);
+            }
+            return scratch;
+        }
+    }
+
+    /**
+     * Runs the scripts of an index range, splitting it while it is larger than the batch size.
+     */
+    private final class Batch extends RecursiveAction {
+        private final List<? extends List<String>> scripts;
+        private final ScriptResult[] results;
+        private final int from;
+        private final int to;
+        private final int batchSize;
+
+        Batch(List<? extends List<String>> scripts, ScriptResult[] results, int from, int to, int batchSize) {
+            this.scripts = scripts;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > batchSize) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Batch(scripts, results, from, middle, batchSize),
+                        new Batch(scripts, results, middle, to, batchSize));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                try {
+                    results[i] = ScriptResult.success(execute(scripts.get(i)));
+                } catch (RuntimeException e) {
+                    results[i] = ScriptResult.failure(e);
+                } catch (StackOverflowError e) {
+                    // E.g. a deeply nested expression; the worker goes on with the next script
+                    results[i] = ScriptResult.failure(new RuntimeException(ErrorMessages.appUnexpectedFailure(e), e));
+                }
+            }
+        }
+    }
+}
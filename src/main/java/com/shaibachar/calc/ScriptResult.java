@@ -0,0 +1,55 @@
+package com.shaibachar.calc;
+
+/**
+ * The outcome of one script of a batch run by {@link CalculatorEngine#executeAll}: either its formatted output
+ * or the error that stopped it.
+ */
+public final class ScriptResult {
+    private final String output;
+    private final RuntimeException error;
+
+    private ScriptResult(String output, RuntimeException error) {
+        this.output = output;
+        this.error = error;
+    }
+
+    static ScriptResult success(String output) {
+        return new ScriptResult(output, null);
+    }
+
+    static ScriptResult failure(RuntimeException error) {
+        return new ScriptResult(null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * Returns the formatted final variable values of the script.
+     *
+     * @return the output
+     * @throws RuntimeException the error of the script if it failed, e.g. a
+     *         {@link com.shaibachar.calc.exceptions.ParseException} with line context
+     */
+    public String output() {
+        if (error != null) {
+            throw error;
+        }
+        return output;
+    }
+
+    /**
+     * Returns the error that stopped the script.
+     *
+     * @return the error, or null if the script succeeded
+     */
+    public RuntimeException error() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return error == null ? output : "error: " + error.getMessage();
+    }
+}
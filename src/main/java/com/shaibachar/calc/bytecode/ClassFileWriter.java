@@ -0,0 +1,214 @@
+package com.shaibachar.calc.bytecode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal class-file writer: a constant pool, methods with a {@code Code} attribute and an exception table,
+ * and nothing else. Classes are written with major version 49 (Java 5), which the JVM verifies by type
+ * inference, so no {@code StackMapTable} has to be computed. The generated code uses no Java 6+ features.
+ */
+final class ClassFileWriter {
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private static final int MAJOR_VERSION = 49;
+    private static final int TAG_UTF8 = 1;
+    private static final int TAG_INTEGER = 3;
+    private static final int TAG_LONG = 5;
+    private static final int TAG_DOUBLE = 6;
+    private static final int TAG_CLASS = 7;
+    private static final int TAG_STRING = 8;
+    private static final int TAG_METHODREF = 10;
+    private static final int TAG_INTERFACE_METHODREF = 11;
+    private static final int TAG_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<Object, Integer> entries = new HashMap<>();
+    // doubles are keyed by their bits, so that 0.0 and -0.0 (and NaNs) get separate entries
+    private final Map<Long, Integer> doubleEntries = new HashMap<>();
+    private final List<byte[]> methods = new ArrayList<>();
+    private int poolCount = 1;
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+
+    /**
+     * @param name the internal name of the class, e.g. {@code com/shaibachar/calc/bytecode/Script}
+     * @param superName the internal name of the superclass
+     * @param interfaceNames the internal names of the implemented interfaces
+     */
+    ClassFileWriter(String name, String superName, String... interfaceNames) {
+        thisClass = classRef(name);
+        superClass = classRef(superName);
+        interfaces = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; i++) {
+            interfaces[i] = classRef(interfaceNames[i]);
+        }
+    }
+
+    /**
+     * Returns the number of constant pool slots used so far. The format allows at most 65535.
+     *
+     * @return the constant pool count
+     */
+    int poolCount() {
+        return poolCount;
+    }
+
+    int utf8(String value) {
+        return entry("U" + value, TAG_UTF8, out -> out.writeUTF(value), 1);
+    }
+
+    int classRef(String internalName) {
+        int name = utf8(internalName);
+        return entry("C" + internalName, TAG_CLASS, out -> out.writeShort(name), 1);
+    }
+
+    int string(String value) {
+        int utf8 = utf8(value);
+        return entry("S" + value, TAG_STRING, out -> out.writeShort(utf8), 1);
+    }
+
+    int integer(int value) {
+        return entry(value, TAG_INTEGER, out -> out.writeInt(value), 1);
+    }
+
+    int longConstant(long value) {
+        return entry(value, TAG_LONG, out -> out.writeLong(value), 2);
+    }
+
+    int doubleConstant(double value) {
+        Long bits = Double.doubleToRawLongBits(value);
+        Integer existing = doubleEntries.get(bits);
+        if (existing != null) {
+            return existing;
+        }
+        int index = entry(new Object(), TAG_DOUBLE, out -> out.writeDouble(value), 2);
+        doubleEntries.put(bits, index);
+        return index;
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(TAG_METHODREF, owner, name, descriptor);
+    }
+
+    int interfaceMethodRef(String owner, String name, String descriptor) {
+        return memberRef(TAG_INTERFACE_METHODREF, owner, name, descriptor);
+    }
+
+    /**
+     * Adds a method.
+     *
+     * @param access the access flags
+     * @param name the method name
+     * @param descriptor the method descriptor
+     * @param code the method body
+     */
+    void method(int access, String name, String descriptor, CodeBuilder code) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(1);
+            byte[] body = code.code();
+            List<int[]> handlers = code.handlers();
+            out.writeShort(utf8("Code"));
+            out.writeInt(12 + body.length + handlers.size() * 8);
+            out.writeShort(code.maxStack());
+            out.writeShort(code.maxLocals());
+            out.writeInt(body.length);
+            out.write(body);
+            out.writeShort(handlers.size());
+            for (int[] handler : handlers) {
+                out.writeShort(handler[0]);
+                out.writeShort(handler[1]);
+                out.writeShort(handler[2]);
+                out.writeShort(handler[3]);
+            }
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        methods.add(bytes.toByteArray());
+    }
+
+    byte[] toByteArray() {
+        if (poolCount > 0xFFFF) {
+            throw new IllegalStateException("Constant pool too large: " + poolCount);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(MAJOR_VERSION);
+            out.writeShort(poolCount);
+            pool.flush();
+            poolBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.length);
+            for (int iface : interfaces) {
+                out.writeShort(iface);
+            }
+            out.writeShort(0);
+            out.writeShort(methods.size());
+            for (byte[] method : methods) {
+                out.write(method);
+            }
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int nameAndType = entry("N" + name + ' ' + descriptor, TAG_NAME_AND_TYPE, out -> {
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        }, 1);
+        return entry("M" + tag + owner + '.' + name + descriptor, tag, out -> {
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        }, 1);
+    }
+
+    private int entry(Object key, int tag, PoolContent content, int size) {
+        Integer existing = entries.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        int index = poolCount;
+        try {
+            pool.writeByte(tag);
+            content.write(pool);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        poolCount += size;
+        entries.put(key, index);
+        return index;
+    }
+
+    @FunctionalInterface
+    private interface PoolContent {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
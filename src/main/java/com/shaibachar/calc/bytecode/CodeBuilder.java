@@ -0,0 +1,311 @@
+package com.shaibachar.calc.bytecode;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Emits the body of one method, tracking the operand stack depth (in JVM slots, so longs and doubles count
+ * twice) and the number of locals. Only the instructions the {@link ScriptCompiler} needs are provided; there
+ * are no branches, so no labels or stack maps are needed.
+ */
+final class CodeBuilder {
+    private static final int LCONST_0 = 0x09;
+    private static final int DCONST_0 = 0x0e;
+    private static final int DCONST_1 = 0x0f;
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC = 0x12;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int ILOAD = 0x15;
+    private static final int LLOAD = 0x16;
+    private static final int DLOAD = 0x18;
+    private static final int ALOAD = 0x19;
+    private static final int LALOAD = 0x2f;
+    private static final int DALOAD = 0x31;
+    private static final int ISTORE = 0x36;
+    private static final int LSTORE = 0x37;
+    private static final int DSTORE = 0x39;
+    private static final int LASTORE = 0x50;
+    private static final int DASTORE = 0x52;
+    private static final int POP2 = 0x58;
+    private static final int DUP2 = 0x5c;
+    private static final int DUP2_X2 = 0x5e;
+    private static final int IADD = 0x60;
+    private static final int I2L = 0x85;
+    private static final int L2D = 0x8a;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int ATHROW = 0xbf;
+    private static final int WIDE = 0xc4;
+
+    // Arithmetic opcodes, indexed like BinaryOp (ADD, SUB, MUL, DIV, MOD)
+    private static final int[] LONG_OPS = {0x61, 0x65, 0x69, 0x6d, 0x71};
+    private static final int[] DOUBLE_OPS = {0x63, 0x67, 0x6b, 0x6f, 0x73};
+    private static final int LNEG = 0x75;
+    private static final int DNEG = 0x77;
+
+    private final ClassFileWriter pool;
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+    private final List<int[]> handlers = new ArrayList<>();
+    private int stack;
+    private int maxStack;
+    private int maxLocals;
+
+    /**
+     * @param pool the class whose constant pool the code refers to
+     * @param parameterSlots the local slots taken by the parameters (and {@code this})
+     */
+    CodeBuilder(ClassFileWriter pool, int parameterSlots) {
+        this.pool = pool;
+        maxLocals = parameterSlots;
+    }
+
+    int size() {
+        return code.size();
+    }
+
+    /**
+     * Reserves local variable slots.
+     *
+     * @param slots 1 for an int or reference, 2 for a long or double
+     * @return the index of the first reserved slot
+     */
+    int newLocal(int slots) {
+        int index = maxLocals;
+        maxLocals += slots;
+        return index;
+    }
+
+    int maxLocals() {
+        return maxLocals;
+    }
+
+    int maxStack() {
+        return maxStack;
+    }
+
+    byte[] code() {
+        return code.toByteArray();
+    }
+
+    List<int[]> handlers() {
+        return handlers;
+    }
+
+    /**
+     * Adds an exception table entry.
+     *
+     * @param start first covered offset
+     * @param end end of the covered range, exclusive
+     * @param handler offset of the handler
+     * @param catchType constant pool index of the caught class
+     */
+    void handler(int start, int end, int handler, int catchType) {
+        handlers.add(new int[]{start, end, handler, catchType});
+    }
+
+    void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            op(ICONST_0 + value, 1);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            op(BIPUSH, 1);
+            code.write(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            op(SIPUSH, 1);
+            u2(value);
+        } else {
+            pushConstant(pool.integer(value), 1);
+        }
+    }
+
+    /**
+     * Pushes a long constant, using the shortest encoding: {@code lconst}, an int push widened with {@code i2l},
+     * or {@code ldc2_w} with a pool entry.
+     */
+    void pushLong(long value) {
+        if (value == 0L || value == 1L) {
+            op(LCONST_0 + (int) value, 2);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            pushInt((int) value);
+            op(I2L, 1);
+        } else {
+            op(LDC2_W, 2);
+            u2(pool.longConstant(value));
+        }
+    }
+
+    void pushDouble(double value) {
+        if (Double.doubleToRawLongBits(value) == 0L) {
+            op(DCONST_0, 2);
+        } else if (value == 1.0) {
+            op(DCONST_1, 2);
+        } else {
+            op(LDC2_W, 2);
+            u2(pool.doubleConstant(value));
+        }
+    }
+
+    void pushString(String value) {
+        pushConstant(pool.string(value), 1);
+    }
+
+    private void pushConstant(int poolIndex, int stackDelta) {
+        if (poolIndex <= 0xFF) {
+            op(LDC, stackDelta);
+            code.write(poolIndex);
+        } else {
+            op(LDC_W, stackDelta);
+            u2(poolIndex);
+        }
+    }
+
+    void aload(int local) {
+        local(ALOAD, local, 1);
+    }
+
+    void iload(int local) {
+        local(ILOAD, local, 1);
+    }
+
+    void istore(int local) {
+        local(ISTORE, local, -1);
+    }
+
+    void lload(int local) {
+        local(LLOAD, local, 2);
+    }
+
+    void lstore(int local) {
+        local(LSTORE, local, -2);
+    }
+
+    void dload(int local) {
+        local(DLOAD, local, 2);
+    }
+
+    void dstore(int local) {
+        local(DSTORE, local, -2);
+    }
+
+    /** {@code array[index]} of a {@code long[]} held in a local. */
+    void laload(int arrayLocal, int index) {
+        aload(arrayLocal);
+        pushInt(index);
+        op(LALOAD, 0);
+    }
+
+    void daload(int arrayLocal, int index) {
+        aload(arrayLocal);
+        pushInt(index);
+        op(DALOAD, 0);
+    }
+
+    /** Stores a long local into {@code array[index]} of a {@code long[]} held in a local. */
+    void lastore(int arrayLocal, int index, int valueLocal) {
+        aload(arrayLocal);
+        pushInt(index);
+        lload(valueLocal);
+        op(LASTORE, -4);
+    }
+
+    void dastore(int arrayLocal, int index, int valueLocal) {
+        aload(arrayLocal);
+        pushInt(index);
+        dload(valueLocal);
+        op(DASTORE, -4);
+    }
+
+    /** Duplicates the long or double on top of the stack. */
+    void dup2() {
+        op(DUP2, 2);
+    }
+
+    /** Swaps the two longs or doubles on top of the stack. */
+    void swap2() {
+        op(DUP2_X2, 2);
+        op(POP2, -2);
+    }
+
+    void iadd() {
+        op(IADD, -1);
+    }
+
+    void l2d() {
+        op(L2D, 0);
+    }
+
+    /**
+     * Applies an arithmetic operator to the two values on top of the stack.
+     *
+     * @param opIndex the operator's index in {@link com.shaibachar.calc.parser.BinaryOp}
+     * @param isDouble whether the operands are doubles (otherwise longs)
+     */
+    void arithmetic(int opIndex, boolean isDouble) {
+        op(isDouble ? DOUBLE_OPS[opIndex] : LONG_OPS[opIndex], -2);
+    }
+
+    void negate(boolean isDouble) {
+        op(isDouble ? DNEG : LNEG, 0);
+    }
+
+    /**
+     * Calls a static method.
+     *
+     * @param methodRef constant pool index of the method
+     * @param stackDelta slots pushed minus slots popped
+     */
+    void invokestatic(int methodRef, int stackDelta) {
+        op(INVOKESTATIC, stackDelta);
+        u2(methodRef);
+    }
+
+    void invokespecial(int methodRef, int stackDelta) {
+        op(INVOKESPECIAL, stackDelta);
+        u2(methodRef);
+    }
+
+    void athrow() {
+        op(ATHROW, -1);
+        stack = 0;
+    }
+
+    void returnVoid() {
+        op(RETURN, 0);
+    }
+
+    /**
+     * Declares the stack at the start of an exception handler: just the exception.
+     */
+    void enterHandler() {
+        stack = 1;
+        maxStack = Math.max(maxStack, 1);
+    }
+
+    private void local(int opcode, int local, int stackDelta) {
+        if (local <= 0xFF) {
+            op(opcode, stackDelta);
+            code.write(local);
+        } else {
+            code.write(WIDE);
+            op(opcode, stackDelta);
+            u2(local);
+        }
+    }
+
+    private void op(int opcode, int stackDelta) {
+        code.write(opcode);
+        stack += stackDelta;
+        if (stack > maxStack) {
+            maxStack = stack;
+        }
+    }
+
+    private void u2(int value) {
+        code.write(value >>> 8);
+        code.write(value);
+    }
+}
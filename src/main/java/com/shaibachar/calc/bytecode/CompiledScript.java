@@ -0,0 +1,93 @@
+package com.shaibachar.calc.bytecode;
+
+import com.shaibachar.calc.eval.Environment;
+import com.shaibachar.calc.eval.SymbolTable;
+
+/**
+ * A script compiled to JVM bytecode by {@link ScriptCompiler}. Running it executes the generated hidden
+ * classes, which keep every variable in local {@code long}/{@code double} variables, and then fills the
+ * {@link Environment} once with the final values, in first-assignment order.
+ * The script can be run any number of times, also concurrently, each time against a fresh environment.
+ */
+public final class CompiledScript {
+    private final ScriptPart[] parts;
+    private final SymbolTable symbols;
+    private final int slotCount;
+    private final int[] definitionOrder;
+    private final boolean[] finalIsDouble;
+    private final int statementCount;
+    private final int methodCount;
+
+    CompiledScript(ScriptPart[] parts, SymbolTable symbols, int slotCount, int[] definitionOrder,
+                   boolean[] finalIsDouble, int statementCount, int methodCount) {
+        this.parts = parts;
+        this.symbols = symbols;
+        this.slotCount = slotCount;
+        this.definitionOrder = definitionOrder;
+        this.finalIsDouble = finalIsDouble;
+        this.statementCount = statementCount;
+        this.methodCount = methodCount;
+    }
+
+    /**
+     * Runs the script and stores the final variable values in the environment.
+     * If a statement fails, the environment is left unchanged.
+     *
+     * @param env an empty environment over the symbol table the script was compiled against
+     * @throws IllegalArgumentException if the environment uses another symbol table or is not empty
+     * @throws ScriptExecutionException if a statement fails; {@link ScriptExecutionException#statementIndex()}
+     *                                  tells which one
+     */
+    public void run(Environment env) {
+        if (env.symbols() != symbols) {
+            throw new IllegalArgumentException("Script was compiled against a different symbol table");
+        }
+        if (env.size() != 0) {
+            throw new IllegalArgumentException("Compiled scripts run against an empty environment");
+        }
+        long[] longs = new long[slotCount];
+        double[] doubles = new double[slotCount];
+        for (ScriptPart part : parts) {
+            part.run(longs, doubles);
+        }
+        for (int slot : definitionOrder) {
+            if (finalIsDouble[slot]) {
+                env.setDouble(slot, doubles[slot]);
+            } else {
+                env.setLong(slot, longs[slot]);
+            }
+        }
+    }
+
+    public SymbolTable symbols() {
+        return symbols;
+    }
+
+    public int statementCount() {
+        return statementCount;
+    }
+
+    /**
+     * Returns the number of generated hidden classes.
+     *
+     * @return the class count
+     */
+    public int classCount() {
+        return parts.length;
+    }
+
+    /**
+     * Returns the number of generated methods that hold statements.
+     *
+     * @return the method count
+     */
+    public int methodCount() {
+        return methodCount;
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledScript[statements=" + statementCount + ", classes=" + parts.length
+                + ", methods=" + methodCount + "]";
+    }
+}
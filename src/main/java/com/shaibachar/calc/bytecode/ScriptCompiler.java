@@ -0,0 +1,461 @@
+package com.shaibachar.calc.bytecode;
+
+import com.shaibachar.calc.eval.Arithmetic;
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.exceptions.ErrorMessages;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.parser.AssignOp;
+import com.shaibachar.calc.parser.BinaryOp;
+import com.shaibachar.calc.parser.PostfixOp;
+import com.shaibachar.calc.parser.UnaryOp;
+import com.shaibachar.calc.parser.expr.BinaryExpr;
+import com.shaibachar.calc.parser.expr.Expr;
+import com.shaibachar.calc.parser.expr.LiteralExpr;
+import com.shaibachar.calc.parser.expr.PostfixExpr;
+import com.shaibachar.calc.parser.expr.UnaryExpr;
+import com.shaibachar.calc.parser.expr.VarExpr;
+import com.shaibachar.calc.parser.stmt.AssignStmt;
+import com.shaibachar.calc.parser.stmt.Stmt;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiles a whole script into JVM bytecode, loaded as hidden classes with
+ * {@link MethodHandles.Lookup#defineHiddenClass}. The JIT then optimizes the script like ordinary Java code.
+ * <p>
+ * A script is straight-line code, so the type of every variable at every point is known while compiling: each
+ * variable becomes a local {@code long} or {@code double} of the generated method, every operation is emitted
+ * for its exact operand types, and an error that must happen (reading a variable before its first assignment,
+ * {@code ++} on a non-variable) is compiled into a {@code throw} at that point. Only division and modulo by zero
+ * are checked at runtime.
+ * <p>
+ * Statements are grouped into static methods kept below HotSpot's 8000-byte limit for JIT compilation, and
+ * methods into classes kept below the constant pool limit. Variables are passed between methods in two arrays
+ * indexed by slot; within a method they live in locals. Each method records the index of the current statement,
+ * so a failure is reported as a {@link ScriptExecutionException} that points at the statement.
+ * <p>
+ * Semantics are those of {@link com.shaibachar.calc.eval.Evaluator}: operands are evaluated left to right,
+ * a compound assignment loads its target before evaluating the right-hand side, and arithmetic follows
+ * {@link Arithmetic}. The compiler is not thread-safe; compiled scripts are.
+ * Example usage:
+ * <pre>
+ * CompiledScript script = new ScriptCompiler(symbols).compile(statements);
+ * Environment env = new Environment(symbols);
+ * script.run(env);
+ * </pre>
+ */
+public class ScriptCompiler {
+    // HotSpot does not JIT-compile methods larger than 8000 bytes of bytecode
+    private static final int METHOD_CODE_LIMIT = 7000;
+    private static final int METHOD_LOCALS_LIMIT = 60000;
+    private static final int CLASS_POOL_LIMIT = 50000;
+    private static final int CLASS_METHOD_LIMIT = 1000;
+
+    private static final String PART_CLASS = "com/shaibachar/calc/bytecode/GeneratedScript";
+    private static final String PART_INTERFACE = "com/shaibachar/calc/bytecode/ScriptPart";
+    private static final String EVAL_EXCEPTION = "com/shaibachar/calc/exceptions/EvalException";
+    private static final String PART_DESCRIPTOR = "([J[D)V";
+
+    // Static types; ERROR means the code just emitted always throws
+    private static final byte UNDEFINED = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte ERROR = -1;
+
+    // Locals of a statement method: the two arrays, then the statement index relative to the method's first
+    private static final int LONGS = 0;
+    private static final int DOUBLES = 1;
+    private static final int STATEMENT = 2;
+
+    private final SymbolTable symbols;
+    private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    private byte[] types;
+    private int[] order;
+    private int defined;
+    private List<ScriptPart> parts;
+    private int methodCount;
+
+    private ClassFileWriter classFile;
+    private int methodsInClass;
+    // Constant pool indexes of the ScriptRuntime helpers in the current class
+    private int longDivisor;
+    private int doubleDivisor;
+    private int errorMethod;
+
+    private CodeBuilder method;
+    private int firstStatement;
+    private int statementsInMethod;
+    private int rangeStart;
+    private int[] longLocals;
+    private int[] doubleLocals;
+    private boolean[] touched;
+    private int[] touchedSlots;
+    private int touchedCount;
+
+    public ScriptCompiler(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Compiles the statements of a script, in order, and loads the generated classes.
+     *
+     * @param stmts the statements, with names resolved against this compiler's symbol table or unresolved
+     * @return the compiled script
+     * @throws EvalException if a statement or expression is of an unsupported type
+     * @throws IllegalStateException if a single statement is too large for a JVM method
+     */
+    public CompiledScript compile(List<? extends Stmt> stmts) {
+        int capacity = Math.max(16, symbols.size());
+        types = new byte[capacity];
+        longLocals = new int[capacity];
+        doubleLocals = new int[capacity];
+        touched = new boolean[capacity];
+        touchedSlots = new int[16];
+        order = new int[16];
+        defined = 0;
+        parts = new ArrayList<>();
+        methodCount = 0;
+
+        startClass();
+        startMethod(0);
+        boolean completes = true;
+        for (int i = 0; i < stmts.size(); i++) {
+            if (statementsInMethod > 0 && (method.size() + touchedCount * 12 > METHOD_CODE_LIMIT
+                    || method.maxLocals() > METHOD_LOCALS_LIMIT)) {
+                finishMethod(true);
+                if (classFile.poolCount() > CLASS_POOL_LIMIT || methodsInClass >= CLASS_METHOD_LIMIT) {
+                    finishClass();
+                    startClass();
+                }
+                startMethod(i);
+            }
+            method.pushInt(i - firstStatement);
+            method.istore(STATEMENT);
+            if (statementsInMethod++ == 0) {
+                rangeStart = method.size();
+            }
+            if (!statement(stmts.get(i))) {
+                // the statement always fails, so nothing after it can run
+                completes = false;
+                break;
+            }
+        }
+        finishMethod(completes);
+        finishClass();
+
+        int slotCount = symbols.size();
+        boolean[] finalIsDouble = new boolean[slotCount];
+        for (int slot = 0; slot < Math.min(slotCount, types.length); slot++) {
+            finalIsDouble[slot] = types[slot] == DOUBLE;
+        }
+        return new CompiledScript(parts.toArray(new ScriptPart[0]), symbols, slotCount,
+                Arrays.copyOf(order, defined), finalIsDouble, stmts.size(), methodCount);
+    }
+
+    private boolean statement(Stmt stmt) {
+        if (!(stmt instanceof AssignStmt assign)) {
+            throw new EvalException(ErrorMessages.EVAL_UNSUPPORTED_STATEMENT);
+        }
+        int slot = slotOf(assign.name(), assign.slot());
+        byte type;
+        if (assign.op() == AssignOp.ASSIGN) {
+            type = expr(assign.expr());
+        } else {
+            // the target is loaded before the right-hand side runs
+            byte targetType = load(slot);
+            if (targetType == ERROR) {
+                return false;
+            }
+            byte valueType = expr(assign.expr());
+            if (valueType == ERROR) {
+                return false;
+            }
+            type = arithmetic(Arithmetic.compoundOperator(assign.op()), targetType, valueType);
+        }
+        if (type == ERROR) {
+            return false;
+        }
+        store(slot, type);
+        return true;
+    }
+
+    private byte expr(Expr expr) {
+        if (expr instanceof LiteralExpr literal) {
+            Number value = literal.value();
+            if (Arithmetic.isFloating(value)) {
+                method.pushDouble(value.doubleValue());
+                return DOUBLE;
+            }
+            method.pushLong(value.longValue());
+            return LONG;
+        }
+        if (expr instanceof VarExpr var) {
+            return load(slotOf(var.name(), var.slot()));
+        }
+        if (expr instanceof BinaryExpr binary) {
+            byte left = expr(binary.left());
+            if (left == ERROR) {
+                return ERROR;
+            }
+            byte right = expr(binary.right());
+            if (right == ERROR) {
+                return ERROR;
+            }
+            return arithmetic(binary.op(), left, right);
+        }
+        if (expr instanceof UnaryExpr unary) {
+            return switch (unary.op()) {
+                case PLUS -> expr(unary.expr());
+                case MINUS -> {
+                    byte type = expr(unary.expr());
+                    if (type != ERROR) {
+                        method.negate(type == DOUBLE);
+                    }
+                    yield type;
+                }
+                case PRE_INC -> increment(unary.expr(), BinaryOp.ADD, false);
+                case PRE_DEC -> increment(unary.expr(), BinaryOp.SUB, false);
+            };
+        }
+        if (expr instanceof PostfixExpr postfix) {
+            return increment(postfix.expr(), postfix.op() == PostfixOp.POST_INC ? BinaryOp.ADD : BinaryOp.SUB, true);
+        }
+        throw new EvalException(ErrorMessages.EVAL_UNSUPPORTED_EXPRESSION);
+    }
+
+    /**
+     * Emits a binary operation on the two values on top of the stack, widening the long one if the other is a
+     * double.
+     */
+    private byte arithmetic(BinaryOp op, byte left, byte right) {
+        boolean isDouble = left == DOUBLE || right == DOUBLE;
+        if (isDouble) {
+            if (right == LONG) {
+                method.l2d();
+            } else if (left == LONG) {
+                method.swap2();
+                method.l2d();
+                method.swap2();
+            }
+        }
+        if (op == BinaryOp.DIV || op == BinaryOp.MOD) {
+            method.invokestatic(isDouble ? doubleDivisor : longDivisor, 0);
+        }
+        method.arithmetic(op.ordinal(), isDouble);
+        return isDouble ? DOUBLE : LONG;
+    }
+
+    private byte increment(Expr operand, BinaryOp op, boolean postfix) {
+        if (!(operand instanceof VarExpr var)) {
+            return error(ErrorMessages.EVAL_OPERAND_NOT_ASSIGNABLE);
+        }
+        int slot = slotOf(var.name(), var.slot());
+        byte type = load(slot);
+        if (type == ERROR) {
+            return ERROR;
+        }
+        boolean isDouble = type == DOUBLE;
+        if (postfix) {
+            method.dup2();
+        }
+        if (isDouble) {
+            method.pushDouble(1.0);
+        } else {
+            method.pushLong(1L);
+        }
+        method.arithmetic(op.ordinal(), isDouble);
+        if (!postfix) {
+            method.dup2();
+        }
+        if (isDouble) {
+            method.dstore(doubleLocals[slot]);
+        } else {
+            method.lstore(longLocals[slot]);
+        }
+        return type;
+    }
+
+    private byte load(int slot) {
+        touch(slot, true);
+        return switch (types[slot]) {
+            case LONG -> {
+                method.lload(longLocals[slot]);
+                yield LONG;
+            }
+            case DOUBLE -> {
+                method.dload(doubleLocals[slot]);
+                yield DOUBLE;
+            }
+            default -> error(ErrorMessages.envUndefinedVariable(symbols.name(slot)));
+        };
+    }
+
+    private void store(int slot, byte type) {
+        touch(slot, false);
+        if (types[slot] == UNDEFINED) {
+            if (defined == order.length) {
+                order = Arrays.copyOf(order, defined * 2);
+            }
+            order[defined++] = slot;
+        }
+        types[slot] = type;
+        if (type == DOUBLE) {
+            method.dstore(doubleLocal(slot));
+        } else {
+            method.lstore(longLocal(slot));
+        }
+    }
+
+    private byte error(String message) {
+        method.pushString(message);
+        method.invokestatic(errorMethod, 0);
+        method.athrow();
+        return ERROR;
+    }
+
+    /**
+     * Makes a variable available in a local of the current method. The first time a method uses a variable that
+     * is already defined, its value is read from the arrays, unless the use is an assignment.
+     */
+    private void touch(int slot, boolean read) {
+        if (touched[slot]) {
+            return;
+        }
+        touched[slot] = true;
+        longLocals[slot] = 0;
+        doubleLocals[slot] = 0;
+        if (touchedCount == touchedSlots.length) {
+            touchedSlots = Arrays.copyOf(touchedSlots, touchedCount * 2);
+        }
+        touchedSlots[touchedCount++] = slot;
+        if (!read) {
+            return;
+        }
+        if (types[slot] == LONG) {
+            method.laload(LONGS, slot);
+            method.lstore(longLocal(slot));
+        } else if (types[slot] == DOUBLE) {
+            method.daload(DOUBLES, slot);
+            method.dstore(doubleLocal(slot));
+        }
+    }
+
+    private int longLocal(int slot) {
+        if (longLocals[slot] == 0) {
+            longLocals[slot] = method.newLocal(2);
+        }
+        return longLocals[slot];
+    }
+
+    private int doubleLocal(int slot) {
+        if (doubleLocals[slot] == 0) {
+            doubleLocals[slot] = method.newLocal(2);
+        }
+        return doubleLocals[slot];
+    }
+
+    private int slotOf(String name, int resolvedSlot) {
+        int slot = symbols.holds(resolvedSlot, name) ? resolvedSlot : symbols.intern(name);
+        if (slot >= types.length) {
+            int capacity = Math.max(types.length * 2, slot + 1);
+            types = Arrays.copyOf(types, capacity);
+            longLocals = Arrays.copyOf(longLocals, capacity);
+            doubleLocals = Arrays.copyOf(doubleLocals, capacity);
+            touched = Arrays.copyOf(touched, capacity);
+        }
+        return slot;
+    }
+
+    private void startClass() {
+        classFile = new ClassFileWriter(PART_CLASS, "java/lang/Object", PART_INTERFACE);
+        methodsInClass = 0;
+        longDivisor = classFile.methodRef(ScriptRuntime.INTERNAL_NAME, "divisor", "(J)J");
+        doubleDivisor = classFile.methodRef(ScriptRuntime.INTERNAL_NAME, "divisor", "(D)D");
+        errorMethod = classFile.methodRef(ScriptRuntime.INTERNAL_NAME, "error",
+                "(Ljava/lang/String;)L" + EVAL_EXCEPTION + ";");
+    }
+
+    private void startMethod(int first) {
+        method = new CodeBuilder(classFile, 3);
+        firstStatement = first;
+        statementsInMethod = 0;
+    }
+
+    /**
+     * Ends the current statement method: stores the variables it changed back into the arrays and adds the
+     * handler that attaches the statement index to errors.
+     *
+     * @param completes false if the method ends with a statement that always throws
+     */
+    private void finishMethod(boolean completes) {
+        if (completes) {
+            for (int i = 0; i < touchedCount; i++) {
+                int slot = touchedSlots[i];
+                if (types[slot] == LONG) {
+                    method.lastore(LONGS, slot, longLocals[slot]);
+                } else if (types[slot] == DOUBLE) {
+                    method.dastore(DOUBLES, slot, doubleLocals[slot]);
+                }
+            }
+            method.returnVoid();
+        }
+        if (statementsInMethod > 0) {
+            int rangeEnd = method.size();
+            method.enterHandler();
+            method.iload(STATEMENT);
+            if (firstStatement != 0) {
+                method.pushInt(firstStatement);
+                method.iadd();
+            }
+            method.invokestatic(classFile.methodRef(ScriptRuntime.INTERNAL_NAME, "failed",
+                    "(L" + EVAL_EXCEPTION + ";I)Lcom/shaibachar/calc/bytecode/ScriptExecutionException;"), -1);
+            method.athrow();
+            method.handler(rangeStart, rangeEnd, rangeEnd, classFile.classRef(EVAL_EXCEPTION));
+        }
+        if (method.size() > 0xFFFF) {
+            throw new IllegalStateException("Statement too large to compile: " + method.size() + " bytes");
+        }
+        for (int i = 0; i < touchedCount; i++) {
+            touched[touchedSlots[i]] = false;
+        }
+        touchedCount = 0;
+        classFile.method(ClassFileWriter.ACC_STATIC, "s" + methodsInClass, PART_DESCRIPTOR, method);
+        methodsInClass++;
+        methodCount++;
+    }
+
+    private void finishClass() {
+        CodeBuilder constructor = new CodeBuilder(classFile, 1);
+        constructor.aload(0);
+        constructor.invokespecial(classFile.methodRef("java/lang/Object", "<init>", "()V"), -1);
+        constructor.returnVoid();
+        classFile.method(ClassFileWriter.ACC_PUBLIC, "<init>", "()V", constructor);
+
+        CodeBuilder run = new CodeBuilder(classFile, 3);
+        for (int i = 0; i < methodsInClass; i++) {
+            run.aload(1);
+            run.aload(2);
+            run.invokestatic(classFile.methodRef(PART_CLASS, "s" + i, PART_DESCRIPTOR), -2);
+        }
+        run.returnVoid();
+        classFile.method(ClassFileWriter.ACC_PUBLIC, "run", PART_DESCRIPTOR, run);
+        parts.add(define(classFile.toByteArray()));
+    }
+
+    private ScriptPart define(byte[] bytes) {
+        try {
+            MethodHandles.Lookup hidden = lookup.defineHiddenClass(bytes, true);
+            return (ScriptPart) hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class))
+                    .invoke();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not load generated script class", e);
+        }
+    }
+}
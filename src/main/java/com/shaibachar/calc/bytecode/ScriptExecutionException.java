@@ -0,0 +1,26 @@
+package com.shaibachar.calc.bytecode;
+
+import com.shaibachar.calc.exceptions.EvalException;
+
+/**
+ * An {@link EvalException} raised by a {@link CompiledScript}, the {@link com.shaibachar.calc.dag.DagExecutor} or
+ * the {@link com.shaibachar.calc.speculative.SpeculativeExecutor}, carrying the index of the failing statement so
+ * callers can point at the source line. The message is the message of the original error.
+ */
+public class ScriptExecutionException extends EvalException {
+    private final int statementIndex;
+
+    public ScriptExecutionException(String message, int statementIndex) {
+        super(message);
+        this.statementIndex = statementIndex;
+    }
+
+    /**
+     * Returns the index, in the compiled statement list, of the statement that failed.
+     *
+     * @return the statement index
+     */
+    public int statementIndex() {
+        return statementIndex;
+    }
+}
@@ -0,0 +1,15 @@
+package com.shaibachar.calc.bytecode;
+
+/**
+ * Implemented by the generated hidden classes. A script too large for one class is split into parts that run
+ * one after another; variables are handed from one part to the next in the two arrays, indexed by slot.
+ */
+interface ScriptPart {
+    /**
+     * Runs this part of the script.
+     *
+     * @param longs the long values of the variables that hold longs
+     * @param doubles the double values of the variables that hold doubles
+     */
+    void run(long[] longs, double[] doubles);
+}
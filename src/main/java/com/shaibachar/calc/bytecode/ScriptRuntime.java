@@ -0,0 +1,43 @@
+package com.shaibachar.calc.bytecode;
+
+import com.shaibachar.calc.exceptions.ErrorMessages;
+import com.shaibachar.calc.exceptions.EvalException;
+
+/**
+ * Static helpers called by generated code. Keeping the checks here keeps the generated code free of branches.
+ */
+final class ScriptRuntime {
+    static final String INTERNAL_NAME = "com/shaibachar/calc/bytecode/ScriptRuntime";
+
+    private ScriptRuntime() {
+    }
+
+    static long divisor(long value) {
+        if (value == 0L) {
+            throw new EvalException(ErrorMessages.EVAL_DIVISION_BY_ZERO);
+        }
+        return value;
+    }
+
+    static double divisor(double value) {
+        if (value == 0.0) {
+            throw new EvalException(ErrorMessages.EVAL_DIVISION_BY_ZERO);
+        }
+        return value;
+    }
+
+    /**
+     * Creates the exception for an error that the compiler could prove will happen, like reading a variable that
+     * is not assigned yet at that point of the script.
+     */
+    static EvalException error(String message) {
+        return new EvalException(message);
+    }
+
+    /**
+     * Wraps an error with the index of the statement that raised it.
+     */
+    static ScriptExecutionException failed(EvalException cause, int statement) {
+        return new ScriptExecutionException(cause.getMessage(), statement);
+    }
+}
@@ -0,0 +1,191 @@
+package com.shaibachar.calc.cache;
+
+import com.shaibachar.calc.eval.SlotResolver;
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.parser.stmt.Stmt;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of parsed statements keyed by {@link #normalize(String) normalized} line text, so that lines
+ * repeated within a script or across scripts are lexed and parsed once. Statements are immutable, so a cached
+ * statement can be shared by any number of lines and environments; {@link #get(String, SymbolTable)} binds its
+ * variables to the slots of the executing environment's symbol table when it was parsed against another one.
+ * <p>
+ * Eviction follows the W-TinyLFU policy: new entries go to a small LRU window (1% of the size); when the window
+ * overflows, its least recently used entry is admitted into the main LRU region only if it has been requested
+ * more often than the entry the main region would evict. Request frequencies are estimated by a
+ * {@link FrequencySketch} that records every lookup, hit or miss. A burst of one-off lines therefore passes
+ * through the window without pushing out statements that keep recurring.
+ * <p>
+ * All methods are thread-safe.
+ */
+public final class ParseCache {
+    private final int maximumSize;
+    private final int windowSize;
+    private final FrequencySketch sketch;
+    // LRU regions, least recently used first
+    private final LinkedHashMap<String, Stmt> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Stmt> main = new LinkedHashMap<>(16, 0.75f, true);
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * Creates a cache holding at most {@code maximumSize} statements.
+     *
+     * @param maximumSize the size limit
+     * @throws IllegalArgumentException if the size is not positive
+     */
+    public ParseCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.windowSize = Math.max(1, maximumSize / 100);
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    /**
+     * Returns the cached statement for a normalized line and records the request.
+     *
+     * @param key the normalized line text
+     * @return the statement, or null if it is not cached
+     */
+    public synchronized Stmt get(String key) {
+        sketch.increment(key);
+        Stmt stmt = window.get(key);
+        if (stmt == null) {
+            stmt = main.get(key);
+        }
+        if (stmt == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return stmt;
+    }
+
+    /**
+     * Returns the cached statement for a normalized line with its variables bound to slots of a symbol table,
+     * and records the request. A statement parsed against the same table is returned as it is; one cached by an
+     * execution with another table is resolved again, leaving the cached statement unchanged.
+     *
+     * @param key the normalized line text
+     * @param symbols the symbol table of the executing environment
+     * @return the statement, or null if it is not cached
+     */
+    public Stmt get(String key, SymbolTable symbols) {
+        Stmt stmt = get(key);
+        return stmt == null ? null : new SlotResolver(symbols).resolve(stmt);
+    }
+
+    /**
+     * Adds a freshly parsed statement. It enters the window region, which may push the window's oldest entry
+     * into the main region or, if that entry is requested less often than the main region's victim, out of the
+     * cache.
+     *
+     * @param key the normalized line text
+     * @param stmt the statement parsed from it
+     */
+    public synchronized void put(String key, Stmt stmt) {
+        if (window.containsKey(key) || main.containsKey(key)) {
+            return;
+        }
+        window.put(key, stmt);
+        if (window.size() <= windowSize) {
+            return;
+        }
+        Map.Entry<String, Stmt> candidate = removeEldest(window);
+        if (main.size() < maximumSize - windowSize) {
+            main.put(candidate.getKey(), candidate.getValue());
+            return;
+        }
+        Iterator<Map.Entry<String, Stmt>> eldest = main.entrySet().iterator();
+        if (!eldest.hasNext()) {
+            return;
+        }
+        Map.Entry<String, Stmt> victim = eldest.next();
+        if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim.getKey())) {
+            eldest.remove();
+            main.put(candidate.getKey(), candidate.getValue());
+        }
+    }
+
+    public synchronized int size() {
+        return window.size() + main.size();
+    }
+
+    public int maximumSize() {
+        return maximumSize;
+    }
+
+    public synchronized long hitCount() {
+        return hitCount;
+    }
+
+    public synchronized long missCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the normalized form of a line, used as its cache key. Whitespace is dropped except between two
+     * characters that would otherwise lex as one token (two identifier/number characters such as {@code a b} or
+     * {@code 1 2}, or two operator characters such as {@code + +} or {@code * =}), where a single space is kept.
+     * Lines with the same normalized form lex to the same tokens.
+     *
+     * @param line the line text
+     * @return the normalized text
+     */
+    public static String normalize(String line) {
+        StringBuilder normalized = null;
+        int length = line.length();
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                if (normalized != null) {
+                    normalized.append(c);
+                }
+                continue;
+            }
+            int end = i + 1;
+            while (end < length && Character.isWhitespace(line.charAt(end))) {
+                end++;
+            }
+            boolean keep = i > 0 && end < length && sameClass(line.charAt(i - 1), line.charAt(end));
+            if (normalized == null) {
+                if (keep && c == ' ' && end == i + 1) {
+                    // already in normalized form so far
+                    continue;
+                }
+                normalized = new StringBuilder(length).append(line, 0, i);
+            }
+            if (keep) {
+                normalized.append(' ');
+            }
+            i = end - 1;
+        }
+        return normalized == null ? line : normalized.toString();
+    }
+
+    private static boolean sameClass(char left, char right) {
+        return (isWordChar(left) && isWordChar(right)) || (isOperatorChar(left) && isOperatorChar(right));
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '.';
+    }
+
+    private static boolean isOperatorChar(char c) {
+        return c == '+' || c == '-' || c == '*' || c == '/' || c == '%' || c == '=';
+    }
+
+    private static Map.Entry<String, Stmt> removeEldest(LinkedHashMap<String, Stmt> map) {
+        Iterator<Map.Entry<String, Stmt>> iterator = map.entrySet().iterator();
+        Map.Entry<String, Stmt> eldest = iterator.next();
+        Map.Entry<String, Stmt> removed = Map.entry(eldest.getKey(), eldest.getValue());
+        iterator.remove();
+        return removed;
+    }
+}
@@ -0,0 +1,319 @@
+package com.shaibachar.calc.cache;
+
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.parser.AssignOp;
+import com.shaibachar.calc.parser.BinaryOp;
+import com.shaibachar.calc.parser.PostfixOp;
+import com.shaibachar.calc.parser.UnaryOp;
+import com.shaibachar.calc.parser.expr.BinaryExpr;
+import com.shaibachar.calc.parser.expr.Expr;
+import com.shaibachar.calc.parser.expr.ExprFactory;
+import com.shaibachar.calc.parser.expr.LiteralExpr;
+import com.shaibachar.calc.parser.expr.PostfixExpr;
+import com.shaibachar.calc.parser.expr.UnaryExpr;
+import com.shaibachar.calc.parser.expr.VarExpr;
+import com.shaibachar.calc.parser.stmt.AssignStmt;
+import com.shaibachar.calc.parser.stmt.Stmt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Binary format of a parsed script: its statements, each with the number of the source line it came from.
+ * <p>
+ * A file starts with a fixed header: the magic number {@code CALC}, the format {@link #VERSION}, a flags word
+ * (whether the statements were optimized), the SHA-256 hash of the source the statements were parsed from, and
+ * the length and CRC-32 of the body. The body holds the variable names once, followed by the statements. Each
+ * statement is its line number, the index of its target name, its assignment operator, and its expression as a
+ * post-order stream of one-byte tags (the node kind and operator) with fixed-width big-endian payloads: a
+ * {@code long} for long literals, the raw bits of double literals, an {@code int} name index for variables.
+ * <p>
+ * Decoding reads the buffer sequentially with a value stack, so it works on a memory-mapped file without
+ * copying it, involves no reflection, and handles expressions of any depth. Names are interned into the symbol
+ * table of the target environment once per file, so decoded statements carry valid slots.
+ */
+public final class ScriptCodec {
+    /** Format version; files of another version are rejected. */
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x43414C43;
+    private static final int FLAG_OPTIMIZED = 1;
+    private static final int HASH_LENGTH = 32;
+    private static final int HEADER_LENGTH = 4 + 2 + 2 + HASH_LENGTH + 4 + 4;
+
+    private static final int TAG_END = 0x00;
+    private static final int TAG_LONG = 0x01;
+    private static final int TAG_DOUBLE = 0x02;
+    private static final int TAG_VARIABLE = 0x03;
+    // Operator tags carry the operator ordinal in their low nibble
+    private static final int TAG_UNARY = 0x10;
+    private static final int TAG_POSTFIX = 0x20;
+    private static final int TAG_BINARY = 0x30;
+
+    private static final AssignOp[] ASSIGN_OPS = AssignOp.values();
+    private static final UnaryOp[] UNARY_OPS = UnaryOp.values();
+    private static final PostfixOp[] POSTFIX_OPS = PostfixOp.values();
+    private static final BinaryOp[] BINARY_OPS = BinaryOp.values();
+
+    private ScriptCodec() {
+    }
+
+    /**
+     * Returns the SHA-256 hash of a script's source, which identifies the script in encoded files.
+     *
+     * @param source the source bytes
+     * @return the 32-byte hash
+     */
+    public static byte[] sourceHash(byte[] source) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(source);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Encodes the statements of a script.
+     *
+     * @param statements the statements, in execution order
+     * @param lineNumbers the source line number of each statement
+     * @param sourceHash the {@link #sourceHash(byte[]) hash} of the source they were parsed from
+     * @param optimized whether the statements went through the optimizer
+     * @return the encoded script
+     * @throws IllegalArgumentException if a statement or node type is not supported
+     */
+    public static byte[] encode(List<Stmt> statements, int[] lineNumbers, byte[] sourceHash, boolean optimized) {
+        if (sourceHash.length != HASH_LENGTH) {
+            throw new IllegalArgumentException("Source hash must be " + HASH_LENGTH + " bytes");
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + statements.size() * 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            Map<String, Integer> names = new HashMap<>();
+            ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream(statements.size() * 32);
+            DataOutputStream body = new DataOutputStream(bodyBytes);
+            body.writeInt(statements.size());
+            for (int i = 0; i < statements.size(); i++) {
+                if (!(statements.get(i) instanceof AssignStmt assign)) {
+                    throw new IllegalArgumentException("Unsupported statement: " + statements.get(i));
+                }
+                body.writeInt(lineNumbers[i]);
+                body.writeInt(nameIndex(names, assign.name()));
+                body.writeByte(assign.op().ordinal());
+                writeExpr(body, assign.expr(), names);
+            }
+
+            // Names come first in the file so the decoder can resolve them before reading the statements
+            String[] ordered = new String[names.size()];
+            names.forEach((name, index) -> ordered[index] = name);
+            ByteArrayOutputStream framed = new ByteArrayOutputStream(bodyBytes.size() + names.size() * 8 + 4);
+            DataOutputStream frame = new DataOutputStream(framed);
+            frame.writeInt(ordered.length);
+            for (String name : ordered) {
+                byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+                frame.writeInt(utf8.length);
+                frame.write(utf8);
+            }
+            bodyBytes.writeTo(frame);
+            byte[] framedBody = framed.toByteArray();
+
+            CRC32 crc = new CRC32();
+            crc.update(framedBody);
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(optimized ? FLAG_OPTIMIZED : 0);
+            out.write(sourceHash);
+            out.writeInt(framedBody.length);
+            out.writeInt((int) crc.getValue());
+            out.write(framedBody);
+        } catch (IOException e) {
+            // Writes to byte arrays do not fail
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a script and hands its statements, with their line numbers, to {@code sink} in order. The header
+     * and the checksum are verified before the first statement is delivered, so a file that is stale or damaged
+     * fails without any statement having been run.
+     *
+     * @param buffer the encoded script, from its position to its limit; the buffer itself is not modified
+     * @param sourceHash the hash of the source the caller expects
+     * @param optimized whether the caller expects optimized statements
+     * @param symbols the symbol table the decoded statements are resolved against
+     * @param sink receives each statement and its line number
+     * @throws IOException if the data is not a valid encoding of that source with this version and flags
+     */
+    public static void decode(ByteBuffer buffer, byte[] sourceHash, boolean optimized, SymbolTable symbols,
+                              ObjIntConsumer<Stmt> sink) throws IOException {
+        ByteBuffer in = buffer.duplicate();
+        if (in.remaining() < HEADER_LENGTH || in.getInt() != MAGIC) {
+            throw new IOException("Not an encoded script");
+        }
+        int version = in.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported script format version " + version);
+        }
+        if (((in.getShort() & FLAG_OPTIMIZED) != 0) != optimized) {
+            throw new IOException("Script was encoded for another front end");
+        }
+        byte[] hash = new byte[HASH_LENGTH];
+        in.get(hash);
+        if (!Arrays.equals(hash, sourceHash)) {
+            throw new IOException("Script was encoded from another source");
+        }
+        int length = in.getInt();
+        int expectedCrc = in.getInt();
+        if (length < 0 || length != in.remaining()) {
+            throw new IOException("Truncated script");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(in.slice());
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IOException("Script checksum mismatch");
+        }
+        try {
+            decodeBody(in, symbols, sink);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Malformed script", e);
+        }
+    }
+
+    private static void decodeBody(ByteBuffer in, SymbolTable symbols, ObjIntConsumer<Stmt> sink)
+            throws IOException {
+        int nameCount = in.getInt();
+        int[] slots = new int[nameCount];
+        for (int i = 0; i < nameCount; i++) {
+            byte[] utf8 = new byte[in.getInt()];
+            in.get(utf8);
+            slots[i] = symbols.intern(new String(utf8, StandardCharsets.UTF_8));
+        }
+        ExprFactory factory = ExprFactory.PLAIN;
+        Expr[] stack = new Expr[16];
+        int statementCount = in.getInt();
+        for (int statement = 0; statement < statementCount; statement++) {
+            int lineNumber = in.getInt();
+            int target = slots[in.getInt()];
+            AssignOp op = ASSIGN_OPS[in.get()];
+            int size = 0;
+            for (int tag = in.get() & 0xff; tag != TAG_END; tag = in.get() & 0xff) {
+                if (size == stack.length) {
+                    stack = Arrays.copyOf(stack, size * 2);
+                }
+                switch (tag & 0xf0) {
+                    case TAG_UNARY -> stack[size - 1] = factory.unary(UNARY_OPS[tag & 0x0f], stack[size - 1]);
+                    case TAG_POSTFIX -> stack[size - 1] = factory.postfix(stack[size - 1], POSTFIX_OPS[tag & 0x0f]);
+                    case TAG_BINARY -> {
+                        Expr right = stack[--size];
+                        stack[size - 1] = factory.binary(stack[size - 1], BINARY_OPS[tag & 0x0f], right);
+                    }
+                    default -> stack[size++] = switch (tag) {
+                        case TAG_LONG -> factory.literal(in.getLong());
+                        case TAG_DOUBLE -> factory.literal(Double.longBitsToDouble(in.getLong()));
+                        case TAG_VARIABLE -> {
+                            int slot = slots[in.getInt()];
+                            yield factory.variable(symbols.name(slot), slot);
+                        }
+                        default -> throw new IOException("Unknown node tag " + tag);
+                    };
+                }
+            }
+            if (size != 1) {
+                throw new IOException("Malformed expression in statement " + statement);
+            }
+            sink.accept(new AssignStmt(symbols.name(target), target, op, stack[0]), lineNumber);
+            stack[0] = null;
+        }
+    }
+
+    /**
+     * Writes an expression in post-order followed by {@link #TAG_END}, with an explicit stack so that nesting
+     * depth is not limited by the thread stack.
+     */
+    private static void writeExpr(DataOutputStream out, Expr root, Map<String, Integer> names) throws IOException {
+        Expr[] stack = new Expr[16];
+        boolean[] expanded = new boolean[16];
+        stack[0] = root;
+        int size = 1;
+        while (size > 0) {
+            Expr expr = stack[size - 1];
+            if (!expanded[size - 1]) {
+                expanded[size - 1] = true;
+                Expr left = null;
+                Expr right = null;
+                if (expr instanceof BinaryExpr binary) {
+                    left = binary.left();
+                    right = binary.right();
+                } else if (expr instanceof UnaryExpr unary) {
+                    left = unary.expr();
+                } else if (expr instanceof PostfixExpr postfix) {
+                    left = postfix.expr();
+                }
+                if (left != null) {
+                    if (size + 2 > stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                        expanded = Arrays.copyOf(expanded, expanded.length * 2);
+                    }
+                    // Right first, so that the left operand is written first
+                    if (right != null) {
+                        stack[size] = right;
+                        expanded[size++] = false;
+                    }
+                    stack[size] = left;
+                    expanded[size++] = false;
+                    continue;
+                }
+            }
+            size--;
+            writeNode(out, expr, names);
+        }
+        out.writeByte(TAG_END);
+    }
+
+    private static void writeNode(DataOutputStream out, Expr expr, Map<String, Integer> names) throws IOException {
+        if (expr instanceof BinaryExpr binary) {
+            out.writeByte(TAG_BINARY | binary.op().ordinal());
+        } else if (expr instanceof UnaryExpr unary) {
+            out.writeByte(TAG_UNARY | unary.op().ordinal());
+        } else if (expr instanceof PostfixExpr postfix) {
+            out.writeByte(TAG_POSTFIX | postfix.op().ordinal());
+        } else if (expr instanceof VarExpr var) {
+            out.writeByte(TAG_VARIABLE);
+            out.writeInt(nameIndex(names, var.name()));
+        } else if (expr instanceof LiteralExpr literal && literal.value() != null) {
+            Number value = literal.value();
+            if (value instanceof Double || value instanceof Float) {
+                out.writeByte(TAG_DOUBLE);
+                out.writeLong(Double.doubleToRawLongBits(value.doubleValue()));
+            } else {
+                out.writeByte(TAG_LONG);
+                out.writeLong(value.longValue());
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported expression: " + expr);
+        }
+    }
+
+    private static int nameIndex(Map<String, Integer> names, String name) {
+        Integer index = names.get(name);
+        if (index == null) {
+            index = names.size();
+            names.put(name, index);
+        }
+        return index;
+    }
+}
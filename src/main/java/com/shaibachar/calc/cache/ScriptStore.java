@@ -0,0 +1,116 @@
+package com.shaibachar.calc.cache;
+
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.parser.stmt.Stmt;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Content-addressed directory of parsed scripts in the {@link ScriptCodec} format. A script is stored under the
+ * hash of its source, so an unchanged script is found again on the next run and a changed one simply misses.
+ * Files are memory-mapped when loaded and written through a temporary file that is renamed into place, so
+ * concurrent runs never see a partial file.
+ * <p>
+ * The store is a cache: failures to read or write it are logged and treated as misses, never as errors of the
+ * script.
+ */
+public final class ScriptStore {
+    private static final Logger LOGGER = Logger.getLogger(ScriptStore.class.getName());
+    private static final String EXTENSION = ".calcc";
+
+    private final Path directory;
+
+    /**
+     * Creates a store over a directory, which is created on the first write if needed.
+     *
+     * @param directory the cache directory
+     */
+    public ScriptStore(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /**
+     * Returns the file a script is stored in.
+     *
+     * @param sourceHash the hash of the script source
+     * @param optimized whether the statements are optimized
+     * @return the path of the file, which may not exist
+     */
+    public Path path(byte[] sourceHash, boolean optimized) {
+        return directory.resolve(HexFormat.of().formatHex(sourceHash) + (optimized ? "-opt" : "-raw")
+                + ".v" + ScriptCodec.VERSION + EXTENSION);
+    }
+
+    /**
+     * Loads a stored script, handing its statements to {@code sink} in order.
+     *
+     * @param sourceHash the hash of the script source
+     * @param optimized whether optimized statements are wanted
+     * @param symbols the symbol table the statements are resolved against
+     * @param sink receives each statement and its line number
+     * @return true if the script was found and delivered, false on a miss
+     */
+    public boolean load(byte[] sourceHash, boolean optimized, SymbolTable symbols, ObjIntConsumer<Stmt> sink) {
+        Path path = path(sourceHash, optimized);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ScriptCodec.decode(buffer, sourceHash, optimized, symbols, sink);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            LOGGER.warning("Ignoring unreadable precompiled script " + path + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Stores the statements of a script, replacing any previous file for the same source.
+     *
+     * @param sourceHash the hash of the script source
+     * @param optimized whether the statements are optimized
+     * @param statements the statements, in execution order
+     * @param lineNumbers the source line number of each statement
+     */
+    public void store(byte[] sourceHash, boolean optimized, List<Stmt> statements, int[] lineNumbers) {
+        Path path = path(sourceHash, optimized);
+        Path temporary = null;
+        try {
+            byte[] encoded = ScriptCodec.encode(statements, lineNumbers, sourceHash, optimized);
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, "script", ".tmp");
+            Files.write(temporary, encoded);
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            temporary = null;
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Stored precompiled script " + path + " (" + encoded.length + " bytes)");
+            }
+        } catch (IOException e) {
+            LOGGER.warning("Could not store precompiled script " + path + ": " + e.getMessage());
+        } finally {
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException e) {
+                    LOGGER.fine("Could not delete " + temporary + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+}
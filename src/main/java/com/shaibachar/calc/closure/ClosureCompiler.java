@@ -0,0 +1,150 @@
+package com.shaibachar.calc.closure;
+
+import com.shaibachar.calc.eval.Arithmetic;
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.exceptions.ErrorMessages;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.parser.AssignOp;
+import com.shaibachar.calc.parser.BinaryOp;
+import com.shaibachar.calc.parser.PostfixOp;
+import com.shaibachar.calc.parser.expr.BinaryExpr;
+import com.shaibachar.calc.parser.expr.Expr;
+import com.shaibachar.calc.parser.expr.LiteralExpr;
+import com.shaibachar.calc.parser.expr.PostfixExpr;
+import com.shaibachar.calc.parser.expr.ResultType;
+import com.shaibachar.calc.parser.expr.UnaryExpr;
+import com.shaibachar.calc.parser.expr.VarExpr;
+import com.shaibachar.calc.parser.stmt.AssignStmt;
+import com.shaibachar.calc.parser.stmt.Stmt;
+
+/**
+ * Compiles statements into trees of specialized {@link Node} objects ("closure compilation").
+ * Every AST node is visited once; the node class is chosen from the operator and the static
+ * {@link ResultType} of the operands, e.g. {@code LongAdd} for two long subtrees, {@code DoubleMul} when one
+ * operand is a double, {@code DynamicSub} when the types depend on variables, or {@code SlotRead} for a variable.
+ * Running the result then involves no {@code instanceof} checks or operator switches.
+ * Errors the {@link com.shaibachar.calc.eval.Evaluator} raises while evaluating are compiled into nodes that
+ * raise them at the same point.
+ * Example usage:
+ * <pre>
+ * CompiledStatement compiled = new ClosureCompiler(env.symbols()).compile(stmt);
+ * new ClosureExecutor(env).run(compiled);
+ * </pre>
+ */
+public class ClosureCompiler {
+    private final SymbolTable symbols;
+
+    public ClosureCompiler(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Compiles an assignment statement.
+     *
+     * @param stmt the statement
+     * @return the compiled statement
+     * @throws EvalException if the statement or one of its expressions is of an unsupported type
+     */
+    public CompiledStatement compile(Stmt stmt) {
+        if (!(stmt instanceof AssignStmt assign)) {
+            throw new EvalException(ErrorMessages.EVAL_UNSUPPORTED_STATEMENT);
+        }
+        int slot = slotOf(assign.name(), assign.slot());
+        Node expr = compile(assign.expr());
+        if (assign.op() != AssignOp.ASSIGN) {
+            // reading the target first is the compound-assignment snapshot
+            expr = dynamic(Arithmetic.compoundOperator(assign.op()), new Nodes.SlotRead(slot), expr);
+        }
+        return new CompiledStatement(slot, expr, symbols);
+    }
+
+    private Node compile(Expr expr) {
+        if (expr instanceof LiteralExpr literal) {
+            Number value = literal.value();
+            return Arithmetic.isFloating(value)
+                    ? new Nodes.DoubleConst(value.doubleValue())
+                    : new Nodes.LongConst(value.longValue());
+        }
+        if (expr instanceof VarExpr var) {
+            return new Nodes.SlotRead(slotOf(var.name(), var.slot()));
+        }
+        if (expr instanceof BinaryExpr binary) {
+            return binary(binary);
+        }
+        if (expr instanceof UnaryExpr unary) {
+            return unary(unary);
+        }
+        if (expr instanceof PostfixExpr postfix) {
+            if (!(postfix.expr() instanceof VarExpr var)) {
+                return new Nodes.NotAssignable();
+            }
+            return new Nodes.PostIncrement(slotOf(var.name(), var.slot()),
+                    postfix.op() == PostfixOp.POST_INC ? 1L : -1L);
+        }
+        throw new EvalException(ErrorMessages.EVAL_UNSUPPORTED_EXPRESSION);
+    }
+
+    private Node binary(BinaryExpr binary) {
+        Node lhs = compile(binary.left());
+        Node rhs = compile(binary.right());
+        BinaryOp op = binary.op();
+        return switch (binary.resultType()) {
+            case LONG -> {
+                Nodes.LongNode left = (Nodes.LongNode) lhs;
+                Nodes.LongNode right = (Nodes.LongNode) rhs;
+                yield switch (op) {
+                    case ADD -> new Nodes.LongAdd(left, right);
+                    case SUB -> new Nodes.LongSub(left, right);
+                    case MUL -> new Nodes.LongMul(left, right);
+                    case DIV -> new Nodes.LongDiv(left, right);
+                    case MOD -> new Nodes.LongMod(left, right);
+                };
+            }
+            case DOUBLE -> switch (op) {
+                case ADD -> new Nodes.DoubleAdd(lhs, rhs);
+                case SUB -> new Nodes.DoubleSub(lhs, rhs);
+                case MUL -> new Nodes.DoubleMul(lhs, rhs);
+                case DIV -> new Nodes.DoubleDiv(lhs, rhs);
+                case MOD -> new Nodes.DoubleMod(lhs, rhs);
+            };
+            case DYNAMIC -> dynamic(op, lhs, rhs);
+        };
+    }
+
+    private Node unary(UnaryExpr unary) {
+        return switch (unary.op()) {
+            case PLUS -> compile(unary.expr());
+            case MINUS -> {
+                Node operand = compile(unary.expr());
+                yield switch (unary.expr().resultType()) {
+                    case LONG -> new Nodes.LongNeg((Nodes.LongNode) operand);
+                    case DOUBLE -> new Nodes.DoubleNeg(operand);
+                    case DYNAMIC -> new Nodes.DynamicNeg(operand);
+                };
+            }
+            case PRE_INC -> increment(unary.expr(), 1L);
+            case PRE_DEC -> increment(unary.expr(), -1L);
+        };
+    }
+
+    private Node increment(Expr operand, long delta) {
+        if (operand instanceof VarExpr var) {
+            return new Nodes.PreIncrement(slotOf(var.name(), var.slot()), delta);
+        }
+        return new Nodes.NotAssignable();
+    }
+
+    private static Node dynamic(BinaryOp op, Node lhs, Node rhs) {
+        return switch (op) {
+            case ADD -> new Nodes.DynamicAdd(lhs, rhs);
+            case SUB -> new Nodes.DynamicSub(lhs, rhs);
+            case MUL -> new Nodes.DynamicMul(lhs, rhs);
+            case DIV -> new Nodes.DynamicDiv(lhs, rhs);
+            case MOD -> new Nodes.DynamicMod(lhs, rhs);
+        };
+    }
+
+    private int slotOf(String name, int resolvedSlot) {
+        return symbols.holds(resolvedSlot, name) ? resolvedSlot : symbols.intern(name);
+    }
+}
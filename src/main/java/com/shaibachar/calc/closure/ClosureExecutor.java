@@ -0,0 +1,49 @@
+package com.shaibachar.calc.closure;
+
+import com.shaibachar.calc.eval.Environment;
+import com.shaibachar.calc.eval.StatementExecutor;
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.parser.stmt.Stmt;
+
+/**
+ * Execution backend that runs statements compiled by {@link ClosureCompiler}.
+ * {@link #execute(Stmt)} compiles and runs a statement; {@link #run(CompiledStatement)} runs one compiled ahead
+ * of time, which pays off when the same statements run many times.
+ * The executor is not thread-safe.
+ */
+public class ClosureExecutor implements StatementExecutor {
+    private final Environment env;
+    private final ClosureCompiler compiler;
+    private final Frame frame;
+
+    public ClosureExecutor(Environment env) {
+        this.env = env;
+        this.compiler = new ClosureCompiler(env.symbols());
+        this.frame = new Frame(env);
+    }
+
+    @Override
+    public SymbolTable symbols() {
+        return env.symbols();
+    }
+
+    @Override
+    public void execute(Stmt stmt) {
+        compiler.compile(stmt).execute(frame);
+    }
+
+    /**
+     * Runs a compiled statement against this executor's environment.
+     *
+     * @param stmt the statement, compiled against the environment's symbol table
+     * @throws IllegalArgumentException if the statement was compiled against another symbol table
+     * @throws EvalException if the statement fails
+     */
+    public void run(CompiledStatement stmt) {
+        if (stmt.symbols != env.symbols()) {
+            throw new IllegalArgumentException("Statement was compiled against a different symbol table");
+        }
+        stmt.execute(frame);
+    }
+}
@@ -0,0 +1,37 @@
+package com.shaibachar.calc.closure;
+
+import com.shaibachar.calc.eval.SymbolTable;
+
+/**
+ * A statement compiled by {@link ClosureCompiler}: the target slot and the compiled right-hand side.
+ * Compound assignments are compiled as plain assignments of {@code x op e}, whose left operand reads {@code x}
+ * before {@code e} is evaluated. Immutable; run it with {@link ClosureExecutor#run(CompiledStatement)}.
+ */
+public final class CompiledStatement {
+    final int slot;
+    final Node expr;
+    final SymbolTable symbols;
+
+    CompiledStatement(int slot, Node expr, SymbolTable symbols) {
+        this.slot = slot;
+        this.expr = expr;
+        this.symbols = symbols;
+    }
+
+    void execute(Frame frame) {
+        if (expr.eval(frame)) {
+            frame.env.setDouble(slot, frame.doubleValue);
+        } else {
+            frame.env.setLong(slot, frame.longValue);
+        }
+    }
+
+    public SymbolTable symbols() {
+        return symbols;
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledStatement[target=" + symbols.name(slot) + ", expr=" + expr.getClass().getSimpleName() + "]";
+    }
+}
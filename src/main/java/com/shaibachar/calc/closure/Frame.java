@@ -0,0 +1,17 @@
+package com.shaibachar.calc.closure;
+
+import com.shaibachar.calc.eval.Environment;
+
+/**
+ * Evaluation context passed to compiled {@link Node}s: the environment and the result registers a node leaves
+ * its value in. One frame is reused for every statement an executor runs.
+ */
+final class Frame {
+    final Environment env;
+    long longValue;
+    double doubleValue;
+
+    Frame(Environment env) {
+        this.env = env;
+    }
+}
@@ -0,0 +1,28 @@
+package com.shaibachar.calc.closure;
+
+/**
+ * A compiled expression. The {@link ClosureCompiler} builds one specialized node per AST node, chosen by the
+ * operator and the static types of the operands, so evaluating never dispatches on the AST node class.
+ * Typed nodes ({@link Nodes.LongNode}, {@link Nodes.DoubleNode}) compute their primitive value directly;
+ * dynamic nodes decide the type from the values they read.
+ */
+abstract class Node {
+    /**
+     * Evaluates the expression and leaves the value in the frame.
+     *
+     * @param frame the evaluation context
+     * @return true if the value is a double ({@code frame.doubleValue}), false if a long ({@code frame.longValue})
+     */
+    abstract boolean eval(Frame frame);
+
+    /**
+     * Evaluates the expression and returns its value widened to a double. The expression is computed in its own
+     * type first, so {@code (a / 2)} stays a long division when used as an operand of a double operation.
+     *
+     * @param frame the evaluation context
+     * @return the value as a double
+     */
+    double evalDouble(Frame frame) {
+        return eval(frame) ? frame.doubleValue : frame.longValue;
+    }
+}
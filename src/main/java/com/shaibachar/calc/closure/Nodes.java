@@ -0,0 +1,451 @@
+package com.shaibachar.calc.closure;
+
+import com.shaibachar.calc.exceptions.ErrorMessages;
+import com.shaibachar.calc.exceptions.EvalException;
+
+/**
+ * The specialized {@link Node} implementations. Each class handles one operator for one combination of static
+ * operand types, so its evaluation is a couple of field reads and a primitive operation.
+ */
+final class Nodes {
+    private Nodes() {
+    }
+
+    /** A node whose value is statically a long. */
+    abstract static class LongNode extends Node {
+        abstract long evalLong(Frame frame);
+
+        @Override
+        final boolean eval(Frame frame) {
+            frame.longValue = evalLong(frame);
+            return false;
+        }
+
+        @Override
+        final double evalDouble(Frame frame) {
+            return evalLong(frame);
+        }
+    }
+
+    /** A node whose value is statically a double. */
+    abstract static class DoubleNode extends Node {
+        @Override
+        abstract double evalDouble(Frame frame);
+
+        @Override
+        final boolean eval(Frame frame) {
+            frame.doubleValue = evalDouble(frame);
+            return true;
+        }
+    }
+
+    static final class LongConst extends LongNode {
+        private final long value;
+
+        LongConst(long value) {
+            this.value = value;
+        }
+
+        @Override
+        long evalLong(Frame frame) {
+            return value;
+        }
+    }
+
+    static final class DoubleConst extends DoubleNode {
+        private final double value;
+
+        DoubleConst(double value) {
+            this.value = value;
+        }
+
+        @Override
+        double evalDouble(Frame frame) {
+            return value;
+        }
+    }
+
+    /** Reads a variable; its type is only known at runtime. */
+    static final class SlotRead extends Node {
+        private final int slot;
+
+        SlotRead(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        boolean eval(Frame frame) {
+            if (frame.env.isDouble(slot)) {
+                frame.doubleValue = frame.env.getDouble(slot);
+                return true;
+            }
+            frame.longValue = frame.env.getLong(slot);
+            return false;
+        }
+    }
+
+    /** Prefix {@code ++}/{@code --}: updates the variable and yields the new value. */
+    static final class PreIncrement extends Node {
+        private final int slot;
+        private final long delta;
+
+        PreIncrement(int slot, long delta) {
+            this.slot = slot;
+            this.delta = delta;
+        }
+
+        @Override
+        boolean eval(Frame frame) {
+            if (frame.env.isDouble(slot)) {
+                frame.doubleValue = frame.env.getDouble(slot) + delta;
+                frame.env.setDouble(slot, frame.doubleValue);
+                return true;
+            }
+            frame.longValue = frame.env.getLong(slot) + delta;
+            frame.env.setLong(slot, frame.longValue);
+            return false;
+        }
+    }
+
+    /** Postfix {@code ++}/{@code --}: updates the variable and yields the old value. */
+    static final class PostIncrement extends Node {
+        private final int slot;
+        private final long delta;
+
+        PostIncrement(int slot, long delta) {
+            this.slot = slot;
+            this.delta = delta;
+        }
+
+        @Override
+        boolean eval(Frame frame) {
+            if (frame.env.isDouble(slot)) {
+                frame.doubleValue = frame.env.getDouble(slot);
+                frame.env.setDouble(slot, frame.doubleValue + delta);
+                return true;
+            }
+            frame.longValue = frame.env.getLong(slot);
+            frame.env.setLong(slot, frame.longValue + delta);
+            return false;
+        }
+    }
+
+    /** {@code ++}/{@code --} applied to something other than a variable. */
+    static final class NotAssignable extends Node {
+        @Override
+        boolean eval(Frame frame) {
+            throw new EvalException(ErrorMessages.EVAL_OPERAND_NOT_ASSIGNABLE);
+        }
+    }
+
+    static final class LongNeg extends LongNode {
+        private final LongNode operand;
+
+        LongNeg(LongNode operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        long evalLong(Frame frame) {
+            return -operand.evalLong(frame);
+        }
+    }
+
+    static final class DoubleNeg extends DoubleNode {
+        private final Node operand;
+
+        DoubleNeg(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        double evalDouble(Frame frame) {
+            return -operand.evalDouble(frame);
+        }
+    }
+
+    static final class DynamicNeg extends Node {
+        private final Node operand;
+
+        DynamicNeg(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        boolean eval(Frame frame) {
+            if (operand.eval(frame)) {
+                frame.doubleValue = -frame.doubleValue;
+                return true;
+            }
+            frame.longValue = -frame.longValue;
+            return false;
+        }
+    }
+
+    /** Binary operation on two statically long operands. */
+    abstract static class LongBinary extends LongNode {
+        final LongNode lhs;
+        final LongNode rhs;
+
+        LongBinary(LongNode lhs, LongNode rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+    }
+
+    static final class LongAdd extends LongBinary {
+        LongAdd(LongNode lhs, LongNode rhs) {
+            super(lhs, rhs);
+        }
+
+        @Override
+        long evalLong(Frame frame) {
+            return lhs.evalLong(frame) + rhs.evalLong(frame);
+        }
+    }
+
+    static final class LongSub extends LongBinary {
+        LongSub(LongNode lhs, LongNode rhs) {
+            super(lhs, rhs);
+        }
+
+        @Override
+        long evalLong(Frame frame) {
+            return lhs.evalLong(frame) - rhs.evalLong(frame);
+        }
+    }
+
+    static final class LongMul extends LongBinary {
+        LongMul(LongNode lhs, LongNode rhs) {
+            super(lhs, rhs);
+        }
+
+        @Override
+        long evalLong(Frame frame) {
+            return lhs.evalLong(frame) * rhs.evalLong(frame);
+        }
+    }
+
+    static final class LongDiv extends LongBinary {
+        LongDiv(LongNode lhs, LongNode rhs) {
+            super(lhs, rhs);
+        }
+
+        @Override
+        long evalLong(Frame frame) {
+            long left = lhs.evalLong(frame);
+            return left / nonZero(rhs.evalLong(frame));
+        }
+    }
+
+    static final class LongMod extends LongBinary {
+        LongMod(LongNode lhs, LongNode rhs) {
+            super(lhs, rhs);
+        }
+
+        @Override
+        long evalLong(Frame frame) {
+            long left = lhs.evalLong(frame);
+            return left % nonZero(rhs.evalLong(frame));
+        }
+    }
+
+    /**
+     * Binary operation producing a double: at least one operand is statically a double, and each operand is
+     * widened after being computed in its own type.
+     */
+    abstract static class DoubleBinary extends DoubleNode {
+        final Node lhs;
+        final Node rhs;
+
+        DoubleBinary(Node lhs, Node rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+    }
+
+    static final class DoubleAdd extends DoubleBinary {
+        DoubleAdd(Node lhs, Node rhs) {
+            super(lhs, rhs);
+        }
+
+        @Override
+        double evalDouble(Frame frame) {
+            return lhs.evalDouble(frame) + rhs.evalDouble(frame);
+        }
+    }
+
+    static final class DoubleSub extends DoubleBinary {
+        DoubleSub(Node lhs, Node rhs) {
+            super(lhs, rhs);
+        }
+
+        @Override
+        double evalDouble(Frame frame) {
+            return lhs.evalDouble(frame) - rhs.evalDouble(frame);
+        }
+    }
+
+    static final class DoubleMul extends DoubleBinary {
+        DoubleMul(Node lhs, Node rhs) {
+            super(lhs, rhs);
+        }
+
+        @Override
+        double evalDouble(Frame frame) {
+            return lhs.evalDouble(frame) * rhs.evalDouble(frame);
+        }
+    }
+
+    static final class DoubleDiv extends DoubleBinary {
+        DoubleDiv(Node lhs, Node rhs) {
+            super(lhs, rhs);
+        }
+
+        @Override
+        double evalDouble(Frame frame) {
+            double left = lhs.evalDouble(frame);
+            return left / nonZero(rhs.evalDouble(frame));
+        }
+    }
+
+    static final class DoubleMod extends DoubleBinary {
+        DoubleMod(Node lhs, Node rhs) {
+            super(lhs, rhs);
+        }
+
+        @Override
+        double evalDouble(Frame frame) {
+            double left = lhs.evalDouble(frame);
+            return left % nonZero(rhs.evalDouble(frame));
+        }
+    }
+
+    /**
+     * Binary operation whose operand types are only known at runtime: long arithmetic unless one value is a
+     * double. The left value is saved before the right operand runs, since both share the frame registers.
+     */
+    abstract static class DynamicBinary extends Node {
+        private final Node lhs;
+        private final Node rhs;
+
+        DynamicBinary(Node lhs, Node rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        abstract long apply(long left, long right);
+
+        abstract double apply(double left, double right);
+
+        @Override
+        final boolean eval(Frame frame) {
+            boolean leftIsDouble = lhs.eval(frame);
+            long leftLong = frame.longValue;
+            double leftDouble = frame.doubleValue;
+            boolean rightIsDouble = rhs.eval(frame);
+            if (leftIsDouble || rightIsDouble) {
+                double left = leftIsDouble ? leftDouble : leftLong;
+                double right = rightIsDouble ? frame.doubleValue : frame.longValue;
+                frame.doubleValue = apply(left, right);
+                return true;
+            }
+            frame.longValue = apply(leftLong, frame.longValue);
+            return false;
+        }
+    }
+
+    static final class DynamicAdd extends DynamicBinary {
+        DynamicAdd(Node lhs, Node rhs) {
+            super(lhs, rhs);
+        }
+
+        @Override
+        long apply(long left, long right) {
+            return left + right;
+        }
+
+        @Override
+        double apply(double left, double right) {
+            return left + right;
+        }
+    }
+
+    static final class DynamicSub extends DynamicBinary {
+        DynamicSub(Node lhs, Node rhs) {
+            super(lhs, rhs);
+        }
+
+        @Override
+        long apply(long left, long right) {
+            return left - right;
+        }
+
+        @Override
+        double apply(double left, double right) {
+            return left - right;
+        }
+    }
+
+    static final class DynamicMul extends DynamicBinary {
+        DynamicMul(Node lhs, Node rhs) {
+            super(lhs, rhs);
+        }
+
+        @Override
+        long apply(long left, long right) {
+            return left * right;
+        }
+
+        @Override
+        double apply(double left, double right) {
+            return left * right;
+        }
+    }
+
+    static final class DynamicDiv extends DynamicBinary {
+        DynamicDiv(Node lhs, Node rhs) {
+            super(lhs, rhs);
+        }
+
+        @Override
+        long apply(long left, long right) {
+            return left / nonZero(right);
+        }
+
+        @Override
+        double apply(double left, double right) {
+            return left / nonZero(right);
+        }
+    }
+
+    static final class DynamicMod extends DynamicBinary {
+        DynamicMod(Node lhs, Node rhs) {
+            super(lhs, rhs);
+        }
+
+        @Override
+        long apply(long left, long right) {
+            return left % nonZero(right);
+        }
+
+        @Override
+        double apply(double left, double right) {
+            return left % nonZero(right);
+        }
+    }
+
+    private static long nonZero(long divisor) {
+        if (divisor == 0L) {
+            throw new EvalException(ErrorMessages.EVAL_DIVISION_BY_ZERO);
+        }
+        return divisor;
+    }
+
+    private static double nonZero(double divisor) {
+        if (divisor == 0.0) {
+            throw new EvalException(ErrorMessages.EVAL_DIVISION_BY_ZERO);
+        }
+        return divisor;
+    }
+}
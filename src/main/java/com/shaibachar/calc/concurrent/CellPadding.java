@@ -0,0 +1,9 @@
+package com.shaibachar.calc.concurrent;
+
+/**
+ * Padding laid out before the fields of a {@link VariableCell}. The JVM places superclass fields first but orders
+ * the fields of one class by size, so the padding in front of a cell's fields has to come from a superclass.
+ */
+abstract class CellPadding {
+    long p1, p2, p3, p4, p5, p6, p7;
+}
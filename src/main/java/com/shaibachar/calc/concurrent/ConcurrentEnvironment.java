@@ -0,0 +1,138 @@
+package com.shaibachar.calc.concurrent;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.exceptions.ErrorMessages;
+import com.shaibachar.calc.exceptions.EvalException;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Variable space shared by any number of {@link ConcurrentSession}s, each running statements on its own thread.
+ * Every variable lives in a padded {@link VariableCell}:
+ * <ul>
+ * <li>a statement owns the cells of the variables it writes while it runs, so {@code x += e} and {@code x++} are
+ * atomic read-modify-write operations even when several sessions update {@code x} at once;</li>
+ * <li>reads never lock: a session reads a consistent type and value of each variable once per statement.</li>
+ * </ul>
+ * Statements that write different variables run fully in parallel. {@link #values()} lists the variables in the
+ * order they were first defined by any session, so its result can be formatted like that of a plain
+ * {@link com.shaibachar.calc.eval.Environment}.
+ * <pre>
+ * ConcurrentEnvironment shared = new ConcurrentEnvironment(Backend.TREE);
+ * // on each thread
+ * ConcurrentSession session = shared.newSession();
+ * session.execute("hits += 1");
+ * // once the threads are done
+ * String output = Formatter.format(shared.values());
+ * </pre>
+ */
+public final class ConcurrentEnvironment {
+    private static final Logger LOGGER = Logger.getLogger(ConcurrentEnvironment.class.getName());
+
+    private final Backend backend;
+    private final ConcurrentHashMap<String, VariableCell> cells = new ConcurrentHashMap<>();
+    private final AtomicInteger cellCount = new AtomicInteger();
+    // Cells in the order their variables were first defined, guarded by this
+    private VariableCell[] order = new VariableCell[16];
+    private int defined;
+
+    /**
+     * Creates an empty variable space.
+     *
+     * @param backend the backend whose parser and executor the sessions use
+     */
+    public ConcurrentEnvironment(Backend backend) {
+        this.backend = backend;
+    }
+
+    public Backend backend() {
+        return backend;
+    }
+
+    /**
+     * Creates a session over this variable space. A session is used by one thread at a time.
+     *
+     * @return a new session
+     */
+    public ConcurrentSession newSession() {
+        return new ConcurrentSession(this);
+    }
+
+    /**
+     * Returns the value of a variable.
+     *
+     * @param name the variable name
+     * @return the boxed value
+     * @throws EvalException if the variable is not defined
+     */
+    public Number get(String name) {
+        VariableCell cell = cells.get(name);
+        if (cell != null) {
+            long version;
+            byte tag;
+            long bits;
+            do {
+                version = cell.beginRead();
+                tag = cell.readTag();
+                bits = cell.readBits();
+            } while (!cell.validate(version));
+            if (tag != SessionEnvironment.UNDEFINED) {
+                return tag == SessionEnvironment.DOUBLE ? (Number) Double.longBitsToDouble(bits) : (Number) bits;
+            }
+        }
+        throw new EvalException(ErrorMessages.envUndefinedVariable(name));
+    }
+
+    /**
+     * Returns the variable bindings in the order the variables were first defined. Each value is read atomically,
+     * but while sessions are running the map is not a snapshot of one instant.
+     *
+     * @return the variable names mapped to their boxed values
+     */
+    public Map<String, Number> values() {
+        VariableCell[] cells;
+        int count;
+        synchronized (this) {
+            cells = order;
+            count = defined;
+        }
+        Map<String, Number> values = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            values.put(cells[i].name(), get(cells[i].name()));
+        }
+        return values;
+    }
+
+    /**
+     * Returns the number of defined variables.
+     *
+     * @return the variable count
+     */
+    public synchronized int size() {
+        return defined;
+    }
+
+    VariableCell cell(String name) {
+        return cells.computeIfAbsent(name, key -> new VariableCell(key, cellCount.getAndIncrement()));
+    }
+
+    /**
+     * Records the first definition of a variable. Called by the session that owns its cell, before the value of
+     * the cell is readable.
+     */
+    synchronized void defined(VariableCell cell) {
+        if (defined == order.length) {
+            order = Arrays.copyOf(order, defined * 2);
+        }
+        order[defined++] = cell;
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Defining shared variable: " + cell.name());
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.shaibachar.calc.concurrent;
+
+import com.shaibachar.calc.dag.StatementAccess;
+import com.shaibachar.calc.eval.StatementExecutor;
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.exceptions.ErrorMessages;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.exceptions.ParseException;
+import com.shaibachar.calc.lexer.Lexer;
+import com.shaibachar.calc.lexer.TokenBuffer;
+import com.shaibachar.calc.parser.stmt.Stmt;
+
+import java.util.List;
+
+/**
+ * One thread's connection to a {@link ConcurrentEnvironment}. A session parses against its own symbol table and
+ * runs each statement with its own executor, owning the cells of the variables the statement writes (its target
+ * and the operands of {@code ++}/{@code --}) until it finishes. Cells are locked in a global order, so sessions
+ * never deadlock. A statement that fails keeps the writes it made before failing, as in a plain environment.
+ * <p>
+ * A session is not thread-safe; create one per thread.
+ */
+public final class ConcurrentSession {
+    private final ConcurrentEnvironment shared;
+    private final SymbolTable symbols = new SymbolTable();
+    private final TokenBuffer tokens = new TokenBuffer();
+    private final SessionEnvironment env;
+    private final StatementExecutor executor;
+    private VariableCell[] owned = new VariableCell[4];
+
+    ConcurrentSession(ConcurrentEnvironment shared) {
+        this.shared = shared;
+        this.env = new SessionEnvironment(shared, symbols);
+        this.executor = shared.backend().create(env);
+    }
+
+    /**
+     * Parses and runs one line.
+     *
+     * @param line the statement
+     * @throws ParseException if the line is not a valid statement
+     * @throws EvalException if the statement fails
+     */
+    public void execute(String line) {
+        execute(shared.backend().parse(new Lexer(line).tokenizeInto(tokens), symbols));
+    }
+
+    /**
+     * Runs the lines of a script in order, skipping blank lines. Other sessions may run statements between them.
+     *
+     * @param lines the script lines
+     * @throws ParseException if a line fails to parse, after the lines before it have run
+     * @throws EvalException if a statement fails, with the line context
+     */
+    public void execute(List<String> lines) {
+        int lineNumber = 0;
+        for (String line : lines) {
+            lineNumber++;
+            if (line == null || line.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                execute(line);
+            } catch (ParseException e) {
+                throw new ParseException(ErrorMessages.withLineContext(e.getMessage(), lineNumber, line));
+            } catch (EvalException e) {
+                throw new EvalException(ErrorMessages.withLineContext(e.getMessage(), lineNumber, line));
+            }
+        }
+    }
+
+    /**
+     * Runs a statement parsed against this session's symbol table.
+     *
+     * @param stmt the statement
+     * @throws EvalException if the statement fails
+     */
+    public void execute(Stmt stmt) {
+        int count = lockWrites(StatementAccess.of(stmt, symbols));
+        try {
+            env.beginStatement();
+            executor.execute(stmt);
+        } finally {
+            for (int i = 0; i < count; i++) {
+                owned[i].unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the symbol table to parse statements against for {@link #execute(Stmt)}.
+     *
+     * @return the session's symbol table
+     */
+    public SymbolTable symbols() {
+        return symbols;
+    }
+
+    /**
+     * Locks the distinct cells a statement writes, in ascending id order.
+     *
+     * @return the number of cells locked, which are the first entries of {@code owned}
+     */
+    private int lockWrites(StatementAccess access) {
+        if (owned.length < access.writeCount()) {
+            owned = new VariableCell[access.writeCount()];
+        }
+        int count = 0;
+        for (int i = 0; i < access.writeCount(); i++) {
+            VariableCell cell = env.cell(access.write(i));
+            // Insertion sort; statements rarely write more than two variables
+            int j = count;
+            while (j > 0 && owned[j - 1].id() > cell.id()) {
+                j--;
+            }
+            if (j > 0 && owned[j - 1] == cell) {
+                continue;
+            }
+            System.arraycopy(owned, j, owned, j + 1, count - j);
+            owned[j] = cell;
+            count++;
+        }
+        for (int i = 0; i < count; i++) {
+            owned[i].lock();
+        }
+        return count;
+    }
+}
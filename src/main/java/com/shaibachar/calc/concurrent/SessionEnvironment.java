@@ -0,0 +1,155 @@
+package com.shaibachar.calc.concurrent;
+
+import com.shaibachar.calc.eval.Environment;
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.exceptions.ErrorMessages;
+import com.shaibachar.calc.exceptions.EvalException;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A session's view of a {@link ConcurrentEnvironment}, through which its executor runs. Slots are those of the
+ * session's own symbol table and map to the shared cells. The first read of a variable in a statement copies its
+ * type and value from the cell, and later reads in the same statement use the copy, so the type an executor checks
+ * with {@link #isDouble(int)} is the type of the value it then reads. Writes update the copy and publish to the
+ * cell, which the session must own. {@link #clear()} resets only this view, never the shared variables.
+ */
+final class SessionEnvironment extends Environment {
+    static final byte UNDEFINED = 0;
+    static final byte LONG = 1;
+    static final byte DOUBLE = 2;
+
+    private final ConcurrentEnvironment shared;
+    private VariableCell[] cells = new VariableCell[16];
+    private byte[] tags = new byte[16];
+    private long[] bits = new long[16];
+    // Statement that last copied each slot; a slot is copied again once the stamp moves on
+    private int[] marks = new int[16];
+    private int stamp = 1;
+
+    SessionEnvironment(ConcurrentEnvironment shared, SymbolTable symbols) {
+        super(symbols);
+        this.shared = shared;
+    }
+
+    /**
+     * Starts a statement, so that every variable is read from its cell again.
+     */
+    void beginStatement() {
+        if (++stamp == 0) {
+            Arrays.fill(marks, 0);
+            stamp = 1;
+        }
+    }
+
+    VariableCell cell(int slot) {
+        if (slot >= cells.length) {
+            int capacity = Math.max(cells.length * 2, slot + 1);
+            cells = Arrays.copyOf(cells, capacity);
+            tags = Arrays.copyOf(tags, capacity);
+            bits = Arrays.copyOf(bits, capacity);
+            marks = Arrays.copyOf(marks, capacity);
+        }
+        VariableCell cell = cells[slot];
+        if (cell == null) {
+            cell = shared.cell(symbols().name(slot));
+            cells[slot] = cell;
+        }
+        return cell;
+    }
+
+    @Override
+    public boolean isDefined(int slot) {
+        return copy(slot) != UNDEFINED;
+    }
+
+    @Override
+    public boolean isDouble(int slot) {
+        return tag(slot) == DOUBLE;
+    }
+
+    @Override
+    public long getLong(int slot) {
+        tag(slot);
+        return bits[slot];
+    }
+
+    @Override
+    public double getDouble(int slot) {
+        return tag(slot) == DOUBLE ? Double.longBitsToDouble(bits[slot]) : bits[slot];
+    }
+
+    @Override
+    public Number get(int slot) {
+        return tag(slot) == DOUBLE ? (Number) Double.longBitsToDouble(bits[slot]) : (Number) bits[slot];
+    }
+
+    @Override
+    public void setLong(int slot, long value) {
+        store(slot, LONG, value);
+    }
+
+    @Override
+    public void setDouble(int slot, double value) {
+        store(slot, DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    @Override
+    public Map<String, Number> values() {
+        return shared.values();
+    }
+
+    @Override
+    public int size() {
+        return shared.size();
+    }
+
+    /**
+     * Drops this session's copies of the shared values and its bindings of slots to cells, so that every variable
+     * is looked up and read from the shared space again. The shared variables stay defined: other sessions may be
+     * using them, and only the shared space decides what is defined.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(cells, null);
+        beginStatement();
+    }
+
+    private byte tag(int slot) {
+        byte tag = copy(slot);
+        if (tag == UNDEFINED) {
+            throw new EvalException(ErrorMessages.envUndefinedVariable(symbols().name(slot)));
+        }
+        return tag;
+    }
+
+    /**
+     * Returns the type tag of the slot, copying the cell if this statement has not read it yet.
+     */
+    private byte copy(int slot) {
+        VariableCell cell = cell(slot);
+        if (marks[slot] != stamp) {
+            long version;
+            byte tag;
+            long value;
+            do {
+                version = cell.beginRead();
+                tag = cell.readTag();
+                value = cell.readBits();
+            } while (!cell.validate(version));
+            tags[slot] = tag;
+            bits[slot] = value;
+            marks[slot] = stamp;
+        }
+        return tags[slot];
+    }
+
+    private void store(int slot, byte tag, long value) {
+        VariableCell cell = cell(slot);
+        tags[slot] = tag;
+        bits[slot] = value;
+        marks[slot] = stamp;
+        cell.publish(tag, value, shared);
+    }
+}
@@ -0,0 +1,114 @@
+package com.shaibachar.calc.concurrent;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Value of one shared variable. A session that runs a statement writing the variable owns the cell for the whole
+ * statement ({@link #lock()}), which makes compound assignments and {@code ++}/{@code --} atomic read-modify-write
+ * operations. Readers never wait for an owner: every write is published under a sequence number that is odd while
+ * the type tag and value bits change, and a reader retries the few instructions of {@link #readTag()} and
+ * {@link #readBits()} until it sees the same even number before and after. Doubles are stored as their raw bits.
+ * <p>
+ * The shared fields are all longs, padded by {@link CellPadding} before them and by trailing longs after them, so
+ * that cells of unrelated variables written by different threads never share a cache line.
+ */
+final class VariableCell extends CellPadding {
+    private static final VarHandle VERSION;
+    private static final VarHandle LOCKED;
+    // Spins on a contended cell before yielding to the thread that owns it
+    private static final int SPINS_BEFORE_YIELD = 64;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            VERSION = lookup.findVarHandle(VariableCell.class, "version", long.class);
+            LOCKED = lookup.findVarHandle(VariableCell.class, "locked", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private volatile long version;
+    private volatile long locked;
+    private long tag;
+    private long bits;
+    long p9, p10, p11, p12, p13, p14, p15;
+    private final String name;
+    private final int id;
+
+    VariableCell(String name, int id) {
+        this.name = name;
+        this.id = id;
+    }
+
+    String name() {
+        return name;
+    }
+
+    /**
+     * Returns the order in which cells are locked, so that sessions locking several cells cannot deadlock.
+     */
+    int id() {
+        return id;
+    }
+
+    void lock() {
+        int spins = 0;
+        while (!LOCKED.compareAndSet(this, 0L, 1L)) {
+            if (++spins < SPINS_BEFORE_YIELD) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    void unlock() {
+        LOCKED.setRelease(this, 0L);
+    }
+
+    /**
+     * Starts a read, returning the sequence number to pass to {@link #validate(long)}.
+     */
+    long beginRead() {
+        long current;
+        while (((current = (long) VERSION.getAcquire(this)) & 1) != 0) {
+            Thread.onSpinWait();
+        }
+        return current;
+    }
+
+    byte readTag() {
+        return (byte) tag;
+    }
+
+    long readBits() {
+        return bits;
+    }
+
+    /**
+     * Returns whether the tag and bits read since {@link #beginRead()} returned {@code expected} belong together.
+     */
+    boolean validate(long expected) {
+        VarHandle.loadLoadFence();
+        return (long) VERSION.getAcquire(this) == expected;
+    }
+
+    /**
+     * Stores a value. Only called by the owner of the cell. A write that defines the variable appends the cell to
+     * the definition order of {@code shared} before the value becomes readable, so no session can read the
+     * variable, and define another from it, before the variable itself is ordered.
+     */
+    void publish(byte newTag, long newBits, ConcurrentEnvironment shared) {
+        long current = (long) VERSION.get(this);
+        VERSION.setOpaque(this, current + 1);
+        VarHandle.storeStoreFence();
+        if (tag == SessionEnvironment.UNDEFINED) {
+            shared.defined(this);
+        }
+        tag = newTag;
+        bits = newBits;
+        VERSION.setRelease(this, current + 2);
+    }
+}
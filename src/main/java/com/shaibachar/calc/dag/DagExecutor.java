@@ -0,0 +1,213 @@
+package com.shaibachar.calc.dag;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.bytecode.ScriptExecutionException;
+import com.shaibachar.calc.eval.Environment;
+import com.shaibachar.calc.eval.StatementExecutor;
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.parser.stmt.Stmt;
+
+import java.util.List;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the statements of a script concurrently where their {@link DependencyGraph} allows it. A statement is
+ * forked onto the pool as soon as the last statement it depends on has run; a worker that finishes a statement
+ * runs one of the statements it made ready itself and forks the others, so a chain of dependent statements
+ * stays on one thread. Every pool thread has its own executor of the backend over the shared environment.
+ * <p>
+ * A script is run in consecutive windows of statements, one {@link #run(List)} each, so that the statements of
+ * the whole script are never held at once; a window starts after the previous one has finished. The result is
+ * the environment sequential execution produces, with variables in the same order. When statements fail, the
+ * failure reported is that of the first failing statement in script order, which is the one sequential
+ * execution would have stopped at: the statements before it depend only on statements that succeeded, so they
+ * see the same values as sequentially. Statements after a known failure are skipped.
+ * <pre>
+ * DagExecutor executor = new DagExecutor(Backend.VM, ForkJoinPool.commonPool());
+ * executor.run(statements);
+ * Map&lt;String, Number&gt; values = executor.environment().values();
+ * </pre>
+ * An executor runs one script, one window at a time.
+ */
+public final class DagExecutor {
+    private static final Logger LOGGER = Logger.getLogger(DagExecutor.class.getName());
+    // Windows hold this many statements per worker, enough to keep every worker busy between windows
+    private static final int STATEMENTS_PER_WORKER = 256;
+
+    private final ForkJoinPool pool;
+    private final SharedEnvironment env;
+    private final ThreadLocal<StatementExecutor> executors;
+
+    public DagExecutor(Backend backend, ForkJoinPool pool) {
+        this(backend, pool, new SymbolTable());
+    }
+
+    /**
+     * Creates an executor for one script.
+     *
+     * @param backend the backend that runs each statement
+     * @param pool the pool the statements run on
+     * @param symbols the symbol table the statements are parsed against
+     */
+    public DagExecutor(Backend backend, ForkJoinPool pool, SymbolTable symbols) {
+        this.pool = pool;
+        this.env = new SharedEnvironment(symbols);
+        this.executors = ThreadLocal.withInitial(() -> backend.create(env));
+    }
+
+    public SymbolTable symbols() {
+        return env.symbols();
+    }
+
+    /**
+     * Returns the environment the statements update.
+     *
+     * @return the environment, holding the values after the last window run
+     */
+    public Environment environment() {
+        return env;
+    }
+
+    /**
+     * Returns the number of statements worth passing to one {@link #run(List)}: enough to keep the pool busy, few
+     * enough that their memory stays small.
+     *
+     * @return the window size
+     */
+    public int windowSize() {
+        return pool.getParallelism() * STATEMENTS_PER_WORKER;
+    }
+
+    /**
+     * Runs the next window of the script's statements and waits for it to finish.
+     *
+     * @param statements the statements, in script order
+     * @throws ScriptExecutionException for an evaluation error, carrying the index in {@code statements} of the
+     *                                  failing statement
+     */
+    public void run(List<Stmt> statements) {
+        if (statements.isEmpty()) {
+            return;
+        }
+        long startNs = System.nanoTime();
+        DependencyGraph graph = DependencyGraph.build(statements, env.symbols());
+        env.prepare(graph);
+        Run run = new Run(statements, graph);
+        pool.invoke(run);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            long elapsedMs = (System.nanoTime() - startNs) / 1_000_000;
+            LOGGER.fine("perf.component=dag_execute elapsed_ms=" + elapsedMs + " statements=" + graph.size()
+                    + " edges=" + graph.edgeCount() + " critical_path=" + graph.criticalPathLength());
+        }
+        run.rethrow();
+    }
+
+    /**
+     * Root of one run: completes once every statement has run or been skipped.
+     */
+    private final class Run extends CountedCompleter<Void> {
+        final List<Stmt> statements;
+        final DependencyGraph graph;
+        final AtomicIntegerArray pending;
+        // Index of the first failing statement found so far, Integer.MAX_VALUE while none has failed
+        final AtomicInteger firstFailure = new AtomicInteger(Integer.MAX_VALUE);
+        // Written by the thread running the statement, read once the run has completed
+        final Throwable[] failures;
+
+        Run(List<Stmt> statements, DependencyGraph graph) {
+            // One arrival per statement, plus this task's own
+            super(null, statements.size());
+            this.statements = statements;
+            this.graph = graph;
+            int[] counts = new int[graph.size()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = graph.predecessorCount(i);
+            }
+            this.pending = new AtomicIntegerArray(counts);
+            this.failures = new Throwable[counts.length];
+        }
+
+        @Override
+        public void compute() {
+            for (int i = 0; i < graph.size(); i++) {
+                if (graph.predecessorCount(i) == 0) {
+                    new StatementTask(this, i).fork();
+                }
+            }
+            tryComplete();
+        }
+
+        void execute(int statement) {
+            if (statement > firstFailure.get()) {
+                return;
+            }
+            try {
+                executors.get().execute(statements.get(statement));
+            } catch (Throwable e) {
+                failures[statement] = e;
+                firstFailure.accumulateAndGet(statement, Math::min);
+            }
+        }
+
+        void rethrow() {
+            int statement = firstFailure.get();
+            if (statement == Integer.MAX_VALUE) {
+                return;
+            }
+            Throwable e = failures[statement];
+            if (e instanceof EvalException) {
+                throw new ScriptExecutionException(e.getMessage(), statement);
+            } else if (e instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw (Error) e;
+        }
+    }
+
+    /**
+     * Runs a statement whose predecessors have all run, then the statements it makes ready.
+     */
+    private static final class StatementTask extends CountedCompleter<Void> {
+        private final Run run;
+        private final int first;
+
+        StatementTask(Run run, int first) {
+            super(run);
+            this.run = run;
+            this.first = first;
+        }
+
+        @Override
+        public void compute() {
+            DependencyGraph graph = run.graph;
+            int statement = first;
+            while (true) {
+                run.execute(statement);
+                int next = -1;
+                for (int i = 0; i < graph.successorCount(statement); i++) {
+                    int successor = graph.successor(statement, i);
+                    if (run.pending.decrementAndGet(successor) == 0) {
+                        if (next < 0) {
+                            next = successor;
+                        } else {
+                            new StatementTask(run, successor).fork();
+                        }
+                    }
+                }
+                if (next < 0) {
+                    break;
+                }
+                // Counts this statement; the last one is counted by completing the task
+                run.tryComplete();
+                statement = next;
+            }
+            tryComplete();
+        }
+    }
+}
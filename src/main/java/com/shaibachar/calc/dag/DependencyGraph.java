@@ -0,0 +1,246 @@
+package com.shaibachar.calc.dag;
+
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.parser.stmt.Stmt;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Dependency graph of a script's statements, derived from their {@link StatementAccess} sets. Statement
+ * {@code j} depends on an earlier statement {@code i} when {@code j} reads a variable {@code i} writes (the value
+ * must be the one {@code i} wrote), writes a variable {@code i} reads (so {@code i} sees the older value), or
+ * writes a variable {@code i} writes (so the later write wins). Statements with no path between them touch no
+ * common variable that either writes, so running them in either order, or at the same time, has the same result
+ * as running them in script order.
+ * <p>
+ * Edges always point from a lower to a higher statement index, so the graph is acyclic by construction. It is
+ * built in one pass, keeping per variable its last writer and the readers since then, and only the edge to the
+ * nearest conflicting statement is recorded: earlier ones are implied by transitivity.
+ */
+public final class DependencyGraph {
+    private final int size;
+    // Successors of statement i are successors[successorStart[i]] .. successors[successorStart[i + 1] - 1]
+    private final int[] successorStart;
+    private final int[] successors;
+    private final int[] predecessorCounts;
+    private final int[] definitionOrder;
+    private final int criticalPathLength;
+    private final int slotCount;
+
+    private DependencyGraph(int size, int[] successorStart, int[] successors, int[] predecessorCounts,
+                            int[] definitionOrder, int criticalPathLength, int slotCount) {
+        this.size = size;
+        this.successorStart = successorStart;
+        this.successors = successors;
+        this.predecessorCounts = predecessorCounts;
+        this.definitionOrder = definitionOrder;
+        this.criticalPathLength = criticalPathLength;
+        this.slotCount = slotCount;
+    }
+
+    /**
+     * Builds the graph of a script. Every variable name of the statements is interned into {@code symbols}.
+     *
+     * @param statements the statements, in script order
+     * @param symbols the symbol table of the environment the statements will run against
+     * @return the dependency graph
+     */
+    public static DependencyGraph build(List<Stmt> statements, SymbolTable symbols) {
+        int size = statements.size();
+        StatementAccess[] accesses = new StatementAccess[size];
+        for (int i = 0; i < size; i++) {
+            accesses[i] = StatementAccess.of(statements.get(i), symbols);
+        }
+        int slotCount = symbols.size();
+
+        int[] lastWriter = new int[slotCount];
+        Arrays.fill(lastWriter, -1);
+        // Readers of each slot since its last write, as linked lists through readerNext
+        int[] readersHead = new int[slotCount];
+        Arrays.fill(readersHead, -1);
+        int[] readerStatement = new int[16];
+        int[] readerNext = new int[16];
+        int readerCount = 0;
+        int lastBarrier = -1;
+
+        EdgeList edges = new EdgeList(Math.max(16, size * 2));
+        // marks[p] == i + 1 once the edge p -> i is recorded
+        int[] marks = new int[size];
+        int[] depth = new int[size];
+        int criticalPathLength = 0;
+        boolean[] definedSlots = new boolean[slotCount];
+        int[] definitionOrder = new int[slotCount];
+        int definitions = 0;
+
+        for (int i = 0; i < size; i++) {
+            StatementAccess access = accesses[i];
+            int firstPredecessor = edges.count;
+            if (access.isBarrier()) {
+                // The previous barrier and the statements since then; earlier ones precede the previous barrier
+                for (int p = Math.max(0, lastBarrier); p < i; p++) {
+                    edges.add(p, i);
+                }
+                lastBarrier = i;
+            } else {
+                if (lastBarrier >= 0) {
+                    marks[lastBarrier] = i + 1;
+                    edges.add(lastBarrier, i);
+                }
+                for (int r = 0; r < access.readCount(); r++) {
+                    int writer = lastWriter[access.read(r)];
+                    if (writer >= 0 && writer != i && marks[writer] != i + 1) {
+                        marks[writer] = i + 1;
+                        edges.add(writer, i);
+                    }
+                }
+                for (int w = 0; w < access.writeCount(); w++) {
+                    int slot = access.write(w);
+                    int writer = lastWriter[slot];
+                    if (writer >= 0 && writer != i && marks[writer] != i + 1) {
+                        marks[writer] = i + 1;
+                        edges.add(writer, i);
+                    }
+                    for (int reader = readersHead[slot]; reader >= 0; reader = readerNext[reader]) {
+                        int p = readerStatement[reader];
+                        if (p != i && marks[p] != i + 1) {
+                            marks[p] = i + 1;
+                            edges.add(p, i);
+                        }
+                    }
+                }
+                // Record this statement's accesses once its own edges are known
+                for (int w = 0; w < access.writeCount(); w++) {
+                    int slot = access.write(w);
+                    lastWriter[slot] = i;
+                    readersHead[slot] = -1;
+                }
+                for (int r = 0; r < access.readCount(); r++) {
+                    int slot = access.read(r);
+                    if (lastWriter[slot] == i || readersHead[slot] >= 0 && readerStatement[readersHead[slot]] == i) {
+                        continue;
+                    }
+                    if (readerCount == readerStatement.length) {
+                        readerStatement = Arrays.copyOf(readerStatement, readerCount * 2);
+                        readerNext = Arrays.copyOf(readerNext, readerCount * 2);
+                    }
+                    readerStatement[readerCount] = i;
+                    readerNext[readerCount] = readersHead[slot];
+                    readersHead[slot] = readerCount++;
+                }
+                int target = access.write(0);
+                if (!definedSlots[target]) {
+                    definedSlots[target] = true;
+                    definitionOrder[definitions++] = target;
+                }
+            }
+            int statementDepth = 1;
+            for (int e = firstPredecessor; e < edges.count; e++) {
+                statementDepth = Math.max(statementDepth, depth[edges.from[e]] + 1);
+            }
+            depth[i] = statementDepth;
+            criticalPathLength = Math.max(criticalPathLength, statementDepth);
+        }
+
+        int[] successorStart = new int[size + 1];
+        int[] predecessorCounts = new int[size];
+        for (int e = 0; e < edges.count; e++) {
+            successorStart[edges.from[e] + 1]++;
+            predecessorCounts[edges.to[e]]++;
+        }
+        for (int i = 0; i < size; i++) {
+            successorStart[i + 1] += successorStart[i];
+        }
+        int[] successors = new int[edges.count];
+        int[] fill = Arrays.copyOf(successorStart, size);
+        for (int e = 0; e < edges.count; e++) {
+            successors[fill[edges.from[e]]++] = edges.to[e];
+        }
+        return new DependencyGraph(size, successorStart, successors, predecessorCounts,
+                Arrays.copyOf(definitionOrder, definitions), criticalPathLength, slotCount);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int edgeCount() {
+        return successors.length;
+    }
+
+    /**
+     * Returns the number of statements that must run before a statement.
+     *
+     * @param statement the statement index
+     * @return the predecessor count
+     */
+    public int predecessorCount(int statement) {
+        return predecessorCounts[statement];
+    }
+
+    public int successorCount(int statement) {
+        return successorStart[statement + 1] - successorStart[statement];
+    }
+
+    /**
+     * Returns a statement that may only run after the given one, always at a higher index.
+     *
+     * @param statement the statement index
+     * @param index the successor index, below {@link #successorCount(int)}
+     * @return the successor's statement index
+     */
+    public int successor(int statement, int index) {
+        return successors[successorStart[statement] + index];
+    }
+
+    /**
+     * Returns the number of statements on the longest dependency chain, a lower bound on the number of steps a
+     * run takes however many threads it has.
+     *
+     * @return the critical path length, 0 for an empty script
+     */
+    public int criticalPathLength() {
+        return criticalPathLength;
+    }
+
+    /**
+     * Returns the slots assigned by the statements, in the order of their first assignment.
+     *
+     * @return the slots, in a new array
+     */
+    public int[] definitionOrder() {
+        return definitionOrder.clone();
+    }
+
+    /**
+     * Returns the size the symbol table had when the graph was built, which bounds every slot the statements use.
+     *
+     * @return the slot count
+     */
+    public int slotCount() {
+        return slotCount;
+    }
+
+    /**
+     * Growable list of edges, in the order they were found.
+     */
+    private static final class EdgeList {
+        int[] from;
+        int[] to;
+        int count;
+
+        EdgeList(int capacity) {
+            from = new int[capacity];
+            to = new int[capacity];
+        }
+
+        void add(int predecessor, int successor) {
+            if (count == from.length) {
+                from = Arrays.copyOf(from, count * 2);
+                to = Arrays.copyOf(to, count * 2);
+            }
+            from[count] = predecessor;
+            to[count++] = successor;
+        }
+    }
+}
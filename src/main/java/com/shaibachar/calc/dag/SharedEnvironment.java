@@ -0,0 +1,78 @@
+package com.shaibachar.calc.dag;
+
+import com.shaibachar.calc.eval.Environment;
+import com.shaibachar.calc.eval.SymbolTable;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Environment updated by several threads at once, each statement writing only slots no concurrent statement
+ * touches. The storage is sized before every run, so values are written in place without locking; only the first
+ * definition of a variable, which appends to the definition order, is serialized. That order depends on thread
+ * timing, so {@link #values()} lists the variables in the order the script first assigns them instead.
+ */
+final class SharedEnvironment extends Environment {
+    private boolean[] listed = new boolean[0];
+    private int[] definitionOrder = new int[16];
+    private int definitions;
+
+    SharedEnvironment(SymbolTable symbols) {
+        super(symbols);
+    }
+
+    /**
+     * Makes room for the slots of the statements about to run and records their first assignments. Called before
+     * the run, on the thread that starts it.
+     */
+    void prepare(DependencyGraph graph) {
+        ensureCapacity(graph.slotCount());
+        if (listed.length < graph.slotCount()) {
+            listed = Arrays.copyOf(listed, graph.slotCount());
+        }
+        for (int slot : graph.definitionOrder()) {
+            if (!listed[slot]) {
+                listed[slot] = true;
+                if (definitions == definitionOrder.length) {
+                    definitionOrder = Arrays.copyOf(definitionOrder, definitions * 2);
+                }
+                definitionOrder[definitions++] = slot;
+            }
+        }
+    }
+
+    @Override
+    public void setLong(int slot, long value) {
+        if (isDefined(slot)) {
+            super.setLong(slot, value);
+        } else {
+            synchronized (this) {
+                super.setLong(slot, value);
+            }
+        }
+    }
+
+    @Override
+    public void setDouble(int slot, double value) {
+        if (isDefined(slot)) {
+            super.setDouble(slot, value);
+        } else {
+            synchronized (this) {
+                super.setDouble(slot, value);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Number> values() {
+        Map<String, Number> values = new LinkedHashMap<>();
+        for (int i = 0; i < definitions; i++) {
+            int slot = definitionOrder[i];
+            if (isDefined(slot)) {
+                values.put(symbols().name(slot), get(slot));
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,136 @@
+package com.shaibachar.calc.dag;
+
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.parser.AssignOp;
+import com.shaibachar.calc.parser.PostfixOp;
+import com.shaibachar.calc.parser.UnaryOp;
+import com.shaibachar.calc.parser.expr.BinaryExpr;
+import com.shaibachar.calc.parser.expr.Expr;
+import com.shaibachar.calc.parser.expr.PostfixExpr;
+import com.shaibachar.calc.parser.expr.UnaryExpr;
+import com.shaibachar.calc.parser.expr.VarExpr;
+import com.shaibachar.calc.parser.stmt.AssignStmt;
+import com.shaibachar.calc.parser.stmt.Stmt;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * The variables a statement may read and write, as slots of a symbol table. Besides its target, a statement
+ * writes every variable it applies {@code ++} or {@code --} to, and it reads the variables of its expression and,
+ * for a compound assignment, its target. The sets over-approximate: a statement that fails part-way accesses
+ * fewer variables. A statement of an unknown kind is a barrier, treated as accessing every variable.
+ */
+public final class StatementAccess {
+    private static final int[] NONE = new int[0];
+    private static final StatementAccess BARRIER = new StatementAccess(NONE, 0, NONE, 0);
+
+    private final int[] reads;
+    private final int readCount;
+    private final int[] writes;
+    private final int writeCount;
+
+    private StatementAccess(int[] reads, int readCount, int[] writes, int writeCount) {
+        this.reads = reads;
+        this.readCount = readCount;
+        this.writes = writes;
+        this.writeCount = writeCount;
+    }
+
+    /**
+     * Analyzes a statement. Names are interned into {@code symbols}, so afterwards the executors resolve them
+     * without modifying the table. Expressions are walked with an explicit stack, so any nesting depth works.
+     *
+     * @param stmt the statement
+     * @param symbols the symbol table the slots are taken from
+     * @return the access sets of the statement
+     */
+    public static StatementAccess of(Stmt stmt, SymbolTable symbols) {
+        if (!(stmt instanceof AssignStmt assign)) {
+            return BARRIER;
+        }
+        int[] reads = new int[4];
+        int readCount = 0;
+        int[] writes = new int[2];
+        int writeCount = 0;
+        int target = slot(symbols, assign.slot(), assign.name());
+        writes[writeCount++] = target;
+        if (assign.op() != AssignOp.ASSIGN) {
+            reads[readCount++] = target;
+        }
+        ArrayDeque<Expr> pending = new ArrayDeque<>();
+        pending.push(assign.expr());
+        while (!pending.isEmpty()) {
+            Expr expr = pending.pop();
+            Expr operand = null;
+            boolean increments = false;
+            if (expr instanceof VarExpr var) {
+                if (readCount == reads.length) {
+                    reads = Arrays.copyOf(reads, readCount * 2);
+                }
+                reads[readCount++] = slot(symbols, var.slot(), var.name());
+            } else if (expr instanceof BinaryExpr binary) {
+                pending.push(binary.right());
+                pending.push(binary.left());
+            } else if (expr instanceof UnaryExpr unary) {
+                operand = unary.expr();
+                increments = unary.op() == UnaryOp.PRE_INC || unary.op() == UnaryOp.PRE_DEC;
+            } else if (expr instanceof PostfixExpr postfix) {
+                operand = postfix.expr();
+                increments = postfix.op() == PostfixOp.POST_INC || postfix.op() == PostfixOp.POST_DEC;
+            }
+            if (operand != null) {
+                if (increments && operand instanceof VarExpr var) {
+                    if (writeCount == writes.length) {
+                        writes = Arrays.copyOf(writes, writeCount * 2);
+                    }
+                    writes[writeCount++] = slot(symbols, var.slot(), var.name());
+                }
+                pending.push(operand);
+            }
+        }
+        return new StatementAccess(reads, readCount, writes, writeCount);
+    }
+
+    /**
+     * Returns whether the statement must be ordered after every statement before it and before every statement
+     * after it.
+     *
+     * @return true for a statement whose accesses are unknown
+     */
+    public boolean isBarrier() {
+        return this == BARRIER;
+    }
+
+    public int readCount() {
+        return readCount;
+    }
+
+    /**
+     * Returns a slot the statement may read. Slots may repeat.
+     *
+     * @param index the read index, below {@link #readCount()}
+     * @return the slot
+     */
+    public int read(int index) {
+        return reads[index];
+    }
+
+    public int writeCount() {
+        return writeCount;
+    }
+
+    /**
+     * Returns a slot the statement may write; the first one is the assignment target. Slots may repeat.
+     *
+     * @param index the write index, below {@link #writeCount()}
+     * @return the slot
+     */
+    public int write(int index) {
+        return writes[index];
+    }
+
+    private static int slot(SymbolTable symbols, int resolvedSlot, String name) {
+        return symbols.holds(resolvedSlot, name) ? resolvedSlot : symbols.intern(name);
+    }
+}
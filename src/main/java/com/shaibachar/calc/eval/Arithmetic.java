@@ -0,0 +1,128 @@
+package com.shaibachar.calc.eval;
+
+import com.shaibachar.calc.exceptions.ErrorMessages;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.parser.AssignOp;
+import com.shaibachar.calc.parser.BinaryOp;
+
+/**
+ * The calculator's arithmetic rules, shared by every component that computes values.
+ * Operations on two longs stay in long arithmetic (with Java overflow semantics); as soon as one operand is a
+ * double both are widened and the operation is done in double arithmetic. Division and modulo by zero raise
+ * {@link ErrorMessages#EVAL_DIVISION_BY_ZERO} in both domains.
+ * The primitive overloads are used on the hot paths; the {@link Number} overloads apply the promotion rule to
+ * boxed {@code Long}/{@code Double} values.
+ */
+public final class Arithmetic {
+    private Arithmetic() {
+    }
+
+    /**
+     * Applies a binary operator in long arithmetic.
+     *
+     * @param op the operator
+     * @param left the left operand
+     * @param right the right operand
+     * @return the long result
+     * @throws EvalException on division or modulo by zero
+     */
+    public static long apply(BinaryOp op, long left, long right) {
+        return switch (op) {
+            case ADD -> left + right;
+            case SUB -> left - right;
+            case MUL -> left * right;
+            case DIV -> {
+                if (right == 0L) {
+                    throw new EvalException(ErrorMessages.EVAL_DIVISION_BY_ZERO);
+                }
+                yield left / right;
+            }
+            case MOD -> {
+                if (right == 0L) {
+                    throw new EvalException(ErrorMessages.EVAL_DIVISION_BY_ZERO);
+                }
+                yield left % right;
+            }
+        };
+    }
+
+    /**
+     * Applies a binary operator in double arithmetic.
+     *
+     * @param op the operator
+     * @param left the left operand
+     * @param right the right operand
+     * @return the double result
+     * @throws EvalException on division or modulo by zero (including {@code -0.0})
+     */
+    public static double apply(BinaryOp op, double left, double right) {
+        return switch (op) {
+            case ADD -> left + right;
+            case SUB -> left - right;
+            case MUL -> left * right;
+            case DIV -> {
+                if (right == 0.0) {
+                    throw new EvalException(ErrorMessages.EVAL_DIVISION_BY_ZERO);
+                }
+                yield left / right;
+            }
+            case MOD -> {
+                if (right == 0.0) {
+                    throw new EvalException(ErrorMessages.EVAL_DIVISION_BY_ZERO);
+                }
+                yield left % right;
+            }
+        };
+    }
+
+    /**
+     * Applies a binary operator to boxed values, promoting to double if either operand is floating.
+     *
+     * @param op the operator
+     * @param left the left operand
+     * @param right the right operand
+     * @return a {@code Long} or {@code Double} result
+     * @throws EvalException on division or modulo by zero
+     */
+    public static Number apply(BinaryOp op, Number left, Number right) {
+        if (isFloating(left) || isFloating(right)) {
+            return apply(op, left.doubleValue(), right.doubleValue());
+        }
+        return apply(op, left.longValue(), right.longValue());
+    }
+
+    /**
+     * Negates a boxed value, keeping its type.
+     *
+     * @param value the value
+     * @return the negated {@code Long} or {@code Double}
+     */
+    public static Number negate(Number value) {
+        if (isFloating(value)) {
+            return -value.doubleValue();
+        }
+        return -value.longValue();
+    }
+
+    public static boolean isFloating(Number value) {
+        return value instanceof Float || value instanceof Double;
+    }
+
+    /**
+     * Returns the binary operator applied by a compound assignment.
+     *
+     * @param op a compound assignment operator
+     * @return the corresponding binary operator
+     * @throws IllegalStateException for {@link AssignOp#ASSIGN}, which has none
+     */
+    public static BinaryOp compoundOperator(AssignOp op) {
+        return switch (op) {
+            case PLUS_ASSIGN -> BinaryOp.ADD;
+            case MINUS_ASSIGN -> BinaryOp.SUB;
+            case MUL_ASSIGN -> BinaryOp.MUL;
+            case DIV_ASSIGN -> BinaryOp.DIV;
+            case MOD_ASSIGN -> BinaryOp.MOD;
+            default -> throw new IllegalStateException(ErrorMessages.evalUnexpectedAssignOp(op));
+        };
+    }
+}
@@ -3,22 +3,51 @@ package com.shaibachar.calc.eval;
 import com.shaibachar.calc.exceptions.ErrorMessages;
 import com.shaibachar.calc.exceptions.EvalException;
 
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Environment class that holds variable bindings for the expression evaluation.
  * It provides methods to get and set variable values, and to retrieve all variable bindings.
  * This class is used during the evaluation of expressions to keep track of variable values.
- * The environment is implemented as a LinkedHashMap to maintain the order of variable definitions.
+ * Variables live in slots assigned by the environment's {@link SymbolTable}; each slot stores its value
+ * unboxed in a {@code long[]} or {@code double[]} and a type tag records which one is current.
+ * The order of first definition is recorded separately, so {@link #values()} keeps insertion order.
  * It throws an EvalException if an attempt is made to access an undefined variable.
  *
  */
 public class Environment {
     private static final Logger LOGGER = Logger.getLogger(Environment.class.getName());
-    // LinkedHashMap to store variable names and their corresponding numeric values
-    private final LinkedHashMap<String, Number> values = new LinkedHashMap<>();
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final byte UNDEFINED = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+
+    private final SymbolTable symbols;
+    private long[] longs = new long[INITIAL_CAPACITY];
+    private double[] doubles = new double[INITIAL_CAPACITY];
+    private byte[] tags = new byte[INITIAL_CAPACITY];
+    // Slots in the order their variables were first defined
+    private int[] order = new int[INITIAL_CAPACITY];
+    private int defined;
+
+    public Environment() {
+        this(new SymbolTable());
+    }
+
+    /**
+     * Creates an empty environment over an existing symbol table, so that statements resolved once
+     * against the table can be executed in any number of fresh environments.
+     *
+     * @param symbols the symbol table assigning the slots
+     */
+    public Environment(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
 
     /**
      * Retrieves the value of a variable from the environment.
@@ -28,11 +57,11 @@ public class Environment {
      */
     public Number get(String name) {
         LOGGER.fine("Reading variable: " + name);
-        Number value = values.get(name);
-        if (value == null) {
+        int slot = symbols.find(name);
+        if (slot < 0) {
             throw new EvalException(ErrorMessages.envUndefinedVariable(name));
         }
-        return value;
+        return get(slot);
     }
 
     /**
@@ -45,11 +74,181 @@ public class Environment {
      */
     public void set(String name, Number value) {
         LOGGER.fine("Setting variable: " + name + " = " + value);
-        values.put(name, value);
+        set(symbols.intern(name), value);
     }
 
+    /**
+     * Returns the variable bindings in the order the variables were first assigned.
+     * The map is a snapshot; later assignments are not reflected in it.
+     *
+     * @return the variable names mapped to their boxed values
+     */
     public Map<String, Number> values() {
         LOGGER.fine("Reading environment values");
+        Map<String, Number> values = new LinkedHashMap<>();
+        for (int i = 0; i < defined; i++) {
+            int slot = order[i];
+            values.put(symbols.name(slot), get(slot));
+        }
         return values;
     }
+
+    /**
+     * Returns the symbol table that assigns this environment's slots.
+     * Resolve names against it (see {@link SlotResolver}) to use the slot-based accessors.
+     *
+     * @return the symbol table
+     */
+    public SymbolTable symbols() {
+        return symbols;
+    }
+
+    /**
+     * Returns the slot of a variable, assigning one if needed. The variable is not defined by this call.
+     *
+     * @param name the variable name
+     * @return the slot of the variable
+     */
+    public int slot(String name) {
+        return symbols.intern(name);
+    }
+
+    /**
+     * Returns the number of defined variables.
+     *
+     * @return the variable count
+     */
+    public int size() {
+        return defined;
+    }
+
+    /**
+     * Grows the storage to hold at least {@code slotCount} slots, so that defining variables in them does not
+     * reallocate.
+     *
+     * @param slotCount the number of slots to make room for
+     */
+    public void ensureCapacity(int slotCount) {
+        if (slotCount > tags.length) {
+            int capacity = Math.max(tags.length * 2, slotCount);
+            longs = Arrays.copyOf(longs, capacity);
+            doubles = Arrays.copyOf(doubles, capacity);
+            tags = Arrays.copyOf(tags, capacity);
+        }
+        if (slotCount > order.length) {
+            order = Arrays.copyOf(order, Math.max(order.length * 2, slotCount));
+        }
+    }
+
+    /**
+     * Undefines every variable, keeping the symbol table and the storage, so that the environment and the
+     * executors working on it can run another script. Costs time proportional to the number of defined variables.
+     */
+    public void clear() {
+        for (int i = 0; i < defined; i++) {
+            tags[order[i]] = UNDEFINED;
+        }
+        defined = 0;
+    }
+
+    public boolean isDefined(int slot) {
+        return slot < tags.length && tags[slot] != UNDEFINED;
+    }
+
+    /**
+     * Returns whether the variable in the slot currently holds a double.
+     *
+     * @param slot the variable slot
+     * @return true for a double value, false for a long value
+     * @throws EvalException if the variable is not defined
+     */
+    public boolean isDouble(int slot) {
+        return tag(slot) == DOUBLE;
+    }
+
+    /**
+     * Returns the long value of the variable in the slot. Only valid when {@link #isDouble(int)} is false.
+     *
+     * @param slot the variable slot
+     * @return the long value
+     * @throws EvalException if the variable is not defined
+     */
+    public long getLong(int slot) {
+        tag(slot);
+        return longs[slot];
+    }
+
+    /**
+     * Returns the value of the variable in the slot as a double, widening long values.
+     *
+     * @param slot the variable slot
+     * @return the value as a double
+     * @throws EvalException if the variable is not defined
+     */
+    public double getDouble(int slot) {
+        return tag(slot) == DOUBLE ? doubles[slot] : longs[slot];
+    }
+
+    /**
+     * Returns the value of the variable in the slot, boxed as a {@code Long} or {@code Double}.
+     *
+     * @param slot the variable slot
+     * @return the boxed value
+     * @throws EvalException if the variable is not defined
+     */
+    public Number get(int slot) {
+        return tag(slot) == DOUBLE ? (Number) doubles[slot] : (Number) longs[slot];
+    }
+
+    public void setLong(int slot, long value) {
+        define(slot, LONG);
+        longs[slot] = value;
+    }
+
+    public void setDouble(int slot, double value) {
+        define(slot, DOUBLE);
+        doubles[slot] = value;
+    }
+
+    /**
+     * Stores a boxed value in the slot: {@code Double} and {@code Float} values are stored as doubles,
+     * every other {@code Number} as a long.
+     *
+     * @param slot the variable slot
+     * @param value the value to store
+     */
+    public void set(int slot, Number value) {
+        if (value instanceof Double || value instanceof Float) {
+            setDouble(slot, value.doubleValue());
+        } else {
+            setLong(slot, value.longValue());
+        }
+    }
+
+    private byte tag(int slot) {
+        byte tag = slot < tags.length ? tags[slot] : UNDEFINED;
+        if (tag == UNDEFINED) {
+            throw new EvalException(ErrorMessages.envUndefinedVariable(symbols.name(slot)));
+        }
+        return tag;
+    }
+
+    private void define(int slot, byte tag) {
+        if (slot >= tags.length) {
+            int capacity = Math.max(tags.length * 2, Math.max(symbols.size(), slot + 1));
+            longs = Arrays.copyOf(longs, capacity);
+            doubles = Arrays.copyOf(doubles, capacity);
+            tags = Arrays.copyOf(tags, capacity);
+        }
+        if (tags[slot] == UNDEFINED) {
+            if (defined == order.length) {
+                order = Arrays.copyOf(order, defined * 2);
+            }
+            order[defined++] = slot;
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Defining variable: " + symbols.name(slot));
+            }
+        }
+        tags[slot] = tag;
+    }
 }
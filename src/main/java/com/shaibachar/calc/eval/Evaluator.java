@@ -3,37 +3,66 @@ package com.shaibachar.calc.eval;
 import com.shaibachar.calc.exceptions.ErrorMessages;
 import com.shaibachar.calc.exceptions.EvalException;
 import com.shaibachar.calc.parser.AssignOp;
+import com.shaibachar.calc.parser.BinaryOp;
 import com.shaibachar.calc.parser.stmt.AssignStmt;
 import com.shaibachar.calc.parser.expr.BinaryExpr;
 import com.shaibachar.calc.parser.expr.Expr;
 import com.shaibachar.calc.parser.expr.LiteralExpr;
 import com.shaibachar.calc.parser.expr.PostfixExpr;
+import com.shaibachar.calc.parser.expr.ResultType;
 import com.shaibachar.calc.parser.PostfixOp;
 import com.shaibachar.calc.parser.stmt.Stmt;
 import com.shaibachar.calc.parser.expr.UnaryExpr;
 import com.shaibachar.calc.parser.UnaryOp;
 import com.shaibachar.calc.parser.expr.VarExpr;
+import com.shaibachar.calc.parser.flat.AstArena;
 
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Evaluator class that evaluates statements and expressions based on the provided environment.
  * It supports variable assignments, arithmetic operations, and unary/postfix operators.
  * The evaluator processes statements and expressions recursively, updating the environment as needed.
+ * Intermediate values are never boxed: subtrees whose result type is known statically (see {@link ResultType})
+ * are evaluated in primitive long or double arithmetic, and the rest carries its type next to the primitive value.
  * It throws an EvalException for unsupported statement types, expression types, or invalid operations (e.g., division by zero).
- * The main method is `execute`, which takes a statement and evaluates it, while the `eval` method evaluates expressions.
+ * The main method is `execute`, which takes a statement and evaluates it. Expressions are evaluated by `evalLong` and
+ * `evalDouble` when their type is known statically, and otherwise by `evalDynamic`, which leaves the value in a long or
+ * double result register and returns which one holds it.
  * The evaluator ensures that variables are defined before use and that only assignable variables are modified by unary operators.
  * The class is designed to be extensible, allowing for additional statement and expression types to be added in the future.
  * Overall, the Evaluator class serves as the core component for executing the logic of the calculator application,
  * interpreting the parsed abstract syntax tree (AST) and managing variable state through the environment.
+ * Statements parsed into a flat {@link AstArena} are run by {@link #execute(AstArena, int)}, which scans their
+ * post-ordered nodes sequentially with an explicit value stack instead of recursing.
  *
  */
-public class Evaluator {
+public class Evaluator implements StatementExecutor {
     private static final Logger LOGGER = Logger.getLogger(Evaluator.class.getName());
     private final Environment env;
+    private final SymbolTable symbols;
+    // Result registers of the unboxed evaluation: evalDynamic returns which one holds the value
+    private long longResult;
+    private double doubleResult;
+    // Value stack of the arena scan, allocated on first use
+    private long[] longStack;
+    private double[] doubleStack;
+    private boolean[] doubleFlags;
 
     public Evaluator(Environment env) {
         this.env = env;
+        this.symbols = env.symbols();
+    }
+
+    /**
+     * Returns the symbol table of the environment this evaluator works on, for resolving names ahead of time.
+     *
+     * @return the environment's symbol table
+     */
+    @Override
+    public SymbolTable symbols() {
+        return symbols;
     }
 
     /**
@@ -44,10 +73,12 @@ public class Evaluator {
      * For compound assignments (e.g., +=, -=), it retrieves the current value of the variable,
      * evaluates the right-hand side expression, performs the specified operation, and updates the variable
      * in the environment with the result.
+     * Values are computed and stored unboxed; see {@link #evalDynamic(Expr)}.
      * If the statement type is unsupported, it throws an EvalException.
      *
      * @param stmt the statement to execute, which should be an instance of AssignStmt
      */
+    @Override
     public void execute(Stmt stmt) {
         LOGGER.fine("Executing statement");
         long startNs = System.nanoTime();
@@ -57,183 +88,336 @@ public class Evaluator {
         }
 
         String name = assignStmt.name();
+        int slot = slotOf(name, assignStmt.slot());
         AssignOp op = assignStmt.op();
-        // validates that the variable is defined before use for compound assignments
         if (op == AssignOp.ASSIGN) {
-            Number rightHandSide = eval(assignStmt.expr());
-            env.set(name, rightHandSide);
-            LOGGER.fine("Assigned " + name + " = " + rightHandSide);
+            if (evalDynamic(assignStmt.expr())) {
+                env.setDouble(slot, doubleResult);
+            } else {
+                env.setLong(slot, longResult);
+            }
+        } else {
+            BinaryOp binaryOp = Arithmetic.compoundOperator(op);
+            // validates that the variable is defined before use, and snapshots it before the RHS side effects
+            boolean snapshotIsDouble = env.isDouble(slot);
+            long longSnapshot = snapshotIsDouble ? 0L : env.getLong(slot);
+            double doubleSnapshot = snapshotIsDouble ? env.getDouble(slot) : 0.0;
+            boolean rightIsDouble = evalDynamic(assignStmt.expr());
+            if (snapshotIsDouble || rightIsDouble) {
+                double left = snapshotIsDouble ? doubleSnapshot : longSnapshot;
+                double right = rightIsDouble ? doubleResult : longResult;
+                env.setDouble(slot, Arithmetic.apply(binaryOp, left, right));
+            } else {
+                env.setLong(slot, Arithmetic.apply(binaryOp, longSnapshot, longResult));
+            }
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Updated " + name + " = " + env.get(slot));
             long elapsedMs = (System.nanoTime() - startNs) / 1_000_000;
             LOGGER.fine("perf.component=evaluator_execute elapsed_ms=" + elapsedMs);
-            return;
-        }
-
-        Number leftHandSideSnapshot = env.get(name);
-        Number rightHandSide = eval(assignStmt.expr());
-        Number result = switch (op) {
-            case PLUS_ASSIGN -> add(leftHandSideSnapshot, rightHandSide);
-            case MINUS_ASSIGN -> subtract(leftHandSideSnapshot, rightHandSide);
-            case MUL_ASSIGN -> multiply(leftHandSideSnapshot, rightHandSide);
-            case DIV_ASSIGN -> divide(leftHandSideSnapshot, rightHandSide);
-            case MOD_ASSIGN -> modulo(leftHandSideSnapshot, rightHandSide);
-            default -> throw new IllegalStateException(ErrorMessages.evalUnexpectedAssignOp(op));
-        };
-        env.set(name, result);
-        LOGGER.fine("Updated " + name + " = " + result);
-        long elapsedMs = (System.nanoTime() - startNs) / 1_000_000;
-        LOGGER.fine("perf.component=evaluator_execute elapsed_ms=" + elapsedMs);
+        }
     }
 
     /**
-     * Evaluates an expression recursively. It checks the type of the expression and processes it accordingly:
-     * - For literal expressions, it returns the literal value.
-     * - For variable expressions, it retrieves the variable's value from the environment.
-     * - For unary expressions, it evaluates the operand and applies the unary operator
-     * (e.g., +, -, pre-increment, pre-decrement).
-     * - For postfix expressions, it evaluates the operand and applies the postfix operator
-     * (e.g., post-increment, post-decrement).
-     * - For binary expressions, it evaluates the left and right operands and applies the binary operator
-     * (e.g., +, -, *, /, %).
-     * If the expression type is unsupported, it throws an EvalException.
+     * Executes a statement of a flat arena. The arena's variable slots must belong to this environment's symbol
+     * table. The nodes of the statement are scanned in order, which evaluates operands left to right; a compound
+     * assignment reads its variable before the scan, as in {@link #execute(Stmt)}.
      *
-     * @param expr the expression to evaluate, which can be an instance of LiteralExpr, VarExpr, UnaryExpr, PostfixExpr,
-     *            or BinaryExpr
-     * @return the evaluated integer result of the expression
+     * @param arena the arena holding the statement
+     * @param statement the index of the statement in the arena
+     * @throws IllegalArgumentException if the arena resolves names with another symbol table
      */
-    private Number eval(Expr expr) {
-        LOGGER.fine("Evaluating expression: " + expr.getClass().getSimpleName());
-        if (expr instanceof LiteralExpr literal) {
-            return literal.value();
+    public void execute(AstArena arena, int statement) {
+        if (arena.symbols() != symbols) {
+            throw new IllegalArgumentException("The arena was not resolved against this environment's symbols");
         }
-        if (expr instanceof VarExpr varExpr) {
-            return env.get(varExpr.name());
+        int slot = arena.target(statement);
+        AssignOp op = arena.assignOp(statement);
+        int start = arena.start(statement);
+        int end = arena.root(statement) + 1;
+        ensureStack(end - start + 1);
+        int top = 0;
+        if (op != AssignOp.ASSIGN) {
+            // validates that the variable is defined before use, and snapshots it before the RHS side effects
+            top = push(top, slot);
         }
-        if (expr instanceof UnaryExpr unary) {
-            return evalUnary(unary);
+        for (int node = start; node < end; node++) {
+            switch (arena.kind(node)) {
+                case LONG_LITERAL -> {
+                    longStack[top] = arena.longValue(node);
+                    doubleFlags[top++] = false;
+                }
+                case DOUBLE_LITERAL -> {
+                    doubleStack[top] = arena.doubleValue(node);
+                    doubleFlags[top++] = true;
+                }
+                case VARIABLE -> top = push(top, arena.slot(node));
+                case PRE_INC -> {
+                    increment(arena.slot(node), 1L);
+                    top = push(top, arena.slot(node));
+                }
+                case PRE_DEC -> {
+                    increment(arena.slot(node), -1L);
+                    top = push(top, arena.slot(node));
+                }
+                case POST_INC -> {
+                    top = push(top, arena.slot(node));
+                    increment(arena.slot(node), 1L);
+                }
+                case POST_DEC -> {
+                    top = push(top, arena.slot(node));
+                    increment(arena.slot(node), -1L);
+                }
+                case NOT_ASSIGNABLE -> throw new EvalException(ErrorMessages.EVAL_OPERAND_NOT_ASSIGNABLE);
+                case PLUS -> {
+                    // the value is unchanged
+                }
+                case NEGATE -> {
+                    longStack[top - 1] = -longStack[top - 1];
+                    doubleStack[top - 1] = -doubleStack[top - 1];
+                }
+                default -> top = applyOnStack(arena.kind(node).binaryOp(), top);
+            }
         }
-        if (expr instanceof PostfixExpr postfix) {
-            return evalPostfix(postfix);
+        if (op != AssignOp.ASSIGN) {
+            top = applyOnStack(Arithmetic.compoundOperator(op), top);
         }
-        if (expr instanceof BinaryExpr binary) {
-            Number left = eval(binary.left());
-            Number right = eval(binary.right());
-            return switch (binary.op()) {
-                case ADD -> add(left, right);
-                case SUB -> subtract(left, right);
-                case MUL -> multiply(left, right);
-                case DIV -> divide(left, right);
-                case MOD -> modulo(left, right);
-            };
+        if (doubleFlags[top - 1]) {
+            env.setDouble(slot, doubleStack[top - 1]);
+        } else {
+            env.setLong(slot, longStack[top - 1]);
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Updated " + symbols.name(slot) + " = " + env.get(slot));
         }
-        throw new EvalException(ErrorMessages.EVAL_UNSUPPORTED_EXPRESSION);
     }
 
-    private Number evalUnary(UnaryExpr unary) {
-        LOGGER.fine("Evaluating unary expression: " + unary.op());
-        UnaryOp op = unary.op();
-        Expr operand = unary.expr();
-        return switch (op) {
-            case PLUS -> eval(operand);
-            case MINUS -> negate(eval(operand));
-            case PRE_INC -> {
-                String name = requireAssignableVariable(operand);
-                Number updated = add(env.get(name), 1L);
-                env.set(name, updated);
-                yield updated;
-            }
-            case PRE_DEC -> {
-                String name = requireAssignableVariable(operand);
-                Number updated = subtract(env.get(name), 1L);
-                env.set(name, updated);
-                yield updated;
-            }
-        };
+    private int push(int top, int slot) {
+        if (load(slot)) {
+            doubleStack[top] = doubleResult;
+            doubleFlags[top] = true;
+        } else {
+            longStack[top] = longResult;
+            doubleFlags[top] = false;
+        }
+        return top + 1;
     }
 
-    private Number evalPostfix(PostfixExpr postfix) {
-        LOGGER.fine("Evaluating postfix expression: " + postfix.op());
-        String name = requireAssignableVariable(postfix.expr());
-        Number old = env.get(name);
-        if (postfix.op() == PostfixOp.POST_INC) {
-            env.set(name, add(old, 1L));
+    private int applyOnStack(BinaryOp op, int top) {
+        int right = top - 1;
+        int left = top - 2;
+        if (doubleFlags[left] || doubleFlags[right]) {
+            double l = doubleFlags[left] ? doubleStack[left] : longStack[left];
+            double r = doubleFlags[right] ? doubleStack[right] : longStack[right];
+            doubleStack[left] = Arithmetic.apply(op, l, r);
+            doubleFlags[left] = true;
         } else {
-            env.set(name, subtract(old, 1L));
+            longStack[left] = Arithmetic.apply(op, longStack[left], longStack[right]);
         }
-        return old;
+        return right;
     }
 
-    private String requireAssignableVariable(Expr expr) {
-        LOGGER.fine("Validating assignable operand");
-        if (expr instanceof VarExpr varExpr) {
-            return varExpr.name();
+    /**
+     * Makes room for {@code capacity} values on the arena value stack; a statement of n nodes never holds more
+     * than n values, plus one for a compound assignment's snapshot.
+     */
+    private void ensureStack(int capacity) {
+        if (longStack == null || longStack.length < capacity) {
+            int length = Math.max(capacity, 16);
+            longStack = new long[length];
+            doubleStack = new double[length];
+            doubleFlags = new boolean[length];
         }
-        throw new EvalException(ErrorMessages.EVAL_OPERAND_NOT_ASSIGNABLE);
     }
 
-    private Number divide(Number left, Number right) {
-        LOGGER.fine("Dividing " + left + " by " + right);
-        if (isZero(right)) {
-            throw new EvalException(ErrorMessages.EVAL_DIVISION_BY_ZERO);
+    /**
+     * Evaluates an expression without boxing. Subtrees whose {@link Expr#resultType() static type} is known are
+     * evaluated by {@link #evalLong(Expr)} or {@link #evalDouble(Expr)}; the rest is evaluated here with the
+     * type decided by the values read from the environment.
+     * Operands are always evaluated left to right, so side effects of ++/-- happen in source order.
+     *
+     * @param expr the expression to evaluate
+     * @return true if the result is a double (in {@code doubleResult}), false if it is a long (in {@code longResult})
+     */
+    private boolean evalDynamic(Expr expr) {
+        switch (expr.resultType()) {
+            case LONG -> {
+                longResult = evalLong(expr);
+                return false;
+            }
+            case DOUBLE -> {
+                doubleResult = evalDouble(expr);
+                return true;
+            }
+            default -> {
+                // resolved below
+            }
+        }
+        if (expr instanceof VarExpr varExpr) {
+            return load(slotOf(varExpr.name(), varExpr.slot()));
+        }
+        if (expr instanceof BinaryExpr binary) {
+            // A dynamic binary expression has no double operand, so long arithmetic applies unless a value is a double
+            boolean leftIsDouble = evalDynamic(binary.left());
+            long leftLong = longResult;
+            double leftDouble = doubleResult;
+            boolean rightIsDouble = evalDynamic(binary.right());
+            if (leftIsDouble || rightIsDouble) {
+                double left = leftIsDouble ? leftDouble : leftLong;
+                double right = rightIsDouble ? doubleResult : longResult;
+                doubleResult = Arithmetic.apply(binary.op(), left, right);
+                return true;
+            }
+            longResult = Arithmetic.apply(binary.op(), leftLong, longResult);
+            return false;
+        }
+        if (expr instanceof UnaryExpr unary) {
+            return evalUnary(unary);
+        }
+        if (expr instanceof PostfixExpr postfix) {
+            return evalPostfix(postfix);
         }
-        if (isFloating(left) || isFloating(right)) {
-            return left.doubleValue() / right.doubleValue();
+        if (expr instanceof LiteralExpr literal) {
+            Number value = literal.value();
+            if (Arithmetic.isFloating(value)) {
+                doubleResult = value.doubleValue();
+                return true;
+            }
+            longResult = value.longValue();
+            return false;
         }
-        return left.longValue() / right.longValue();
+        throw new EvalException(ErrorMessages.EVAL_UNSUPPORTED_EXPRESSION);
     }
 
-    private Number modulo(Number left, Number right) {
-        LOGGER.fine("Modulo " + left + " by " + right);
-        if (isZero(right)) {
-            throw new EvalException(ErrorMessages.EVAL_DIVISION_BY_ZERO);
+    /**
+     * Evaluates an expression whose static type is {@link ResultType#LONG}. Such an expression contains only
+     * long literals and sign/arithmetic operators, so it needs no environment access and no type checks.
+     */
+    private long evalLong(Expr expr) {
+        if (expr instanceof LiteralExpr literal) {
+            return literal.value().longValue();
         }
-        if (isFloating(left) || isFloating(right)) {
-            return left.doubleValue() % right.doubleValue();
+        if (expr instanceof BinaryExpr binary) {
+            long left = evalLong(binary.left());
+            return Arithmetic.apply(binary.op(), left, evalLong(binary.right()));
         }
-        return left.longValue() % right.longValue();
+        if (expr instanceof UnaryExpr unary) {
+            long value = evalLong(unary.expr());
+            return unary.op() == UnaryOp.MINUS ? -value : value;
+        }
+        throw new EvalException(ErrorMessages.EVAL_UNSUPPORTED_EXPRESSION);
     }
 
-    private Number add(Number left, Number right) {
-        LOGGER.fine("Adding " + left + " and " + right);
-        if (isFloating(left) || isFloating(right)) {
-            return left.doubleValue() + right.doubleValue();
+    /**
+     * Evaluates an expression whose static type is {@link ResultType#DOUBLE}. Operands are evaluated in their own
+     * type and widened afterwards, exactly as the promotion rule requires: {@code (a + b) * 2.0} adds {@code a}
+     * and {@code b} as longs when they are longs.
+     */
+    private double evalDouble(Expr expr) {
+        if (expr instanceof LiteralExpr literal) {
+            return literal.value().doubleValue();
         }
-        return left.longValue() + right.longValue();
+        if (expr instanceof BinaryExpr binary) {
+            double left = widen(binary.left());
+            return Arithmetic.apply(binary.op(), left, widen(binary.right()));
+        }
+        if (expr instanceof UnaryExpr unary) {
+            double value = evalDouble(unary.expr());
+            return unary.op() == UnaryOp.MINUS ? -value : value;
+        }
+        throw new EvalException(ErrorMessages.EVAL_UNSUPPORTED_EXPRESSION);
     }
 
-    private Number subtract(Number left, Number right) {
-        LOGGER.fine("Subtracting " + right + " from " + left);
-        if (isFloating(left) || isFloating(right)) {
-            return left.doubleValue() - right.doubleValue();
-        }
-        return left.longValue() - right.longValue();
+    private double widen(Expr expr) {
+        return switch (expr.resultType()) {
+            case LONG -> evalLong(expr);
+            case DOUBLE -> evalDouble(expr);
+            case DYNAMIC -> evalDynamic(expr) ? doubleResult : longResult;
+        };
+    }
+
+    private boolean evalUnary(UnaryExpr unary) {
+        UnaryOp op = unary.op();
+        Expr operand = unary.expr();
+        return switch (op) {
+            case PLUS -> evalDynamic(operand);
+            case MINUS -> {
+                boolean isDouble = evalDynamic(operand);
+                doubleResult = -doubleResult;
+                longResult = -longResult;
+                yield isDouble;
+            }
+            case PRE_INC -> increment(requireAssignableVariable(operand), 1L);
+            case PRE_DEC -> increment(requireAssignableVariable(operand), -1L);
+        };
     }
 
-    private Number multiply(Number left, Number right) {
-        LOGGER.fine("Multiplying " + left + " and " + right);
-        if (isFloating(left) || isFloating(right)) {
-            return left.doubleValue() * right.doubleValue();
+    private boolean evalPostfix(PostfixExpr postfix) {
+        int slot = requireAssignableVariable(postfix.expr());
+        boolean isDouble = load(slot);
+        long oldLong = longResult;
+        double oldDouble = doubleResult;
+        increment(slot, postfix.op() == PostfixOp.POST_INC ? 1L : -1L);
+        longResult = oldLong;
+        doubleResult = oldDouble;
+        return isDouble;
+    }
+
+    /**
+     * Reads a variable into the result registers.
+     *
+     * @param slot the variable slot
+     * @return true if the variable holds a double
+     * @throws EvalException if the variable is not defined
+     */
+    private boolean load(int slot) {
+        if (env.isDouble(slot)) {
+            doubleResult = env.getDouble(slot);
+            return true;
         }
-        return left.longValue() * right.longValue();
+        longResult = env.getLong(slot);
+        return false;
     }
 
-    private Number negate(Number value) {
-        LOGGER.fine("Negating " + value);
-        if (isFloating(value)) {
-            return -value.doubleValue();
+    /**
+     * Adds {@code delta} (1 or -1) to the variable in place and leaves the updated value in the result registers.
+     * Adding -1 is the same as subtracting 1 for both long and double values.
+     *
+     * @param slot the variable slot
+     * @param delta the amount to add
+     * @return true if the variable holds a double
+     * @throws EvalException if the variable is not defined
+     */
+    private boolean increment(int slot, long delta) {
+        if (env.isDouble(slot)) {
+            doubleResult = env.getDouble(slot) + delta;
+            env.setDouble(slot, doubleResult);
+            return true;
         }
-        return -value.longValue();
+        longResult = env.getLong(slot) + delta;
+        env.setLong(slot, longResult);
+        return false;
     }
 
-    private boolean isFloating(Number value) {
-        LOGGER.fine("Checking floating type for " + value);
-        return value instanceof Float || value instanceof Double;
+    private int requireAssignableVariable(Expr expr) {
+        if (expr instanceof VarExpr varExpr) {
+            return slotOf(varExpr.name(), varExpr.slot());
+        }
+        throw new EvalException(ErrorMessages.EVAL_OPERAND_NOT_ASSIGNABLE);
     }
 
-    private boolean isZero(Number value) {
-        LOGGER.fine("Checking zero for " + value);
-        if (isFloating(value)) {
-            return value.doubleValue() == 0.0;
+    /**
+     * Returns the environment slot of a variable. Slots resolved ahead of time (by {@link SlotResolver} or the
+     * parser) are used directly when they belong to this environment's symbol table; other names are looked up.
+     *
+     * @param name the variable name
+     * @param resolvedSlot the slot carried by the AST node, or -1
+     * @return the slot of the variable in this environment
+     */
+    private int slotOf(String name, int resolvedSlot) {
+        if (symbols.holds(resolvedSlot, name)) {
+            return resolvedSlot;
         }
-        return value.longValue() == 0L;
+        return env.slot(name);
     }
 }
@@ -0,0 +1,240 @@
+package com.shaibachar.calc.eval;
+
+import com.shaibachar.calc.exceptions.ErrorMessages;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.parser.AssignOp;
+import com.shaibachar.calc.parser.BinaryOp;
+import com.shaibachar.calc.parser.PostfixOp;
+import com.shaibachar.calc.parser.UnaryOp;
+import com.shaibachar.calc.parser.expr.BinaryExpr;
+import com.shaibachar.calc.parser.expr.Expr;
+import com.shaibachar.calc.parser.expr.LiteralExpr;
+import com.shaibachar.calc.parser.expr.PostfixExpr;
+import com.shaibachar.calc.parser.expr.UnaryExpr;
+import com.shaibachar.calc.parser.expr.VarExpr;
+import com.shaibachar.calc.parser.stmt.AssignStmt;
+import com.shaibachar.calc.parser.stmt.Stmt;
+
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An evaluator with the semantics of {@link Evaluator} that walks expressions with an explicit stack instead of
+ * recursion, so that expressions nested tens of thousands of levels deep (as produced by
+ * {@link com.shaibachar.calc.parser.IterativeParser}) are limited by the heap rather than by the thread stack.
+ * Each pending node is kept on a work stack together with how many of its operands have been evaluated; values
+ * are kept unboxed on parallel {@code long}/{@code double} stacks with a type flag, and promoted to double as
+ * soon as one operand of an operation is a double.
+ */
+public class IterativeEvaluator implements StatementExecutor {
+    private static final Logger LOGGER = Logger.getLogger(IterativeEvaluator.class.getName());
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Environment env;
+    private final SymbolTable symbols;
+
+    // Work stack: nodes being evaluated and the number of their operands evaluated so far
+    private Expr[] nodes = new Expr[INITIAL_CAPACITY];
+    private int[] visited = new int[INITIAL_CAPACITY];
+    private int nodeCount;
+
+    // Value stack
+    private long[] longValues = new long[INITIAL_CAPACITY];
+    private double[] doubleValues = new double[INITIAL_CAPACITY];
+    private boolean[] isDouble = new boolean[INITIAL_CAPACITY];
+    private int valueCount;
+
+    public IterativeEvaluator(Environment env) {
+        this.env = env;
+        this.symbols = env.symbols();
+    }
+
+    @Override
+    public SymbolTable symbols() {
+        return symbols;
+    }
+
+    /**
+     * Executes an assignment statement. A compound assignment reads the variable (failing if it is undefined)
+     * before the right-hand side is evaluated, exactly like {@link Evaluator#execute(Stmt)}.
+     *
+     * @param stmt the statement to execute, which should be an instance of AssignStmt
+     */
+    @Override
+    public void execute(Stmt stmt) {
+        if (!(stmt instanceof AssignStmt assignStmt)) {
+            throw new EvalException(ErrorMessages.EVAL_UNSUPPORTED_STATEMENT);
+        }
+
+        String name = assignStmt.name();
+        int slot = slotOf(name, assignStmt.slot());
+        AssignOp op = assignStmt.op();
+        valueCount = 0;
+        if (op != AssignOp.ASSIGN) {
+            // validates that the variable is defined before use, and snapshots it before the RHS side effects
+            load(slot);
+        }
+        evaluate(assignStmt.expr());
+        if (op != AssignOp.ASSIGN) {
+            apply(Arithmetic.compoundOperator(op));
+        }
+        if (isDouble[0]) {
+            env.setDouble(slot, doubleValues[0]);
+        } else {
+            env.setLong(slot, longValues[0]);
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Updated " + name + " = " + env.get(slot));
+        }
+    }
+
+    /**
+     * Evaluates an expression and pushes its value on the value stack. Binary operands are evaluated left to
+     * right, so side effects of ++/-- happen in source order.
+     *
+     * @param root the expression to evaluate
+     */
+    private void evaluate(Expr root) {
+        nodeCount = 0;
+        pushNode(root);
+        while (nodeCount > 0) {
+            int top = nodeCount - 1;
+            Expr expr = nodes[top];
+            if (expr instanceof BinaryExpr binary) {
+                switch (visited[top]++) {
+                    case 0 -> pushNode(binary.left());
+                    case 1 -> pushNode(binary.right());
+                    default -> {
+                        nodeCount--;
+                        apply(binary.op());
+                    }
+                }
+            } else if (expr instanceof LiteralExpr literal) {
+                nodeCount--;
+                Number value = literal.value();
+                if (Arithmetic.isFloating(value)) {
+                    pushDouble(value.doubleValue());
+                } else {
+                    pushLong(value.longValue());
+                }
+            } else if (expr instanceof VarExpr varExpr) {
+                nodeCount--;
+                load(slotOf(varExpr.name(), varExpr.slot()));
+            } else if (expr instanceof UnaryExpr unary) {
+                evaluateUnary(unary, top);
+            } else if (expr instanceof PostfixExpr postfix) {
+                nodeCount--;
+                int slot = requireAssignableVariable(postfix.expr());
+                load(slot);
+                increment(slot, postfix.op() == PostfixOp.POST_INC ? 1L : -1L);
+            } else {
+                throw new EvalException(ErrorMessages.EVAL_UNSUPPORTED_EXPRESSION);
+            }
+        }
+    }
+
+    private void evaluateUnary(UnaryExpr unary, int top) {
+        UnaryOp op = unary.op();
+        if (op == UnaryOp.PRE_INC || op == UnaryOp.PRE_DEC) {
+            nodeCount--;
+            int slot = requireAssignableVariable(unary.expr());
+            increment(slot, op == UnaryOp.PRE_INC ? 1L : -1L);
+            load(slot);
+        } else if (visited[top]++ == 0) {
+            pushNode(unary.expr());
+        } else {
+            nodeCount--;
+            if (op == UnaryOp.MINUS) {
+                int value = valueCount - 1;
+                longValues[value] = -longValues[value];
+                doubleValues[value] = -doubleValues[value];
+            }
+        }
+    }
+
+    /**
+     * Replaces the two values on top of the stack by the result of the operator.
+     */
+    private void apply(BinaryOp op) {
+        int right = --valueCount;
+        int left = right - 1;
+        if (isDouble[left] || isDouble[right]) {
+            double l = isDouble[left] ? doubleValues[left] : longValues[left];
+            double r = isDouble[right] ? doubleValues[right] : longValues[right];
+            doubleValues[left] = Arithmetic.apply(op, l, r);
+            isDouble[left] = true;
+        } else {
+            longValues[left] = Arithmetic.apply(op, longValues[left], longValues[right]);
+        }
+    }
+
+    /**
+     * Pushes the value of a variable.
+     *
+     * @throws EvalException if the variable is not defined
+     */
+    private void load(int slot) {
+        if (env.isDouble(slot)) {
+            pushDouble(env.getDouble(slot));
+        } else {
+            pushLong(env.getLong(slot));
+        }
+    }
+
+    /**
+     * Adds {@code delta} (1 or -1) to the variable in place.
+     *
+     * @throws EvalException if the variable is not defined
+     */
+    private void increment(int slot, long delta) {
+        if (env.isDouble(slot)) {
+            env.setDouble(slot, env.getDouble(slot) + delta);
+        } else {
+            env.setLong(slot, env.getLong(slot) + delta);
+        }
+    }
+
+    private int requireAssignableVariable(Expr expr) {
+        if (expr instanceof VarExpr varExpr) {
+            return slotOf(varExpr.name(), varExpr.slot());
+        }
+        throw new EvalException(ErrorMessages.EVAL_OPERAND_NOT_ASSIGNABLE);
+    }
+
+    private int slotOf(String name, int resolvedSlot) {
+        if (symbols.holds(resolvedSlot, name)) {
+            return resolvedSlot;
+        }
+        return env.slot(name);
+    }
+
+    private void pushNode(Expr expr) {
+        if (nodeCount == nodes.length) {
+            nodes = Arrays.copyOf(nodes, nodeCount * 2);
+            visited = Arrays.copyOf(visited, nodeCount * 2);
+        }
+        nodes[nodeCount] = expr;
+        visited[nodeCount++] = 0;
+    }
+
+    private void pushLong(long value) {
+        ensureValueCapacity();
+        longValues[valueCount] = value;
+        isDouble[valueCount++] = false;
+    }
+
+    private void pushDouble(double value) {
+        ensureValueCapacity();
+        doubleValues[valueCount] = value;
+        isDouble[valueCount++] = true;
+    }
+
+    private void ensureValueCapacity() {
+        if (valueCount == longValues.length) {
+            longValues = Arrays.copyOf(longValues, valueCount * 2);
+            doubleValues = Arrays.copyOf(doubleValues, valueCount * 2);
+            isDouble = Arrays.copyOf(isDouble, valueCount * 2);
+        }
+    }
+}
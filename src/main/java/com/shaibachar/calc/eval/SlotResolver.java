@@ -0,0 +1,90 @@
+package com.shaibachar.calc.eval;
+
+import com.shaibachar.calc.exceptions.ErrorMessages;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.parser.expr.BinaryExpr;
+import com.shaibachar.calc.parser.expr.Expr;
+import com.shaibachar.calc.parser.expr.LiteralExpr;
+import com.shaibachar.calc.parser.expr.PostfixExpr;
+import com.shaibachar.calc.parser.expr.UnaryExpr;
+import com.shaibachar.calc.parser.expr.VarExpr;
+import com.shaibachar.calc.parser.stmt.AssignStmt;
+import com.shaibachar.calc.parser.stmt.Stmt;
+
+/**
+ * Resolution pass that binds every {@link VarExpr} and {@link AssignStmt} name to a slot of a
+ * {@link SymbolTable} before execution, so that the {@link Evaluator} reads and writes the
+ * {@link Environment}'s primitive arrays by index instead of hashing names.
+ * The AST is immutable, so nodes that contain variables are rebuilt with their slots; literal-only
+ * subtrees are shared with the input. Resolving is idempotent: already resolved nodes of the same
+ * table are returned as they are.
+ * Example usage:
+ * <pre>
+ * Environment env = new Environment();
+ * Stmt resolved = new SlotResolver(env.symbols()).resolve(stmt);
+ * new Evaluator(env).execute(resolved);
+ * </pre>
+ */
+public class SlotResolver {
+    private final SymbolTable symbols;
+
+    public SlotResolver(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Resolves the target and every variable of a statement.
+     *
+     * @param stmt the statement to resolve
+     * @return an equal statement whose names carry slots of this resolver's table
+     * @throws EvalException if the statement type is not supported
+     */
+    public Stmt resolve(Stmt stmt) {
+        if (!(stmt instanceof AssignStmt assign)) {
+            throw new EvalException(ErrorMessages.EVAL_UNSUPPORTED_STATEMENT);
+        }
+        Expr expr = resolve(assign.expr());
+        if (expr == assign.expr() && symbols.holds(assign.slot(), assign.name())) {
+            return assign;
+        }
+        int slot = symbols.intern(assign.name());
+        return new AssignStmt(symbols.name(slot), slot, assign.op(), expr);
+    }
+
+    /**
+     * Resolves every variable of an expression.
+     *
+     * @param expr the expression to resolve
+     * @return an equal expression whose variables carry slots of this resolver's table
+     * @throws EvalException if the expression type is not supported
+     */
+    public Expr resolve(Expr expr) {
+        if (expr instanceof LiteralExpr) {
+            return expr;
+        }
+        if (expr instanceof VarExpr var) {
+            if (symbols.holds(var.slot(), var.name())) {
+                return var;
+            }
+            int slot = symbols.intern(var.name());
+            return new VarExpr(symbols.name(slot), slot);
+        }
+        if (expr instanceof UnaryExpr unary) {
+            Expr operand = resolve(unary.expr());
+            return operand == unary.expr() ? unary : new UnaryExpr(unary.op(), operand);
+        }
+        if (expr instanceof PostfixExpr postfix) {
+            Expr operand = resolve(postfix.expr());
+            return operand == postfix.expr() ? postfix : new PostfixExpr(operand, postfix.op());
+        }
+        if (expr instanceof BinaryExpr binary) {
+            Expr left = resolve(binary.left());
+            Expr right = resolve(binary.right());
+            if (left == binary.left() && right == binary.right()) {
+                return binary;
+            }
+            return new BinaryExpr(left, binary.op(), right);
+        }
+        throw new EvalException(ErrorMessages.EVAL_UNSUPPORTED_EXPRESSION);
+    }
+}
@@ -0,0 +1,26 @@
+package com.shaibachar.calc.eval;
+
+import com.shaibachar.calc.parser.stmt.Stmt;
+
+/**
+ * An execution backend: runs parsed statements against an {@link Environment}.
+ * Every implementation has the semantics of {@link Evaluator}, which is the reference backend: binary operands
+ * are evaluated left to right, compound assignments read the variable before evaluating the right-hand side,
+ * and the same {@link EvalException}s are raised at the same points.
+ */
+public interface StatementExecutor {
+    /**
+     * Executes a statement, updating the environment.
+     *
+     * @param stmt the statement to execute
+     * @throws EvalException if the statement fails at runtime
+     */
+    void execute(Stmt stmt);
+
+    /**
+     * Returns the symbol table of the environment this executor works on, for resolving names ahead of time.
+     *
+     * @return the environment's symbol table
+     */
+    SymbolTable symbols();
+}
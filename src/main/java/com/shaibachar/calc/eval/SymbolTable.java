@@ -0,0 +1,154 @@
+package com.shaibachar.calc.eval;
+
+import java.util.Arrays;
+
+/**
+ * Maps variable names to dense integer slots, in the order the names are first seen.
+ * Slots index the primitive arrays of {@link Environment}. Names can be interned straight from a
+ * {@link CharSequence} range (e.g. a token view), so resolving an already known identifier does not
+ * allocate a {@code String}. Every name is stored once and the same {@code String} instance is
+ * returned for it afterwards.
+ * The table is not thread-safe; it belongs to one {@link Environment}.
+ */
+public final class SymbolTable {
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Open-addressing hash table of slot + 1 (0 marks an empty bucket)
+    private int[] buckets = new int[INITIAL_CAPACITY * 2];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Returns the slot of the given name, assigning the next free slot if the name is new.
+     *
+     * @param name the variable name
+     * @return the slot of the name
+     */
+    public int intern(String name) {
+        return intern(name, 0, name.length());
+    }
+
+    /**
+     * Returns the slot of the name formed by {@code text[start, end)}, assigning the next free slot if
+     * the name is new. A {@code String} is only created the first time a name is seen.
+     *
+     * @param text the text containing the name
+     * @param start start of the name, inclusive
+     * @param end end of the name, exclusive
+     * @return the slot of the name
+     */
+    public int intern(CharSequence text, int start, int end) {
+        int hash = hash(text, start, end);
+        int mask = buckets.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int entry = buckets[i];
+            if (entry == 0) {
+                return add(text.subSequence(start, end).toString(), hash, i);
+            }
+            int slot = entry - 1;
+            if (hashes[slot] == hash && contentEquals(names[slot], text, start, end)) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Returns the slot of the given name without assigning one.
+     *
+     * @param name the variable name
+     * @return the slot of the name, or -1 if the name was never interned
+     */
+    public int find(String name) {
+        int hash = hash(name, 0, name.length());
+        int mask = buckets.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int entry = buckets[i];
+            if (entry == 0) {
+                return -1;
+            }
+            int slot = entry - 1;
+            if (hashes[slot] == hash && names[slot].equals(name)) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Returns the name stored at the given slot.
+     *
+     * @param slot a slot returned by {@link #intern(String)}
+     * @return the canonical name instance for the slot
+     */
+    public String name(int slot) {
+        if (slot >= size) {
+            throw new IndexOutOfBoundsException(slot);
+        }
+        return names[slot];
+    }
+
+    /**
+     * Returns whether the slot was assigned to exactly this name by this table.
+     * Used to validate slots that were resolved ahead of time before trusting them.
+     *
+     * @param slot the slot to check
+     * @param name the expected name
+     * @return true if {@code slot} holds {@code name}
+     */
+    public boolean holds(int slot, String name) {
+        return slot >= 0 && slot < size && names[slot].equals(name);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int add(String name, int hash, int bucket) {
+        int slot = size;
+        if (slot == names.length) {
+            names = Arrays.copyOf(names, slot * 2);
+            hashes = Arrays.copyOf(hashes, slot * 2);
+        }
+        names[slot] = name;
+        hashes[slot] = hash;
+        buckets[bucket] = slot + 1;
+        size++;
+        if (size * 2 > buckets.length) {
+            rehash();
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        buckets = new int[buckets.length * 2];
+        int mask = buckets.length - 1;
+        for (int slot = 0; slot < size; slot++) {
+            int i = hashes[slot] & mask;
+            while (buckets[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            buckets[i] = slot + 1;
+        }
+    }
+
+    private static int hash(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        // Spread the bits, since names often differ only in their last character
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean contentEquals(String name, CharSequence text, int start, int end) {
+        if (name.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
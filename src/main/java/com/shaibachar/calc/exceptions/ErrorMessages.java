@@ -21,6 +21,9 @@ public final class ErrorMessages {
     public static final String LEXER_INVALID_NUMBER_LITERAL = "LEXER_002: Invalid number literal at position %d";
     public static final String LEXER_NUMBER_OVERFLOW = "LEXER_003: %s overflow literal: %s";
 
+    public static final String APP_UNKNOWN_BACKEND = "APP_001: Unknown backend: %s. Expected one of: %s";
+    public static final String APP_UNEXPECTED_FAILURE = "APP_002: Unexpected failure: %s";
+
     private ErrorMessages() {
     }
 
@@ -44,6 +47,14 @@ public final class ErrorMessages {
         return String.format(ENV_UNDEFINED_VARIABLE, name);
     }
 
+    public static String appUnknownBackend(String name, String expected) {
+        return String.format(APP_UNKNOWN_BACKEND, name, expected);
+    }
+
+    public static String appUnexpectedFailure(Throwable failure) {
+        return String.format(APP_UNEXPECTED_FAILURE, failure);
+    }
+
     public static String withLineContext(String message, int lineNumber, String line) {
         return String.format("%s (line %d: %s)", message, lineNumber, line);
     }
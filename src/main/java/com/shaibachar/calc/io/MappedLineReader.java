@@ -0,0 +1,205 @@
+package com.shaibachar.calc.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads the lines of a file through a memory mapping, without decoding them: each line is exposed as a view of
+ * the mapped bytes, which can be handed to {@link com.shaibachar.calc.lexer.Utf8Lexer} directly. Lines end at
+ * {@code \n}, {@code \r} or {@code \r\n}, as with {@link java.io.BufferedReader#readLine()}.
+ * <p>
+ * A mapping is limited to 2 GB, so the file is mapped in windows. When the next line runs past the end of the
+ * current window, a new window is mapped starting at that line, so a line is always contiguous; a single line
+ * longer than a window is rejected. Example usage:
+ * <pre>
+ * try (MappedLineReader reader = new MappedLineReader(path)) {
+ *     while (reader.next()) {
+ *         TokenBuffer tokens = new Utf8Lexer(reader.line()).tokenizeCompact();
+ *     }
+ * }
+ * </pre>
+ * The reader is not thread-safe.
+ */
+public final class MappedLineReader implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(MappedLineReader.class.getName());
+    /** Default window size: 1 GB, well below the 2 GB limit of a mapping. */
+    public static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int windowSize;
+    private MappedByteBuffer window;
+    private ByteBuffer view;
+    private long windowStart;
+    private int windowLimit;
+    // Offset in the window of the next unread byte
+    private int pos;
+    private int lineStart;
+    private int lineEnd;
+    private int lineNumber;
+
+    public MappedLineReader(Path path) throws IOException {
+        this(path, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Opens a file to be read through windows of the given size.
+     *
+     * @param path the file
+     * @param windowSize the maximum number of bytes mapped at once, which bounds the length of a line with its
+     *                   terminator
+     * @throws IOException if the file cannot be opened
+     */
+    public MappedLineReader(Path path, int windowSize) throws IOException {
+        if (windowSize < 2) {
+            throw new IllegalArgumentException("Window size must be at least 2: " + windowSize);
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.windowSize = windowSize;
+        map(0);
+    }
+
+    /**
+     * Advances to the next line.
+     *
+     * @return false at the end of the file
+     * @throws IOException if a window cannot be mapped or a line is longer than a window
+     */
+    public boolean next() throws IOException {
+        if (windowStart + pos >= fileSize) {
+            return false;
+        }
+        int end = findLineEnd(pos);
+        if (!completeInWindow(end)) {
+            map(windowStart + pos);
+            end = findLineEnd(0);
+            if (!completeInWindow(end)) {
+                throw new IOException("Line " + (lineNumber + 1) + " is longer than the mapping window of "
+                        + windowSize + " bytes");
+            }
+        }
+        lineStart = pos;
+        lineEnd = end;
+        if (end < windowLimit) {
+            boolean crlf = window.get(end) == '\r' && end + 1 < windowLimit && window.get(end + 1) == '\n';
+            pos = end + (crlf ? 2 : 1);
+        } else {
+            pos = end;
+        }
+        lineNumber++;
+        return true;
+    }
+
+    /**
+     * Returns the bytes of the current line, without its terminator, between the position and the limit of a
+     * buffer that is reused for every line. The view is valid until the next call to {@link #next()}.
+     *
+     * @return the line bytes
+     */
+    public ByteBuffer line() {
+        view.limit(lineEnd).position(lineStart);
+        return view;
+    }
+
+    /**
+     * Returns whether the current line holds only whitespace and control characters, i.e. whether its decoded
+     * text would be empty after {@link String#trim()}.
+     *
+     * @return true for a blank line
+     */
+    public boolean isBlank() {
+        for (int i = lineStart; i < lineEnd; i++) {
+            int b = window.get(i);
+            if (b < 0 || b > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the current line. Meant for error messages; reading a line this way allocates a {@code String}.
+     *
+     * @return the line text
+     */
+    public String lineText() {
+        byte[] bytes = new byte[lineEnd - lineStart];
+        window.get(lineStart, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the 1-based number of the current line.
+     *
+     * @return the line number, or 0 before the first call to {@link #next()}
+     */
+    public int lineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Reads the text of one line of a file, e.g. to report an error on a line that is no longer mapped.
+     *
+     * @param path the file
+     * @param lineNumber the 1-based line number
+     * @return the line text, or an empty string if the file has fewer lines
+     * @throws IOException if the file cannot be read
+     */
+    public static String readLine(Path path, int lineNumber) throws IOException {
+        try (MappedLineReader reader = new MappedLineReader(path)) {
+            while (reader.next()) {
+                if (reader.lineNumber() == lineNumber) {
+                    return reader.lineText();
+                }
+            }
+        }
+        return "";
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Returns whether the line ending at {@code end} is known to be complete: its terminator is in the window, and
+     * so is the byte after a {@code \r}, which tells {@code \r} from {@code \r\n}. The last window ends the file.
+     */
+    private boolean completeInWindow(int end) {
+        if (windowStart + windowLimit >= fileSize) {
+            return true;
+        }
+        return end < windowLimit && (window.get(end) != '\r' || end + 1 < windowLimit);
+    }
+
+    private int findLineEnd(int from) {
+        for (int i = from; i < windowLimit; i++) {
+            byte b = window.get(i);
+            if (b == '\n' || b == '\r') {
+                return i;
+            }
+        }
+        return windowLimit;
+    }
+
+    private void map(long start) throws IOException {
+        long length = Math.min(windowSize, fileSize - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        view = window.duplicate();
+        windowStart = start;
+        windowLimit = (int) length;
+        pos = 0;
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Mapped " + length + " bytes at offset " + start);
+        }
+    }
+}
@@ -3,8 +3,8 @@ package com.shaibachar.calc.lexer;
 import com.shaibachar.calc.exceptions.ErrorMessages;
 import com.shaibachar.calc.exceptions.ParseException;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -16,6 +16,13 @@ import java.util.logging.Logger;
  */
 public class Lexer {
     private static final Logger LOGGER = Logger.getLogger(Lexer.class.getName());
+    // Largest mantissa that is exactly representable as a double (2^53)
+    static final long MAX_EXACT_MANTISSA = 1L << 53;
+    // Powers of ten that are exactly representable as a double
+    static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
     private final String input;
     private int pos;
 
@@ -24,9 +31,32 @@ public class Lexer {
     }
 
     public List<Token> tokenize() {
+        return tokenizeCompact().toTokens();
+    }
+
+    /**
+     * Tokenizes the input into a new compact {@link TokenBuffer}.
+     *
+     * @return the token buffer, terminated by an EOF token
+     * @throws ParseException if the input contains an unexpected character or an invalid number literal
+     */
+    public TokenBuffer tokenizeCompact() {
+        return tokenizeInto(new TokenBuffer());
+    }
+
+    /**
+     * Tokenizes the input into the given buffer, replacing its previous content.
+     * Reusing one buffer across lines avoids allocating token storage per line.
+     *
+     * @param tokens the buffer to fill
+     * @return the same buffer, terminated by an EOF token
+     * @throws ParseException if the input contains an unexpected character or an invalid number literal
+     */
+    public TokenBuffer tokenizeInto(TokenBuffer tokens) {
         LOGGER.fine("Tokenizing input");
         long startNs = System.nanoTime();
-        List<Token> tokens = new ArrayList<>();
+        tokens.reset(input);
+        pos = 0;
         while (!isAtEnd()) {
             char c = peek();
             if (Character.isWhitespace(c)) {
@@ -39,82 +69,38 @@ public class Lexer {
 
             // Identifiers and keywords
             if (Character.isLetter(c) || c == '_') {
-                tokens.add(readIdentifier(start));
+                readIdentifier(tokens, start);
                 continue;
             }
 
             // Numbers
             if (Character.isDigit(c)) {
-                tokens.add(readNumber(start));
+                readNumber(tokens, start);
                 continue;
             }
 
             // Operators and punctuation
-            switch (c) {
-                case '+' -> {
-                    advance();
-                    if (match('+')) {
-                        tokens.add(new Token(TokenType.PLUS_PLUS, "++", start));
-                    } else if (match('=')) {
-                        tokens.add(new Token(TokenType.PLUS_EQUAL, "+=", start));
-                    } else {
-                        tokens.add(new Token(TokenType.PLUS, "+", start));
-                    }
-                }
-                case '-' -> {
-                    advance();
-                    if (match('-')) {
-                        tokens.add(new Token(TokenType.MINUS_MINUS, "--", start));
-                    } else if (match('=')) {
-                        tokens.add(new Token(TokenType.MINUS_EQUAL, "-=", start));
-                    } else {
-                        tokens.add(new Token(TokenType.MINUS, "-", start));
-                    }
-                }
-                case '*' -> {
-                    advance();
-                    if (match('=')) {
-                        tokens.add(new Token(TokenType.STAR_EQUAL, "*=", start));
-                    } else {
-                        tokens.add(new Token(TokenType.STAR, "*", start));
-                    }
-                }
-                case '/' -> {
-                    advance();
-                    if (match('=')) {
-                        tokens.add(new Token(TokenType.SLASH_EQUAL, "/=", start));
-                    } else {
-                        tokens.add(new Token(TokenType.SLASH, "/", start));
-                    }
-                }
-                case '%' -> {
-                    advance();
-                    if (match('=')) {
-                        tokens.add(new Token(TokenType.PERCENT_EQUAL, "%=", start));
-                    } else {
-                        tokens.add(new Token(TokenType.PERCENT, "%", start));
-                    }
-                }
-                case '=' -> {
-                    advance();
-                    tokens.add(new Token(TokenType.EQUAL, "=", start));
-                }
-                case '(' -> {
-                    advance();
-                    tokens.add(new Token(TokenType.LPAREN, "(", start));
-                }
-                case ')' -> {
-                    advance();
-                    tokens.add(new Token(TokenType.RPAREN, ")", start));
-                }
-                default -> throw new ParseException(ErrorMessages.lexerUnexpectedCharacter(c, pos));
-            }
+            advance();
+            TokenType type = switch (c) {
+                case '+' -> match('+') ? TokenType.PLUS_PLUS : match('=') ? TokenType.PLUS_EQUAL : TokenType.PLUS;
+                case '-' -> match('-') ? TokenType.MINUS_MINUS : match('=') ? TokenType.MINUS_EQUAL : TokenType.MINUS;
+                case '*' -> match('=') ? TokenType.STAR_EQUAL : TokenType.STAR;
+                case '/' -> match('=') ? TokenType.SLASH_EQUAL : TokenType.SLASH;
+                case '%' -> match('=') ? TokenType.PERCENT_EQUAL : TokenType.PERCENT;
+                case '=' -> TokenType.EQUAL;
+                case '(' -> TokenType.LPAREN;
+                case ')' -> TokenType.RPAREN;
+                default -> throw new ParseException(ErrorMessages.lexerUnexpectedCharacter(c, start));
+            };
+            tokens.add(type, start, pos - start);
         }
 
         // Add an EOF token at the end of the input for the parser to know when to stop
-        tokens.add(new Token(TokenType.EOF, "", pos));
-        long elapsedMs = (System.nanoTime() - startNs) / 1_000_000;
-        LOGGER.fine("perf.component=lexer_tokenize elapsed_ms=" + elapsedMs + " tokens=" + tokens.size());
+        tokens.add(TokenType.EOF, pos, 0);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            long elapsedMs = (System.nanoTime() - startNs) / 1_000_000;
+            LOGGER.fine("perf.component=lexer_tokenize elapsed_ms=" + elapsedMs + " tokens=" + tokens.size());
+        }
         return tokens;
     }
 
@@ -123,11 +109,13 @@ public class Lexer {
      * An identifier consists of letters, digits, and underscores,
      * but must start with a letter or underscore.
      *
+     * @param tokens the buffer to append the identifier to
      * @param start the starting position of the identifier
-     * @return a Token representing the identifier
      */
-    private Token readIdentifier(int start) {
-        LOGGER.fine("Reading identifier at position " + start);
+    private void readIdentifier(TokenBuffer tokens, int start) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Reading identifier at position " + start);
+        }
         while (!isAtEnd()) {
             char c = peek();
             if (Character.isLetterOrDigit(c) || c == '_') {
@@ -136,49 +124,87 @@ public class Lexer {
                 break;
             }
         }
-        return new Token(TokenType.IDENT, input.substring(start, pos), start);
+        tokens.add(TokenType.IDENT, start, pos - start);
     }
 
     /**
      * Reads a number token starting at the given position.
      * A number consists of digits, optionally followed by a fractional part.
+     * The value is accumulated digit by digit while scanning, so the literal is parsed exactly once
+     * and no substring is created. Decimal literals whose digits fit in a double mantissa are
+     * computed exactly with a single division; only longer ones fall back to {@link Double#parseDouble}.
      *
+     * @param tokens the buffer to append the number to
      * @param start the starting position of the number
-     * @return a Token representing the number
      * @throws ParseException if the number literal is invalid or too large
      */
-    private Token readNumber(int start) {
-        LOGGER.fine("Reading number at position " + start);
-        while (!isAtEnd() && Character.isDigit(peek())) {
-            advance();
+    private void readNumber(TokenBuffer tokens, int start) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Reading number at position " + start);
         }
-        boolean hasFraction = false;
-        if (!isAtEnd() && peek() == '.') {
-            if (peekNextIsDigit()) {
-                hasFraction = true;
-                advance();
-                while (!isAtEnd() && Character.isDigit(peek())) {
-                    advance();
-                }
+        long mantissa = 0;
+        boolean overflow = false;
+        while (!isAtEnd() && Character.isDigit(peek())) {
+            int digit = digitValue(advanceChar());
+            if (overflow || mantissa > (Long.MAX_VALUE - digit) / 10) {
+                overflow = true;
             } else {
-                throw new ParseException(ErrorMessages.lexerInvalidNumberLiteral(pos));
+                mantissa = mantissa * 10 + digit;
+            }
+        }
+        if (isAtEnd() || peek() != '.') {
+            if (overflow) {
+                throw new ParseException(ErrorMessages.lexerNumberOverflow("Long", input.substring(start, pos)));
             }
+            tokens.addLong(start, pos - start, mantissa);
+            return;
         }
-        String literal = input.substring(start, pos);
-        try {
-            if (hasFraction) {
-                double value = Double.parseDouble(literal);
-                if (Double.isInfinite(value)) {
-                    throw new NumberFormatException();
-                }
+        if (!peekNextIsDigit()) {
+            throw new ParseException(ErrorMessages.lexerInvalidNumberLiteral(pos));
+        }
+        advance();
+        int fractionDigits = 0;
+        while (!isAtEnd() && Character.isDigit(peek())) {
+            int digit = digitValue(advanceChar());
+            fractionDigits++;
+            if (overflow || mantissa > (MAX_EXACT_MANTISSA - digit) / 10) {
+                overflow = true;
             } else {
-                Long.parseLong(literal);
+                mantissa = mantissa * 10 + digit;
             }
-        } catch (NumberFormatException ex) {
-            String kind = hasFraction ? "Floating-point" : "Long";
-            throw new ParseException(ErrorMessages.lexerNumberOverflow(kind, literal));
         }
-        return new Token(TokenType.NUMBER, literal, start);
+        tokens.addDouble(start, pos - start, toDouble(start, mantissa, fractionDigits, overflow));
+    }
+
+    /**
+     * Converts a scanned decimal literal to a double. When the mantissa is exactly representable and the
+     * scale is an exactly representable power of ten, one IEEE division gives the correctly rounded result,
+     * identical to {@link Double#parseDouble}. Other literals are parsed from the source text.
+     */
+    private double toDouble(int start, long mantissa, int fractionDigits, boolean inexact) {
+        if (!inexact && fractionDigits < POWERS_OF_TEN.length) {
+            return mantissa / POWERS_OF_TEN[fractionDigits];
+        }
+        return parseDecimal(input.substring(start, pos));
+    }
+
+    /**
+     * Slow path for decimal literals that do not qualify for the exact fast path.
+     *
+     * @param literal the literal text
+     * @return the parsed value
+     * @throws ParseException if the literal overflows to infinity
+     */
+    static double parseDecimal(String literal) {
+        double value = Double.parseDouble(literal);
+        if (Double.isInfinite(value)) {
+            throw new ParseException(ErrorMessages.lexerNumberOverflow("Floating-point", literal));
+        }
+        return value;
+    }
+
+    private static int digitValue(char c) {
+        return c >= '0' && c <= '9' ? c - '0' : Character.digit(c, 10);
     }
 
     /**
@@ -212,6 +238,15 @@ public class Lexer {
         pos++;
     }
 
+    /**
+     * Consumes the current character and returns it.
+     *
+     * @return the consumed character
+     */
+    private char advanceChar() {
+        return input.charAt(pos++);
+    }
+
     /**
      * Checks if we have reached the end of the input string.
      *
@@ -2,15 +2,27 @@ package com.shaibachar.calc.lexer;
 
 import java.util.Objects;
 
+/**
+ * A single token with its type, source text and position.
+ * Number tokens produced by the {@link Lexer} also carry the literal value parsed while scanning,
+ * so the parser does not parse the lexeme a second time. The value is derived from the lexeme and is
+ * therefore not part of {@link #equals(Object)}.
+ */
 public final class Token {
     private final TokenType type;
     private final String lexeme;
     private final int position;
+    private final Number value;
 
     public Token(TokenType type, String lexeme, int position) {
+        this(type, lexeme, position, null);
+    }
+
+    public Token(TokenType type, String lexeme, int position, Number value) {
         this.type = type;
         this.lexeme = lexeme;
         this.position = position;
+        this.value = value;
     }
 
     public TokenType type() {
@@ -25,6 +37,16 @@ public final class Token {
         return position;
     }
 
+    /**
+     * Returns the parsed value of a number literal: a {@code Long} for integer literals and a
+     * {@code Double} for decimal ones, or {@code null} for other tokens and tokens created without a value.
+     *
+     * @return the literal value, or null
+     */
+    public Number value() {
+        return value;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -0,0 +1,228 @@
+package com.shaibachar.calc.lexer;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Compact, struct-of-arrays token stream produced by {@link Lexer#tokenizeCompact()}.
+ * Instead of one {@link Token} object and one lexeme {@code String} per token, the buffer keeps
+ * parallel primitive arrays for the token type ordinal, the start offset and the length of each token,
+ * plus the already parsed value of number literals. Lexemes are never copied: they are ranges of the
+ * original source and only materialized on demand (e.g. identifier names).
+ * A buffer can be reused for several inputs through {@link Lexer#tokenizeInto(TokenBuffer)}.
+ * Example usage:
+ * <pre>
+ * TokenBuffer tokens = new Lexer("x = y * 2").tokenizeCompact();
+ * Stmt stmt = new Parser(tokens).parseStatement();
+ * </pre>
+ */
+public final class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final byte NO_NUMBER = 0;
+    private static final byte LONG_NUMBER = 1;
+    private static final byte DOUBLE_NUMBER = 2;
+
+    private CharSequence source = "";
+    private int[] types = new int[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    // Long value, or the raw bits of the double value, of NUMBER tokens
+    private long[] numbers = new long[INITIAL_CAPACITY];
+    private byte[] numberKinds = new byte[INITIAL_CAPACITY];
+    // Error-reporting positions, only set when they differ from the start offsets (see of(List))
+    private int[] positions;
+    private int size;
+
+    /**
+     * Builds a buffer from a list of tokens, e.g. tokens created by hand.
+     * The lexemes are concatenated into a synthetic source and the original positions are kept for
+     * error reporting. Number values carried by the tokens are kept; number tokens without a value
+     * are left for the parser to parse from their lexeme.
+     *
+     * @param tokens the tokens to copy
+     * @return a new buffer holding the same tokens
+     */
+    public static TokenBuffer of(List<Token> tokens) {
+        TokenBuffer buffer = new TokenBuffer();
+        StringBuilder source = new StringBuilder();
+        int[] positions = new int[Math.max(INITIAL_CAPACITY, tokens.size())];
+        buffer.reset(source);
+        for (Token token : tokens) {
+            positions[buffer.size] = token.position();
+            Number value = token.value();
+            int start = source.length();
+            int length = token.lexeme().length();
+            if (token.type() == TokenType.NUMBER && value instanceof Long) {
+                buffer.addLong(start, length, value.longValue());
+            } else if (token.type() == TokenType.NUMBER && value instanceof Double) {
+                buffer.addDouble(start, length, value.doubleValue());
+            } else {
+                buffer.add(token.type(), start, length);
+            }
+            source.append(token.lexeme());
+        }
+        buffer.positions = positions;
+        return buffer;
+    }
+
+    /**
+     * Clears the buffer and sets the source text the following tokens refer to.
+     * The backing arrays are kept, so a reused buffer stops allocating once it has grown
+     * to the largest input seen.
+     *
+     * @param source the text that token offsets index into
+     */
+    void reset(CharSequence source) {
+        this.source = source;
+        this.positions = null;
+        this.size = 0;
+    }
+
+    void add(TokenType type, int start, int length) {
+        ensureCapacity();
+        types[size] = type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        numberKinds[size] = NO_NUMBER;
+        size++;
+    }
+
+    void addLong(int start, int length, long value) {
+        add(TokenType.NUMBER, start, length);
+        numbers[size - 1] = value;
+        numberKinds[size - 1] = LONG_NUMBER;
+    }
+
+    void addDouble(int start, int length, double value) {
+        add(TokenType.NUMBER, start, length);
+        numbers[size - 1] = Double.doubleToRawLongBits(value);
+        numberKinds[size - 1] = DOUBLE_NUMBER;
+    }
+
+    private void ensureCapacity() {
+        if (size < types.length) {
+            return;
+        }
+        int capacity = types.length * 2;
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        numbers = Arrays.copyOf(numbers, capacity);
+        numberKinds = Arrays.copyOf(numberKinds, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public CharSequence source() {
+        return source;
+    }
+
+    public TokenType type(int index) {
+        return TYPES[typeOrdinal(index)];
+    }
+
+    public int typeOrdinal(int index) {
+        return types[Objects.checkIndex(index, size)];
+    }
+
+    public int start(int index) {
+        return starts[Objects.checkIndex(index, size)];
+    }
+
+    public int length(int index) {
+        return lengths[Objects.checkIndex(index, size)];
+    }
+
+    /**
+     * Returns the position used in error messages, which is the start offset for lexer-produced buffers.
+     *
+     * @param index the token index
+     * @return the token position in the original input
+     */
+    public int position(int index) {
+        Objects.checkIndex(index, size);
+        return positions == null ? starts[index] : positions[index];
+    }
+
+    /**
+     * Returns the lexeme as a read-only view into the source, without copying characters.
+     *
+     * @param index the token index
+     * @return a view of the token text
+     */
+    public CharSequence lexeme(int index) {
+        int start = start(index);
+        return CharBuffer.wrap(source, start, start + lengths[index]);
+    }
+
+    /**
+     * Returns the lexeme as a new {@code String}. Use {@link #lexeme(int)} when a view is enough.
+     *
+     * @param index the token index
+     * @return a copy of the token text
+     */
+    public String text(int index) {
+        int start = start(index);
+        return source.subSequence(start, start + lengths[index]).toString();
+    }
+
+    /**
+     * Returns whether the token is a number literal whose value was parsed by the lexer.
+     *
+     * @param index the token index
+     * @return true if {@link #longValue(int)} or {@link #doubleValue(int)} can be used
+     */
+    public boolean hasNumber(int index) {
+        return numberKinds[Objects.checkIndex(index, size)] != NO_NUMBER;
+    }
+
+    public boolean isDecimal(int index) {
+        return numberKinds[Objects.checkIndex(index, size)] == DOUBLE_NUMBER;
+    }
+
+    public long longValue(int index) {
+        return numbers[Objects.checkIndex(index, size)];
+    }
+
+    public double doubleValue(int index) {
+        return Double.longBitsToDouble(numbers[Objects.checkIndex(index, size)]);
+    }
+
+    /**
+     * Returns the pre-parsed value of a number token as a boxed {@code Long} or {@code Double}.
+     *
+     * @param index the token index
+     * @return the literal value, or null if the token has no pre-parsed value
+     */
+    public Number numberValue(int index) {
+        if (!hasNumber(index)) {
+            return null;
+        }
+        return isDecimal(index) ? (Number) doubleValue(index) : (Number) longValue(index);
+    }
+
+    /**
+     * Materializes the buffer as {@link Token} objects, for callers that need the list form.
+     *
+     * @return a new list with one token per buffered token
+     */
+    public List<Token> toTokens() {
+        List<Token> tokens = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tokens.add(new Token(type(i), text(i), position(i), numberValue(i)));
+        }
+        return tokens;
+    }
+
+    @Override
+    public String toString() {
+        return "TokenBuffer[size=" + size + ", tokens=" + toTokens() + "]";
+    }
+}
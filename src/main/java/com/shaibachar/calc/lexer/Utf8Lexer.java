@@ -0,0 +1,235 @@
+package com.shaibachar.calc.lexer;
+
+import com.shaibachar.calc.exceptions.ErrorMessages;
+import com.shaibachar.calc.exceptions.ParseException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Byte-oriented lexer for UTF-8 encoded input. It produces exactly the same tokens and errors as
+ * {@link Lexer}, but classifies 7-bit ASCII bytes with a 128-entry lookup table instead of the general
+ * Unicode {@link Character} methods, and reads the bytes in place without decoding them to a {@code String}.
+ * When a non-ASCII byte is met, the input is decoded and tokenized again by {@link Lexer}; because everything
+ * before that byte was ASCII, byte offsets and character positions are the same up to that point.
+ * Example usage:
+ * <pre>
+ * TokenBuffer tokens = new Utf8Lexer("x = y * 2".getBytes(StandardCharsets.UTF_8)).tokenizeCompact();
+ * </pre>
+ */
+public class Utf8Lexer {
+    private static final Logger LOGGER = Logger.getLogger(Utf8Lexer.class.getName());
+
+    private static final byte OTHER = 0;
+    private static final byte WHITESPACE = 1;
+    private static final byte IDENT_START = 2;
+    private static final byte DIGIT = 3;
+    private static final byte OPERATOR = 4;
+
+    // Character classes of the ASCII range, derived from the same Character methods Lexer uses
+    private static final byte[] CLASSES = new byte[128];
+
+    static {
+        for (char c = 0; c < CLASSES.length; c++) {
+            if (Character.isWhitespace(c)) {
+                CLASSES[c] = WHITESPACE;
+            } else if (Character.isLetter(c) || c == '_') {
+                CLASSES[c] = IDENT_START;
+            } else if (Character.isDigit(c)) {
+                CLASSES[c] = DIGIT;
+            } else if ("+-*/%=()".indexOf(c) >= 0) {
+                CLASSES[c] = OPERATOR;
+            }
+        }
+    }
+
+    private final ByteBuffer input;
+    private final int limit;
+    private int pos;
+
+    public Utf8Lexer(byte[] input) {
+        this(input, 0, input.length);
+    }
+
+    public Utf8Lexer(byte[] input, int offset, int length) {
+        this(ByteBuffer.wrap(input, offset, length));
+    }
+
+    /**
+     * Creates a lexer over the remaining bytes of the buffer, from its position to its limit.
+     * The buffer's position is not modified, so heap, direct and memory-mapped buffers can be lexed in place.
+     *
+     * @param input the UTF-8 encoded input
+     */
+    public Utf8Lexer(ByteBuffer input) {
+        this.input = input.slice();
+        this.limit = this.input.limit();
+    }
+
+    public List<Token> tokenize() {
+        return tokenizeCompact().toTokens();
+    }
+
+    public TokenBuffer tokenizeCompact() {
+        return tokenizeInto(new TokenBuffer());
+    }
+
+    /**
+     * Tokenizes the input into the given buffer, replacing its previous content.
+     * Token lexemes of ASCII input are views into the byte buffer.
+     *
+     * @param tokens the buffer to fill
+     * @return the same buffer, terminated by an EOF token
+     * @throws ParseException if the input contains an unexpected character or an invalid number literal
+     */
+    public TokenBuffer tokenizeInto(TokenBuffer tokens) {
+        LOGGER.fine("Tokenizing UTF-8 input");
+        tokens.reset(new AsciiSequence(input, 0, limit));
+        pos = 0;
+        while (pos < limit) {
+            int b = input.get(pos);
+            if (b < 0) {
+                return tokenizeDecoded(tokens);
+            }
+            int start = pos;
+            switch (CLASSES[b]) {
+                case WHITESPACE -> pos++;
+                case IDENT_START -> {
+                    if (!readIdentifier(tokens, start)) {
+                        return tokenizeDecoded(tokens);
+                    }
+                }
+                case DIGIT -> {
+                    if (!readNumber(tokens, start)) {
+                        return tokenizeDecoded(tokens);
+                    }
+                }
+                case OPERATOR -> readOperator(tokens, (char) b, start);
+                default -> throw new ParseException(ErrorMessages.lexerUnexpectedCharacter((char) b, start));
+            }
+        }
+        tokens.add(TokenType.EOF, pos, 0);
+        return tokens;
+    }
+
+    /**
+     * Falls back to the Unicode-aware {@link Lexer} for input that contains non-ASCII bytes.
+     */
+    private TokenBuffer tokenizeDecoded(TokenBuffer tokens) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Non-ASCII byte at position " + pos + ", falling back to Unicode lexer");
+        }
+        byte[] bytes = new byte[limit];
+        input.get(0, bytes);
+        return new Lexer(new String(bytes, StandardCharsets.UTF_8)).tokenizeInto(tokens);
+    }
+
+    /**
+     * Reads an identifier, see {@link Lexer}.
+     *
+     * @return false if a non-ASCII byte was met and the input has to be re-lexed as Unicode
+     */
+    private boolean readIdentifier(TokenBuffer tokens, int start) {
+        while (pos < limit) {
+            int b = input.get(pos);
+            if (b < 0) {
+                return false;
+            }
+            byte type = CLASSES[b];
+            if (type != IDENT_START && type != DIGIT) {
+                break;
+            }
+            pos++;
+        }
+        tokens.add(TokenType.IDENT, start, pos - start);
+        return true;
+    }
+
+    /**
+     * Reads a number literal with the same single-pass scanning as {@link Lexer}.
+     *
+     * @return false if a non-ASCII byte was met and the input has to be re-lexed as Unicode
+     * @throws ParseException if the number literal is invalid or too large
+     */
+    private boolean readNumber(TokenBuffer tokens, int start) {
+        long mantissa = 0;
+        boolean overflow = false;
+        int b;
+        while (pos < limit && (b = input.get(pos)) >= '0' && b <= '9') {
+            int digit = b - '0';
+            if (overflow || mantissa > (Long.MAX_VALUE - digit) / 10) {
+                overflow = true;
+            } else {
+                mantissa = mantissa * 10 + digit;
+            }
+            pos++;
+        }
+        if (pos < limit && input.get(pos) < 0) {
+            return false;
+        }
+        if (pos >= limit || input.get(pos) != '.') {
+            if (overflow) {
+                throw new ParseException(ErrorMessages.lexerNumberOverflow("Long", literal(start)));
+            }
+            tokens.addLong(start, pos - start, mantissa);
+            return true;
+        }
+        int next = pos + 1 < limit ? input.get(pos + 1) : 0;
+        if (next < 0) {
+            return false;
+        }
+        if (next < '0' || next > '9') {
+            throw new ParseException(ErrorMessages.lexerInvalidNumberLiteral(pos));
+        }
+        pos++;
+        int fractionDigits = 0;
+        while (pos < limit && (b = input.get(pos)) >= '0' && b <= '9') {
+            int digit = b - '0';
+            fractionDigits++;
+            if (overflow || mantissa > (Lexer.MAX_EXACT_MANTISSA - digit) / 10) {
+                overflow = true;
+            } else {
+                mantissa = mantissa * 10 + digit;
+            }
+            pos++;
+        }
+        if (pos < limit && input.get(pos) < 0) {
+            return false;
+        }
+        double value = !overflow && fractionDigits < Lexer.POWERS_OF_TEN.length
+                ? mantissa / Lexer.POWERS_OF_TEN[fractionDigits]
+                : Lexer.parseDecimal(literal(start));
+        tokens.addDouble(start, pos - start, value);
+        return true;
+    }
+
+    private void readOperator(TokenBuffer tokens, char c, int start) {
+        pos++;
+        TokenType type = switch (c) {
+            case '+' -> match('+') ? TokenType.PLUS_PLUS : match('=') ? TokenType.PLUS_EQUAL : TokenType.PLUS;
+            case '-' -> match('-') ? TokenType.MINUS_MINUS : match('=') ? TokenType.MINUS_EQUAL : TokenType.MINUS;
+            case '*' -> match('=') ? TokenType.STAR_EQUAL : TokenType.STAR;
+            case '/' -> match('=') ? TokenType.SLASH_EQUAL : TokenType.SLASH;
+            case '%' -> match('=') ? TokenType.PERCENT_EQUAL : TokenType.PERCENT;
+            case '=' -> TokenType.EQUAL;
+            case '(' -> TokenType.LPAREN;
+            default -> TokenType.RPAREN;
+        };
+        tokens.add(type, start, pos - start);
+    }
+
+    private boolean match(char expected) {
+        if (pos >= limit || input.get(pos) != expected) {
+            return false;
+        }
+        pos++;
+        return true;
+    }
+
+    private String literal(int start) {
+        return new AsciiSequence(input, start, pos - start).toString();
+    }
+}
@@ -0,0 +1,302 @@
+package com.shaibachar.calc.optimizer;
+
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.parser.AssignOp;
+import com.shaibachar.calc.parser.BinaryOp;
+import com.shaibachar.calc.parser.PostfixOp;
+import com.shaibachar.calc.parser.UnaryOp;
+import com.shaibachar.calc.parser.expr.BinaryExpr;
+import com.shaibachar.calc.parser.expr.Expr;
+import com.shaibachar.calc.parser.expr.LiteralExpr;
+import com.shaibachar.calc.parser.expr.PostfixExpr;
+import com.shaibachar.calc.parser.expr.UnaryExpr;
+import com.shaibachar.calc.parser.expr.VarExpr;
+import com.shaibachar.calc.parser.stmt.AssignStmt;
+import com.shaibachar.calc.parser.stmt.Stmt;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Script-level pass that merges runs of consecutive updates of one variable, {@code x += e1; x -= e2; x += e3},
+ * into a single statement, {@code x += e1 - e2 + e3}, so that the variable is loaded and stored once per run
+ * instead of once per line. Long addition and subtraction wrap around, so they are associative and commutative
+ * and the merged statement computes exactly the sequential result, provided every value involved is a long.
+ * The pass therefore tracks the static type of every variable through the script (the script is straight-line
+ * code, so the type of a variable at each point is known) and only merges a run when:
+ * <ul>
+ *     <li>{@code x} is a long before the run and every right-hand side is a long;</li>
+ *     <li>no right-hand side reads or writes {@code x}, so it does not matter that {@code x} is no longer
+ *     updated between them;</li>
+ *     <li>no right-hand side can fail: the variables it reads are defined, {@code ++}/{@code --} apply to
+ *     variables, and it divides only by non-zero literals. A merged statement thus never fails, and errors are
+ *     still reported on the line that causes them.</li>
+ * </ul>
+ * The right-hand sides are still evaluated left to right, in line order, so their side effects on other variables
+ * happen in the same order. A standalone increment is written {@code x += 1} in this language; runs of such lines
+ * merge like any other.
+ * <p>
+ * A pass keeps its type information between calls to {@link #fuse(List)}, so a script can be fused window by
+ * window, as long as the windows are passed in order and every statement of each window runs. The pass does not
+ * modify the symbol table.
+ * <pre>
+ * AccumulatorFusion fusion = new AccumulatorFusion(symbols);
+ * List&lt;Stmt&gt; fused = fusion.fuse(statements);
+ * int line = fusion.sourceIndex(failingIndex);
+ * </pre>
+ */
+public final class AccumulatorFusion {
+    // Runs and right-hand sides are capped so that merged statements stay small enough for every backend
+    private static final int MAX_RUN_LENGTH = 64;
+    private static final int MAX_EXPRESSION_NODES = 64;
+
+    private static final byte UNKNOWN = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+
+    private final SymbolTable symbols;
+    // Static type of each slot after the statements fused so far
+    private byte[] types = new byte[16];
+    private int[] sources = new int[0];
+    private int fusedCount;
+
+    public AccumulatorFusion(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Merges the runs of the next statements of the script.
+     *
+     * @param statements the statements, in script order
+     * @return the statements with every run replaced by one statement, or {@code statements} itself when there is
+     *         no run
+     */
+    public List<Stmt> fuse(List<Stmt> statements) {
+        if (types.length < symbols.size()) {
+            types = Arrays.copyOf(types, Math.max(types.length * 2, symbols.size()));
+        }
+        List<Stmt> fused = new ArrayList<>(statements.size());
+        sources = new int[statements.size()];
+        fusedCount = 0;
+        int i = 0;
+        while (i < statements.size()) {
+            int end = runEnd(statements, i);
+            sources[fused.size()] = i;
+            if (end - i > 1) {
+                fused.add(merge(statements, i, end));
+                fusedCount += end - i - 1;
+            } else {
+                fused.add(statements.get(i));
+                track(statements.get(i));
+            }
+            i = end;
+        }
+        return fusedCount == 0 ? statements : fused;
+    }
+
+    /**
+     * Maps a statement returned by the last {@link #fuse(List)} to the statement of its input it starts with.
+     *
+     * @param index the index in the fused list
+     * @return the index in the input list
+     */
+    public int sourceIndex(int index) {
+        return fusedCount == 0 ? index : sources[index];
+    }
+
+    /**
+     * Returns how many statements the last {@link #fuse(List)} removed by merging them into the one before.
+     *
+     * @return the number of merged statements
+     */
+    public int fusedCount() {
+        return fusedCount;
+    }
+
+    /**
+     * Returns the end, exclusive, of the run of mergeable updates starting at {@code from}.
+     */
+    private int runEnd(List<Stmt> statements, int from) {
+        int target = accumulatorTarget(statements.get(from), -1);
+        if (target < 0) {
+            return from + 1;
+        }
+        int end = from + 1;
+        while (end < statements.size() && end - from < MAX_RUN_LENGTH
+                && accumulatorTarget(statements.get(end), target) == target) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Returns the slot a statement adds to or subtracts from, if it can take part in a run on a long variable, or
+     * -1. With {@code expectedTarget} of -1 any target is accepted.
+     */
+    private int accumulatorTarget(Stmt stmt, int expectedTarget) {
+        if (!(stmt instanceof AssignStmt assign)
+                || assign.op() != AssignOp.PLUS_ASSIGN && assign.op() != AssignOp.MINUS_ASSIGN) {
+            return -1;
+        }
+        int target = slot(assign.slot(), assign.name());
+        if (target < 0 || expectedTarget >= 0 && target != expectedTarget || types[target] != LONG) {
+            return -1;
+        }
+        return isSafeLongTerm(assign.expr(), target) ? target : -1;
+    }
+
+    /**
+     * Returns whether an expression is statically a long, cannot fail and does not touch {@code target}.
+     */
+    private boolean isSafeLongTerm(Expr expr, int target) {
+        ArrayDeque<Expr> pending = new ArrayDeque<>();
+        pending.push(expr);
+        int nodes = 0;
+        while (!pending.isEmpty()) {
+            if (++nodes > MAX_EXPRESSION_NODES) {
+                return false;
+            }
+            Expr node = pending.pop();
+            if (node instanceof LiteralExpr literal) {
+                if (!(literal.value() instanceof Long)) {
+                    return false;
+                }
+            } else if (node instanceof VarExpr var) {
+                int slot = slot(var.slot(), var.name());
+                if (slot < 0 || slot == target || types[slot] != LONG) {
+                    return false;
+                }
+            } else if (node instanceof BinaryExpr binary) {
+                if ((binary.op() == BinaryOp.DIV || binary.op() == BinaryOp.MOD)
+                        && !(binary.right() instanceof LiteralExpr divisor
+                        && divisor.value() instanceof Long value && value != 0)) {
+                    return false;
+                }
+                pending.push(binary.right());
+                pending.push(binary.left());
+            } else if (node instanceof UnaryExpr unary) {
+                boolean increments = unary.op() == UnaryOp.PRE_INC || unary.op() == UnaryOp.PRE_DEC;
+                if (increments && !(unary.expr() instanceof VarExpr)) {
+                    return false;
+                }
+                pending.push(unary.expr());
+            } else if (node instanceof PostfixExpr postfix) {
+                if (!(postfix.expr() instanceof VarExpr)) {
+                    return false;
+                }
+                pending.push(postfix.expr());
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Merges statements {@code from} to {@code end - 1}, all updates of one long variable, into one update whose
+     * operator is that of the first. The terms are combined as a balanced tree, so the merged expression is only
+     * logarithmically deeper than its deepest term, and are still evaluated in line order.
+     */
+    private Stmt merge(List<Stmt> statements, int from, int end) {
+        AssignStmt first = (AssignStmt) statements.get(from);
+        // The combined terms carry the sign of the first update, which the merged statement keeps as its operator
+        return new AssignStmt(first.name(), first.slot(), first.op(), terms(statements, from, end).expr);
+    }
+
+    private static Term terms(List<Stmt> statements, int from, int end) {
+        if (end - from == 1) {
+            AssignStmt assign = (AssignStmt) statements.get(from);
+            return new Term(assign.expr(), assign.op() == AssignOp.MINUS_ASSIGN);
+        }
+        int middle = (from + end) >>> 1;
+        Term left = terms(statements, from, middle);
+        Term right = terms(statements, middle, end);
+        // sign(left) * left + sign(right) * right == sign(left) * (left +/- right)
+        BinaryOp op = left.negated == right.negated ? BinaryOp.ADD : BinaryOp.SUB;
+        return new Term(new BinaryExpr(left.expr, op, right.expr), left.negated);
+    }
+
+    /**
+     * Updates the static type of a statement's target after it runs.
+     */
+    private void track(Stmt stmt) {
+        if (!(stmt instanceof AssignStmt assign)) {
+            return;
+        }
+        int target = slot(assign.slot(), assign.name());
+        if (target < 0) {
+            return;
+        }
+        byte type = typeOf(assign.expr());
+        if (assign.op() != AssignOp.ASSIGN) {
+            type = promote(types[target], type);
+        }
+        types[target] = type;
+    }
+
+    /**
+     * Returns the static type of an expression, or UNKNOWN if it reads a variable of unknown type or is too large
+     * to be worth analyzing.
+     */
+    private byte typeOf(Expr expr) {
+        if (expr instanceof LiteralExpr literal) {
+            return literal.value() instanceof Long ? LONG : DOUBLE;
+        }
+        byte type = LONG;
+        ArrayDeque<Expr> pending = new ArrayDeque<>();
+        pending.push(expr);
+        int nodes = 0;
+        while (!pending.isEmpty()) {
+            if (++nodes > MAX_EXPRESSION_NODES * 4) {
+                return UNKNOWN;
+            }
+            Expr node = pending.pop();
+            if (node instanceof LiteralExpr literal) {
+                type = promote(type, literal.value() instanceof Long ? LONG : DOUBLE);
+            } else if (node instanceof VarExpr var) {
+                int slot = slot(var.slot(), var.name());
+                type = promote(type, slot < 0 ? UNKNOWN : types[slot]);
+            } else if (node instanceof BinaryExpr binary) {
+                pending.push(binary.right());
+                pending.push(binary.left());
+            } else if (node instanceof UnaryExpr unary) {
+                pending.push(unary.expr());
+            } else if (node instanceof PostfixExpr postfix) {
+                pending.push(postfix.expr());
+            } else {
+                return UNKNOWN;
+            }
+            if (type == UNKNOWN) {
+                return UNKNOWN;
+            }
+        }
+        return type;
+    }
+
+    private static byte promote(byte left, byte right) {
+        if (left == UNKNOWN || right == UNKNOWN) {
+            return UNKNOWN;
+        }
+        return left == DOUBLE || right == DOUBLE ? DOUBLE : LONG;
+    }
+
+    private int slot(int resolvedSlot, String name) {
+        int slot = symbols.holds(resolvedSlot, name) ? resolvedSlot : symbols.find(name);
+        return slot < types.length ? slot : -1;
+    }
+
+    /**
+     * A sum of right-hand sides, and whether it is subtracted from the variable.
+     */
+    private static final class Term {
+        final Expr expr;
+        final boolean negated;
+
+        Term(Expr expr, boolean negated) {
+            this.expr = expr;
+            this.negated = negated;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.shaibachar.calc.optimizer;
+
+import com.shaibachar.calc.eval.Arithmetic;
+import com.shaibachar.calc.exceptions.ErrorMessages;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.parser.BinaryOp;
+import com.shaibachar.calc.parser.UnaryOp;
+import com.shaibachar.calc.parser.expr.BinaryExpr;
+import com.shaibachar.calc.parser.expr.Expr;
+import com.shaibachar.calc.parser.expr.LiteralExpr;
+import com.shaibachar.calc.parser.expr.PostfixExpr;
+import com.shaibachar.calc.parser.expr.UnaryExpr;
+import com.shaibachar.calc.parser.expr.VarExpr;
+import com.shaibachar.calc.parser.flat.AstArena;
+import com.shaibachar.calc.parser.flat.NodeKind;
+import com.shaibachar.calc.parser.stmt.AssignStmt;
+import com.shaibachar.calc.parser.stmt.Stmt;
+
+/**
+ * Optimization pass run between the {@link com.shaibachar.calc.parser.Parser} and the
+ * {@link com.shaibachar.calc.eval.Evaluator}. It rewrites expression trees so that they evaluate to exactly the
+ * same values, with the same side effects and errors, in fewer steps:
+ * <ul>
+ *     <li>Constant folding: operators whose operands are all literals are replaced by their result, computed with
+ *     the evaluator's own {@link Arithmetic} rules (long arithmetic, promotion to double).</li>
+ *     <li>Algebraic identities that hold for every long and double value, including {@code -0.0} and NaN:
+ *     {@code e * 1}, {@code 1 * e}, {@code e / 1}, {@code e - 0}, {@code +e} and {@code -(-e)} become {@code e}.
+ *     The literals must be long literals, since {@code e * 1.0} would promote a long {@code e}.</li>
+ * </ul>
+ * Identities such as {@code e + 0} or {@code e * 0} are not applied: they change {@code -0.0}, NaN or the result
+ * type. Division or modulo by a literal zero is left in place so that it still raises
+ * {@link ErrorMessages#EVAL_DIVISION_BY_ZERO} at runtime, after the left operand has been evaluated.
+ * Operands of {@code ++}/{@code --} are never rewritten, and since the rewrites only remove literals and sign
+ * operators, side effects are neither dropped nor reordered.
+ * Unchanged subtrees are shared with the input, and variable slots are kept.
+ * The same rewrites are applied to flat {@link AstArena}s by {@link #optimize(AstArena)}, in linear passes over
+ * the post-ordered nodes.
+ * Example usage:
+ * <pre>
+ * Stmt stmt = new Optimizer().optimize(parser.parseStatement());
+ * evaluator.execute(stmt);
+ * </pre>
+ */
+public class Optimizer {
+
+    /**
+     * Optimizes the expression of a statement.
+     *
+     * @param stmt the statement to optimize
+     * @return an equivalent statement, or {@code stmt} itself if nothing could be simplified
+     * @throws EvalException if the statement type is not supported
+     */
+    public Stmt optimize(Stmt stmt) {
+        if (!(stmt instanceof AssignStmt assign)) {
+            throw new EvalException(ErrorMessages.EVAL_UNSUPPORTED_STATEMENT);
+        }
+        Expr expr = optimize(assign.expr());
+        if (expr == assign.expr()) {
+            return assign;
+        }
+        return new AssignStmt(assign.name(), assign.slot(), assign.op(), expr);
+    }
+
+    /**
+     * Optimizes an expression tree bottom-up.
+     *
+     * @param expr the expression to optimize
+     * @return an equivalent expression, or {@code expr} itself if nothing could be simplified
+     * @throws EvalException if the expression type is not supported
+     */
+    public Expr optimize(Expr expr) {
+        if (expr instanceof LiteralExpr || expr instanceof VarExpr || expr instanceof PostfixExpr) {
+            return expr;
+        }
+        if (expr instanceof BinaryExpr binary) {
+            return optimizeBinary(binary);
+        }
+        if (expr instanceof UnaryExpr unary) {
+            return optimizeUnary(unary);
+        }
+        throw new EvalException(ErrorMessages.EVAL_UNSUPPORTED_EXPRESSION);
+    }
+
+    /**
+     * Optimizes every statement of a flat arena with the same rewrites as {@link #optimize(Expr)}.
+     * Each statement takes three passes over its nodes: a forward pass works out, bottom-up, which nodes fold to
+     * a literal and which ones an identity replaces by one of their operands; a backward pass marks the nodes
+     * still reachable from the root; a last forward pass copies those, in their original post-order.
+     *
+     * @param arena the arena to optimize
+     * @return a new arena over the same symbol table, with the statements in the same order
+     */
+    public AstArena optimize(AstArena arena) {
+        AstArena result = new AstArena(arena.symbols());
+        int maxLength = 0;
+        for (int statement = 0; statement < arena.statementCount(); statement++) {
+            maxLength = Math.max(maxLength, arena.root(statement) + 1 - arena.start(statement));
+        }
+        // Per node, relative to the statement start: the node standing for its optimized form, and folded values
+        int[] replacement = new int[maxLength];
+        boolean[] constant = new boolean[maxLength];
+        boolean[] constantIsDouble = new boolean[maxLength];
+        long[] longValues = new long[maxLength];
+        double[] doubleValues = new double[maxLength];
+        boolean[] live = new boolean[maxLength];
+        for (int statement = 0; statement < arena.statementCount(); statement++) {
+            int start = arena.start(statement);
+            int length = arena.root(statement) + 1 - start;
+            for (int i = 0; i < length; i++) {
+                int node = start + i;
+                replacement[i] = i;
+                constant[i] = false;
+                live[i] = false;
+                NodeKind kind = arena.kind(node);
+                switch (kind) {
+                    case LONG_LITERAL -> {
+                        constant[i] = true;
+                        constantIsDouble[i] = false;
+                        longValues[i] = arena.longValue(node);
+                    }
+                    case DOUBLE_LITERAL -> {
+                        constant[i] = true;
+                        constantIsDouble[i] = true;
+                        doubleValues[i] = arena.doubleValue(node);
+                    }
+                    case PLUS -> replacement[i] = replacement[i - 1];
+                    case NEGATE -> {
+                        int operand = replacement[i - 1];
+                        if (constant[operand]) {
+                            constant[i] = true;
+                            constantIsDouble[i] = constantIsDouble[operand];
+                            longValues[i] = -longValues[operand];
+                            doubleValues[i] = -doubleValues[operand];
+                        } else if (arena.kind(start + operand) == NodeKind.NEGATE) {
+                            replacement[i] = replacement[operand - 1];
+                        }
+                    }
+                    case ADD, SUB, MUL, DIV, MOD -> {
+                        int left = replacement[arena.operand(node) - start];
+                        int right = replacement[i - 1];
+                        BinaryOp op = kind.binaryOp();
+                        if (constant[left] && constant[right] && !isDivisionByZero(op, constantIsDouble[right]
+                                ? doubleValues[right] : longValues[right])) {
+                            constant[i] = true;
+                            constantIsDouble[i] = constantIsDouble[left] || constantIsDouble[right];
+                            if (constantIsDouble[i]) {
+                                doubleValues[i] = Arithmetic.apply(op,
+                                        constantIsDouble[left] ? doubleValues[left] : longValues[left],
+                                        constantIsDouble[right] ? doubleValues[right] : longValues[right]);
+                            } else {
+                                longValues[i] = Arithmetic.apply(op, longValues[left], longValues[right]);
+                            }
+                        } else if ((op == BinaryOp.MUL || op == BinaryOp.DIV)
+                                && isLongConstant(constant, constantIsDouble, longValues, right, 1L)) {
+                            replacement[i] = left;
+                        } else if (op == BinaryOp.MUL
+                                && isLongConstant(constant, constantIsDouble, longValues, left, 1L)) {
+                            replacement[i] = right;
+                        } else if (op == BinaryOp.SUB
+                                && isLongConstant(constant, constantIsDouble, longValues, right, 0L)) {
+                            replacement[i] = left;
+                        }
+                    }
+                    default -> {
+                        // variables and ++/-- are kept as they are
+                    }
+                }
+            }
+
+            live[replacement[length - 1]] = true;
+            for (int i = length - 1; i >= 0; i--) {
+                if (!live[i] || constant[i] || replacement[i] != i) {
+                    continue;
+                }
+                NodeKind kind = arena.kind(start + i);
+                if (kind.arity() == 2) {
+                    live[replacement[arena.operand(start + i) - start]] = true;
+                }
+                if (kind.arity() > 0) {
+                    live[replacement[i - 1]] = true;
+                }
+            }
+
+            for (int i = 0; i < length; i++) {
+                if (!live[i]) {
+                    continue;
+                }
+                int node = start + i;
+                if (!constant[i]) {
+                    result.append(arena.kind(node), arena.kind(node).arity() == 0 ? arena.longValue(node) : 0L);
+                } else if (constantIsDouble[i]) {
+                    result.literal(doubleValues[i]);
+                } else {
+                    result.literal(longValues[i]);
+                }
+            }
+            result.endStatement(arena.target(statement), arena.assignOp(statement));
+        }
+        return result;
+    }
+
+    private Expr optimizeBinary(BinaryExpr binary) {
+        Expr left = optimize(binary.left());
+        Expr right = optimize(binary.right());
+        BinaryOp op = binary.op();
+        if (left instanceof LiteralExpr l && right instanceof LiteralExpr r && !isDivisionByZero(op, r)) {
+            return new LiteralExpr(Arithmetic.apply(op, l.value(), r.value()));
+        }
+        switch (op) {
+            case MUL -> {
+                if (isLongLiteral(right, 1L)) {
+                    return left;
+                }
+                if (isLongLiteral(left, 1L)) {
+                    return right;
+                }
+            }
+            case DIV -> {
+                if (isLongLiteral(right, 1L)) {
+                    return left;
+                }
+            }
+            case SUB -> {
+                if (isLongLiteral(right, 0L)) {
+                    return left;
+                }
+            }
+            default -> {
+                // no identity that is exact for every value
+            }
+        }
+        if (left == binary.left() && right == binary.right()) {
+            return binary;
+        }
+        return new BinaryExpr(left, op, right);
+    }
+
+    private Expr optimizeUnary(UnaryExpr unary) {
+        UnaryOp op = unary.op();
+        if (op != UnaryOp.PLUS && op != UnaryOp.MINUS) {
+            // ++/-- need their operand as written, including the error for a non-variable operand
+            return unary;
+        }
+        Expr operand = optimize(unary.expr());
+        if (op == UnaryOp.PLUS) {
+            return operand;
+        }
+        if (operand instanceof LiteralExpr literal) {
+            return new LiteralExpr(Arithmetic.negate(literal.value()));
+        }
+        if (operand instanceof UnaryExpr inner && inner.op() == UnaryOp.MINUS) {
+            return inner.expr();
+        }
+        return operand == unary.expr() ? unary : new UnaryExpr(op, operand);
+    }
+
+    private static boolean isDivisionByZero(BinaryOp op, LiteralExpr divisor) {
+        return (op == BinaryOp.DIV || op == BinaryOp.MOD) && divisor.value().doubleValue() == 0.0;
+    }
+
+    private static boolean isDivisionByZero(BinaryOp op, double divisor) {
+        return (op == BinaryOp.DIV || op == BinaryOp.MOD) && divisor == 0.0;
+    }
+
+    private static boolean isLongConstant(boolean[] constant, boolean[] isDouble, long[] values, int node,
+                                          long value) {
+        return constant[node] && !isDouble[node] && values[node] == value;
+    }
+
+    private static boolean isLongLiteral(Expr expr, long value) {
+        return expr instanceof LiteralExpr literal
+                && !Arithmetic.isFloating(literal.value())
+                && literal.value().longValue() == value;
+    }
+}
@@ -0,0 +1,222 @@
+package com.shaibachar.calc.parallel;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.exceptions.ParseException;
+import com.shaibachar.calc.lexer.Lexer;
+import com.shaibachar.calc.lexer.TokenBuffer;
+import com.shaibachar.calc.lexer.TokenType;
+import com.shaibachar.calc.parser.stmt.Stmt;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Lexes and parses the lines of a script on a {@link ForkJoinPool}, since no line depends on another until it
+ * is evaluated. The lines are split into contiguous chunks, each handled by one task, in two passes:
+ * <ol>
+ * <li>every chunk lexes its lines and collects their identifiers, which are then interned into the target
+ * {@link SymbolTable} chunk by chunk on the calling thread;</li>
+ * <li>every chunk parses its lexed lines against that table. All names are already in it, so the workers only
+ * read the table and the statements carry the same slots as if they had been parsed one by one.</li>
+ * </ol>
+ * A chunk stops at its first error, and chunks after the earliest error known so far are skipped. Only the
+ * statements before the first failing line and that line's error are returned, which is all a caller running
+ * the script in line order can use.
+ * <p>
+ * Callers with long scripts should parse them in windows of {@link #windowSize()} lines and run each window
+ * before parsing the next, so that only one window of statements is alive at a time.
+ * <p>
+ * Lines go through the backend's front end ({@link Backend#parse}) but not through the parse cache, whose
+ * lock would be contended by every worker. A parser keeps the token buffers of its last call for reuse, so it
+ * runs one {@link #parse} call at a time.
+ */
+public final class ParallelParser {
+    private static final Logger LOGGER = Logger.getLogger(ParallelParser.class.getName());
+    private static final int MIN_CHUNK_SIZE = 64;
+    // Chunks per worker, so that workers finishing early can pick up the remaining chunks
+    private static final int CHUNKS_PER_WORKER = 8;
+
+    private final Backend backend;
+    private final ForkJoinPool pool;
+    // Token buffers of the lines being parsed, reused from one call to the next
+    private TokenBuffer[] buffers = new TokenBuffer[0];
+
+    public ParallelParser(Backend backend, ForkJoinPool pool) {
+        this.backend = backend;
+        this.pool = pool;
+    }
+
+    /**
+     * Returns a number of lines that splits into several chunks of the minimum size per worker.
+     *
+     * @return the suggested number of lines per {@link #parse} call
+     */
+    public int windowSize() {
+        return pool.getParallelism() * CHUNKS_PER_WORKER * MIN_CHUNK_SIZE;
+    }
+
+    /**
+     * Parses the lines of a script. Names are interned into {@code symbols}, which must not be used by other
+     * threads until this method returns.
+     *
+     * @param lines the script lines, in order
+     * @param symbols the symbol table of the environment the statements will run against
+     * @return the statements up to the first line that fails to lex or parse, and that line's error
+     */
+    public ParsedScript parse(List<String> lines, SymbolTable symbols) {
+        long startNs = System.nanoTime();
+        int lineCount = lines.size();
+        int targetChunks = pool.getParallelism() * CHUNKS_PER_WORKER;
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, (lineCount + targetChunks - 1) / targetChunks);
+        int chunkCount = (lineCount + chunkSize - 1) / chunkSize;
+        if (buffers.length < lineCount) {
+            buffers = Arrays.copyOf(buffers, lineCount);
+        }
+        Pass pass = new Pass(lines, chunkSize, chunkCount);
+
+        SymbolTable[] names = new SymbolTable[chunkCount];
+        pool.invoke(new ChunkRange(0, chunkCount, chunk -> names[chunk] = pass.lex(chunk)));
+        for (SymbolTable chunkNames : names) {
+            if (chunkNames == null) {
+                break;
+            }
+            for (int slot = 0; slot < chunkNames.size(); slot++) {
+                symbols.intern(chunkNames.name(slot));
+            }
+        }
+
+        Stmt[] statements = new Stmt[lineCount];
+        pool.invoke(new ChunkRange(0, chunkCount, chunk -> pass.parse(chunk, symbols, statements)));
+
+        int failedLine = Math.min(pass.failedLine.get(), lineCount);
+        ParseException error = failedLine < lineCount ? pass.errors[failedLine / chunkSize] : null;
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("perf.component=parallel_parse elapsed_ms=" + (System.nanoTime() - startNs) / 1_000_000
+                    + " lines=" + lineCount + " chunks=" + chunkCount);
+        }
+        return new ParsedScript(statements, failedLine, error);
+    }
+
+    /** State shared by the chunk tasks of one {@link #parse} call. */
+    private final class Pass {
+        private final List<String> lines;
+        private final int chunkSize;
+        // Earliest line known to fail; chunks starting after it have nothing to contribute
+        private final AtomicInteger failedLine = new AtomicInteger(Integer.MAX_VALUE);
+        // First error of each chunk and the line it occurred on
+        private final ParseException[] errors;
+        private final int[] errorLines;
+
+        Pass(List<String> lines, int chunkSize, int chunkCount) {
+            this.lines = lines;
+            this.chunkSize = chunkSize;
+            this.errors = new ParseException[chunkCount];
+            this.errorLines = new int[chunkCount];
+        }
+
+        /**
+         * Lexes the lines of a chunk into their token buffers and collects their identifiers in first-seen order.
+         *
+         * @return the chunk's names, or null if the chunk starts after a failing line
+         */
+        SymbolTable lex(int chunk) {
+            int start = chunk * chunkSize;
+            if (start > failedLine.get()) {
+                return null;
+            }
+            SymbolTable names = new SymbolTable();
+            int end = Math.min(start + chunkSize, lines.size());
+            for (int i = start; i < end; i++) {
+                String line = lines.get(i);
+                if (isBlank(line)) {
+                    continue;
+                }
+                TokenBuffer tokens = buffers[i];
+                if (tokens == null) {
+                    tokens = new TokenBuffer();
+                    buffers[i] = tokens;
+                }
+                try {
+                    new Lexer(line).tokenizeInto(tokens);
+                } catch (ParseException e) {
+                    fail(chunk, i, e);
+                    break;
+                }
+                for (int token = 0; token < tokens.size(); token++) {
+                    if (tokens.type(token) == TokenType.IDENT) {
+                        int tokenStart = tokens.start(token);
+                        names.intern(tokens.source(), tokenStart, tokenStart + tokens.length(token));
+                    }
+                }
+            }
+            return names;
+        }
+
+        /**
+         * Parses the lexed lines of a chunk into {@code statements}, stopping at the first failing line.
+         */
+        void parse(int chunk, SymbolTable symbols, Stmt[] statements) {
+            int start = chunk * chunkSize;
+            int end = Math.min(start + chunkSize, lines.size());
+            for (int i = start; i < end && i <= failedLine.get(); i++) {
+                if (errors[chunk] != null && errorLines[chunk] == i) {
+                    // The line failed to lex
+                    return;
+                }
+                if (isBlank(lines.get(i))) {
+                    continue;
+                }
+                try {
+                    statements[i] = backend.parse(buffers[i], symbols);
+                } catch (ParseException e) {
+                    fail(chunk, i, e);
+                    return;
+                }
+            }
+        }
+
+        private void fail(int chunk, int line, ParseException e) {
+            errors[chunk] = e;
+            errorLines[chunk] = line;
+            failedLine.accumulateAndGet(line, Math::min);
+        }
+    }
+
+    private static boolean isBlank(String line) {
+        return line == null || line.trim().isEmpty();
+    }
+
+    /** Runs an action on every chunk of a range, splitting the range in halves down to single chunks. */
+    private static final class ChunkRange extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final ChunkAction action;
+
+        ChunkRange(int from, int to, ChunkAction action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                action.run(from);
+            } else if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ChunkRange(from, middle, action), new ChunkRange(middle, to, action));
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkAction {
+        void run(int chunk);
+    }
+}
@@ -0,0 +1,51 @@
+package com.shaibachar.calc.parallel;
+
+import com.shaibachar.calc.exceptions.ParseException;
+import com.shaibachar.calc.parser.stmt.Stmt;
+
+/**
+ * The result of {@link ParallelParser#parse}: one statement per line for the lines before the first failing
+ * line, and the error of that line if there is one.
+ */
+public final class ParsedScript {
+    private final Stmt[] statements;
+    private final int parsedLines;
+    private final ParseException error;
+
+    ParsedScript(Stmt[] statements, int parsedLines, ParseException error) {
+        this.statements = statements;
+        this.parsedLines = parsedLines;
+        this.error = error;
+    }
+
+    /**
+     * Returns the number of lines that parsed, which is also the index of the failing line if there is one.
+     *
+     * @return the number of leading lines with a statement (or blank)
+     */
+    public int parsedLines() {
+        return parsedLines;
+    }
+
+    /**
+     * Returns the statement of a line.
+     *
+     * @param index the line index, below {@link #parsedLines()}
+     * @return the statement, or null if the line is blank
+     */
+    public Stmt statement(int index) {
+        if (index >= parsedLines) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return statements[index];
+    }
+
+    /**
+     * Returns the error of the first line that failed to lex or parse, without line context.
+     *
+     * @return the error, or null if every line parsed
+     */
+    public ParseException error() {
+        return error;
+    }
+}
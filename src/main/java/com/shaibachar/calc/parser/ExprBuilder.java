@@ -0,0 +1,61 @@
+package com.shaibachar.calc.parser;
+
+/**
+ * Receives the nodes of parsed statements from {@link Parser} in post-order: the operands of an operator are
+ * always complete before the operator itself is emitted, so a builder only needs a stack of completed operands.
+ * Implemented by the AST tree builder behind {@link Parser#parseStatement()} and by the flat
+ * {@link com.shaibachar.calc.parser.flat.AstArena}.
+ */
+public interface ExprBuilder {
+    /**
+     * Emits a long literal operand.
+     *
+     * @param value the literal value
+     */
+    void literal(long value);
+
+    /**
+     * Emits a double literal operand.
+     *
+     * @param value the literal value
+     */
+    void literal(double value);
+
+    /**
+     * Emits a variable operand.
+     *
+     * @param name the variable name
+     * @param slot the slot the name was resolved to, or -1 if it was not resolved
+     */
+    void variable(String name, int slot);
+
+    /**
+     * Applies a prefix operator to the last completed operand.
+     *
+     * @param op the operator
+     */
+    void unary(UnaryOp op);
+
+    /**
+     * Applies a postfix operator to the last completed operand.
+     *
+     * @param op the operator
+     */
+    void postfix(PostfixOp op);
+
+    /**
+     * Combines the last two completed operands with a binary operator.
+     *
+     * @param op the operator
+     */
+    void binary(BinaryOp op);
+
+    /**
+     * Completes an assignment statement whose right-hand side is the last completed operand.
+     *
+     * @param name the target variable name
+     * @param slot the slot the target was resolved to, or -1 if it was not resolved
+     * @param op the assignment operator
+     */
+    void assign(String name, int slot, AssignOp op);
+}
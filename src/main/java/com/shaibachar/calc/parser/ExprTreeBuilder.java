@@ -0,0 +1,70 @@
+package com.shaibachar.calc.parser;
+
+import com.shaibachar.calc.parser.expr.Expr;
+import com.shaibachar.calc.parser.expr.ExprFactory;
+import com.shaibachar.calc.parser.stmt.AssignStmt;
+
+import java.util.Arrays;
+
+/**
+ * Builds the object AST ({@link Expr} nodes) from the post-order node stream of the {@link Parser}, creating the
+ * nodes through an {@link ExprFactory}.
+ */
+final class ExprTreeBuilder implements ExprBuilder {
+    private final ExprFactory factory;
+    private Expr[] operands = new Expr[8];
+    private int size;
+    private AssignStmt statement;
+
+    ExprTreeBuilder(ExprFactory factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public void literal(long value) {
+        push(factory.literal(value));
+    }
+
+    @Override
+    public void literal(double value) {
+        push(factory.literal(value));
+    }
+
+    @Override
+    public void variable(String name, int slot) {
+        push(factory.variable(name, slot));
+    }
+
+    @Override
+    public void unary(UnaryOp op) {
+        operands[size - 1] = factory.unary(op, operands[size - 1]);
+    }
+
+    @Override
+    public void postfix(PostfixOp op) {
+        operands[size - 1] = factory.postfix(operands[size - 1], op);
+    }
+
+    @Override
+    public void binary(BinaryOp op) {
+        Expr right = operands[--size];
+        operands[size - 1] = factory.binary(operands[size - 1], op, right);
+    }
+
+    @Override
+    public void assign(String name, int slot, AssignOp op) {
+        Expr expr = operands[--size];
+        statement = slot < 0 ? new AssignStmt(name, op, expr) : new AssignStmt(name, slot, op, expr);
+    }
+
+    AssignStmt statement() {
+        return statement;
+    }
+
+    private void push(Expr expr) {
+        if (size == operands.length) {
+            operands = Arrays.copyOf(operands, size * 2);
+        }
+        operands[size++] = expr;
+    }
+}
@@ -0,0 +1,308 @@
+package com.shaibachar.calc.parser;
+
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.exceptions.ErrorMessages;
+import com.shaibachar.calc.exceptions.ParseException;
+import com.shaibachar.calc.lexer.Token;
+import com.shaibachar.calc.lexer.TokenBuffer;
+import com.shaibachar.calc.lexer.TokenType;
+import com.shaibachar.calc.parser.expr.BinaryExpr;
+import com.shaibachar.calc.parser.expr.Expr;
+import com.shaibachar.calc.parser.expr.LiteralExpr;
+import com.shaibachar.calc.parser.expr.PostfixExpr;
+import com.shaibachar.calc.parser.expr.UnaryExpr;
+import com.shaibachar.calc.parser.expr.VarExpr;
+import com.shaibachar.calc.parser.stmt.AssignStmt;
+import com.shaibachar.calc.parser.stmt.Stmt;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * An operator-precedence parser for the same grammar as {@link Parser}, built on explicit operand and operator
+ * stacks instead of recursion. It produces the same AST and the same {@link ParseException}s at the same
+ * positions, but nesting depth (parentheses, chains of unary operators) is limited by the heap rather than by the
+ * thread stack, so machine-generated lines like {@code x = ((((...1...))))} do not overflow.
+ * Example usage:
+ * <pre>
+ * Stmt stmt = new IterativeParser(new Lexer("i += 2 * (3 + 4)").tokenizeCompact()).parseStatement();
+ * </pre>
+ * Prefix operators and opening parentheses are pushed on the operator stack while an operand is expected.
+ * Once a primary is read, a postfix {@code ++}/{@code --} is applied to it, then the prefix operators right
+ * above it; binary operators reduce the stack while its top binds at least as tightly, which keeps them
+ * left-associative.
+ */
+public class IterativeParser {
+    private static final Logger LOGGER = Logger.getLogger(IterativeParser.class.getName());
+    private static final UnaryOp[] UNARY_OPS = UnaryOp.values();
+    private static final BinaryOp[] BINARY_OPS = BinaryOp.values();
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Operator stack entries: an open parenthesis, a prefix operator or a binary operator
+    private static final int PAREN = -1;
+    private static final int UNARY = 0;
+    private static final int BINARY = 16;
+
+    private final TokenBuffer tokens;
+    private final SymbolTable symbols;
+    private int current;
+    private Expr[] operands = new Expr[INITIAL_CAPACITY];
+    private int operandCount;
+    private int[] operators = new int[INITIAL_CAPACITY];
+    private int operatorCount;
+
+    public IterativeParser(List<Token> tokens) {
+        this(TokenBuffer.of(tokens));
+    }
+
+    public IterativeParser(TokenBuffer tokens) {
+        this(tokens, null);
+    }
+
+    public IterativeParser(TokenBuffer tokens, SymbolTable symbols) {
+        this.tokens = tokens;
+        this.symbols = symbols;
+    }
+
+    public Stmt parseStatement() {
+        LOGGER.fine("Parsing statement");
+        long startNs = System.nanoTime();
+
+        int ident = consume(TokenType.IDENT, ErrorMessages.PARSE_EXPECTED_IDENTIFIER);
+        AssignOp assignOp = parseAssignOp();
+        Expr expr = expression();
+        consume(TokenType.EOF, ErrorMessages.PARSE_UNEXPECTED_TOKEN_AFTER_EXPRESSION);
+
+        long elapsedMs = (System.nanoTime() - startNs) / 1_000_000;
+        LOGGER.fine("perf.component=iterative_parser_parse_statement elapsed_ms=" + elapsedMs);
+        if (symbols == null) {
+            return new AssignStmt(tokens.text(ident), assignOp, expr);
+        }
+        int slot = resolve(ident);
+        return new AssignStmt(symbols.name(slot), slot, assignOp, expr);
+    }
+
+    private AssignOp parseAssignOp() {
+        if (match(TokenType.EQUAL)) {
+            return AssignOp.ASSIGN;
+        }
+        if (match(TokenType.PLUS_EQUAL)) {
+            return AssignOp.PLUS_ASSIGN;
+        }
+        if (match(TokenType.MINUS_EQUAL)) {
+            return AssignOp.MINUS_ASSIGN;
+        }
+        if (match(TokenType.STAR_EQUAL)) {
+            return AssignOp.MUL_ASSIGN;
+        }
+        if (match(TokenType.SLASH_EQUAL)) {
+            return AssignOp.DIV_ASSIGN;
+        }
+        if (match(TokenType.PERCENT_EQUAL)) {
+            return AssignOp.MOD_ASSIGN;
+        }
+        throw error(peek(), ErrorMessages.PARSE_EXPECTED_ASSIGN_OP);
+    }
+
+    /**
+     * Parses an expression, alternating between the operand position (prefix operators, opening parentheses and
+     * a primary) and the operator position (a binary operator, a closing parenthesis or the end of the expression).
+     * @return the parsed expression
+     */
+    private Expr expression() {
+        operandCount = 0;
+        operatorCount = 0;
+        int openParens = 0;
+        boolean expectOperand = true;
+        while (true) {
+            if (expectOperand) {
+                if (match(TokenType.PLUS_PLUS)) {
+                    pushOperator(UNARY + UnaryOp.PRE_INC.ordinal());
+                } else if (match(TokenType.MINUS_MINUS)) {
+                    pushOperator(UNARY + UnaryOp.PRE_DEC.ordinal());
+                } else if (match(TokenType.PLUS)) {
+                    pushOperator(UNARY + UnaryOp.PLUS.ordinal());
+                } else if (match(TokenType.MINUS)) {
+                    pushOperator(UNARY + UnaryOp.MINUS.ordinal());
+                } else if (match(TokenType.LPAREN)) {
+                    pushOperator(PAREN);
+                    openParens++;
+                } else {
+                    pushOperand(primary());
+                    completeOperand();
+                    expectOperand = false;
+                }
+                continue;
+            }
+            BinaryOp op = matchBinaryOperator();
+            if (op != null) {
+                reduce(precedence(op));
+                pushOperator(BINARY + op.ordinal());
+                expectOperand = true;
+            } else if (openParens > 0) {
+                consume(TokenType.RPAREN, ErrorMessages.PARSE_EXPECTED_RPAREN);
+                reduce(0);
+                operatorCount--;
+                openParens--;
+                completeOperand();
+            } else {
+                reduce(0);
+                return operands[--operandCount];
+            }
+        }
+    }
+
+    /**
+     * Finishes the operand on top of the stack: applies an optional postfix operator, then the prefix operators
+     * waiting right above it, innermost first.
+     */
+    private void completeOperand() {
+        Expr operand = operands[operandCount - 1];
+        if (match(TokenType.PLUS_PLUS)) {
+            operand = new PostfixExpr(operand, PostfixOp.POST_INC);
+        } else if (match(TokenType.MINUS_MINUS)) {
+            operand = new PostfixExpr(operand, PostfixOp.POST_DEC);
+        }
+        while (operatorCount > 0 && operators[operatorCount - 1] >= UNARY && operators[operatorCount - 1] < BINARY) {
+            operand = new UnaryExpr(UNARY_OPS[operators[--operatorCount] - UNARY], operand);
+        }
+        operands[operandCount - 1] = operand;
+    }
+
+    /**
+     * Combines operands with the binary operators on top of the stack while they bind at least as tightly as
+     * {@code minPrecedence}. Stops at an open parenthesis.
+     */
+    private void reduce(int minPrecedence) {
+        while (operatorCount > 0 && operators[operatorCount - 1] >= BINARY) {
+            BinaryOp op = BINARY_OPS[operators[operatorCount - 1] - BINARY];
+            if (precedence(op) < minPrecedence) {
+                return;
+            }
+            operatorCount--;
+            Expr right = operands[--operandCount];
+            operands[operandCount - 1] = new BinaryExpr(operands[operandCount - 1], op, right);
+        }
+    }
+
+    private BinaryOp matchBinaryOperator() {
+        if (match(TokenType.PLUS)) {
+            return BinaryOp.ADD;
+        }
+        if (match(TokenType.MINUS)) {
+            return BinaryOp.SUB;
+        }
+        if (match(TokenType.STAR)) {
+            return BinaryOp.MUL;
+        }
+        if (match(TokenType.SLASH)) {
+            return BinaryOp.DIV;
+        }
+        if (match(TokenType.PERCENT)) {
+            return BinaryOp.MOD;
+        }
+        return null;
+    }
+
+    private static int precedence(BinaryOp op) {
+        return op == BinaryOp.ADD || op == BinaryOp.SUB ? 1 : 2;
+    }
+
+    /**
+     * Parses a number literal or an identifier; parenthesized expressions are handled by {@link #expression()}.
+     * @return the parsed expression
+     * @throws ParseException if the current token is neither
+     */
+    private Expr primary() {
+        if (match(TokenType.NUMBER)) {
+            int number = previous();
+            if (tokens.hasNumber(number)) {
+                return tokens.isDecimal(number)
+                        ? new LiteralExpr(tokens.doubleValue(number))
+                        : new LiteralExpr(tokens.longValue(number));
+            }
+            String literal = tokens.text(number);
+            try {
+                if (literal.contains(".")) {
+                    return new LiteralExpr(Double.parseDouble(literal));
+                }
+                return new LiteralExpr(Long.parseLong(literal));
+            } catch (NumberFormatException ex) {
+                throw error(previous(), ErrorMessages.PARSE_INVALID_NUMBER_LITERAL);
+            }
+        }
+        if (match(TokenType.IDENT)) {
+            if (symbols == null) {
+                return new VarExpr(tokens.text(previous()));
+            }
+            int slot = resolve(previous());
+            return new VarExpr(symbols.name(slot), slot);
+        }
+        throw error(peek(), ErrorMessages.PARSE_EXPECTED_EXPRESSION);
+    }
+
+    private void pushOperand(Expr expr) {
+        if (operandCount == operands.length) {
+            operands = Arrays.copyOf(operands, operandCount * 2);
+        }
+        operands[operandCount++] = expr;
+    }
+
+    private void pushOperator(int operator) {
+        if (operatorCount == operators.length) {
+            operators = Arrays.copyOf(operators, operatorCount * 2);
+        }
+        operators[operatorCount++] = operator;
+    }
+
+    private boolean match(TokenType type) {
+        if (check(type)) {
+            advance();
+            return true;
+        }
+        return false;
+    }
+
+    private int consume(TokenType type, String message) {
+        if (check(type)) {
+            return advance();
+        }
+        throw error(peek(), message);
+    }
+
+    private boolean check(TokenType type) {
+        if (isAtEnd()) {
+            return type == TokenType.EOF;
+        }
+        return tokens.type(current) == type;
+    }
+
+    private int advance() {
+        if (!isAtEnd()) {
+            current++;
+        }
+        return previous();
+    }
+
+    private boolean isAtEnd() {
+        return tokens.type(current) == TokenType.EOF;
+    }
+
+    private int peek() {
+        return current;
+    }
+
+    private int previous() {
+        return current - 1;
+    }
+
+    private int resolve(int ident) {
+        int start = tokens.start(ident);
+        return symbols.intern(tokens.source(), start, start + tokens.length(ident));
+    }
+
+    private ParseException error(int token, String message) {
+        return new ParseException(message + " at position " + tokens.position(token));
+    }
+}
@@ -1,11 +1,13 @@
 package com.shaibachar.calc.parser;
 
+import com.shaibachar.calc.eval.SymbolTable;
 import com.shaibachar.calc.exceptions.ErrorMessages;
 import com.shaibachar.calc.exceptions.ParseException;
 import com.shaibachar.calc.lexer.Token;
+import com.shaibachar.calc.lexer.TokenBuffer;
 import com.shaibachar.calc.lexer.TokenType;
-import com.shaibachar.calc.parser.expr.*;
-import com.shaibachar.calc.parser.stmt.AssignStmt;
+import com.shaibachar.calc.parser.expr.ExprFactory;
+import com.shaibachar.calc.parser.flat.AstArena;
 import com.shaibachar.calc.parser.stmt.Stmt;
 
 import java.util.List;
@@ -21,28 +23,79 @@ import java.util.logging.Logger;
  * Parser parser = new Parser(tokens);
  * Stmt stmt = parser.parseStatement();
  * </pre>
+ * The parser works on a compact {@link TokenBuffer}; a {@code List<Token>} is copied into one first,
+ * so lexer output from {@link com.shaibachar.calc.lexer.Lexer#tokenizeCompact()} is consumed without conversion.
+ * When a {@link SymbolTable} is given, identifiers are resolved to slots while parsing (the same result as running
+ * {@link com.shaibachar.calc.eval.SlotResolver} afterwards), interning names straight from the token text.
+ * Nodes are emitted in post-order to an {@link ExprBuilder}: {@link #parseStatement()} builds the object AST from
+ * them, and {@link #parseStatement(AstArena)} appends the statement to a flat {@link AstArena} without creating
+ * any node objects. The object nodes are created through an {@link ExprFactory}; passing an
+ * {@link com.shaibachar.calc.parser.expr.InterningExprFactory} makes repeated subtrees share one instance.
  */
 public class Parser {
     private static final Logger LOGGER = Logger.getLogger(Parser.class.getName());
-    private final List<Token> tokens;
+    private final TokenBuffer tokens;
+    private final SymbolTable symbols;
+    private final ExprFactory factory;
+    private ExprBuilder builder;
     private int current;
 
     public Parser(List<Token> tokens) {
+        this(TokenBuffer.of(tokens));
+    }
+
+    public Parser(TokenBuffer tokens) {
+        this(tokens, null);
+    }
+
+    public Parser(TokenBuffer tokens, SymbolTable symbols) {
+        this(tokens, symbols, ExprFactory.PLAIN);
+    }
+
+    public Parser(TokenBuffer tokens, SymbolTable symbols, ExprFactory factory) {
         this.tokens = tokens;
+        this.symbols = symbols;
+        this.factory = factory;
     }
 
     public Stmt parseStatement() {
+        ExprTreeBuilder tree = new ExprTreeBuilder(factory);
+        parseStatement(tree);
+        return tree.statement();
+    }
+
+    /**
+     * Parses a statement straight into a flat arena. Names are resolved in the arena's symbol table, so the
+     * parser's own symbol table, if any, should be the same one to avoid interning names twice.
+     * If parsing fails, the partial statement is discarded and the arena is left as it was.
+     *
+     * @param arena the arena to append the statement to
+     * @return the index of the statement in the arena
+     * @throws ParseException if the tokens are not a valid statement
+     */
+    public int parseStatement(AstArena arena) {
+        try {
+            parseStatement((ExprBuilder) arena);
+        } catch (ParseException e) {
+            arena.discardPending();
+            throw e;
+        }
+        return arena.statementCount() - 1;
+    }
+
+    private void parseStatement(ExprBuilder builder) {
+        this.builder = builder;
         LOGGER.fine("Parsing statement");
         long startNs = System.nanoTime();
 
         // Expect an assignment statement of the form: IDENT ASSIGN_OP EXPR EOF
-        Token ident = consume(TokenType.IDENT, ErrorMessages.PARSE_EXPECTED_IDENTIFIER);
+        int ident = consume(TokenType.IDENT, ErrorMessages.PARSE_EXPECTED_IDENTIFIER);
 
         // Parse the assignment operator, which can be =, +=, -=, *=, /=, or %=
         AssignOp assignOp = parseAssignOp();
 
         // Parse the expression on the right-hand side of the assignment
-        Expr expr = expression();
+        expression();
 
         // After parsing the expression, we expect to reach the end of the token list (EOF).
         // If there are any extra tokens, it's an error.
@@ -50,7 +103,12 @@ public class Parser {
 
         long elapsedMs = (System.nanoTime() - startNs) / 1_000_000;
         LOGGER.fine("perf.component=parser_parse_statement elapsed_ms=" + elapsedMs);
-        return new AssignStmt(ident.lexeme(), assignOp, expr);
+        if (symbols == null) {
+            builder.assign(tokens.text(ident), -1, assignOp);
+            return;
+        }
+        int slot = resolve(ident);
+        builder.assign(symbols.name(slot), slot, assignOp);
     }
 
     /**
@@ -86,131 +144,142 @@ public class Parser {
         throw error(peek(), ErrorMessages.PARSE_EXPECTED_ASSIGN_OP);
     }
 
-    private Expr expression() {
+    private void expression() {
         LOGGER.fine("Parsing expression");
-        return additive();
+        additive();
     }
 
     /**
      * Parses an additive expression, which consists of multiplicative expressions combined with addition or subtraction operators.
-     * @return the parsed expression
      */
-    private Expr additive() {
+    private void additive() {
         LOGGER.fine("Parsing additive expression");
 
         // Start by parsing the leftmost multiplicative expression
-        Expr expr = multiplicative();
+        multiplicative();
 
         // Then, as long as we see a + or - operator, we consume it and parse the next multiplicative expression on the right
         while (match(TokenType.PLUS, TokenType.MINUS)) {
             // The operator token determines whether this is an addition or subtraction operation
-            Token operator = previous();
+            TokenType operator = tokens.type(previous());
 
             // Parse the right-hand side multiplicative expression
-            Expr right = multiplicative();
+            multiplicative();
 
-            // Create a new BinaryExpr node that combines the left and right expressions with the appropriate operator
-            expr = new BinaryExpr(expr, operator.type() == TokenType.PLUS ? BinaryOp.ADD : BinaryOp.SUB, right);
+            // Emit a binary node that combines the left and right expressions with the appropriate operator
+            builder.binary(operator == TokenType.PLUS ? BinaryOp.ADD : BinaryOp.SUB);
         }
-        return expr;
     }
 
     /**
      * Parses a multiplicative expression, which consists of unary expressions combined with multiplication,
      * division, or modulus operators.
-     * @return the parsed expression
      */
-    private Expr multiplicative() {
+    private void multiplicative() {
         LOGGER.fine("Parsing multiplicative expression");
 
         // Start by parsing the leftmost unary expression
-        Expr expr = unary();
+        unary();
 
         // Then, as long as we see a *, /, or % operator, we consume it and parse the next unary expression on the right
         while (match(TokenType.STAR, TokenType.SLASH, TokenType.PERCENT)) {
 
             // The operator token determines whether this is a multiplication, division, or modulus operation
-            Token operator = previous();
+            int operator = previous();
 
             // Parse the right-hand side unary expression
-            Expr right = unary();
+            unary();
 
-            // Create a new BinaryExpr node that combines the left and right expressions with the appropriate operator
-            BinaryOp op = switch (operator.type()) {
+            // Emit a binary node that combines the left and right expressions with the appropriate operator
+            BinaryOp op = switch (tokens.type(operator)) {
                 case STAR -> BinaryOp.MUL;
                 case SLASH -> BinaryOp.DIV;
                 case PERCENT -> BinaryOp.MOD;
                 default -> throw error(operator, ErrorMessages.PARSE_INVALID_MULTIPLICATIVE_OPERATOR);
             };
-            expr = new BinaryExpr(expr, op, right);
+            builder.binary(op);
         }
-        return expr;
     }
 
     /**
      * Parses a unary expression, which can be a primary expression preceded by an
      * optional pre-increment, pre-decrement, unary plus, or unary minus operator.
-     * @return the parsed expression
      */
-    private Expr unary() {
+    private void unary() {
         LOGGER.fine("Parsing unary expression");
+        UnaryOp op;
         if (match(TokenType.PLUS_PLUS)) {
-            return new UnaryExpr(UnaryOp.PRE_INC, unary());
-        }
-        if (match(TokenType.MINUS_MINUS)) {
-            return new UnaryExpr(UnaryOp.PRE_DEC, unary());
+            op = UnaryOp.PRE_INC;
+        } else if (match(TokenType.MINUS_MINUS)) {
+            op = UnaryOp.PRE_DEC;
+        } else if (match(TokenType.PLUS)) {
+            op = UnaryOp.PLUS;
+        } else if (match(TokenType.MINUS)) {
+            op = UnaryOp.MINUS;
+        } else {
+            postfix();
+            return;
         }
-        if (match(TokenType.PLUS)) {
-            return new UnaryExpr(UnaryOp.PLUS, unary());
-        }
-        if (match(TokenType.MINUS)) {
-            return new UnaryExpr(UnaryOp.MINUS, unary());
-        }
-        return postfix();
+        unary();
+        builder.unary(op);
     }
 
     /**
      * Parses a postfix expression, which can be a primary expression followed by
      * an optional post-increment or post-decrement operator.
-     * @return the parsed expression
      */
-    private Expr postfix() {
+    private void postfix() {
         LOGGER.fine("Parsing postfix expression");
-        Expr expr = primary();
+        primary();
         if (match(TokenType.PLUS_PLUS)) {
-            return new PostfixExpr(expr, PostfixOp.POST_INC);
-        }
-        if (match(TokenType.MINUS_MINUS)) {
-            return new PostfixExpr(expr, PostfixOp.POST_DEC);
+            builder.postfix(PostfixOp.POST_INC);
+        } else if (match(TokenType.MINUS_MINUS)) {
+            builder.postfix(PostfixOp.POST_DEC);
         }
-        return expr;
     }
 
     /**
      * Parses a primary expression, which can be a number literal, an identifier, or a parenthesized expression.
-     * @return the parsed expression
      * @throws ParseException if the current token does not match any of the expected primary expression types
      */
-    private Expr primary() {
+    private void primary() {
         LOGGER.fine("Parsing primary expression");
         if (match(TokenType.NUMBER)) {
-            String literal = previous().lexeme();
+            int number = previous();
+            // Lexer-produced tokens carry the value parsed while validating the literal
+            if (tokens.hasNumber(number)) {
+                if (tokens.isDecimal(number)) {
+                    builder.literal(tokens.doubleValue(number));
+                } else {
+                    builder.literal(tokens.longValue(number));
+                }
+                return;
+            }
+            String literal = tokens.text(number);
             try {
                 if (literal.contains(".")) {
-                    return new LiteralExpr(Double.parseDouble(literal));
+                    builder.literal(Double.parseDouble(literal));
+                } else {
+                    builder.literal(Long.parseLong(literal));
                 }
-                return new LiteralExpr(Long.parseLong(literal));
             } catch (NumberFormatException ex) {
                 throw error(previous(), ErrorMessages.PARSE_INVALID_NUMBER_LITERAL);
             }
+            return;
         }
         if (match(TokenType.IDENT)) {
-            return new VarExpr(previous().lexeme());
+            if (symbols == null) {
+                builder.variable(tokens.text(previous()), -1);
+                return;
+            }
+            int slot = resolve(previous());
+            builder.variable(symbols.name(slot), slot);
+            return;
         }
         if (match(TokenType.LPAREN)) {
-            Expr expr = expression();
+            expression();
             consume(TokenType.RPAREN, ErrorMessages.PARSE_EXPECTED_RPAREN);
-            return expr;
+            return;
         }
         throw error(peek(), ErrorMessages.PARSE_EXPECTED_EXPRESSION);
     }
@@ -236,10 +305,10 @@ public class Parser {
      * Consumes the current token if it matches the expected type, otherwise throws a ParseException with the given message.
      * @param type the expected token type
      * @param message the error message to include in the exception if the token does not match
-     * @return the consumed token if it matches the expected type
+     * @return the index of the consumed token if it matches the expected type
      * @throws ParseException if the current token does not match the expected type
      */
-    private Token consume(TokenType type, String message) {
+    private int consume(TokenType type, String message) {
         if (check(type)) {
             return advance();
         }
@@ -255,14 +324,14 @@ public class Parser {
         if (isAtEnd()) {
             return type == TokenType.EOF;
         }
-        return peek().type() == type;
+        return tokens.type(current) == type;
     }
 
     /**
-     * Advances the current token index and returns the previous token.
-     * @return the token that was just consumed
+     * Advances the current token index and returns the index of the previous token.
+     * @return the index of the token that was just consumed
      */
-    private Token advance() {
+    private int advance() {
         if (!isAtEnd()) {
             current++;
         }
@@ -274,26 +343,31 @@ public class Parser {
      * @return true if the current token is EOF, false otherwise
      */
     private boolean isAtEnd() {
-        return peek().type() == TokenType.EOF;
+        return tokens.type(current) == TokenType.EOF;
     }
 
     /**
-     * Returns the current token without consuming it.
-     * @return the current token
+     * Returns the index of the current token without consuming it.
+     * @return the current token index
      */
-    private Token peek() {
-        return tokens.get(current);
+    private int peek() {
+        return current;
     }
 
     /**
-     * Returns the most recently consumed token.
-     * @return the previous token
+     * Returns the index of the most recently consumed token.
+     * @return the previous token index
      */
-    private Token previous() {
-        return tokens.get(current - 1);
+    private int previous() {
+        return current - 1;
+    }
+
+    private int resolve(int ident) {
+        int start = tokens.start(ident);
+        return symbols.intern(tokens.source(), start, start + tokens.length(ident));
     }
 
-    private ParseException error(Token token, String message) {
-        return new ParseException(message + " at position " + token.position());
+    private ParseException error(int token, String message) {
+        return new ParseException(message + " at position " + tokens.position(token));
     }
 }
@@ -10,6 +10,8 @@ import java.util.Objects;
  * The operator is represented by the BinaryOp enum, which defines the supported binary operations.
  * This class is immutable, meaning that once an instance is created, its state cannot be changed.
  * The equals and hashCode methods are overridden to allow for proper comparison and usage in collections.
+ * The hash is computed once, at construction, from the operands' own cached hashes, and equals compares hashes
+ * before walking the operands, so both stay cheap on deep trees.
  * The toString method provides a string representation of the binary expression for debugging purposes.
  * Example usage:
  * BinaryExpr expr = new BinaryExpr(new VarExpr("x"), BinaryOp.ADD, new VarExpr("y"));
@@ -19,11 +21,16 @@ public final class BinaryExpr implements Expr {
     private final Expr left;
     private final BinaryOp op;
     private final Expr right;
+    private final ResultType resultType;
+    private final int hash;
 
     public BinaryExpr(Expr left, BinaryOp op, Expr right) {
         this.left = left;
         this.op = op;
         this.right = right;
+        this.resultType = ResultType.promote(left.resultType(), right.resultType());
+        // Operands cache their own hashes, so this is constant time at any depth
+        this.hash = Objects.hash(left, op, right);
     }
 
     public Expr left() {
@@ -38,6 +45,11 @@ public final class BinaryExpr implements Expr {
         return right;
     }
 
+    @Override
+    public ResultType resultType() {
+        return resultType;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -46,14 +58,15 @@ public final class BinaryExpr implements Expr {
         if (!(o instanceof BinaryExpr other)) {
             return false;
         }
-        return Objects.equals(left, other.left)
+        return hash == other.hash
+                && Objects.equals(left, other.left)
                 && Objects.equals(op, other.op)
                 && Objects.equals(right, other.right);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(left, op, right);
+        return hash;
     }
 
     @Override
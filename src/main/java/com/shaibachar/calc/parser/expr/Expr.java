@@ -1,4 +1,13 @@
 package com.shaibachar.calc.parser.expr;
 
 public interface Expr {
+    /**
+     * Returns the statically inferred type of this expression's result. Nodes compute it once when they are
+     * created, from their operator and the result types of their children.
+     *
+     * @return the result type, {@link ResultType#DYNAMIC} when it depends on variable values
+     */
+    default ResultType resultType() {
+        return ResultType.DYNAMIC;
+    }
 }
@@ -0,0 +1,49 @@
+package com.shaibachar.calc.parser.expr;
+
+import com.shaibachar.calc.parser.BinaryOp;
+import com.shaibachar.calc.parser.PostfixOp;
+import com.shaibachar.calc.parser.UnaryOp;
+
+/**
+ * Creates the {@link Expr} nodes of a parsed expression. This base factory creates a new node for every call;
+ * {@link InterningExprFactory} returns shared instances for structurally identical nodes instead.
+ * Operands passed in must themselves come from the same factory.
+ */
+public class ExprFactory {
+    /** The factory that always creates new nodes. It is stateless and may be shared. */
+    public static final ExprFactory PLAIN = new ExprFactory();
+
+    protected ExprFactory() {
+    }
+
+    public Expr literal(long value) {
+        return new LiteralExpr(value);
+    }
+
+    public Expr literal(double value) {
+        return new LiteralExpr(value);
+    }
+
+    /**
+     * Creates a variable reference.
+     *
+     * @param name the variable name
+     * @param slot the resolved environment slot, or -1 if the name is not resolved
+     * @return the node
+     */
+    public Expr variable(String name, int slot) {
+        return slot < 0 ? new VarExpr(name) : new VarExpr(name, slot);
+    }
+
+    public Expr unary(UnaryOp op, Expr expr) {
+        return new UnaryExpr(op, expr);
+    }
+
+    public Expr postfix(Expr expr, PostfixOp op) {
+        return new PostfixExpr(expr, op);
+    }
+
+    public Expr binary(Expr left, BinaryOp op, Expr right) {
+        return new BinaryExpr(left, op, right);
+    }
+}
@@ -0,0 +1,106 @@
+package com.shaibachar.calc.parser.expr;
+
+import com.shaibachar.calc.parser.BinaryOp;
+import com.shaibachar.calc.parser.PostfixOp;
+import com.shaibachar.calc.parser.UnaryOp;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An {@link ExprFactory} that hash-conses nodes: asking twice for the same literal, variable, or operator applied
+ * to the same operands returns the same instance. Since operands come from this factory too, every repeated
+ * subtree of the expressions it builds is stored once, and equal subtrees are identical ({@code ==}), which makes
+ * their {@code equals} a reference check.
+ * <p>
+ * Lookups compare operands by identity, so interning a node costs one hash-table probe whatever its depth.
+ * Variables are only shared if their slots agree as well, since {@link VarExpr#equals(Object)} ignores the slot.
+ * <p>
+ * The factory keeps every distinct node it has returned, so its lifetime should match the ASTs it serves, e.g. one
+ * script. It is not thread-safe. Example usage:
+ * <pre>
+ * ExprFactory factory = new InterningExprFactory();
+ * Stmt first = new Parser(new Lexer("x = (a + 1) * (a + 1)").tokenizeCompact(), symbols, factory).parseStatement();
+ * </pre>
+ */
+public final class InterningExprFactory extends ExprFactory {
+    private final Map<Number, Expr> literals = new HashMap<>();
+    private final Map<String, Expr> variables = new HashMap<>();
+    private final Map<Node, Expr> nodes = new HashMap<>();
+
+    /**
+     * Returns the number of distinct nodes created so far.
+     *
+     * @return the node count
+     */
+    public int size() {
+        return literals.size() + variables.size() + nodes.size();
+    }
+
+    @Override
+    public Expr literal(long value) {
+        return literals.computeIfAbsent(value, LiteralExpr::new);
+    }
+
+    @Override
+    public Expr literal(double value) {
+        // Double.equals tells 0.0 from -0.0, so they stay distinct
+        return literals.computeIfAbsent(value, LiteralExpr::new);
+    }
+
+    @Override
+    public Expr variable(String name, int slot) {
+        Expr shared = variables.get(name);
+        if (shared != null && ((VarExpr) shared).slot() == slot) {
+            return shared;
+        }
+        Expr created = super.variable(name, slot);
+        if (shared == null) {
+            variables.put(name, created);
+        }
+        return created;
+    }
+
+    @Override
+    public Expr unary(UnaryOp op, Expr expr) {
+        return nodes.computeIfAbsent(new Node(op, expr, null), node -> new UnaryExpr(op, expr));
+    }
+
+    @Override
+    public Expr postfix(Expr expr, PostfixOp op) {
+        return nodes.computeIfAbsent(new Node(op, expr, null), node -> new PostfixExpr(expr, op));
+    }
+
+    @Override
+    public Expr binary(Expr left, BinaryOp op, Expr right) {
+        return nodes.computeIfAbsent(new Node(op, left, right), node -> new BinaryExpr(left, op, right));
+    }
+
+    /** Lookup key of an operator node: the operator and its operands, compared by identity. */
+    private static final class Node {
+        private final Enum<?> op;
+        private final Expr left;
+        private final Expr right;
+        private final int hash;
+
+        Node(Enum<?> op, Expr left, Expr right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+            this.hash = (31 * op.hashCode() + System.identityHashCode(left)) * 31 + System.identityHashCode(right);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Node other)) {
+                return false;
+            }
+            return op == other.op && left == other.left && right == other.right;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -12,15 +12,23 @@ package com.shaibachar.calc.parser.expr;
  */
 public final class LiteralExpr implements Expr {
     private final Number value;
+    private final ResultType resultType;
 
     public LiteralExpr(Number value) {
         this.value = value;
+        this.resultType = value instanceof Double || value instanceof Float ? ResultType.DOUBLE
+                : value == null ? ResultType.DYNAMIC : ResultType.LONG;
     }
 
     public Number value() {
         return value;
     }
 
+    @Override
+    public ResultType resultType() {
+        return resultType;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -10,10 +10,12 @@ import java.util.Objects;
 public final class PostfixExpr implements Expr {
     private final Expr expr;
     private final PostfixOp op;
+    private final int hash;
 
     public PostfixExpr(Expr expr, PostfixOp op) {
         this.expr = expr;
         this.op = op;
+        this.hash = Objects.hash(expr, op);
     }
 
     public Expr expr() {
@@ -32,13 +34,14 @@ public final class PostfixExpr implements Expr {
         if (!(o instanceof PostfixExpr other)) {
             return false;
         }
-        return Objects.equals(expr, other.expr)
+        return hash == other.hash
+                && Objects.equals(expr, other.expr)
                 && Objects.equals(op, other.op);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(expr, op);
+        return hash;
     }
 
     @Override
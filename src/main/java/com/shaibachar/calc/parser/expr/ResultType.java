@@ -0,0 +1,33 @@
+package com.shaibachar.calc.parser.expr;
+
+/**
+ * Statically inferred numeric type of an expression's result.
+ * Literals have a fixed type and binary operators promote to double as soon as one operand is a double,
+ * so the result type of many expressions is known from the syntax alone. Variables and {@code ++}/{@code --}
+ * depend on the values in the environment and are {@link #DYNAMIC}.
+ */
+public enum ResultType {
+    /** Always a long. */
+    LONG,
+    /** Always a double. */
+    DOUBLE,
+    /** Known only at run time. */
+    DYNAMIC;
+
+    /**
+     * Applies the binary promotion rule: double if either operand is a double, long if both are longs.
+     *
+     * @param left the left operand type
+     * @param right the right operand type
+     * @return the result type of a binary arithmetic operation
+     */
+    public static ResultType promote(ResultType left, ResultType right) {
+        if (left == DOUBLE || right == DOUBLE) {
+            return DOUBLE;
+        }
+        if (left == LONG && right == LONG) {
+            return LONG;
+        }
+        return DYNAMIC;
+    }
+}
@@ -10,10 +10,15 @@ import java.util.Objects;
 public final class UnaryExpr implements Expr {
     private final UnaryOp op;
     private final Expr expr;
+    private final ResultType resultType;
+    private final int hash;
 
     public UnaryExpr(UnaryOp op, Expr expr) {
         this.op = op;
         this.expr = expr;
+        // Sign operators keep the operand type; ++/-- take the type of the variable
+        this.resultType = op == UnaryOp.PLUS || op == UnaryOp.MINUS ? expr.resultType() : ResultType.DYNAMIC;
+        this.hash = Objects.hash(op, expr);
     }
 
     public UnaryOp op() {
@@ -24,6 +29,11 @@ public final class UnaryExpr implements Expr {
         return expr;
     }
 
+    @Override
+    public ResultType resultType() {
+        return resultType;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -32,13 +42,14 @@ public final class UnaryExpr implements Expr {
         if (!(o instanceof UnaryExpr other)) {
             return false;
         }
-        return Objects.equals(op, other.op)
+        return hash == other.hash
+                && Objects.equals(op, other.op)
                 && Objects.equals(expr, other.expr);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(op, expr);
+        return hash;
     }
 
     @Override
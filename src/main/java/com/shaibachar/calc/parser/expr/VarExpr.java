@@ -7,18 +7,34 @@ import java.util.Objects;
  * It is an immutable, thread-safe data class that stores only the variable name and implements Expr.
  * The class mainly provides identity behavior — equality, hashing, and debug string — based on the variable name
  * , and serves as a basic building block for variable usage and assignments in expressions.
+ * A VarExpr may also carry the environment slot its name was resolved to (see
+ * {@link com.shaibachar.calc.eval.SlotResolver}); the slot is a binding annotation and is not part of equality.
  */
 public final class VarExpr implements Expr {
     private final String name;
+    private final int slot;
 
     public VarExpr(String name) {
+        this(name, -1);
+    }
+
+    public VarExpr(String name, int slot) {
         this.name = name;
+        this.slot = slot;
     }
 
     public String name() {
         return name;
     }
 
+    /**
+     * Returns the resolved environment slot of the variable.
+     * @return the slot, or -1 if the variable was not resolved
+     */
+    public int slot() {
+        return slot;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -0,0 +1,264 @@
+package com.shaibachar.calc.parser.flat;
+
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.parser.AssignOp;
+import com.shaibachar.calc.parser.BinaryOp;
+import com.shaibachar.calc.parser.ExprBuilder;
+import com.shaibachar.calc.parser.PostfixOp;
+import com.shaibachar.calc.parser.UnaryOp;
+
+import java.util.Arrays;
+
+/**
+ * Flat, struct-of-arrays representation of parsed statements. Instead of one object per AST node (plus a boxed
+ * {@code Number} per literal), every node is an index into three parallel arrays: the {@link NodeKind} ordinal,
+ * the index of the first operand, and a {@code long} payload holding the literal value, the raw bits of a double
+ * literal, or a variable slot. That is 16 bytes per node, against 32 to 48 bytes for the object nodes.
+ * <p>
+ * Nodes are stored in post-order, which is the order {@link com.shaibachar.calc.parser.Parser} emits them in:
+ * the nodes of a statement are contiguous, each operator follows its operands, and the last operand of a unary or
+ * binary node is always the node right before it. Evaluating a statement is therefore a single sequential scan
+ * over its nodes with a value stack, and the scan visits operands left to right, in source order.
+ * <p>
+ * {@code ++}/{@code --} of a variable becomes one node carrying the slot. Applied to anything else, the operand
+ * is dropped and a {@link NodeKind#NOT_ASSIGNABLE} node takes its place: the evaluator fails on such an operator
+ * before evaluating its operand, so the operand is never needed.
+ * <p>
+ * Variables are resolved to slots of the arena's {@link SymbolTable}, which should be the one of the
+ * {@link com.shaibachar.calc.eval.Environment} the statements run against. Example usage:
+ * <pre>
+ * AstArena arena = new AstArena(env.symbols());
+ * int statement = new Parser(tokens, env.symbols()).parseStatement(arena);
+ * new Evaluator(env).execute(arena, statement);
+ * </pre>
+ * The arena is not thread-safe.
+ */
+public final class AstArena implements ExprBuilder {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final AssignOp[] ASSIGN_OPS = AssignOp.values();
+
+    private final SymbolTable symbols;
+
+    // Nodes
+    private int[] kinds = new int[INITIAL_CAPACITY];
+    private int[] operands = new int[INITIAL_CAPACITY];
+    private long[] payloads = new long[INITIAL_CAPACITY];
+    private int size;
+
+    // Statements: target slot, assignment operator and node range [start, end)
+    private int[] targets = new int[INITIAL_CAPACITY];
+    private int[] assignOps = new int[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] ends = new int[INITIAL_CAPACITY];
+    private int statementCount;
+
+    // First node of each operand completed but not yet consumed by an operator or statement
+    private int[] pending = new int[16];
+    private int pendingCount;
+
+    public AstArena(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    public SymbolTable symbols() {
+        return symbols;
+    }
+
+    /**
+     * Returns the number of nodes in the arena.
+     *
+     * @return the node count
+     */
+    public int size() {
+        return size;
+    }
+
+    public NodeKind kind(int node) {
+        return NodeKind.of(kinds[node]);
+    }
+
+    /**
+     * Returns the operand of a unary node or the left operand of a binary node. The right operand of a binary
+     * node is always {@code node - 1}.
+     *
+     * @param node a unary or binary node
+     * @return the index of the operand
+     */
+    public int operand(int node) {
+        return operands[node];
+    }
+
+    public long longValue(int node) {
+        return payloads[node];
+    }
+
+    public double doubleValue(int node) {
+        return Double.longBitsToDouble(payloads[node]);
+    }
+
+    /**
+     * Returns the variable slot of a {@link NodeKind#VARIABLE} or {@code ++}/{@code --} node.
+     *
+     * @param node the node
+     * @return the slot
+     */
+    public int slot(int node) {
+        return (int) payloads[node];
+    }
+
+    public int statementCount() {
+        return statementCount;
+    }
+
+    public int target(int statement) {
+        return targets[statement];
+    }
+
+    public AssignOp assignOp(int statement) {
+        return ASSIGN_OPS[assignOps[statement]];
+    }
+
+    /**
+     * Returns the first node of a statement's expression.
+     *
+     * @param statement the statement index
+     * @return the index of the first node
+     */
+    public int start(int statement) {
+        return starts[statement];
+    }
+
+    /**
+     * Returns the root node of a statement's expression, which is also its last node.
+     *
+     * @param statement the statement index
+     * @return the index of the root node
+     */
+    public int root(int statement) {
+        return ends[statement] - 1;
+    }
+
+    /**
+     * Appends a node whose operands, if any, are the last completed operands.
+     *
+     * @param kind the node kind
+     * @param payload the literal value or bits, or the variable slot; ignored for operators
+     */
+    public void append(NodeKind kind, long payload) {
+        switch (kind.arity()) {
+            case 0 -> {
+                push(size);
+                add(kind, -1, payload);
+            }
+            case 1 -> add(kind, size - 1, 0L);
+            default -> {
+                int rightStart = pending[--pendingCount];
+                add(kind, rightStart - 1, 0L);
+            }
+        }
+    }
+
+    @Override
+    public void literal(long value) {
+        append(NodeKind.LONG_LITERAL, value);
+    }
+
+    @Override
+    public void literal(double value) {
+        append(NodeKind.DOUBLE_LITERAL, Double.doubleToRawLongBits(value));
+    }
+
+    @Override
+    public void variable(String name, int slot) {
+        append(NodeKind.VARIABLE, symbols.holds(slot, name) ? slot : symbols.intern(name));
+    }
+
+    @Override
+    public void unary(UnaryOp op) {
+        switch (op) {
+            case PLUS -> append(NodeKind.PLUS, 0L);
+            case MINUS -> append(NodeKind.NEGATE, 0L);
+            case PRE_INC -> increment(NodeKind.PRE_INC);
+            case PRE_DEC -> increment(NodeKind.PRE_DEC);
+        }
+    }
+
+    @Override
+    public void postfix(PostfixOp op) {
+        increment(op == PostfixOp.POST_INC ? NodeKind.POST_INC : NodeKind.POST_DEC);
+    }
+
+    @Override
+    public void binary(BinaryOp op) {
+        append(NodeKind.of(op), 0L);
+    }
+
+    @Override
+    public void assign(String name, int slot, AssignOp op) {
+        endStatement(symbols.holds(slot, name) ? slot : symbols.intern(name), op);
+    }
+
+    /**
+     * Completes a statement whose expression is the last completed operand.
+     *
+     * @param slot the target variable slot
+     * @param op the assignment operator
+     */
+    public void endStatement(int slot, AssignOp op) {
+        if (statementCount == targets.length) {
+            int capacity = statementCount * 2;
+            targets = Arrays.copyOf(targets, capacity);
+            assignOps = Arrays.copyOf(assignOps, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        targets[statementCount] = slot;
+        assignOps[statementCount] = op.ordinal();
+        starts[statementCount] = pending[--pendingCount];
+        ends[statementCount] = size;
+        statementCount++;
+    }
+
+    /**
+     * Drops the nodes of an incomplete statement, e.g. after a parse error, so that the arena holds only
+     * complete statements.
+     */
+    public void discardPending() {
+        pendingCount = 0;
+        size = statementCount == 0 ? 0 : ends[statementCount - 1];
+    }
+
+    /**
+     * Turns the last completed operand into a {@code ++}/{@code --} node: in place if it is a variable, otherwise
+     * replacing the whole operand by a {@link NodeKind#NOT_ASSIGNABLE} node.
+     */
+    private void increment(NodeKind kind) {
+        int start = pending[pendingCount - 1];
+        if (start == size - 1 && kinds[start] == NodeKind.VARIABLE.ordinal()) {
+            kinds[start] = kind.ordinal();
+            return;
+        }
+        size = start;
+        add(NodeKind.NOT_ASSIGNABLE, -1, 0L);
+    }
+
+    private void add(NodeKind kind, int operand, long payload) {
+        if (size == kinds.length) {
+            int capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            operands = Arrays.copyOf(operands, capacity);
+            payloads = Arrays.copyOf(payloads, capacity);
+        }
+        kinds[size] = kind.ordinal();
+        operands[size] = operand;
+        payloads[size] = payload;
+        size++;
+    }
+
+    private void push(int start) {
+        if (pendingCount == pending.length) {
+            pending = Arrays.copyOf(pending, pendingCount * 2);
+        }
+        pending[pendingCount++] = start;
+    }
+}
@@ -0,0 +1,78 @@
+package com.shaibachar.calc.parser.flat;
+
+import com.shaibachar.calc.parser.BinaryOp;
+
+/**
+ * Kinds of the nodes of an {@link AstArena}. Leaves take no operand, {@link #PLUS} and {@link #NEGATE} take one
+ * and the arithmetic kinds take two. {@code ++}/{@code --} are leaves that carry the slot of their variable,
+ * since their operand can only be a variable.
+ */
+public enum NodeKind {
+    /** A long literal; the payload is the value. */
+    LONG_LITERAL(0),
+    /** A double literal; the payload is the raw bits of the value. */
+    DOUBLE_LITERAL(0),
+    /** A variable read; the payload is the slot. */
+    VARIABLE(0),
+    /** {@code ++x}; the payload is the slot of {@code x}. */
+    PRE_INC(0),
+    /** {@code --x}; the payload is the slot of {@code x}. */
+    PRE_DEC(0),
+    /** {@code x++}; the payload is the slot of {@code x}. */
+    POST_INC(0),
+    /** {@code x--}; the payload is the slot of {@code x}. */
+    POST_DEC(0),
+    /** {@code ++}/{@code --} applied to something other than a variable, which fails when reached. */
+    NOT_ASSIGNABLE(0),
+    /** Unary plus. */
+    PLUS(1),
+    /** Unary minus. */
+    NEGATE(1),
+    ADD(2),
+    SUB(2),
+    MUL(2),
+    DIV(2),
+    MOD(2);
+
+    private static final NodeKind[] VALUES = values();
+
+    private final int arity;
+
+    NodeKind(int arity) {
+        this.arity = arity;
+    }
+
+    /**
+     * Returns the number of operands of a node of this kind.
+     *
+     * @return 0, 1 or 2
+     */
+    public int arity() {
+        return arity;
+    }
+
+    /**
+     * Returns the binary operator of an arithmetic kind.
+     *
+     * @return the operator
+     * @throws IllegalStateException if this kind is not binary
+     */
+    public BinaryOp binaryOp() {
+        return switch (this) {
+            case ADD -> BinaryOp.ADD;
+            case SUB -> BinaryOp.SUB;
+            case MUL -> BinaryOp.MUL;
+            case DIV -> BinaryOp.DIV;
+            case MOD -> BinaryOp.MOD;
+            default -> throw new IllegalStateException(name() + " is not a binary node");
+        };
+    }
+
+    static NodeKind of(BinaryOp op) {
+        return VALUES[ADD.ordinal() + op.ordinal()];
+    }
+
+    static NodeKind of(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
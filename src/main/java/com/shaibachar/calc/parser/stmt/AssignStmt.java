@@ -5,21 +5,41 @@ import com.shaibachar.calc.parser.expr.Expr;
 
 import java.util.Objects;
 
+/**
+ * An assignment statement: {@code name op expr}. The target may carry the environment slot its name was
+ * resolved to (see {@link com.shaibachar.calc.eval.SlotResolver}); the slot is not part of equality.
+ */
 public final class AssignStmt implements Stmt {
     private final String name;
+    private final int slot;
     private final AssignOp op;
     private final Expr expr;
+    private final int hash;
 
     public AssignStmt(String name, AssignOp op, Expr expr) {
+        this(name, -1, op, expr);
+    }
+
+    public AssignStmt(String name, int slot, AssignOp op, Expr expr) {
         this.name = name;
+        this.slot = slot;
         this.op = op;
         this.expr = expr;
+        this.hash = Objects.hash(name, op, expr);
     }
 
     public String name() {
         return name;
     }
 
+    /**
+     * Returns the resolved environment slot of the assignment target.
+     * @return the slot, or -1 if the target was not resolved
+     */
+    public int slot() {
+        return slot;
+    }
+
     public AssignOp op() {
         return op;
     }
@@ -36,14 +56,15 @@ public final class AssignStmt implements Stmt {
         if (!(o instanceof AssignStmt other)) {
             return false;
         }
-        return Objects.equals(name, other.name)
+        return hash == other.hash
+                && Objects.equals(name, other.name)
                 && Objects.equals(op, other.op)
                 && Objects.equals(expr, other.expr);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(name, op, expr);
+        return hash;
     }
 
     @Override
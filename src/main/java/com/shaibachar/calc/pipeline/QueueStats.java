@@ -0,0 +1,85 @@
+package com.shaibachar.calc.pipeline;
+
+import java.util.Locale;
+
+/**
+ * Snapshot of how a {@link RingBuffer} between two pipeline stages was used. The occupancy is sampled every time
+ * an element is taken. A queue that is usually full, with many producer waits, sits in front of the slowest
+ * stage; a queue that is usually empty, with many consumer waits, comes after it.
+ */
+public final class QueueStats {
+    private final String name;
+    private final int capacity;
+    private final long transfers;
+    private final long occupancySum;
+    private final long maxOccupancy;
+    private final long producerWaits;
+    private final long consumerWaits;
+
+    QueueStats(String name, int capacity, long transfers, long occupancySum, long maxOccupancy, long producerWaits,
+               long consumerWaits) {
+        this.name = name;
+        this.capacity = capacity;
+        this.transfers = transfers;
+        this.occupancySum = occupancySum;
+        this.maxOccupancy = maxOccupancy;
+        this.producerWaits = producerWaits;
+        this.consumerWaits = consumerWaits;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of elements that went through the queue.
+     *
+     * @return the number of elements taken
+     */
+    public long transfers() {
+        return transfers;
+    }
+
+    /**
+     * Returns the average number of elements in the queue, including the one being taken.
+     *
+     * @return the average occupancy, or 0 if nothing was taken
+     */
+    public double averageOccupancy() {
+        return transfers == 0 ? 0 : (double) occupancySum / transfers;
+    }
+
+    public long maxOccupancy() {
+        return maxOccupancy;
+    }
+
+    /**
+     * Returns how many puts found their slot still in use and had to wait for the consumer.
+     *
+     * @return the number of waiting puts
+     */
+    public long producerWaits() {
+        return producerWaits;
+    }
+
+    /**
+     * Returns how many takes found their element not yet put and had to wait for a producer.
+     *
+     * @return the number of waiting takes
+     */
+    public long consumerWaits() {
+        return consumerWaits;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "queue=%s capacity=%d transfers=%d avg_occupancy=%.1f max_occupancy=%d producer_waits=%d "
+                        + "consumer_waits=%d",
+                name, capacity, transfers, averageOccupancy(), maxOccupancy, producerWaits, consumerWaits);
+    }
+}
@@ -0,0 +1,140 @@
+package com.shaibachar.calc.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free queue whose elements are addressed by sequence number, which keeps a stream in order even
+ * when several threads produce or consume it. Element {@code n} goes to slot {@code n % capacity}; every slot
+ * carries a sequence that says whether it is ready for a {@link #put} or a {@link #take} of a given element, so
+ * producers and consumers never lock or compare-and-set, provided each sequence number is put once and taken
+ * once (e.g. claimed from an {@link AtomicLong} counter). A put waits while its slot still holds the element
+ * {@code capacity} earlier, which is the backpressure on a producer that runs ahead.
+ * <p>
+ * Waiting spins briefly, then yields, then parks for short intervals, so a stalled stage does not burn a core.
+ * {@link #close()} releases every waiting thread. The queue also records how full it was each time an element
+ * was taken and how often each side had to wait, see {@link #stats(String)}.
+ *
+ * @param <E> the element type
+ */
+public final class RingBuffer<E> {
+    // Spinning only helps if the thread being waited for runs on another core
+    private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 128 : 0;
+    private static final int YIELDS = 16;
+    private static final long PARK_NANOS = 20_000;
+
+    private final Object[] elements;
+    // For slot i: n while it waits for the put of element n, n + 1 once element n can be taken
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private volatile boolean closed;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong taken = new AtomicLong();
+    private final LongAdder occupancySum = new LongAdder();
+    private final AtomicLong maxOccupancy = new AtomicLong();
+    private final LongAdder producerWaits = new LongAdder();
+    private final LongAdder consumerWaits = new LongAdder();
+
+    /**
+     * Creates an empty queue.
+     *
+     * @param capacity the number of slots, a power of two
+     */
+    public RingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.elements = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = capacity - 1;
+    }
+
+    public int capacity() {
+        return elements.length;
+    }
+
+    /**
+     * Stores the element with the given sequence number, waiting until its slot is free.
+     *
+     * @param sequence the sequence number of the element
+     * @param element the element, not null
+     * @return false if the queue was closed while waiting
+     */
+    public boolean put(long sequence, E element) {
+        int index = (int) sequence & mask;
+        if (!await(index, sequence, producerWaits)) {
+            return false;
+        }
+        elements[index] = element;
+        published.incrementAndGet();
+        sequences.setRelease(index, sequence + 1);
+        return true;
+    }
+
+    /**
+     * Removes the element with the given sequence number, waiting until it has been put.
+     *
+     * @param sequence the sequence number of the element
+     * @return the element, or null if the queue was closed while waiting
+     */
+    @SuppressWarnings("unchecked")
+    public E take(long sequence) {
+        int index = (int) sequence & mask;
+        if (!await(index, sequence + 1, consumerWaits)) {
+            return null;
+        }
+        E element = (E) elements[index];
+        elements[index] = null;
+        long occupancy = published.get() - taken.getAndIncrement();
+        occupancySum.add(occupancy);
+        if (occupancy > maxOccupancy.get()) {
+            maxOccupancy.accumulateAndGet(occupancy, Math::max);
+        }
+        sequences.setRelease(index, sequence + elements.length);
+        return element;
+    }
+
+    /**
+     * Closes the queue: threads waiting in {@link #put} or {@link #take}, now or later, give up.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Returns the occupancy and wait counts recorded so far.
+     *
+     * @param name the name of the queue in the snapshot
+     * @return a snapshot of the statistics
+     */
+    public QueueStats stats(String name) {
+        return new QueueStats(name, elements.length, taken.get(), occupancySum.sum(), maxOccupancy.get(),
+                producerWaits.sum(), consumerWaits.sum());
+    }
+
+    private boolean await(int index, long expected, LongAdder waits) {
+        if (sequences.getAcquire(index) == expected) {
+            return true;
+        }
+        waits.increment();
+        for (int attempt = 0; !closed; attempt++) {
+            if (sequences.getAcquire(index) == expected) {
+                return true;
+            }
+            if (attempt < SPINS) {
+                Thread.onSpinWait();
+            } else if (attempt < SPINS + YIELDS) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+        return false;
+    }
+}
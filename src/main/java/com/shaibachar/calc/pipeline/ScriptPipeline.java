@@ -0,0 +1,255 @@
+package com.shaibachar.calc.pipeline;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.exceptions.ErrorMessages;
+import com.shaibachar.calc.exceptions.ParseException;
+import com.shaibachar.calc.lexer.Lexer;
+import com.shaibachar.calc.lexer.TokenBuffer;
+import com.shaibachar.calc.parser.stmt.Stmt;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Runs a script as three overlapping stages: a reader thread reads lines, parse worker threads lex and parse
+ * them, and the calling thread hands the statements in line order to a {@link StatementSink}, which evaluates
+ * them. The stages are connected by two {@link RingBuffer}s of line sequence numbers: the reader puts line
+ * {@code n} into the line queue, a worker claims it from a shared counter and puts its statement at {@code n}
+ * into the statement queue, and the caller takes statements {@code 0, 1, 2, ...}. A full queue stops the stage
+ * feeding it, so at most two queues of lines are in flight whatever the length of the input.
+ * <p>
+ * Each worker parses against its own {@link SymbolTable}, so the statements' slots are not those of the
+ * environment they run in; the backends check slots before using them and look such names up instead. The
+ * parse cache is not used. After a run the occupancy of both queues is logged and available from
+ * {@link #queueStats()}, which shows the stage that limits throughput.
+ * <p>
+ * A pipeline runs one script at a time.
+ */
+public final class ScriptPipeline {
+    private static final Logger LOGGER = Logger.getLogger(ScriptPipeline.class.getName());
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    // Put by the reader once per worker after the last line; compared by identity
+    private static final String END_OF_INPUT = new String("");
+
+    private final Backend backend;
+    private final int parseWorkers;
+    private final int queueCapacity;
+    private List<QueueStats> queueStats = List.of();
+    private int lineCount;
+
+    /**
+     * Creates a pipeline.
+     *
+     * @param backend the backend whose front end parses the lines
+     * @param parseWorkers the number of parse worker threads
+     * @param queueCapacity the capacity of each queue, a power of two no smaller than {@code parseWorkers}
+     */
+    public ScriptPipeline(Backend backend, int parseWorkers, int queueCapacity) {
+        if (parseWorkers < 1) {
+            throw new IllegalArgumentException("At least one parse worker is needed: " + parseWorkers);
+        }
+        if (queueCapacity < parseWorkers) {
+            throw new IllegalArgumentException("Queue capacity " + queueCapacity + " is below the number of workers");
+        }
+        this.backend = backend;
+        this.parseWorkers = parseWorkers;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Reads, parses and delivers a script. Statements reach {@code sink} on the calling thread in line order;
+     * delivery stops before the first line that fails to parse. An exception thrown by the sink stops the
+     * pipeline and propagates.
+     *
+     * @param input the script source
+     * @param sink receives the statement of every non-blank line before the first failing one
+     * @return the error of the first line that failed to parse, with line context, or null
+     * @throws IOException if reading the input fails; the lines read before the failure are delivered first
+     */
+    public ParseException run(BufferedReader input, StatementSink sink) throws IOException {
+        Run run = new Run(input);
+        Thread reader = start("calc-pipeline-reader", run::read);
+        Thread[] workers = new Thread[parseWorkers];
+        for (int i = 0; i < parseWorkers; i++) {
+            workers[i] = start("calc-pipeline-parser-" + i, run::parse);
+        }
+        try {
+            return run.deliver(sink);
+        } finally {
+            run.lines.close();
+            run.statements.close();
+            join(workers);
+            // A reader blocked on input that is no longer needed is left to finish on its own
+            if (run.reachedEnd) {
+                join(reader);
+            }
+            queueStats = List.of(run.lines.stats("lines"), run.statements.stats("statements"));
+            for (QueueStats stats : queueStats) {
+                LOGGER.info("perf.component=pipeline " + stats);
+            }
+        }
+    }
+
+    /**
+     * Returns the statistics of the line and statement queues of the last run.
+     *
+     * @return the queue statistics, empty before the first run
+     */
+    public List<QueueStats> queueStats() {
+        return queueStats;
+    }
+
+    /**
+     * Returns the number of lines delivered or skipped as blank by the last run.
+     *
+     * @return the number of lines
+     */
+    public int lineCount() {
+        return lineCount;
+    }
+
+    private static Thread start(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void join(Thread... threads) {
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Outcome of parsing one line. Blank lines and the end of input share constant instances.
+     */
+    private static final class ParsedLine {
+        static final ParsedLine BLANK = new ParsedLine(null, null, null);
+        static final ParsedLine END = new ParsedLine(null, null, null);
+
+        final String line;
+        final Stmt stmt;
+        final Throwable failure;
+
+        ParsedLine(String line, Stmt stmt, Throwable failure) {
+            this.line = line;
+            this.stmt = stmt;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * State of one run, shared by its threads.
+     */
+    private final class Run {
+        final BufferedReader input;
+        final RingBuffer<String> lines = new RingBuffer<>(queueCapacity);
+        final RingBuffer<ParsedLine> statements = new RingBuffer<>(queueCapacity);
+        // Next line sequence number to be claimed by a worker
+        final AtomicLong nextLine = new AtomicLong();
+        // Written by the reader before it puts the end of input, read by the caller after taking it
+        Throwable readFailure;
+        boolean reachedEnd;
+
+        Run(BufferedReader input) {
+            this.input = input;
+        }
+
+        void read() {
+            long sequence = 0;
+            try {
+                String line;
+                while ((line = input.readLine()) != null) {
+                    if (!lines.put(sequence++, line)) {
+                        return;
+                    }
+                }
+            } catch (IOException | RuntimeException | Error e) {
+                readFailure = e;
+            }
+            for (int i = 0; i < parseWorkers; i++) {
+                if (!lines.put(sequence++, END_OF_INPUT)) {
+                    return;
+                }
+            }
+        }
+
+        void parse() {
+            SymbolTable symbols = new SymbolTable();
+            TokenBuffer tokens = new TokenBuffer();
+            while (true) {
+                long sequence = nextLine.getAndIncrement();
+                String line = lines.take(sequence);
+                if (line == null) {
+                    return;
+                }
+                if (line == END_OF_INPUT) {
+                    statements.put(sequence, ParsedLine.END);
+                    return;
+                }
+                ParsedLine parsed;
+                if (line.trim().isEmpty()) {
+                    parsed = ParsedLine.BLANK;
+                } else {
+                    try {
+                        parsed = new ParsedLine(line, backend.parse(new Lexer(line).tokenizeInto(tokens), symbols),
+                                null);
+                    } catch (RuntimeException | Error e) {
+                        // Reported by the caller when it reaches this line, as if parsed there
+                        parsed = new ParsedLine(line, null, e);
+                    }
+                }
+                if (!statements.put(sequence, parsed)) {
+                    return;
+                }
+            }
+        }
+
+        ParseException deliver(StatementSink sink) throws IOException {
+            for (long sequence = 0; ; sequence++) {
+                ParsedLine parsed = statements.take(sequence);
+                if (parsed == ParsedLine.END) {
+                    reachedEnd = true;
+                    lineCount = (int) sequence;
+                    rethrow(readFailure);
+                    return null;
+                }
+                lineCount = (int) sequence + 1;
+                if (parsed == ParsedLine.BLANK) {
+                    continue;
+                }
+                if (parsed.failure instanceof ParseException e) {
+                    return new ParseException(ErrorMessages.withLineContext(e.getMessage(), lineCount, parsed.line));
+                }
+                rethrow(parsed.failure);
+                sink.accept(parsed.stmt, parsed.line, lineCount);
+            }
+        }
+
+        private void rethrow(Throwable failure) throws IOException {
+            if (failure instanceof IOException e) {
+                throw e;
+            } else if (failure instanceof RuntimeException e) {
+                throw e;
+            } else if (failure instanceof Error e) {
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.shaibachar.calc.pipeline;
+
+import com.shaibachar.calc.parser.stmt.Stmt;
+
+/**
+ * Receives the statements of a script in line order, e.g. to run them.
+ */
+@FunctionalInterface
+public interface StatementSink {
+    /**
+     * Accepts the statement of a line.
+     *
+     * @param stmt the statement
+     * @param line the text of the line, for error messages
+     * @param lineNumber the 1-based line number
+     */
+    void accept(Stmt stmt, String line, int lineNumber);
+}
@@ -0,0 +1,202 @@
+package com.shaibachar.calc.server;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.cache.ParseCache;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Long-running calculator that serves scripts over Unix domain sockets and TCP, so that callers pay for JVM
+ * start-up, class loading and JIT warm-up once instead of on every calculation. All connections share the
+ * resident lexer, parser and backend code and the server's parse cache.
+ * <p>
+ * Every connection is a session served by its own thread. The protocol is line-based UTF-8 text: a request is
+ * the lines of a script followed by a line holding only {@code .} (or the end of input), and its response is
+ * one line, either {@code OK } followed by the formatted variables or {@code ERROR } followed by the error
+ * message. Requests may be pipelined: a client can send several before reading any response, and responses
+ * come back in request order. For example:
+ * <pre>
+ * $ printf 'x = 1\ny = x + 2\n.\nz = 1 / 0\n.\n' | nc -U /tmp/calc.sock
+ * OK (x=1,y=3)
+ * ERROR EVAL_004: Division by zero (line 1: z = 1 / 0)
+ * </pre>
+ */
+public final class CalculatorServer implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(CalculatorServer.class.getName());
+
+    private final Backend backend;
+    // Shared by all sessions; may be null
+    private final ParseCache parseCache;
+    private final AtomicInteger sessionCount = new AtomicInteger();
+    private final ExecutorService sessions = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "calc-session-" + sessionCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final List<ServerSocketChannel> listeners = new CopyOnWriteArrayList<>();
+    private final List<Path> socketFiles = new CopyOnWriteArrayList<>();
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    /**
+     * Creates a server that is not listening yet and parses every request line.
+     *
+     * @param backend the backend that runs every request
+     */
+    public CalculatorServer(Backend backend) {
+        this(backend, null);
+    }
+
+    /**
+     * Creates a server that is not listening yet and looks request lines up in a parse cache shared by all
+     * connections.
+     *
+     * @param backend the backend that runs every request
+     * @param parseCache the parse cache, or null to parse every request line
+     */
+    public CalculatorServer(Backend backend, ParseCache parseCache) {
+        this.backend = backend;
+        this.parseCache = parseCache;
+    }
+
+    /**
+     * Starts listening on an address, accepting connections on a thread of its own. A Unix domain socket file
+     * left behind by a server that is no longer running is replaced; one with a live server is not.
+     *
+     * @param address a {@link UnixDomainSocketAddress} or an {@link InetSocketAddress}
+     * @return the bound address, e.g. with the port chosen for port 0
+     * @throws IOException if the address cannot be bound
+     */
+    public SocketAddress bind(SocketAddress address) throws IOException {
+        ServerSocketChannel listener;
+        if (address instanceof UnixDomainSocketAddress unix) {
+            removeStaleSocket(unix);
+            listener = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            listener.bind(unix);
+            socketFiles.add(unix.getPath());
+        } else {
+            listener = ServerSocketChannel.open();
+            listener.bind(address);
+        }
+        listeners.add(listener);
+        SocketAddress local = listener.getLocalAddress();
+        Thread acceptor = new Thread(() -> accept(listener), "calc-accept-" + local);
+        acceptor.setDaemon(true);
+        acceptor.start();
+        LOGGER.info("Calculator server listening on " + local);
+        return local;
+    }
+
+    /**
+     * Blocks until the server is closed.
+     *
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public void awaitClose() throws InterruptedException {
+        closed.await();
+    }
+
+    /**
+     * Stops listening, closes every open connection and removes the Unix domain socket files.
+     */
+    @Override
+    public void close() throws IOException {
+        for (ServerSocketChannel listener : listeners) {
+            listener.close();
+        }
+        for (SocketChannel connection : connections) {
+            connection.close();
+        }
+        sessions.shutdownNow();
+        for (Path socketFile : socketFiles) {
+            Files.deleteIfExists(socketFile);
+        }
+        closed.countDown();
+    }
+
+    private void accept(ServerSocketChannel listener) {
+        while (listener.isOpen()) {
+            SocketChannel connection;
+            try {
+                connection = listener.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                LOGGER.warning("Could not accept a connection: " + e.getMessage());
+                continue;
+            }
+            connections.add(connection);
+            sessions.execute(() -> serve(connection));
+        }
+    }
+
+    private void serve(SocketChannel connection) {
+        long startNs = System.nanoTime();
+        try (connection) {
+            if (connection.getRemoteAddress() instanceof InetSocketAddress) {
+                connection.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            }
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(Channels.newInputStream(connection), StandardCharsets.UTF_8));
+            BufferedWriter writer = new BufferedWriter(
+                    new OutputStreamWriter(Channels.newOutputStream(connection), StandardCharsets.UTF_8));
+            int requests = new Session(reader, writer, backend, parseCache).run();
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Session served " + requests + " requests in "
+                        + (System.nanoTime() - startNs) / 1_000_000 + " ms");
+            }
+        } catch (IOException e) {
+            LOGGER.fine("Session ended: " + e.getMessage());
+        } finally {
+            connections.remove(connection);
+        }
+    }
+
+    /**
+     * Deletes a socket file nobody is listening on, so a server that did not shut down cleanly can be restarted.
+     */
+    private static void removeStaleSocket(UnixDomainSocketAddress address) throws IOException {
+        if (!Files.exists(address.getPath())) {
+            return;
+        }
+        boolean live;
+        try {
+            SocketChannel.open(address).close();
+            live = true;
+        } catch (IOException e) {
+            live = false;
+        }
+        if (live) {
+            throw new IOException("Another server is listening on " + address.getPath());
+        }
+        LOGGER.info("Removing stale socket file " + address.getPath());
+        Files.delete(address.getPath());
+    }
+}
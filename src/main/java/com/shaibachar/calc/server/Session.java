@@ -0,0 +1,136 @@
+package com.shaibachar.calc.server;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.CalculatorApp;
+import com.shaibachar.calc.cache.ParseCache;
+import com.shaibachar.calc.exceptions.ErrorMessages;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.exceptions.ParseException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Serves the requests of one connection in order, see {@link CalculatorServer} for the protocol. Each request is
+ * executed while it is read, through {@link CalculatorApp#execute(Iterator, Backend, ParseCache)}.
+ */
+final class Session {
+    static final String END_OF_REQUEST = ".";
+    static final String OK = "OK ";
+    static final String ERROR = "ERROR ";
+
+    private final BufferedReader reader;
+    private final Writer writer;
+    private final Backend backend;
+    private final ParseCache parseCache;
+
+    Session(BufferedReader reader, Writer writer, Backend backend, ParseCache parseCache) {
+        this.reader = reader;
+        this.writer = writer;
+        this.backend = backend;
+        this.parseCache = parseCache;
+    }
+
+    /**
+     * Serves requests until the client closes its side of the connection.
+     *
+     * @return the number of requests served
+     * @throws IOException if the connection fails
+     */
+    int run() throws IOException {
+        try {
+            return serve();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private int serve() throws IOException {
+        int requests = 0;
+        while (true) {
+            RequestLines lines = new RequestLines();
+            if (!lines.hasNext() && lines.endOfInput) {
+                writer.flush();
+                return requests;
+            }
+            String response = execute(lines);
+            lines.skipRest();
+            writer.write(response);
+            writer.write('\n');
+            requests++;
+            // Pipelined requests already received are answered together
+            if (!reader.ready()) {
+                writer.flush();
+            }
+            if (lines.endOfInput) {
+                writer.flush();
+                return requests;
+            }
+        }
+    }
+
+    private String execute(RequestLines lines) {
+        try {
+            return OK + CalculatorApp.execute(lines, backend, parseCache);
+        } catch (ParseException | EvalException e) {
+            return ERROR + e.getMessage();
+        } catch (UncheckedIOException e) {
+            throw e;
+        } catch (RuntimeException | StackOverflowError e) {
+            return ERROR + ErrorMessages.appUnexpectedFailure(e);
+        }
+    }
+
+    /**
+     * The lines of one request, up to the line that ends it or the end of input.
+     */
+    private final class RequestLines implements Iterator<String> {
+        private String next;
+        private boolean done;
+        boolean endOfInput;
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                String line;
+                try {
+                    line = reader.readLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (line == null) {
+                    endOfInput = true;
+                    done = true;
+                } else if (line.strip().equals(END_OF_REQUEST)) {
+                    done = true;
+                } else {
+                    next = line;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String line = next;
+            next = null;
+            return line;
+        }
+
+        /**
+         * Reads the lines a failed request did not get to, so that the next request starts at its first line.
+         */
+        void skipRest() {
+            while (hasNext()) {
+                next();
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.shaibachar.calc.speculative;
+
+import com.shaibachar.calc.eval.Environment;
+
+import java.util.Arrays;
+
+/**
+ * Private version of a committed environment for running one chunk speculatively. Writes go to this
+ * environment's own storage and never reach the committed one; a read of a variable the chunk has not written yet
+ * falls through to the committed environment and is recorded, so that the chunk can later be checked against
+ * the writes of the chunks before it. Reading an undefined variable is recorded too, since an earlier chunk
+ * defining it changes the outcome.
+ */
+final class SpeculativeEnvironment extends Environment {
+    private final Environment committed;
+    // readMarks[slot] == chunk once the slot is in the read set of the current chunk
+    private int[] readMarks = new int[0];
+    private int chunk;
+    private int[] reads = new int[16];
+    private int readCount;
+    // Slots in the order the chunk first wrote them
+    private int[] writes = new int[16];
+    private int writeCount;
+
+    SpeculativeEnvironment(Environment committed) {
+        super(committed.symbols());
+        this.committed = committed;
+    }
+
+    /**
+     * Discards the previous chunk's writes and read set.
+     *
+     * @param slotCount the number of slots the statements of the chunk use
+     */
+    void begin(int slotCount) {
+        clear();
+        ensureCapacity(slotCount);
+        if (readMarks.length < slotCount) {
+            readMarks = Arrays.copyOf(readMarks, Math.max(readMarks.length * 2, slotCount));
+        }
+        chunk++;
+        readCount = 0;
+        writeCount = 0;
+    }
+
+    int readCount() {
+        return readCount;
+    }
+
+    int read(int index) {
+        return reads[index];
+    }
+
+    int writeCount() {
+        return writeCount;
+    }
+
+    int write(int index) {
+        return writes[index];
+    }
+
+    @Override
+    public boolean isDefined(int slot) {
+        if (super.isDefined(slot)) {
+            return true;
+        }
+        record(slot);
+        return committed.isDefined(slot);
+    }
+
+    @Override
+    public boolean isDouble(int slot) {
+        if (super.isDefined(slot)) {
+            return super.isDouble(slot);
+        }
+        record(slot);
+        return committed.isDouble(slot);
+    }
+
+    @Override
+    public long getLong(int slot) {
+        if (super.isDefined(slot)) {
+            return super.getLong(slot);
+        }
+        record(slot);
+        return committed.getLong(slot);
+    }
+
+    @Override
+    public double getDouble(int slot) {
+        if (super.isDefined(slot)) {
+            return super.getDouble(slot);
+        }
+        record(slot);
+        return committed.getDouble(slot);
+    }
+
+    @Override
+    public Number get(int slot) {
+        if (super.isDefined(slot)) {
+            return super.get(slot);
+        }
+        record(slot);
+        return committed.get(slot);
+    }
+
+    @Override
+    public void setLong(int slot, long value) {
+        if (!super.isDefined(slot)) {
+            written(slot);
+        }
+        super.setLong(slot, value);
+    }
+
+    @Override
+    public void setDouble(int slot, double value) {
+        if (!super.isDefined(slot)) {
+            written(slot);
+        }
+        super.setDouble(slot, value);
+    }
+
+    private void record(int slot) {
+        if (slot >= readMarks.length) {
+            readMarks = Arrays.copyOf(readMarks, Math.max(readMarks.length * 2, slot + 1));
+        }
+        if (readMarks[slot] != chunk) {
+            readMarks[slot] = chunk;
+            if (readCount == reads.length) {
+                reads = Arrays.copyOf(reads, readCount * 2);
+            }
+            reads[readCount++] = slot;
+        }
+    }
+
+    private void written(int slot) {
+        if (writeCount == writes.length) {
+            writes = Arrays.copyOf(writes, writeCount * 2);
+        }
+        writes[writeCount++] = slot;
+    }
+}
@@ -0,0 +1,322 @@
+package com.shaibachar.calc.speculative;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.bytecode.ScriptExecutionException;
+import com.shaibachar.calc.eval.Environment;
+import com.shaibachar.calc.eval.StatementExecutor;
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.parser.stmt.Stmt;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a script optimistically in parallel, in the style of Block-STM but with chunks of statements as the unit
+ * of work. The statements of a window are split into chunks, and all chunks run at the same time, each in a
+ * {@link SpeculativeEnvironment} over the environment committed before the window, which records the variables
+ * the chunk actually read and buffers what it wrote. The chunks are then validated in script order: a chunk
+ * none of whose reads was written by an earlier chunk of the window saw exactly the values sequential execution
+ * would have given it, so its writes are committed as they are. A chunk that read a variable written before it
+ * is a conflict and runs again on the calling thread against the committed environment, which at that point is
+ * the exact state before the chunk.
+ * <p>
+ * Unlike the static {@link com.shaibachar.calc.dag.DagExecutor}, dependencies cost nothing unless they are
+ * actually hit, and they are judged on the variables a run reads, not on those it might read. The conflict
+ * counts show whether speculation pays off for a script: a high {@link #conflictRate()} means most chunks ran
+ * twice. The result and the reported error are those of sequential execution, since an error is only reported
+ * from a chunk whose reads were valid.
+ * <p>
+ * Statements must be parsed against {@link #symbols()}, so that running them adds no names to it. An executor
+ * runs one script, one window at a time.
+ */
+public final class SpeculativeExecutor {
+    private static final Logger LOGGER = Logger.getLogger(SpeculativeExecutor.class.getName());
+    public static final int DEFAULT_CHUNK_SIZE = 64;
+    // Windows hold this many chunks per worker, so that workers finishing early find chunks to steal
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private final Environment committed;
+    private final ThreadLocal<Speculation> speculations;
+    private final Speculation caller;
+    // writtenMarks[slot] == window once the slot was committed in the current window
+    private int[] writtenMarks = new int[0];
+    private int window;
+    private long chunkCount;
+    private long conflictCount;
+    private long statementCount;
+    private long reexecutedStatements;
+
+    public SpeculativeExecutor(Backend backend, ForkJoinPool pool) {
+        this(backend, pool, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates an executor for one script.
+     *
+     * @param backend the backend that runs each statement
+     * @param pool the pool the chunks run on
+     * @param chunkSize the number of statements per chunk
+     */
+    public SpeculativeExecutor(Backend backend, ForkJoinPool pool, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.committed = new Environment();
+        this.speculations = ThreadLocal.withInitial(() -> new Speculation(backend, committed));
+        this.caller = new Speculation(backend, committed);
+    }
+
+    public SymbolTable symbols() {
+        return committed.symbols();
+    }
+
+    /**
+     * Returns the committed environment.
+     *
+     * @return the environment, holding the values after the last window run
+     */
+    public Environment environment() {
+        return committed;
+    }
+
+    /**
+     * Returns the number of statements worth passing to one {@link #run(List)}.
+     *
+     * @return the window size
+     */
+    public int windowSize() {
+        return pool.getParallelism() * CHUNKS_PER_WORKER * chunkSize;
+    }
+
+    /**
+     * Runs the next window of the script's statements and waits for it to finish.
+     *
+     * @param statements the statements, in script order
+     * @throws ScriptExecutionException for an evaluation error, carrying the index in {@code statements} of the
+     *                                  failing statement
+     */
+    public void run(List<Stmt> statements) {
+        if (statements.isEmpty()) {
+            return;
+        }
+        long startNs = System.nanoTime();
+        int slotCount = committed.symbols().size();
+        if (writtenMarks.length < slotCount) {
+            writtenMarks = Arrays.copyOf(writtenMarks, Math.max(writtenMarks.length * 2, slotCount));
+        }
+        window++;
+        int chunks = (statements.size() + chunkSize - 1) / chunkSize;
+        ChunkResult[] results = new ChunkResult[chunks];
+        pool.invoke(new SpeculateChunks(statements, results, slotCount, 0, chunks));
+
+        int conflicts = 0;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            ChunkResult result = results[chunk];
+            results[chunk] = null;
+            if (!result.isValid(writtenMarks, window)) {
+                conflicts++;
+                reexecutedStatements += result.to - result.from;
+                result = caller.run(statements, result.from, result.to, slotCount);
+            }
+            result.commit(committed, writtenMarks, window);
+            if (result.failure != null) {
+                chunkCount += chunk + 1;
+                conflictCount += conflicts;
+                statementCount += result.failedStatement + 1;
+                rethrow(result.failure, result.failedStatement);
+            }
+        }
+        chunkCount += chunks;
+        conflictCount += conflicts;
+        statementCount += statements.size();
+        if (LOGGER.isLoggable(Level.FINE)) {
+            long elapsedMs = (System.nanoTime() - startNs) / 1_000_000;
+            LOGGER.fine("perf.component=speculative_execute elapsed_ms=" + elapsedMs + " statements="
+                    + statements.size() + " chunks=" + chunks + " conflicts=" + conflicts);
+        }
+    }
+
+    public long chunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * Returns the number of chunks that read a variable an earlier chunk of their window wrote, and so ran twice.
+     *
+     * @return the conflict count over every window run so far
+     */
+    public long conflictCount() {
+        return conflictCount;
+    }
+
+    public long statementCount() {
+        return statementCount;
+    }
+
+    /**
+     * Returns the number of statements run a second time because their chunk conflicted.
+     *
+     * @return the re-executed statement count over every window run so far
+     */
+    public long reexecutedStatements() {
+        return reexecutedStatements;
+    }
+
+    /**
+     * Returns the fraction of chunks that conflicted.
+     *
+     * @return the conflict rate, 0 before the first run
+     */
+    public double conflictRate() {
+        return chunkCount == 0 ? 0 : (double) conflictCount / chunkCount;
+    }
+
+    @Override
+    public String toString() {
+        return "chunks=" + chunkCount + " conflicts=" + conflictCount + " conflict_rate="
+                + String.format("%.3f", conflictRate()) + " statements=" + statementCount
+                + " reexecuted_statements=" + reexecutedStatements;
+    }
+
+    private static void rethrow(Throwable failure, int statement) {
+        if (failure instanceof EvalException) {
+            throw new ScriptExecutionException(failure.getMessage(), statement);
+        } else if (failure instanceof RuntimeException e) {
+            throw e;
+        }
+        throw (Error) failure;
+    }
+
+    /**
+     * A speculative environment with an executor over it, reused for every chunk run on one thread.
+     */
+    private static final class Speculation {
+        final SpeculativeEnvironment env;
+        final StatementExecutor executor;
+
+        Speculation(Backend backend, Environment committed) {
+            this.env = new SpeculativeEnvironment(committed);
+            this.executor = backend.create(env);
+        }
+
+        ChunkResult run(List<Stmt> statements, int from, int to, int slotCount) {
+            env.begin(slotCount);
+            Throwable failure = null;
+            int failedStatement = -1;
+            for (int i = from; i < to; i++) {
+                try {
+                    executor.execute(statements.get(i));
+                } catch (RuntimeException | Error e) {
+                    failure = e;
+                    failedStatement = i;
+                    break;
+                }
+            }
+            return new ChunkResult(env, from, to, failure, failedStatement);
+        }
+    }
+
+    /**
+     * Outcome of running a chunk: its read set, its writes in first-write order, and the error that stopped it.
+     */
+    private static final class ChunkResult {
+        final int from;
+        final int to;
+        final int[] reads;
+        final int[] writes;
+        final boolean[] doubles;
+        final long[] longValues;
+        final double[] doubleValues;
+        final Throwable failure;
+        final int failedStatement;
+
+        ChunkResult(SpeculativeEnvironment env, int from, int to, Throwable failure, int failedStatement) {
+            this.from = from;
+            this.to = to;
+            this.failure = failure;
+            this.failedStatement = failedStatement;
+            this.reads = new int[env.readCount()];
+            for (int i = 0; i < reads.length; i++) {
+                reads[i] = env.read(i);
+            }
+            int writeCount = env.writeCount();
+            this.writes = new int[writeCount];
+            this.doubles = new boolean[writeCount];
+            this.longValues = new long[writeCount];
+            this.doubleValues = new double[writeCount];
+            for (int i = 0; i < writeCount; i++) {
+                int slot = env.write(i);
+                writes[i] = slot;
+                // The chunk's own value; the slot is defined in the speculative storage
+                doubles[i] = env.isDouble(slot);
+                if (doubles[i]) {
+                    doubleValues[i] = env.getDouble(slot);
+                } else {
+                    longValues[i] = env.getLong(slot);
+                }
+            }
+        }
+
+        boolean isValid(int[] writtenMarks, int window) {
+            for (int slot : reads) {
+                if (writtenMarks[slot] == window) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void commit(Environment committed, int[] writtenMarks, int window) {
+            for (int i = 0; i < writes.length; i++) {
+                int slot = writes[i];
+                writtenMarks[slot] = window;
+                if (doubles[i]) {
+                    committed.setDouble(slot, doubleValues[i]);
+                } else {
+                    committed.setLong(slot, longValues[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a range of chunks speculatively, splitting it until one chunk is left.
+     */
+    private final class SpeculateChunks extends RecursiveAction {
+        private final List<Stmt> statements;
+        private final ChunkResult[] results;
+        private final int slotCount;
+        private final int from;
+        private final int to;
+
+        SpeculateChunks(List<Stmt> statements, ChunkResult[] results, int slotCount, int from, int to) {
+            this.statements = statements;
+            this.results = results;
+            this.slotCount = slotCount;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SpeculateChunks(statements, results, slotCount, from, middle),
+                        new SpeculateChunks(statements, results, slotCount, middle, to));
+                return;
+            }
+            int start = from * chunkSize;
+            results[from] = speculations.get().run(statements, start, Math.min(start + chunkSize, statements.size()),
+                    slotCount);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.shaibachar.calc.vm;
+
+import com.shaibachar.calc.eval.Arithmetic;
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.exceptions.ErrorMessages;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.parser.AssignOp;
+import com.shaibachar.calc.parser.BinaryOp;
+import com.shaibachar.calc.parser.PostfixOp;
+import com.shaibachar.calc.parser.UnaryOp;
+import com.shaibachar.calc.parser.expr.BinaryExpr;
+import com.shaibachar.calc.parser.expr.Expr;
+import com.shaibachar.calc.parser.expr.LiteralExpr;
+import com.shaibachar.calc.parser.expr.PostfixExpr;
+import com.shaibachar.calc.parser.expr.ResultType;
+import com.shaibachar.calc.parser.expr.UnaryExpr;
+import com.shaibachar.calc.parser.expr.VarExpr;
+import com.shaibachar.calc.parser.stmt.AssignStmt;
+import com.shaibachar.calc.parser.stmt.Stmt;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiles statements into a {@link Program} for the {@link VirtualMachine}.
+ * Expressions are compiled in post-order, so operands are pushed left to right exactly in the order the
+ * {@link com.shaibachar.calc.eval.Evaluator} evaluates them. The static {@link ResultType} of each node selects
+ * the instruction: subtrees known to be long or double use the typed {@code _L}/{@code _D} operations, the rest
+ * use the untyped ones. A compound assignment {@code x op= e} compiles to {@code LOAD_SLOT x}, {@code e},
+ * {@code op}, {@code STORE x}, which reads {@code x} before {@code e} runs.
+ * Errors that the evaluator raises while evaluating (like {@code ++} on a non-variable) are compiled into
+ * instructions that raise them at the same point of execution.
+ * Example usage:
+ * <pre>
+ * Compiler compiler = new Compiler(env.symbols());
+ * Program program = compiler.compile(statements);
+ * new VirtualMachine(env).run(program);
+ * </pre>
+ */
+public class Compiler {
+    private final SymbolTable symbols;
+    private int[] code = new int[64];
+    private int size;
+    private long[] longConstants = new long[16];
+    private int longCount;
+    private double[] doubleConstants = new double[16];
+    private int doubleCount;
+    private int depth;
+    private int maxStack;
+    private int statementCount;
+
+    public Compiler(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Compiles a single statement.
+     *
+     * @param stmt the statement
+     * @return the program
+     * @throws EvalException if the statement or one of its expressions is of an unsupported type
+     */
+    public Program compile(Stmt stmt) {
+        clear();
+        add(stmt);
+        return build();
+    }
+
+    /**
+     * Compiles statements into one program that runs them in order.
+     *
+     * @param stmts the statements
+     * @return the program
+     * @throws EvalException if a statement or one of its expressions is of an unsupported type
+     */
+    public Program compile(List<? extends Stmt> stmts) {
+        clear();
+        for (Stmt stmt : stmts) {
+            add(stmt);
+        }
+        return build();
+    }
+
+    void clear() {
+        size = 0;
+        longCount = 0;
+        doubleCount = 0;
+        depth = 0;
+        maxStack = 0;
+        statementCount = 0;
+    }
+
+    void add(Stmt stmt) {
+        if (!(stmt instanceof AssignStmt assign)) {
+            throw new EvalException(ErrorMessages.EVAL_UNSUPPORTED_STATEMENT);
+        }
+        int slot = slotOf(assign.name(), assign.slot());
+        AssignOp op = assign.op();
+        if (op == AssignOp.ASSIGN) {
+            expr(assign.expr());
+        } else {
+            // snapshot of the variable, taken before the right-hand side runs
+            emit(Opcode.LOAD_SLOT, slot);
+            push();
+            expr(assign.expr());
+            binary(untyped(Arithmetic.compoundOperator(op)));
+        }
+        emit(Opcode.STORE, slot);
+        depth--;
+        statementCount++;
+    }
+
+    Program build() {
+        return new Program(Arrays.copyOf(code, size), Arrays.copyOf(longConstants, longCount),
+                Arrays.copyOf(doubleConstants, doubleCount), maxStack, statementCount, symbols);
+    }
+
+    int[] code() {
+        return code;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long[] longConstants() {
+        return longConstants;
+    }
+
+    double[] doubleConstants() {
+        return doubleConstants;
+    }
+
+    int maxStack() {
+        return maxStack;
+    }
+
+    private void expr(Expr expr) {
+        if (expr instanceof LiteralExpr literal) {
+            Number value = literal.value();
+            if (Arithmetic.isFloating(value)) {
+                emit(Opcode.PUSH_DOUBLE, doubleConstant(value.doubleValue()));
+            } else {
+                emit(Opcode.PUSH_LONG, longConstant(value.longValue()));
+            }
+            push();
+        } else if (expr instanceof VarExpr var) {
+            emit(Opcode.LOAD_SLOT, slotOf(var.name(), var.slot()));
+            push();
+        } else if (expr instanceof BinaryExpr binary) {
+            binaryExpr(binary);
+        } else if (expr instanceof UnaryExpr unary) {
+            unaryExpr(unary);
+        } else if (expr instanceof PostfixExpr postfix) {
+            increment(Opcode.POST_INC_SLOT, postfix.expr(), postfix.op() == PostfixOp.POST_INC ? 1 : -1);
+        } else {
+            throw new EvalException(ErrorMessages.EVAL_UNSUPPORTED_EXPRESSION);
+        }
+    }
+
+    private void binaryExpr(BinaryExpr binary) {
+        switch (binary.resultType()) {
+            case LONG -> {
+                expr(binary.left());
+                expr(binary.right());
+                binary(Opcode.ADD_L + binary.op().ordinal());
+            }
+            case DOUBLE -> {
+                // each operand is computed in its own type, then widened
+                expr(binary.left());
+                widen(binary.left().resultType());
+                expr(binary.right());
+                widen(binary.right().resultType());
+                binary(Opcode.ADD_D + binary.op().ordinal());
+            }
+            case DYNAMIC -> {
+                expr(binary.left());
+                expr(binary.right());
+                binary(untyped(binary.op()));
+            }
+        }
+    }
+
+    private void unaryExpr(UnaryExpr unary) {
+        switch (unary.op()) {
+            case PLUS -> expr(unary.expr());
+            case MINUS -> {
+                expr(unary.expr());
+                emit(switch (unary.expr().resultType()) {
+                    case LONG -> Opcode.NEG_L;
+                    case DOUBLE -> Opcode.NEG_D;
+                    case DYNAMIC -> Opcode.NEG;
+                });
+            }
+            case PRE_INC -> increment(Opcode.INC_SLOT, unary.expr(), 1);
+            case PRE_DEC -> increment(Opcode.INC_SLOT, unary.expr(), -1);
+        }
+    }
+
+    private void increment(int opcode, Expr operand, int delta) {
+        if (operand instanceof VarExpr var) {
+            emit(opcode, slotOf(var.name(), var.slot()), delta);
+        } else {
+            emit(Opcode.FAIL_NOT_ASSIGNABLE);
+        }
+        push();
+    }
+
+    private void widen(ResultType type) {
+        if (type == ResultType.LONG) {
+            emit(Opcode.L2D);
+        } else if (type == ResultType.DYNAMIC) {
+            emit(Opcode.TO_DOUBLE);
+        }
+    }
+
+    private void binary(int opcode) {
+        emit(opcode);
+        depth--;
+    }
+
+    private static int untyped(BinaryOp op) {
+        return Opcode.ADD + op.ordinal();
+    }
+
+    private int slotOf(String name, int resolvedSlot) {
+        return symbols.holds(resolvedSlot, name) ? resolvedSlot : symbols.intern(name);
+    }
+
+    private int longConstant(long value) {
+        if (longCount == longConstants.length) {
+            longConstants = Arrays.copyOf(longConstants, longCount * 2);
+        }
+        longConstants[longCount] = value;
+        return longCount++;
+    }
+
+    private int doubleConstant(double value) {
+        if (doubleCount == doubleConstants.length) {
+            doubleConstants = Arrays.copyOf(doubleConstants, doubleCount * 2);
+        }
+        doubleConstants[doubleCount] = value;
+        return doubleCount++;
+    }
+
+    private void push() {
+        if (++depth > maxStack) {
+            maxStack = depth;
+        }
+    }
+
+    private void emit(int opcode) {
+        ensureCapacity(1);
+        code[size++] = opcode;
+    }
+
+    private void emit(int opcode, int operand) {
+        ensureCapacity(2);
+        code[size++] = opcode;
+        code[size++] = operand;
+    }
+
+    private void emit(int opcode, int operand1, int operand2) {
+        ensureCapacity(3);
+        code[size++] = opcode;
+        code[size++] = operand1;
+        code[size++] = operand2;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, size + extra));
+        }
+    }
+}
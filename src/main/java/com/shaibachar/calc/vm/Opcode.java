@@ -0,0 +1,81 @@
+package com.shaibachar.calc.vm;
+
+/**
+ * Instruction set of the {@link VirtualMachine}. An instruction is an opcode followed by its operands in the
+ * {@code int[]} code of a {@link Program}.
+ * Operations suffixed {@code _L} and {@code _D} are typed: the {@link Compiler} only emits them where both
+ * operands are statically known to be longs (respectively doubles). The untyped operations look at the runtime
+ * type of their operands and apply the promotion rule of {@link com.shaibachar.calc.eval.Arithmetic}.
+ */
+final class Opcode {
+    /** {@code PUSH_LONG index}: pushes {@code longConstants[index]}. */
+    static final int PUSH_LONG = 0;
+    /** {@code PUSH_DOUBLE index}: pushes {@code doubleConstants[index]}. */
+    static final int PUSH_DOUBLE = 1;
+    /** {@code LOAD_SLOT slot}: pushes the value of a variable; fails with ENV_001 if it is undefined. */
+    static final int LOAD_SLOT = 2;
+    /** {@code STORE slot}: pops a value into a variable, defining it if needed. */
+    static final int STORE = 3;
+    /** {@code INC_SLOT slot delta}: adds delta to a variable and pushes the new value (prefix ++/--). */
+    static final int INC_SLOT = 4;
+    /** {@code POST_INC_SLOT slot delta}: adds delta to a variable and pushes the old value (postfix ++/--). */
+    static final int POST_INC_SLOT = 5;
+    /** Converts the top of the stack, statically a long, to a double. */
+    static final int L2D = 6;
+    /** Converts the top of the stack to a double if it is a long. */
+    static final int TO_DOUBLE = 7;
+
+    // The three arithmetic groups follow the declaration order of BinaryOp, see Compiler
+    static final int ADD_L = 8;
+    static final int SUB_L = 9;
+    static final int MUL_L = 10;
+    static final int DIV_L = 11;
+    static final int MOD_L = 12;
+    static final int NEG_L = 13;
+
+    static final int ADD_D = 14;
+    static final int SUB_D = 15;
+    static final int MUL_D = 16;
+    static final int DIV_D = 17;
+    static final int MOD_D = 18;
+    static final int NEG_D = 19;
+
+    static final int ADD = 20;
+    static final int SUB = 21;
+    static final int MUL = 22;
+    static final int DIV = 23;
+    static final int MOD = 24;
+    static final int NEG = 25;
+
+    /** Fails with EVAL_003: {@code ++}/{@code --} applied to something other than a variable. */
+    static final int FAIL_NOT_ASSIGNABLE = 26;
+
+    private static final String[] NAMES = {
+            "PUSH_LONG", "PUSH_DOUBLE", "LOAD_SLOT", "STORE", "INC_SLOT", "POST_INC_SLOT", "L2D", "TO_DOUBLE",
+            "ADD_L", "SUB_L", "MUL_L", "DIV_L", "MOD_L", "NEG_L",
+            "ADD_D", "SUB_D", "MUL_D", "DIV_D", "MOD_D", "NEG_D",
+            "ADD", "SUB", "MUL", "DIV", "MOD", "NEG",
+            "FAIL_NOT_ASSIGNABLE"
+    };
+
+    private Opcode() {
+    }
+
+    static String name(int opcode) {
+        return NAMES[opcode];
+    }
+
+    /**
+     * Returns the number of operands that follow the opcode.
+     *
+     * @param opcode the opcode
+     * @return the operand count
+     */
+    static int operandCount(int opcode) {
+        return switch (opcode) {
+            case PUSH_LONG, PUSH_DOUBLE, LOAD_SLOT, STORE -> 1;
+            case INC_SLOT, POST_INC_SLOT -> 2;
+            default -> 0;
+        };
+    }
+}
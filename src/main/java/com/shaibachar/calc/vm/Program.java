@@ -0,0 +1,77 @@
+package com.shaibachar.calc.vm;
+
+import com.shaibachar.calc.eval.SymbolTable;
+
+/**
+ * A compiled script: an {@code int[]} instruction stream (see {@link Opcode}) with its constant pools.
+ * Variables are addressed by the slots of the {@link SymbolTable} the program was compiled against, so it can
+ * only run in environments over that table. A program is immutable and can be run any number of times.
+ * Created by {@link Compiler}, run by {@link VirtualMachine}.
+ */
+public final class Program {
+    final int[] code;
+    final long[] longConstants;
+    final double[] doubleConstants;
+    final int maxStack;
+    final int statementCount;
+    final SymbolTable symbols;
+
+    Program(int[] code, long[] longConstants, double[] doubleConstants, int maxStack, int statementCount,
+            SymbolTable symbols) {
+        this.code = code;
+        this.longConstants = longConstants;
+        this.doubleConstants = doubleConstants;
+        this.maxStack = maxStack;
+        this.statementCount = statementCount;
+        this.symbols = symbols;
+    }
+
+    public int statementCount() {
+        return statementCount;
+    }
+
+    /**
+     * Returns the length of the instruction stream in {@code int}s (opcodes and operands).
+     *
+     * @return the code size
+     */
+    public int codeSize() {
+        return code.length;
+    }
+
+    public SymbolTable symbols() {
+        return symbols;
+    }
+
+    /**
+     * Returns a listing of the instructions, one per line, e.g. {@code LOAD_SLOT x} or {@code PUSH_LONG 3}.
+     *
+     * @return the disassembled program
+     */
+    public String disassemble() {
+        StringBuilder out = new StringBuilder();
+        int pc = 0;
+        while (pc < code.length) {
+            int opcode = code[pc];
+            out.append(Opcode.name(opcode));
+            switch (opcode) {
+                case Opcode.PUSH_LONG -> out.append(' ').append(longConstants[code[pc + 1]]);
+                case Opcode.PUSH_DOUBLE -> out.append(' ').append(doubleConstants[code[pc + 1]]);
+                case Opcode.LOAD_SLOT, Opcode.STORE -> out.append(' ').append(symbols.name(code[pc + 1]));
+                case Opcode.INC_SLOT, Opcode.POST_INC_SLOT ->
+                        out.append(' ').append(symbols.name(code[pc + 1])).append(' ').append(code[pc + 2]);
+                default -> {
+                    // no operands
+                }
+            }
+            out.append('\n');
+            pc += 1 + Opcode.operandCount(opcode);
+        }
+        return out.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "Program[statements=" + statementCount + ", codeSize=" + code.length + "]";
+    }
+}
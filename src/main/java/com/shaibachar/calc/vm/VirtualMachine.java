@@ -0,0 +1,199 @@
+package com.shaibachar.calc.vm;
+
+import com.shaibachar.calc.eval.Arithmetic;
+import com.shaibachar.calc.eval.Environment;
+import com.shaibachar.calc.eval.StatementExecutor;
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.exceptions.ErrorMessages;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.parser.BinaryOp;
+import com.shaibachar.calc.parser.stmt.Stmt;
+
+/**
+ * Stack-based virtual machine that runs {@link Program}s compiled by {@link Compiler}.
+ * The operand stack is made of three parallel primitive arrays: the long value, the double value and a flag
+ * telling which of the two is current. Typed instructions ({@code ADD_L}, {@code MUL_D}, ...) use one array
+ * without looking at the flag; untyped instructions promote like {@link Arithmetic}. Nothing is boxed while
+ * running, and values are read from and written to the {@link Environment}'s slots directly.
+ * As a {@link StatementExecutor}, the machine compiles and runs one statement at a time, reusing its compiler
+ * buffers; {@link #run(Program)} runs a program compiled ahead of time.
+ * The machine is not thread-safe.
+ */
+public class VirtualMachine implements StatementExecutor {
+    private final Environment env;
+    private final Compiler compiler;
+    private long[] longs = new long[16];
+    private double[] doubles = new double[16];
+    private boolean[] isDouble = new boolean[16];
+
+    public VirtualMachine(Environment env) {
+        this.env = env;
+        this.compiler = new Compiler(env.symbols());
+    }
+
+    @Override
+    public SymbolTable symbols() {
+        return env.symbols();
+    }
+
+    @Override
+    public void execute(Stmt stmt) {
+        compiler.clear();
+        compiler.add(stmt);
+        run(compiler.code(), compiler.size(), compiler.longConstants(), compiler.doubleConstants(),
+                compiler.maxStack());
+    }
+
+    /**
+     * Runs a program against this machine's environment.
+     *
+     * @param program the program, compiled against the environment's symbol table
+     * @throws IllegalArgumentException if the program was compiled against another symbol table
+     * @throws EvalException if a statement fails; the statements before it have been applied
+     */
+    public void run(Program program) {
+        if (program.symbols != env.symbols()) {
+            throw new IllegalArgumentException("Program was compiled against a different symbol table");
+        }
+        run(program.code, program.code.length, program.longConstants, program.doubleConstants, program.maxStack);
+    }
+
+    private void run(int[] code, int end, long[] longConstants, double[] doubleConstants, int maxStack) {
+        if (maxStack > isDouble.length) {
+            longs = new long[maxStack];
+            doubles = new double[maxStack];
+            isDouble = new boolean[maxStack];
+        }
+        long[] longs = this.longs;
+        double[] doubles = this.doubles;
+        boolean[] isDouble = this.isDouble;
+        Environment env = this.env;
+        int sp = 0;
+        int pc = 0;
+        while (pc < end) {
+            switch (code[pc++]) {
+                case Opcode.PUSH_LONG -> {
+                    longs[sp] = longConstants[code[pc++]];
+                    isDouble[sp++] = false;
+                }
+                case Opcode.PUSH_DOUBLE -> {
+                    doubles[sp] = doubleConstants[code[pc++]];
+                    isDouble[sp++] = true;
+                }
+                case Opcode.LOAD_SLOT -> {
+                    int slot = code[pc++];
+                    if (env.isDouble(slot)) {
+                        doubles[sp] = env.getDouble(slot);
+                        isDouble[sp++] = true;
+                    } else {
+                        longs[sp] = env.getLong(slot);
+                        isDouble[sp++] = false;
+                    }
+                }
+                case Opcode.STORE -> {
+                    int slot = code[pc++];
+                    sp--;
+                    if (isDouble[sp]) {
+                        env.setDouble(slot, doubles[sp]);
+                    } else {
+                        env.setLong(slot, longs[sp]);
+                    }
+                }
+                case Opcode.INC_SLOT, Opcode.POST_INC_SLOT -> {
+                    boolean post = code[pc - 1] == Opcode.POST_INC_SLOT;
+                    int slot = code[pc++];
+                    int delta = code[pc++];
+                    if (env.isDouble(slot)) {
+                        double old = env.getDouble(slot);
+                        env.setDouble(slot, old + delta);
+                        doubles[sp] = post ? old : old + delta;
+                        isDouble[sp++] = true;
+                    } else {
+                        long old = env.getLong(slot);
+                        env.setLong(slot, old + delta);
+                        longs[sp] = post ? old : old + delta;
+                        isDouble[sp++] = false;
+                    }
+                }
+                case Opcode.L2D -> {
+                    doubles[sp - 1] = longs[sp - 1];
+                    isDouble[sp - 1] = true;
+                }
+                case Opcode.TO_DOUBLE -> {
+                    if (!isDouble[sp - 1]) {
+                        doubles[sp - 1] = longs[sp - 1];
+                        isDouble[sp - 1] = true;
+                    }
+                }
+                case Opcode.ADD_L -> {
+                    sp--;
+                    longs[sp - 1] += longs[sp];
+                }
+                case Opcode.SUB_L -> {
+                    sp--;
+                    longs[sp - 1] -= longs[sp];
+                }
+                case Opcode.MUL_L -> {
+                    sp--;
+                    longs[sp - 1] *= longs[sp];
+                }
+                case Opcode.DIV_L -> {
+                    sp--;
+                    longs[sp - 1] = Arithmetic.apply(BinaryOp.DIV, longs[sp - 1], longs[sp]);
+                }
+                case Opcode.MOD_L -> {
+                    sp--;
+                    longs[sp - 1] = Arithmetic.apply(BinaryOp.MOD, longs[sp - 1], longs[sp]);
+                }
+                case Opcode.NEG_L -> longs[sp - 1] = -longs[sp - 1];
+                case Opcode.ADD_D -> {
+                    sp--;
+                    doubles[sp - 1] += doubles[sp];
+                }
+                case Opcode.SUB_D -> {
+                    sp--;
+                    doubles[sp - 1] -= doubles[sp];
+                }
+                case Opcode.MUL_D -> {
+                    sp--;
+                    doubles[sp - 1] *= doubles[sp];
+                }
+                case Opcode.DIV_D -> {
+                    sp--;
+                    doubles[sp - 1] = Arithmetic.apply(BinaryOp.DIV, doubles[sp - 1], doubles[sp]);
+                }
+                case Opcode.MOD_D -> {
+                    sp--;
+                    doubles[sp - 1] = Arithmetic.apply(BinaryOp.MOD, doubles[sp - 1], doubles[sp]);
+                }
+                case Opcode.NEG_D -> doubles[sp - 1] = -doubles[sp - 1];
+                case Opcode.ADD -> sp = untyped(BinaryOp.ADD, sp);
+                case Opcode.SUB -> sp = untyped(BinaryOp.SUB, sp);
+                case Opcode.MUL -> sp = untyped(BinaryOp.MUL, sp);
+                case Opcode.DIV -> sp = untyped(BinaryOp.DIV, sp);
+                case Opcode.MOD -> sp = untyped(BinaryOp.MOD, sp);
+                case Opcode.NEG -> {
+                    // only the current value matters; negating both keeps the code branch-free
+                    longs[sp - 1] = -longs[sp - 1];
+                    doubles[sp - 1] = -doubles[sp - 1];
+                }
+                case Opcode.FAIL_NOT_ASSIGNABLE -> throw new EvalException(ErrorMessages.EVAL_OPERAND_NOT_ASSIGNABLE);
+                default -> throw new IllegalStateException("Invalid opcode " + code[pc - 1] + " at " + (pc - 1));
+            }
+        }
+    }
+
+    private int untyped(BinaryOp op, int sp) {
+        int right = sp - 1;
+        int left = sp - 2;
+        if (isDouble[left] || isDouble[right]) {
+            double a = isDouble[left] ? doubles[left] : longs[left];
+            double b = isDouble[right] ? doubles[right] : longs[right];
+            doubles[left] = Arithmetic.apply(op, a, b);
+            isDouble[left] = true;
+        } else {
+            longs[left] = Arithmetic.apply(op, longs[left], longs[right]);
+        }
+        return right;
+    }
+}
@@ -0,0 +1,143 @@
+package com.shaibachar.calc;
+
+import com.shaibachar.calc.eval.Environment;
+import com.shaibachar.calc.eval.StatementExecutor;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.lexer.Lexer;
+import com.shaibachar.calc.lexer.TokenBuffer;
+import com.shaibachar.calc.util.Formatter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the same scripts on every {@link Backend} and expects exactly the output, or the error, of the
+ * tree-walking evaluator.
+ */
+class BackendEquivalenceTest {
+    private static final String[] VARIABLES = {"a", "b", "c", "d"};
+    private static final String[] BINARY_OPS = {"+", "-", "*", "/", "%"};
+    private static final String[] ASSIGN_OPS = {"=", "+=", "-=", "*=", "/=", "%="};
+
+    private static String outcome(List<String> lines, Backend backend) {
+        try {
+            return CalculatorApp.execute(lines, backend);
+        } catch (RuntimeException e) {
+            return e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+    }
+
+    private static void assertSameAsTree(List<String> lines, Backend backend) {
+        assertEquals(outcome(lines, Backend.TREE), outcome(lines, backend), String.join("\n", lines));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Backend.class)
+    void sideEffectsAndCompoundSnapshots(Backend backend) {
+        assertSameAsTree(List.of(
+                "i = 1",
+                "x = i++ + ++i * i--",
+                "i += i++ + 10",
+                "y = i-- - --i",
+                "z = -(-i) + +x % 3",
+                "z *= z-- * 0.5"), backend);
+    }
+
+    @ParameterizedTest
+    @EnumSource(Backend.class)
+    void everyBackendRunsSingleStatements(Backend backend) {
+        List<String> lines = List.of("i = 1", "x = i++ + 2.5", "i *= x");
+        Environment env = new Environment();
+        StatementExecutor executor = backend.create(env);
+        TokenBuffer tokens = new TokenBuffer();
+        for (String line : lines) {
+            executor.execute(backend.parse(new Lexer(line).tokenizeInto(tokens), env.symbols()));
+        }
+        assertEquals(outcome(lines, Backend.TREE), Formatter.format(env.values()));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Backend.class)
+    void mixedTypesPromoteLikeTheEvaluator(Backend backend) {
+        assertSameAsTree(List.of(
+                "a = 7",
+                "b = a / 2 * 1.5",
+                "c = (a + 0.5) % 2",
+                "d = 9223372036854775807 + a",
+                "e = -a / 2.0 - -0.0",
+                "a /= 2",
+                "a /= 2.0"), backend);
+    }
+
+    @ParameterizedTest
+    @EnumSource(Backend.class)
+    void errorsAreRaisedAtTheSamePoint(Backend backend) {
+        List<List<String>> scripts = List.of(
+                List.of("x = 1", "y = x / (x - 1)"),
+                List.of("x = 1.5", "x %= 0"),
+                List.of("x = 2", "y = x++ + z"),
+                List.of("x = y / 0"),
+                List.of("x = 1", "y += 1"),
+                List.of("x = 1", "y = x + ++(x)"),
+                List.of("x = 5", "y = (1 / 0) + x"));
+        for (List<String> script : scripts) {
+            assertSameAsTree(script, backend);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Backend.class)
+    void generatedScripts(Backend backend) {
+        Random random = new Random(7);
+        for (int i = 0; i < 300; i++) {
+            List<String> lines = new ArrayList<>();
+            lines.add("a = 3");
+            lines.add("b = 2.5");
+            for (int j = 0; j < 6; j++) {
+                String target = VARIABLES[random.nextInt(VARIABLES.length)];
+                String op = ASSIGN_OPS[random.nextInt(ASSIGN_OPS.length)];
+                lines.add(target + " " + op + " " + expr(random, 0));
+            }
+            assertSameAsTree(lines, backend);
+        }
+    }
+
+    @Test
+    void backendIsSelectedByName() {
+        assertEquals(Backend.VM, Backend.fromName("vm"));
+        assertEquals(Backend.TREE, Backend.fromName("TREE"));
+        assertEquals(Backend.CLOSURE, Backend.fromName("Closure"));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> Backend.fromName("jit"));
+        assertTrue(e.getMessage().startsWith("APP_001"));
+    }
+
+    @Test
+    void runtimeErrorsKeepLineContext() {
+        EvalException e = assertThrows(EvalException.class,
+                () -> CalculatorApp.execute(List.of("x = 1", "y = x / 0"), Backend.VM));
+        assertTrue(e.getMessage().contains("line 2: y = x / 0"), e.getMessage());
+    }
+
+    private static String expr(Random random, int depth) {
+        int choice = random.nextInt(depth > 3 ? 4 : 9);
+        String variable = VARIABLES[random.nextInt(VARIABLES.length)];
+        return switch (choice) {
+            case 0 -> String.valueOf(random.nextInt(5));
+            case 1 -> random.nextInt(4) + ".5";
+            case 2 -> variable;
+            case 3 -> random.nextBoolean() ? variable + "++" : "--" + variable;
+            case 4 -> "-" + expr(random, depth + 1);
+            case 5 -> "(" + expr(random, depth + 1) + ")";
+            default -> expr(random, depth + 1) + " " + BINARY_OPS[random.nextInt(BINARY_OPS.length)] + " "
+                    + expr(random, depth + 1);
+        };
+    }
+}
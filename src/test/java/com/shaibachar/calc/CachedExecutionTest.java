@@ -0,0 +1,133 @@
+package com.shaibachar.calc;
+
+import com.shaibachar.calc.cache.ScriptCodec;
+import com.shaibachar.calc.cache.ScriptStore;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.exceptions.ParseException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachedExecutionTest {
+    private static final String SCRIPT = "i = 0\nj = ++i\n\nx = i++ + 5\r\ny = (5 + 3) * 10\ni += y\nz = -(x - 2.5) / 4\n";
+
+    @TempDir
+    Path directory;
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Path storedFile(String text, Backend backend) {
+        return new ScriptStore(directory).path(ScriptCodec.sourceHash(bytes(text)), backend.sharesParsedStatements());
+    }
+
+    @ParameterizedTest
+    @EnumSource(Backend.class)
+    void storesOnFirstRunAndLoadsOnSecond(Backend backend) throws IOException {
+        String expected = CalculatorApp.execute(new StringReader(SCRIPT), backend);
+        ScriptStore store = new ScriptStore(directory);
+        assertEquals(expected, CalculatorApp.executeCached(bytes(SCRIPT), backend, store));
+        assertTrue(Files.exists(storedFile(SCRIPT, backend)));
+        assertEquals(expected, CalculatorApp.executeCached(bytes(SCRIPT), backend, store));
+    }
+
+    @Test
+    void hitSkipsLexingAndParsing() {
+        ScriptStore store = new ScriptStore(directory);
+        CalculatorApp.executeCached(bytes(SCRIPT), Backend.TREE, store);
+        Logger logger = Logger.getLogger(CalculatorApp.class.getName());
+        List<String> messages = new ArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                messages.add(record.getMessage());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Level level = logger.getLevel();
+        logger.setLevel(Level.FINE);
+        logger.addHandler(handler);
+        try {
+            CalculatorApp.executeCached(bytes(SCRIPT), Backend.VM, store);
+        } finally {
+            logger.removeHandler(handler);
+            logger.setLevel(level);
+        }
+        assertTrue(messages.contains("Loaded precompiled script"), messages.toString());
+    }
+
+    @ParameterizedTest
+    @EnumSource(Backend.class)
+    void evaluationErrorsKeepLineContextOnHit(Backend backend) {
+        String script = "x = 1\n\ny = x - 1\nz = x / y\n";
+        EvalException expected = assertThrows(EvalException.class,
+                () -> CalculatorApp.execute(new StringReader(script), backend));
+        ScriptStore store = new ScriptStore(directory);
+        for (int run = 0; run < 2; run++) {
+            EvalException actual = assertThrows(EvalException.class,
+                    () -> CalculatorApp.executeCached(bytes(script), backend, store));
+            assertEquals(expected.getMessage(), actual.getMessage());
+        }
+        assertTrue(Files.exists(storedFile(script, backend)));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Backend.class)
+    void scriptsThatFailToParseAreNotStored(Backend backend) {
+        String script = "x = 1\ny = (x\nz = 2\n";
+        ParseException expected = assertThrows(ParseException.class,
+                () -> CalculatorApp.execute(new StringReader(script), backend));
+        ParseException actual = assertThrows(ParseException.class,
+                () -> CalculatorApp.executeCached(bytes(script), backend, new ScriptStore(directory)));
+        assertEquals(expected.getMessage(), actual.getMessage());
+        assertFalse(Files.exists(storedFile(script, backend)));
+    }
+
+    @Test
+    void damagedFileIsReplaced() throws IOException {
+        ScriptStore store = new ScriptStore(directory);
+        String expected = CalculatorApp.executeCached(bytes(SCRIPT), Backend.TREE, store);
+        Path file = storedFile(SCRIPT, Backend.TREE);
+        byte[] good = Files.readAllBytes(file);
+        byte[] damaged = good.clone();
+        damaged[damaged.length - 2] ^= 1;
+        Files.write(file, damaged);
+
+        assertEquals(expected, CalculatorApp.executeCached(bytes(SCRIPT), Backend.TREE, store));
+        assertArrayEquals(good, Files.readAllBytes(file));
+    }
+
+    @Test
+    void changedSourceMisses() {
+        ScriptStore store = new ScriptStore(directory);
+        CalculatorApp.executeCached(bytes("x = 1\n"), Backend.TREE, store);
+        assertEquals("(x=2)", CalculatorApp.executeCached(bytes("x = 2\n"), Backend.TREE, store));
+    }
+}
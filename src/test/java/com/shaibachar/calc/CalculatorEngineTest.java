@@ -0,0 +1,147 @@
+package com.shaibachar.calc;
+
+import com.shaibachar.calc.eval.Environment;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.exceptions.ParseException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CalculatorEngineTest {
+    private static List<List<String>> tenantScripts(int count, long seed) {
+        Random random = new Random(seed);
+        List<List<String>> scripts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = "t" + random.nextInt(20);
+            List<String> lines = new ArrayList<>();
+            lines.add(name + " = " + random.nextInt(100));
+            lines.add("total = " + name + " * 3 + 1");
+            lines.add("total += " + name + "++ % 7");
+            if (random.nextInt(10) == 0) {
+                lines.add("bad = total / (" + name + " - " + name + ")");
+            } else if (random.nextInt(10) == 0) {
+                lines.add("bad = (total");
+            } else if (random.nextInt(10) == 0) {
+                lines.add("bad = undefined" + i + " + 1");
+            }
+            lines.add("rate = total / 2.5");
+            scripts.add(lines);
+        }
+        return scripts;
+    }
+
+    private static void assertSameResult(List<String> script, Backend backend, ScriptResult result) {
+        try {
+            String expected = CalculatorApp.execute(script, backend);
+            assertTrue(result.isSuccess(), () -> "unexpected failure: " + result.error());
+            assertEquals(expected, result.output());
+        } catch (ParseException | EvalException expected) {
+            assertInstanceOf(expected.getClass(), result.error());
+            assertEquals(expected.getMessage(), result.error().getMessage());
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Backend.class)
+    void batchMatchesOneByOneExecution(Backend backend) {
+        List<List<String>> scripts = tenantScripts(500, 21L);
+        try (CalculatorEngine engine = new CalculatorEngine(backend, 4, 256)) {
+            List<ScriptResult> results = engine.executeAll(scripts);
+            assertEquals(scripts.size(), results.size());
+            for (int i = 0; i < scripts.size(); i++) {
+                assertSameResult(scripts.get(i), backend, results.get(i));
+            }
+        }
+    }
+
+    @Test
+    void stackOverflowFailsOnlyItsScript() {
+        List<String> deep = List.of("x = " + "(".repeat(200_000) + "1" + ")".repeat(200_000));
+        List<List<String>> scripts = List.of(List.of("a = 1"), deep, List.of("b = 2"));
+        try (CalculatorEngine engine = new CalculatorEngine(Backend.TREE, 1, 16)) {
+            List<ScriptResult> results = engine.executeAll(scripts);
+            assertEquals("(a=1)", results.get(0).output());
+            assertFalse(results.get(1).isSuccess());
+            assertInstanceOf(StackOverflowError.class, results.get(1).error().getCause());
+            assertEquals("(b=2)", results.get(2).output());
+        }
+    }
+
+    @Test
+    void variablesDoNotLeakBetweenScripts() {
+        try (CalculatorEngine engine = new CalculatorEngine(Backend.TREE, 1, 64)) {
+            List<ScriptResult> results = engine.executeAll(List.of(List.of("secret = 42"), List.of("x = secret")));
+            assertEquals("(secret=42)", results.get(0).output());
+            assertInstanceOf(EvalException.class, results.get(1).error());
+            assertThrows(EvalException.class, () -> results.get(1).output());
+        }
+    }
+
+    @Test
+    void sharesParsedStatementsAcrossScripts() {
+        try (CalculatorEngine engine = new CalculatorEngine(Backend.VM, 2, 64)) {
+            List<List<String>> scripts = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                scripts.add(List.of("a = 1", "b = a + 2"));
+            }
+            engine.executeAll(scripts);
+            assertTrue(engine.parseCacheHitCount() >= 190);
+        }
+    }
+
+    @Test
+    void isSafeForConcurrentCallers() throws Exception {
+        List<List<String>> scripts = tenantScripts(200, 5L);
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try (CalculatorEngine engine = new CalculatorEngine(Backend.CLOSURE, 2, 128)) {
+            List<Future<List<ScriptResult>>> batches = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                batches.add(callers.submit(() -> engine.executeAll(scripts)));
+            }
+            List<CompletableFuture<String>> singles = new ArrayList<>();
+            for (List<String> script : scripts.subList(0, 20)) {
+                singles.add(CompletableFuture.supplyAsync(() -> engine.execute(script), callers)
+                        .exceptionally(Throwable::getMessage));
+            }
+            List<ScriptResult> expected = engine.executeAll(scripts);
+            for (Future<List<ScriptResult>> batch : batches) {
+                assertEquals(expected.toString(), batch.get(30, TimeUnit.SECONDS).toString());
+            }
+            for (int i = 0; i < singles.size(); i++) {
+                ScriptResult result = expected.get(i);
+                String single = singles.get(i).get(30, TimeUnit.SECONDS);
+                assertTrue(single.endsWith(result.isSuccess() ? result.output() : result.error().getMessage()));
+            }
+        } finally {
+            callers.shutdown();
+        }
+    }
+
+    @Test
+    void clearedEnvironmentKeepsSlotsButForgetsValues() {
+        Environment env = new Environment();
+        env.set("a", 1L);
+        env.set("b", 2.5);
+        env.clear();
+        assertEquals(0, env.size());
+        assertThrows(EvalException.class, () -> env.get("a"));
+        env.set("b", 3L);
+        assertEquals("{b=3}", env.values().toString());
+        assertEquals(1, env.slot("b"));
+    }
+}
@@ -0,0 +1,231 @@
+package com.shaibachar.calc;
+
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.exceptions.ParseException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that every execution mode returns what sequential execution returns, and fails the same way, with every
+ * backend. Cases specific to one mode live in that mode's own test.
+ */
+class ExecutionModeTest {
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+    private static final String[] VARIABLES = {"a", "b", "c", "d", "e"};
+    private static final String[] OPERATORS = {" = ", " += ", " -= ", " *= "};
+
+    enum Mode {
+        PARALLEL, PARALLEL_STREAMED, DAG, DAG_STREAMED, SPECULATIVE, SPECULATIVE_STREAMED, PIPELINED_ONE_WORKER,
+        PIPELINED;
+
+        String execute(List<String> lines, Backend backend, ForkJoinPool pool) throws IOException {
+            return switch (this) {
+                case PARALLEL -> CalculatorApp.executeParallel(lines, backend, pool);
+                case DAG -> CalculatorApp.executeDag(lines, backend, pool);
+                case SPECULATIVE -> CalculatorApp.executeSpeculative(lines, backend, pool);
+                default -> execute(new StringReader(String.join("\n", lines)), backend, pool);
+            };
+        }
+
+        String execute(Reader input, Backend backend, ForkJoinPool pool) throws IOException {
+            return switch (this) {
+                case PARALLEL_STREAMED -> CalculatorApp.executeParallel(input, backend, pool);
+                case DAG_STREAMED -> CalculatorApp.executeDag(input, backend, pool);
+                case SPECULATIVE_STREAMED -> CalculatorApp.executeSpeculative(input, backend, pool);
+                case PIPELINED_ONE_WORKER -> CalculatorApp.executePipelined(input, backend, 1);
+                case PIPELINED -> CalculatorApp.executePipelined(input, backend, 3);
+                default -> throw new UnsupportedOperationException(name() + " runs lists of lines");
+            };
+        }
+
+        String execute(List<String> lines, Backend backend) throws IOException {
+            return execute(lines, backend, POOL);
+        }
+    }
+
+    @AfterAll
+    static void shutDown() {
+        POOL.shutdown();
+    }
+
+    /**
+     * Lines over many variables, so that most statements are independent, with increments and compound
+     * assignments mixed in to create dependencies.
+     */
+    static List<String> script(int lineCount, int variableCount, long seed) {
+        Random random = new Random(seed);
+        List<String> lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < variableCount; i++) {
+            lines.add("v" + i + " = " + (random.nextInt(9) + 1));
+        }
+        while (lines.size() < lineCount) {
+            String a = "v" + random.nextInt(variableCount);
+            String b = "v" + random.nextInt(variableCount);
+            lines.add(switch (random.nextInt(7)) {
+                case 0 -> "";
+                case 1 -> a + " += " + b + "++ % 7";
+                case 2 -> "w" + random.nextInt(variableCount) + " = --" + a + " * 2.5";
+                case 3 -> a + " = (" + b + " + " + random.nextInt(100) + ") % 11";
+                case 4 -> a + " -= -(" + b + ") / 3";
+                case 5 -> "n" + lines.size() + " = " + b + " * " + a;
+                default -> b + " *= 1";
+            });
+        }
+        return lines;
+    }
+
+    /**
+     * Lines over a few variables with nested expressions, so that nearly every statement depends on the ones
+     * before it.
+     */
+    static List<String> nestedScript(int lineCount, long seed) {
+        Random random = new Random(seed);
+        List<String> lines = new ArrayList<>(lineCount);
+        for (String variable : VARIABLES) {
+            lines.add(variable + " = " + (random.nextInt(9) + 1));
+        }
+        while (lines.size() < lineCount) {
+            if (random.nextInt(20) == 0) {
+                lines.add("   ");
+                continue;
+            }
+            String target = random.nextInt(10) == 0 ? "v" + random.nextInt(50) : VARIABLES[random.nextInt(5)];
+            String operator = target.startsWith("v") ? " = " : OPERATORS[random.nextInt(OPERATORS.length)];
+            lines.add(target + operator + expression(random, 3));
+        }
+        return lines;
+    }
+
+    private static String expression(Random random, int depth) {
+        if (depth == 0) {
+            return switch (random.nextInt(5)) {
+                case 0 -> VARIABLES[random.nextInt(5)] + "++";
+                case 1 -> "--" + VARIABLES[random.nextInt(5)];
+                case 2 -> VARIABLES[random.nextInt(5)];
+                case 3 -> random.nextInt(10) + ".5";
+                default -> String.valueOf(random.nextInt(100));
+            };
+        }
+        return switch (random.nextInt(3)) {
+            case 0 -> "(" + expression(random, depth - 1) + " + " + expression(random, depth - 1) + ")";
+            case 1 -> expression(random, depth - 1) + " % " + (random.nextInt(9) + 1);
+            default -> "-(" + expression(random, depth - 1) + ") / " + (random.nextInt(9) + 1);
+        };
+    }
+
+    /**
+     * Asserts that a mode fails like sequential execution and returns its exception.
+     */
+    static RuntimeException assertSameFailure(Mode mode, List<String> lines, Backend backend, ForkJoinPool pool) {
+        RuntimeException expected = assertThrows(RuntimeException.class, () -> CalculatorApp.execute(lines, backend));
+        RuntimeException actual = assertThrows(RuntimeException.class, () -> mode.execute(lines, backend, pool));
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.getMessage(), actual.getMessage());
+        return actual;
+    }
+
+    @ParameterizedTest
+    @EnumSource(Mode.class)
+    void matchesSequentialExecution(Mode mode) throws IOException {
+        for (Backend backend : Backend.values()) {
+            for (long seed = 0; seed < 5; seed++) {
+                List<String> lines = script(3000, 64, seed);
+                assertEquals(CalculatorApp.execute(lines, backend), mode.execute(lines, backend));
+            }
+            List<String> lines = nestedScript(3000, 7L);
+            assertEquals(CalculatorApp.execute(lines, backend), mode.execute(lines, backend));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Mode.class)
+    void reportsFirstFailureInScriptOrder(Mode mode) {
+        for (Backend backend : Backend.values()) {
+            List<String> lines = script(2000, 32, 7L);
+            lines.set(1500, "v1 = (v2 + ");
+            lines.set(1700, "v2 = 1 $ 2");
+            RuntimeException parse = assertSameFailure(mode, lines, backend, POOL);
+            assertInstanceOf(ParseException.class, parse);
+            assertTrue(parse.getMessage().contains("line 1501"));
+
+            lines.set(1200, "x = 1 / 0");
+            lines.set(900, "y = v3 % 0");
+            lines.set(1000, "z = undefined + 1");
+            RuntimeException eval = assertSameFailure(mode, lines, backend, POOL);
+            assertInstanceOf(EvalException.class, eval);
+            assertTrue(eval.getMessage().contains("line 901"));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = Mode.class, names = {"DAG", "DAG_STREAMED", "SPECULATIVE", "SPECULATIVE_STREAMED"})
+    void scriptsLongerThanAWindowRunWindowByWindow(Mode mode) throws IOException {
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            List<String> lines = script(10_000, 300, 11L);
+            assertEquals(CalculatorApp.execute(lines, Backend.VM), mode.execute(lines, Backend.VM, single));
+            lines.set(9000, "x = undefined");
+            lines.set(9500, "y = (");
+            assertSameFailure(mode, lines, Backend.VM, single);
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Mode.class)
+    void variablesKeepFirstAssignmentOrder(Mode mode) throws IOException {
+        List<String> lines = List.of("c = 1", "b = 2", "a = 3", "", "b += a", "d = c++", "c = 0");
+        for (Backend backend : Backend.values()) {
+            assertEquals("(c=0,b=5,a=3,d=1)", mode.execute(lines, backend));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Mode.class)
+    void emptyAndTinyScripts(Mode mode) throws IOException {
+        List<List<String>> scripts = List.of(List.of(), List.of("", " "), List.of("x = 1", "", "y = x++ * 2"));
+        for (Backend backend : Backend.values()) {
+            for (List<String> lines : scripts) {
+                assertEquals(CalculatorApp.execute(lines, backend), mode.execute(lines, backend));
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = Mode.class, names = {"PARALLEL_STREAMED", "DAG_STREAMED", "SPECULATIVE_STREAMED"})
+    void readFailureIsReported(Mode mode) {
+        Reader failing = new Reader() {
+            private final Reader lines = new StringReader("x = 1\ny = x + 1\n");
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                int read = lines.read(buffer, offset, length);
+                if (read < 0) {
+                    throw new IOException("disconnected");
+                }
+                return read;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        IOException exception = assertThrows(IOException.class, () -> mode.execute(failing, Backend.TREE, POOL));
+        assertEquals("disconnected", exception.getMessage());
+    }
+}
@@ -0,0 +1,56 @@
+package com.shaibachar.calc;
+
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.exceptions.ParseException;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FileExecutionTest {
+    private static final String SCRIPT = "i = 0\nj = ++i\n\nx = i++ + 5\r\ny = (5 + 3) * 10\ni += y\nz = -(x - 2.5) / 4\n";
+
+    @TempDir
+    Path directory;
+
+    private Path write(String text) throws IOException {
+        Path file = directory.resolve("script.txt");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    @ParameterizedTest
+    @EnumSource(Backend.class)
+    void matchesReaderExecution(Backend backend) throws IOException {
+        String expected = CalculatorApp.execute(new StringReader(SCRIPT), backend);
+        assertEquals(expected, CalculatorApp.executeFile(write(SCRIPT), backend));
+        // Small windows force lines to be remapped at window boundaries
+        assertEquals(expected, CalculatorApp.executeFile(write(SCRIPT), backend, 24));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Backend.class)
+    void reportsErrorsWithLineContext(Backend backend) throws IOException {
+        String evalError = "x = 4\ny = 2\n\nz = x / (y - 2)\nw = 1\n";
+        EvalException expectedEval = assertThrows(EvalException.class,
+                () -> CalculatorApp.execute(new StringReader(evalError), backend));
+        Path evalFile = write(evalError);
+        EvalException eval = assertThrows(EvalException.class, () -> CalculatorApp.executeFile(evalFile, backend, 16));
+        assertEquals(expectedEval.getMessage(), eval.getMessage());
+
+        String parseError = "x = 4\ny = x +\nz = 1\n";
+        ParseException expectedParse = assertThrows(ParseException.class,
+                () -> CalculatorApp.execute(new StringReader(parseError), backend));
+        Path parseFile = write(parseError);
+        ParseException parse = assertThrows(ParseException.class, () -> CalculatorApp.executeFile(parseFile, backend));
+        assertEquals(expectedParse.getMessage(), parse.getMessage());
+    }
+}
@@ -0,0 +1,63 @@
+package com.shaibachar.calc;
+
+import com.shaibachar.calc.ExecutionModeTest.Mode;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.exceptions.ParseException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelExecutionTest {
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    static void startPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void stopPool() {
+        pool.shutdown();
+    }
+
+    @ParameterizedTest
+    @EnumSource(Backend.class)
+    void reportsEarliestParseErrorAcrossChunks(Backend backend) {
+        List<String> lines = ExecutionModeTest.nestedScript(3000, 11L);
+        lines.set(2600, "a = 1 $ 2");
+        lines.set(2500, "b = (a + ");
+        lines.set(2900, "c = ");
+        ExecutionModeTest.assertSameFailure(Mode.PARALLEL, lines, backend, pool);
+        ParseException exception = assertThrows(ParseException.class,
+                () -> CalculatorApp.executeParallel(lines, backend, pool));
+        assertTrue(exception.getMessage().contains("line 2501"));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Backend.class)
+    void lexErrorBeforeParseErrorWins(Backend backend) {
+        List<String> lines = ExecutionModeTest.nestedScript(3000, 13L);
+        lines.set(1800, "a = 1 $ 2");
+        lines.set(1900, "b = (a + ");
+        ExecutionModeTest.assertSameFailure(Mode.PARALLEL, lines, backend, pool);
+    }
+
+    @ParameterizedTest
+    @EnumSource(Backend.class)
+    void evaluationErrorBeforeParseErrorWins(Backend backend) {
+        List<String> lines = ExecutionModeTest.nestedScript(3000, 17L);
+        lines.set(100, "a /= 0");
+        lines.set(2500, "b = (a + ");
+        ExecutionModeTest.assertSameFailure(Mode.PARALLEL, lines, backend, pool);
+        EvalException exception = assertThrows(EvalException.class,
+                () -> CalculatorApp.executeParallel(lines, backend, pool));
+        assertTrue(exception.getMessage().contains("line 101"));
+    }
+}
@@ -0,0 +1,63 @@
+package com.shaibachar.calc;
+
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.pipeline.QueueStats;
+import com.shaibachar.calc.pipeline.ScriptPipeline;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PipelinedExecutionTest {
+    @Test
+    void readFailureIsReportedAfterTheLinesReadBeforeIt() {
+        Reader failing = new Reader() {
+            private final Reader lines = new StringReader("x = 1\ny = x / 0\n");
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                int read = lines.read(buffer, offset, length);
+                if (read < 0) {
+                    throw new IOException("disconnected");
+                }
+                return read;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        EvalException exception = assertThrows(EvalException.class,
+                () -> CalculatorApp.executePipelined(failing, Backend.TREE, 2));
+        assertTrue(exception.getMessage().contains("line 2"));
+    }
+
+    @Test
+    void reportsQueueOccupancy() throws IOException {
+        ScriptPipeline pipeline = new ScriptPipeline(Backend.TREE, 2, 64);
+        String text = String.join("\n", ExecutionModeTest.script(1000, 4, 9L));
+        List<Integer> lineNumbers = new ArrayList<>();
+        assertNull(pipeline.run(new BufferedReader(new StringReader(text)),
+                (stmt, line, lineNumber) -> lineNumbers.add(lineNumber)));
+        assertEquals(text.lines().count(), pipeline.lineCount());
+        for (int i = 1; i < lineNumbers.size(); i++) {
+            assertTrue(lineNumbers.get(i - 1) < lineNumbers.get(i));
+        }
+        List<QueueStats> stats = pipeline.queueStats();
+        assertEquals(List.of("lines", "statements"), stats.stream().map(QueueStats::name).toList());
+        for (QueueStats queue : stats) {
+            // Every line plus one end-of-input marker per worker goes through the line queue
+            assertTrue(queue.transfers() >= pipeline.lineCount());
+            assertTrue(queue.maxOccupancy() <= 64);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.shaibachar.calc;
+
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.exceptions.ParseException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingExecutionTest {
+    private static final String GOLDEN = "i = 0\nj = ++i\nx = i++ + 5\ny = (5 + 3) * 10\ni += y\n";
+
+    @Test
+    void readerMatchesListExecution() throws IOException {
+        String expected = CalculatorApp.execute(List.of(GOLDEN.split("\n")));
+        assertEquals(expected, CalculatorApp.execute(new StringReader(GOLDEN)));
+        assertEquals("(i=82,j=1,x=6,y=80)", expected);
+    }
+
+    @Test
+    void readerSkipsBlankLinesButCountsThem() {
+        EvalException exception = assertThrows(EvalException.class,
+                () -> CalculatorApp.execute(new StringReader("x = 1\n\n   \nx /= 0\n")));
+        assertTrue(exception.getMessage().contains("line 4"));
+        assertTrue(exception.getMessage().contains("x /= 0"));
+    }
+
+    @Test
+    void iteratorReportsParseErrorLine() {
+        ParseException exception = assertThrows(ParseException.class,
+                () -> CalculatorApp.execute(List.of("x = 1", "y = (x").iterator()));
+        assertTrue(exception.getMessage().contains("line 2"));
+        assertTrue(exception.getMessage().contains("y = (x"));
+    }
+
+    @Test
+    void lazyIteratorIsConsumedOneLineAtATime() {
+        int lineCount = 50_000;
+        Iterator<String> lines = new Iterator<>() {
+            private int produced;
+
+            @Override
+            public boolean hasNext() {
+                return produced < lineCount;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return produced++ == 0 ? "n = 0" : "n += 1";
+            }
+        };
+        assertEquals("(n=" + (lineCount - 1) + ")", CalculatorApp.execute(lines));
+    }
+
+    @Test
+    void readerStopsAtFirstFailingLine() {
+        int[] reads = {0};
+        Reader reader = new StringReader("a = 1\nb = c\n" + "a += 1\n".repeat(1000)) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                reads[0]++;
+                return super.read(cbuf, off, Math.min(len, 16));
+            }
+        };
+        EvalException exception = assertThrows(EvalException.class, () -> CalculatorApp.execute(reader));
+        assertTrue(exception.getMessage().contains("line 2"));
+        assertTrue(reads[0] < 10, "reader should not be drained past the failing line");
+    }
+}
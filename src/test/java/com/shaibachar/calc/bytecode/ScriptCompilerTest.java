@@ -0,0 +1,130 @@
+package com.shaibachar.calc.bytecode;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.CalculatorApp;
+import com.shaibachar.calc.eval.Environment;
+import com.shaibachar.calc.eval.Evaluator;
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.exceptions.ParseException;
+import com.shaibachar.calc.lexer.Lexer;
+import com.shaibachar.calc.parser.Parser;
+import com.shaibachar.calc.parser.stmt.Stmt;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptCompilerTest {
+    private final SymbolTable symbols = new SymbolTable();
+
+    private List<Stmt> parse(List<String> lines) {
+        List<Stmt> stmts = new ArrayList<>();
+        for (String line : lines) {
+            stmts.add(new Parser(new Lexer(line).tokenizeCompact(), symbols).parseStatement());
+        }
+        return stmts;
+    }
+
+    private Environment run(CompiledScript script) {
+        Environment env = new Environment(symbols);
+        script.run(env);
+        return env;
+    }
+
+    private static Environment evaluate(List<String> lines) {
+        Environment env = new Environment();
+        Evaluator evaluator = new Evaluator(env);
+        for (String line : lines) {
+            evaluator.execute(new Parser(new Lexer(line).tokenize()).parseStatement());
+        }
+        return env;
+    }
+
+    @Test
+    void variablesChangeTypeAlongTheScript() {
+        List<String> lines = List.of("x = 3", "y = x / 2", "x = x * 0.5", "y += x", "x = y % 2", "z = x++ - --y");
+        CompiledScript script = new ScriptCompiler(symbols).compile(parse(lines));
+        assertEquals(evaluate(lines).values(), run(script).values());
+        // a compiled script can be run again with a fresh environment
+        assertEquals(evaluate(lines).values(), run(script).values());
+    }
+
+    @Test
+    void largeScriptsAreSplitIntoMethodsAndClasses() {
+        List<String> lines = new ArrayList<>();
+        lines.add("acc = 0");
+        for (int i = 0; i < 40_000; i++) {
+            // distinct large constants fill the constant pool
+            lines.add("v" + (i % 300) + " = " + (10_000_000_000L + i) + " + acc++");
+        }
+        CompiledScript script = new ScriptCompiler(symbols).compile(parse(lines));
+        assertTrue(script.methodCount() > 1, script.toString());
+        assertTrue(script.classCount() > 1, script.toString());
+        assertEquals(evaluate(lines).values(), run(script).values());
+    }
+
+    @Test
+    void runtimeErrorReportsStatementIndex() {
+        List<String> lines = new ArrayList<>();
+        lines.add("d = 5");
+        for (int i = 0; i < 3_000; i++) {
+            lines.add("x" + i + " = d * " + i + " - d");
+        }
+        lines.add("y = 1 / (d - 5)");
+        CompiledScript script = new ScriptCompiler(symbols).compile(parse(lines));
+        assertTrue(script.methodCount() > 1, script.toString());
+        Environment env = new Environment(symbols);
+        ScriptExecutionException e = assertThrows(ScriptExecutionException.class, () -> script.run(env));
+        assertEquals(3_001, e.statementIndex());
+        assertTrue(e.getMessage().startsWith("EVAL_004"));
+        assertEquals(0, env.size());
+    }
+
+    @Test
+    void errorsKnownAtCompileTimeAreRaisedWhenReached() {
+        CompiledScript script = new ScriptCompiler(symbols).compile(parse(List.of("a = 1", "b = a + c", "c = 2")));
+        ScriptExecutionException e = assertThrows(ScriptExecutionException.class, () -> run(script));
+        assertEquals(1, e.statementIndex());
+        assertTrue(e.getMessage().startsWith("ENV_001"), e.getMessage());
+
+        // the division by zero happens before the undefined variable is read
+        CompiledScript divides = new ScriptCompiler(symbols).compile(parse(List.of("a = 1 / 0 + q")));
+        e = assertThrows(ScriptExecutionException.class, () -> run(divides));
+        assertTrue(e.getMessage().startsWith("EVAL_004"), e.getMessage());
+    }
+
+    @Test
+    void manyVariablesUseWideLocals() {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            lines.add("v" + i + " = " + i + ".5");
+        }
+        lines.add("sum = v0 + v599 * v300");
+        CompiledScript script = new ScriptCompiler(symbols).compile(parse(lines));
+        assertEquals(evaluate(lines).values(), run(script).values());
+    }
+
+    @Test
+    void rejectsForeignOrNonEmptyEnvironment() {
+        CompiledScript script = new ScriptCompiler(symbols).compile(parse(List.of("x = 1")));
+        assertThrows(IllegalArgumentException.class, () -> script.run(new Environment()));
+        Environment env = new Environment(symbols);
+        env.set("x", 5L);
+        assertThrows(IllegalArgumentException.class, () -> script.run(env));
+    }
+
+    @Test
+    void calculatorAppReportsErrorsInLineOrder() {
+        EvalException e = assertThrows(EvalException.class, () -> CalculatorApp.execute(
+                List.of("x = 1", "", "y = x / 0", "z = (", "w = 2"), Backend.BYTECODE));
+        assertTrue(e.getMessage().contains("(line 3: y = x / 0)"), e.getMessage());
+        ParseException p = assertThrows(ParseException.class, () -> CalculatorApp.execute(
+                List.of("x = 1", "z = (", "y = x / 0"), Backend.BYTECODE));
+        assertTrue(p.getMessage().contains("(line 2: z = ()"), p.getMessage());
+        assertEquals("(i=82,j=1,x=6,y=80)", CalculatorApp.execute(
+                List.of("i = 0", "j = ++i", "x = i++ + 5", "y = (5 + 3) * 10", "i += y"), Backend.BYTECODE));
+    }
+}
@@ -0,0 +1,119 @@
+package com.shaibachar.calc.cache;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.CalculatorApp;
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.parser.AssignOp;
+import com.shaibachar.calc.parser.expr.LiteralExpr;
+import com.shaibachar.calc.parser.stmt.AssignStmt;
+import com.shaibachar.calc.parser.stmt.Stmt;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParseCacheTest {
+
+    private static Stmt stmt(long value) {
+        return new AssignStmt("x", AssignOp.ASSIGN, new LiteralExpr(value));
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "x = y + 1|x=y+1",
+            "  total\t=  total +   delta |total=total+delta",
+            "x = a + + b|x=a+ +b",
+            "x = 1 2|x=1 2",
+            "x += ( -y ) * 2.5|x+=(-y)*2.5",
+            "x=1|x=1"})
+    void normalizesWhitespaceThatDoesNotSeparateTokens(String line, String expected) {
+        assertEquals(expected, ParseCache.normalize(line));
+    }
+
+    @Test
+    void keepsLinesThatLexDifferentlyApart() {
+        assertNotEquals(ParseCache.normalize("x = a + + b"), ParseCache.normalize("x = a ++ b"));
+        assertNotEquals(ParseCache.normalize("x = a * = b"), ParseCache.normalize("x = a *= b"));
+        assertNotEquals(ParseCache.normalize("x = ab"), ParseCache.normalize("x = a b"));
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        ParseCache cache = new ParseCache(16);
+        Stmt stmt = stmt(1L);
+        assertNull(cache.get("x=1"));
+        cache.put("x=1", stmt);
+        assertSame(stmt, cache.get("x=1"));
+        assertSame(stmt, cache.get("x=1"));
+        assertEquals(2, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    void staysWithinItsSizeLimit() {
+        ParseCache cache = new ParseCache(100);
+        for (int i = 0; i < 10_000; i++) {
+            String key = "x=" + i;
+            cache.get(key);
+            cache.put(key, stmt(i));
+        }
+        assertTrue(cache.size() <= 100, "size " + cache.size());
+    }
+
+    @Test
+    void recurringStatementsSurviveOneOffLines() {
+        // 80 recurring lines interleaved with one-off lines: each recurs every 160 lookups, beyond what an
+        // LRU cache of 100 entries can hold
+        ParseCache cache = new ParseCache(100);
+        int hotHits = 0;
+        for (int i = 0; i < 20_000; i++) {
+            String cold = "cold" + i;
+            cache.get(cold);
+            cache.put(cold, stmt(i));
+            String hot = "hot" + (i % 80);
+            if (cache.get(hot) == null) {
+                cache.put(hot, stmt(i));
+            } else if (i >= 10_000) {
+                hotHits++;
+            }
+        }
+        assertTrue(hotHits > 8_000, "hot hits in the second half: " + hotHits);
+    }
+
+    @Test
+    void rejectsNonPositiveSizes() {
+        assertThrows(IllegalArgumentException.class, () -> new ParseCache(0));
+    }
+
+    @Test
+    void calculatorSkipsParsingRepeatedLines() {
+        ParseCache cache = new ParseCache(64);
+        String output = CalculatorApp.execute(List.of("counter = 0", "counter += 1", "counter  +=  1",
+                "counter+=1"), Backend.TREE, cache);
+        assertEquals("(counter=3)", output);
+        assertEquals(2, cache.hitCount());
+        assertEquals(2, cache.missCount());
+    }
+
+    @Test
+    void hitsAreBoundToTheSlotsOfEachExecution() {
+        ParseCache cache = new ParseCache(64);
+        CalculatorApp.execute(List.of("a = 1", "b = a + 1"), Backend.TREE, cache);
+        SymbolTable symbols = new SymbolTable();
+        symbols.intern("b");
+        AssignStmt stmt = (AssignStmt) cache.get(ParseCache.normalize("b = a + 1"), symbols);
+        assertTrue(symbols.holds(stmt.slot(), "b"));
+        long hits = cache.hitCount();
+        assertEquals("(b=3,a=2)", CalculatorApp.execute(List.of("b = 2", "a = 2", "b = a + 1"), Backend.TREE,
+                cache));
+        assertEquals(hits + 1, cache.hitCount());
+    }
+}
@@ -0,0 +1,123 @@
+package com.shaibachar.calc.cache;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.lexer.Lexer;
+import com.shaibachar.calc.parser.AssignOp;
+import com.shaibachar.calc.parser.expr.BinaryExpr;
+import com.shaibachar.calc.parser.expr.Expr;
+import com.shaibachar.calc.parser.expr.LiteralExpr;
+import com.shaibachar.calc.parser.expr.VarExpr;
+import com.shaibachar.calc.parser.stmt.AssignStmt;
+import com.shaibachar.calc.parser.stmt.Stmt;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScriptCodecTest {
+    private static final byte[] HASH = ScriptCodec.sourceHash("source".getBytes(StandardCharsets.UTF_8));
+
+    private static List<Stmt> parse(Backend backend, SymbolTable symbols, String... lines) {
+        List<Stmt> statements = new ArrayList<>();
+        for (String line : lines) {
+            statements.add(backend.parse(new Lexer(line).tokenizeCompact(), symbols));
+        }
+        return statements;
+    }
+
+    private static List<Stmt> decode(byte[] encoded, SymbolTable symbols, List<Integer> lineNumbers)
+            throws IOException {
+        List<Stmt> statements = new ArrayList<>();
+        ScriptCodec.decode(ByteBuffer.wrap(encoded), HASH, true, symbols, (stmt, lineNumber) -> {
+            statements.add(stmt);
+            lineNumbers.add(lineNumber);
+        });
+        return statements;
+    }
+
+    @Test
+    void roundTripsStatementsAndLineNumbers() throws IOException {
+        List<Stmt> statements = parse(Backend.TREE, new SymbolTable(),
+                "i = 0", "j = ++i", "x = i++ + 5", "y = -(x - 2.5) * --j % 3", "y /= x--", "z = ++(x * 2)");
+        byte[] encoded = ScriptCodec.encode(statements, new int[]{1, 2, 4, 5, 9, 10}, HASH, true);
+
+        SymbolTable symbols = new SymbolTable();
+        List<Integer> lineNumbers = new ArrayList<>();
+        assertEquals(statements, decode(encoded, symbols, lineNumbers));
+        assertEquals(List.of(1, 2, 4, 5, 9, 10), lineNumbers);
+    }
+
+    @Test
+    void decodedNamesAreResolvedAgainstTheTargetTable() throws IOException {
+        byte[] encoded = ScriptCodec.encode(parse(Backend.TREE, new SymbolTable(), "b = a + c"), new int[]{1}, HASH,
+                true);
+        SymbolTable symbols = new SymbolTable();
+        symbols.intern("c");
+        AssignStmt stmt = (AssignStmt) decode(encoded, symbols, new ArrayList<>()).get(0);
+        assertTrue(symbols.holds(stmt.slot(), "b"));
+        VarExpr c = (VarExpr) ((BinaryExpr) stmt.expr()).right();
+        assertEquals(0, c.slot());
+    }
+
+    @Test
+    void preservesDoubleBitsAndLongExtremes() throws IOException {
+        List<Stmt> statements = parse(Backend.ITERATIVE, new SymbolTable(),
+                "a = 9223372036854775807", "b = 0.0", "c = 12345.678");
+        statements.add(new AssignStmt("d", AssignOp.ASSIGN, new LiteralExpr(-0.0)));
+        byte[] encoded = ScriptCodec.encode(statements, new int[]{1, 2, 3, 4}, HASH, true);
+        List<Stmt> decoded = decode(encoded, new SymbolTable(), new ArrayList<>());
+        assertEquals(statements, decoded);
+        Expr negativeZero = ((AssignStmt) decoded.get(3)).expr();
+        assertEquals(Double.valueOf(-0.0), ((LiteralExpr) negativeZero).value());
+    }
+
+    @Test
+    void handlesExpressionsDeeperThanTheThreadStack() throws IOException {
+        int depth = 100_000;
+        String line = "x = " + "(".repeat(depth) + "1" + " + 1)".repeat(depth);
+        List<Stmt> statements = parse(Backend.ITERATIVE, new SymbolTable(), line);
+        byte[] encoded = ScriptCodec.encode(statements, new int[]{1}, HASH, true);
+        List<Stmt> decoded = decode(encoded, new SymbolTable(), new ArrayList<>());
+        assertEquals(statements.get(0).hashCode(), decoded.get(0).hashCode());
+        assertArrayEquals(encoded, ScriptCodec.encode(decoded, new int[]{1}, HASH, true));
+    }
+
+    @Test
+    void rejectsOtherSourcesFlagsAndVersions() {
+        byte[] encoded = ScriptCodec.encode(parse(Backend.TREE, new SymbolTable(), "x = 1"), new int[]{1}, HASH, true);
+        byte[] otherHash = ScriptCodec.sourceHash("other".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> ScriptCodec.decode(ByteBuffer.wrap(encoded), otherHash, true,
+                new SymbolTable(), (stmt, line) -> { }));
+        assertThrows(IOException.class, () -> ScriptCodec.decode(ByteBuffer.wrap(encoded), HASH, false,
+                new SymbolTable(), (stmt, line) -> { }));
+        byte[] otherVersion = encoded.clone();
+        otherVersion[5]++;
+        assertThrows(IOException.class, () -> decode(otherVersion, new SymbolTable(), new ArrayList<>()));
+    }
+
+    @Test
+    void rejectsDamagedDataBeforeDeliveringAnyStatement() {
+        byte[] encoded = ScriptCodec.encode(parse(Backend.TREE, new SymbolTable(), "x = 1", "y = x * 2"),
+                new int[]{1, 2}, HASH, true);
+        byte[] damaged = encoded.clone();
+        damaged[damaged.length - 3] ^= 0x40;
+        List<Stmt> delivered = new ArrayList<>();
+        assertThrows(IOException.class, () -> ScriptCodec.decode(ByteBuffer.wrap(damaged), HASH, true,
+                new SymbolTable(), (stmt, line) -> delivered.add(stmt)));
+        assertTrue(delivered.isEmpty());
+
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 1);
+        assertThrows(IOException.class, () -> decode(truncated, new SymbolTable(), new ArrayList<>()));
+        assertThrows(IOException.class, () -> decode(new byte[0], new SymbolTable(), new ArrayList<>()));
+    }
+}
@@ -0,0 +1,76 @@
+package com.shaibachar.calc.closure;
+
+import com.shaibachar.calc.eval.Environment;
+import com.shaibachar.calc.eval.Evaluator;
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.lexer.Lexer;
+import com.shaibachar.calc.parser.Parser;
+import com.shaibachar.calc.parser.stmt.Stmt;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClosureCompilerTest {
+    private static Stmt parse(String line) {
+        return new Parser(new Lexer(line).tokenize()).parseStatement();
+    }
+
+    private static Class<?> rootNode(String line) {
+        return new ClosureCompiler(new SymbolTable()).compile(parse(line)).expr.getClass();
+    }
+
+    @Test
+    void selectsNodeByOperatorAndStaticTypes() {
+        assertEquals(Nodes.LongAdd.class, rootNode("x = 1 + 2"));
+        assertEquals(Nodes.DoubleMul.class, rootNode("x = y * 2.0"));
+        assertEquals(Nodes.DynamicSub.class, rootNode("x = y - 2"));
+        assertEquals(Nodes.SlotRead.class, rootNode("x = +y"));
+        assertEquals(Nodes.LongNeg.class, rootNode("x = -(4 % 3)"));
+        assertEquals(Nodes.PostIncrement.class, rootNode("x = y++"));
+        // x += e reads x before e
+        assertEquals(Nodes.DynamicAdd.class, rootNode("x += 1"));
+    }
+
+    @Test
+    void compiledStatementsCanBeRunRepeatedly() {
+        List<String> script = List.of("a = 10", "b = a / 3 + 0.25", "a %= 4", "c = a++ * --b", "b -= -c");
+        SymbolTable symbols = new SymbolTable();
+        ClosureCompiler compiler = new ClosureCompiler(symbols);
+        List<CompiledStatement> compiled = new ArrayList<>();
+        Environment expected = new Environment();
+        Evaluator evaluator = new Evaluator(expected);
+        for (String line : script) {
+            compiled.add(compiler.compile(parse(line)));
+            evaluator.execute(parse(line));
+        }
+        for (int run = 0; run < 2; run++) {
+            Environment env = new Environment(symbols);
+            ClosureExecutor executor = new ClosureExecutor(env);
+            compiled.forEach(executor::run);
+            assertEquals(expected.values(), env.values());
+        }
+    }
+
+    @Test
+    void errorsMatchEvaluator() {
+        Environment env = new Environment();
+        env.set("x", 4L);
+        ClosureExecutor executor = new ClosureExecutor(env);
+        EvalException e = assertThrows(EvalException.class, () -> executor.execute(parse("y = x / (x - 4)")));
+        assertTrue(e.getMessage().startsWith("EVAL_004"));
+        e = assertThrows(EvalException.class, () -> executor.execute(parse("y = x + ++(1)")));
+        assertTrue(e.getMessage().startsWith("EVAL_003"));
+        e = assertThrows(EvalException.class, () -> executor.execute(parse("z += 1")));
+        assertTrue(e.getMessage().startsWith("ENV_001"));
+    }
+
+    @Test
+    void rejectsStatementOfAnotherSymbolTable() {
+        CompiledStatement compiled = new ClosureCompiler(new SymbolTable()).compile(parse("x = 1"));
+        assertThrows(IllegalArgumentException.class, () -> new ClosureExecutor(new Environment()).run(compiled));
+    }
+}
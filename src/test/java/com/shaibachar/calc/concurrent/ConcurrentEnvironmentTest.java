@@ -0,0 +1,179 @@
+package com.shaibachar.calc.concurrent;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.CalculatorApp;
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.util.Formatter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentEnvironmentTest {
+    private static final int THREADS = 4;
+
+    /**
+     * Runs a task on each of {@code THREADS} threads, all starting at once, and rethrows the first failure.
+     */
+    private static void runConcurrently(ConcurrentEnvironment shared, SessionTask task) throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(threads.submit(() -> {
+                    ConcurrentSession session = shared.newSession();
+                    start.await();
+                    task.run(session, thread);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    private interface SessionTask {
+        void run(ConcurrentSession session, int thread) throws Exception;
+    }
+
+    @Test
+    void singleSessionMatchesSequentialExecution() {
+        List<String> lines = List.of("i = 0", "j = ++i", "x = i++ + 5", "y = 5 + 3 * 10", "i += y", "z = 7 / 2.0",
+                "z *= 2", "w = x % 4");
+        for (Backend backend : List.of(Backend.TREE, Backend.CLOSURE, Backend.VM, Backend.ITERATIVE)) {
+            ConcurrentEnvironment shared = new ConcurrentEnvironment(backend);
+            shared.newSession().execute(lines);
+            assertEquals(CalculatorApp.execute(lines, backend), Formatter.format(shared.values()), backend.name());
+        }
+    }
+
+    @Test
+    void compoundAssignmentsAreAtomic() throws Exception {
+        int updates = 20_000;
+        ConcurrentEnvironment shared = new ConcurrentEnvironment(Backend.TREE);
+        shared.newSession().execute(List.of("hits = 0", "total = 0", "counter = 0", "scale = 1.5"));
+        runConcurrently(shared, (session, thread) -> {
+            for (int i = 0; i < updates; i++) {
+                session.execute("hits += 1");
+                session.execute("total -= 3");
+                session.execute("last" + thread + " = counter++");
+                session.execute("scale *= 1");
+            }
+        });
+        assertEquals((long) THREADS * updates, shared.get("hits"));
+        assertEquals(-3L * THREADS * updates, shared.get("total"));
+        assertEquals((long) THREADS * updates, shared.get("counter"));
+        assertEquals(1.5, shared.get("scale"));
+    }
+
+    @Test
+    void readsSeeAConsistentTypeAndValue() throws Exception {
+        ConcurrentEnvironment shared = new ConcurrentEnvironment(Backend.VM);
+        shared.newSession().execute("v = 1");
+        runConcurrently(shared, (session, thread) -> {
+            for (int i = 0; i < 20_000; i++) {
+                if (thread == 0) {
+                    session.execute(i % 2 == 0 ? "v = 2.5" : "v = 1");
+                } else {
+                    String target = "w" + thread;
+                    session.execute(target + " = v + v");
+                    Number value = shared.get(target);
+                    assertTrue(value.equals(2L) || value.equals(5.0), value::toString);
+                }
+            }
+        });
+    }
+
+    @Test
+    void listsVariablesInFirstDefinitionOrder() {
+        ConcurrentEnvironment shared = new ConcurrentEnvironment(Backend.TREE);
+        ConcurrentSession first = shared.newSession();
+        ConcurrentSession second = shared.newSession();
+        first.execute("b = 1");
+        second.execute("a = b + 1");
+        first.execute("c = a * 2");
+        second.execute("b += 10");
+
+        assertEquals("(b=11,a=2,c=4)", Formatter.format(shared.values()));
+        assertEquals(3, shared.size());
+    }
+
+    @Test
+    void variablesAreListedBeforeTheOnesDefinedFromThem() throws Exception {
+        int count = 2_000;
+        ConcurrentEnvironment shared = new ConcurrentEnvironment(Backend.TREE);
+        runConcurrently(shared, (session, thread) -> {
+            for (int i = 0; i < count; i++) {
+                if (thread == 0) {
+                    session.execute("x" + i + " = " + i);
+                    continue;
+                }
+                while (true) {
+                    try {
+                        session.execute("y" + thread + "_" + i + " = x" + i + " + 1");
+                        break;
+                    } catch (EvalException undefined) {
+                        Thread.onSpinWait();
+                    }
+                }
+            }
+        });
+        List<String> names = new ArrayList<>(shared.values().keySet());
+        for (String name : names) {
+            if (name.startsWith("y")) {
+                String source = "x" + name.substring(name.indexOf('_') + 1);
+                assertTrue(names.indexOf(source) < names.indexOf(name), name + " listed before " + source);
+            }
+        }
+    }
+
+    @Test
+    void failingStatementReleasesItsVariables() {
+        ConcurrentEnvironment shared = new ConcurrentEnvironment(Backend.TREE);
+        ConcurrentSession session = shared.newSession();
+        EvalException e = assertThrows(EvalException.class,
+                () -> session.execute(List.of("x = 1", "x += missing")));
+        assertTrue(e.getMessage().contains("line 2: x += missing"), e.getMessage());
+        assertThrows(EvalException.class, () -> shared.get("missing"));
+
+        shared.newSession().execute("x += 1");
+        assertEquals(2L, shared.get("x"));
+    }
+
+    @Test
+    void clearingASessionViewKeepsTheSharedVariables() {
+        ConcurrentEnvironment shared = new ConcurrentEnvironment(Backend.TREE);
+        ConcurrentSession writer = shared.newSession();
+        SessionEnvironment view = new SessionEnvironment(shared, new SymbolTable());
+        int slot = view.slot("x");
+        writer.execute("x = 1");
+        assertEquals(1L, view.getLong(slot));
+
+        writer.execute("x = 2.5");
+        view.clear();
+        assertTrue(view.isDouble(slot));
+        assertEquals(2.5, view.getDouble(slot));
+        assertEquals("(x=2.5)", Formatter.format(view.values()));
+    }
+
+    @Test
+    void interpretsStatementsOfWholeScriptBackends() {
+        List<String> lines = List.of("x = 3", "y = x++ * 2.5", "x += y");
+        ConcurrentEnvironment shared = new ConcurrentEnvironment(Backend.BYTECODE);
+        shared.newSession().execute(lines);
+        assertEquals(CalculatorApp.execute(lines, Backend.BYTECODE), Formatter.format(shared.values()));
+    }
+}
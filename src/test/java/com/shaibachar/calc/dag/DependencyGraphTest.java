@@ -0,0 +1,99 @@
+package com.shaibachar.calc.dag;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.lexer.Lexer;
+import com.shaibachar.calc.parser.stmt.Stmt;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DependencyGraphTest {
+    private final SymbolTable symbols = new SymbolTable();
+
+    private DependencyGraph graph(String... lines) {
+        List<Stmt> statements = new ArrayList<>();
+        for (String line : lines) {
+            statements.add(Backend.TREE.parse(new Lexer(line).tokenizeCompact(), symbols));
+        }
+        return DependencyGraph.build(statements, symbols);
+    }
+
+    private static boolean hasEdge(DependencyGraph graph, int from, int to) {
+        for (int i = 0; i < graph.successorCount(from); i++) {
+            if (graph.successor(from, i) == to) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void independentStatementsHaveNoEdges() {
+        DependencyGraph graph = graph("a = 1", "b = 2", "c = 3");
+        assertEquals(0, graph.edgeCount());
+        assertEquals(1, graph.criticalPathLength());
+    }
+
+    @Test
+    void readAfterWrite() {
+        DependencyGraph graph = graph("a = 1", "b = a + 1", "c = b * a");
+        assertTrue(hasEdge(graph, 0, 1));
+        assertTrue(hasEdge(graph, 1, 2));
+        assertTrue(hasEdge(graph, 0, 2));
+        assertEquals(3, graph.criticalPathLength());
+        assertEquals(2, graph.predecessorCount(2));
+    }
+
+    @Test
+    void writeAfterReadAndWriteAfterWrite() {
+        DependencyGraph graph = graph("a = 1", "b = a", "c = a", "a = 5", "a += 1");
+        assertTrue(hasEdge(graph, 1, 3));
+        assertTrue(hasEdge(graph, 2, 3));
+        assertTrue(hasEdge(graph, 0, 3));
+        assertTrue(hasEdge(graph, 3, 4));
+        assertFalse(hasEdge(graph, 1, 2));
+        assertFalse(hasEdge(graph, 0, 4));
+    }
+
+    @Test
+    void incrementsWriteTheirOperand() {
+        DependencyGraph graph = graph("a = 1", "b = 2", "c = a++", "d = --b * 2", "e = a + b");
+        assertTrue(hasEdge(graph, 2, 4));
+        assertTrue(hasEdge(graph, 3, 4));
+        assertFalse(hasEdge(graph, 2, 3));
+        DependencyGraph readers = graph("x = 1", "y = x", "z = x++");
+        assertTrue(hasEdge(readers, 1, 2));
+    }
+
+    @Test
+    void compoundAssignmentReadsItsTarget() {
+        DependencyGraph graph = graph("a = 1", "b = 2", "a *= b", "b -= 1");
+        assertTrue(hasEdge(graph, 0, 2));
+        assertTrue(hasEdge(graph, 2, 3));
+    }
+
+    @Test
+    void definitionOrderFollowsFirstAssignment() {
+        DependencyGraph graph = graph("b = 1", "a = 2", "b = 3", "c = a");
+        assertArrayEquals(new int[] {symbols.find("b"), symbols.find("a"), symbols.find("c")},
+                graph.definitionOrder());
+    }
+
+    @Test
+    void deeplyNestedExpressionsAreAnalyzedWithoutRecursion() {
+        String nested = "(".repeat(20_000) + "a" + ")".repeat(20_000);
+        SymbolTable table = new SymbolTable();
+        List<Stmt> statements = List.of(
+                Backend.ITERATIVE.parse(new Lexer("a = 1").tokenizeCompact(), table),
+                Backend.ITERATIVE.parse(new Lexer("b = -" + nested.replace("a", "-a")).tokenizeCompact(), table));
+        DependencyGraph graph = DependencyGraph.build(statements, table);
+        assertTrue(hasEdge(graph, 0, 1));
+    }
+}
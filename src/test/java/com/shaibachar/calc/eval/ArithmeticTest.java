@@ -0,0 +1,61 @@
+package com.shaibachar.calc.eval;
+
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.parser.AssignOp;
+import com.shaibachar.calc.parser.BinaryOp;
+import com.shaibachar.calc.parser.UnaryOp;
+import com.shaibachar.calc.parser.expr.BinaryExpr;
+import com.shaibachar.calc.parser.expr.LiteralExpr;
+import com.shaibachar.calc.parser.expr.ResultType;
+import com.shaibachar.calc.parser.expr.UnaryExpr;
+import com.shaibachar.calc.parser.expr.VarExpr;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ArithmeticTest {
+
+    @Test
+    void longArithmeticKeepsOverflowSemantics() {
+        assertEquals(Long.MIN_VALUE, Arithmetic.apply(BinaryOp.ADD, Long.MAX_VALUE, 1L));
+        assertEquals(-3L, Arithmetic.apply(BinaryOp.DIV, -7L, 2L));
+        assertEquals(-1L, Arithmetic.apply(BinaryOp.MOD, -7L, 2L));
+    }
+
+    @Test
+    void boxedOperandsPromoteToDouble() {
+        assertEquals(7L, Arithmetic.apply(BinaryOp.ADD, (Number) 3L, (Number) 4L));
+        assertEquals(3.5, Arithmetic.apply(BinaryOp.DIV, (Number) 7L, (Number) 2.0));
+        assertEquals(-2.5, Arithmetic.negate(2.5));
+        assertEquals(-2L, Arithmetic.negate(2L));
+    }
+
+    @Test
+    void divisionByZeroThrowsInBothDomains() {
+        assertThrows(EvalException.class, () -> Arithmetic.apply(BinaryOp.DIV, 1L, 0L));
+        assertThrows(EvalException.class, () -> Arithmetic.apply(BinaryOp.MOD, 1L, 0L));
+        assertThrows(EvalException.class, () -> Arithmetic.apply(BinaryOp.DIV, 1.0, -0.0));
+        assertThrows(EvalException.class, () -> Arithmetic.apply(BinaryOp.MOD, 1.0, 0.0));
+    }
+
+    @Test
+    void compoundOperatorMapsAssignOps() {
+        assertEquals(BinaryOp.ADD, Arithmetic.compoundOperator(AssignOp.PLUS_ASSIGN));
+        assertEquals(BinaryOp.MOD, Arithmetic.compoundOperator(AssignOp.MOD_ASSIGN));
+        assertThrows(IllegalStateException.class, () -> Arithmetic.compoundOperator(AssignOp.ASSIGN));
+    }
+
+    @Test
+    void resultTypeIsInferredFromLiterals() {
+        LiteralExpr one = new LiteralExpr(1L);
+        LiteralExpr half = new LiteralExpr(0.5);
+        VarExpr x = new VarExpr("x");
+        assertEquals(ResultType.LONG, new BinaryExpr(one, BinaryOp.MUL, new UnaryExpr(UnaryOp.MINUS, one)).resultType());
+        assertEquals(ResultType.DOUBLE, new BinaryExpr(one, BinaryOp.ADD, half).resultType());
+        // a double operand decides the type whatever the variable holds
+        assertEquals(ResultType.DOUBLE, new BinaryExpr(x, BinaryOp.ADD, half).resultType());
+        assertEquals(ResultType.DYNAMIC, new BinaryExpr(x, BinaryOp.ADD, one).resultType());
+        assertEquals(ResultType.DYNAMIC, new UnaryExpr(UnaryOp.PRE_INC, x).resultType());
+    }
+}
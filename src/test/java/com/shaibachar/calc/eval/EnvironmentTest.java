@@ -0,0 +1,82 @@
+package com.shaibachar.calc.eval;
+
+import com.shaibachar.calc.exceptions.EvalException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EnvironmentTest {
+    @Test
+    void valuesKeepFirstAssignmentOrder() {
+        Environment env = new Environment();
+        env.slot("unused");
+        env.set("b", 2L);
+        env.set("a", 1.5);
+        env.set("b", 3L);
+        Map<String, Number> values = env.values();
+        assertEquals(List.of("b", "a"), List.copyOf(values.keySet()));
+        assertEquals(3L, values.get("b"));
+        assertEquals(1.5, values.get("a"));
+    }
+
+    @Test
+    void slotAccessorsAreUnboxed() {
+        Environment env = new Environment();
+        int x = env.slot("x");
+        assertFalse(env.isDefined(x));
+        env.setLong(x, 41L);
+        assertFalse(env.isDouble(x));
+        assertEquals(41L, env.getLong(x));
+        assertEquals(41.0, env.getDouble(x));
+        env.setDouble(x, 0.5);
+        assertTrue(env.isDouble(x));
+        assertEquals(0.5, env.get(x));
+        assertEquals(0.5, env.get("x"));
+    }
+
+    @Test
+    void typeTagFollowsLastAssignment() {
+        Environment env = new Environment();
+        env.set("x", 2.0);
+        env.set("x", 2L);
+        assertEquals(2L, env.get("x"));
+        assertEquals(Long.class, env.get("x").getClass());
+    }
+
+    @Test
+    void undefinedSlotThrowsWithName() {
+        Environment env = new Environment();
+        int y = env.slot("y");
+        EvalException bySlot = assertThrows(EvalException.class, () -> env.get(y));
+        EvalException byName = assertThrows(EvalException.class, () -> env.get("y"));
+        assertEquals("ENV_001: Undefined variable: y. Assign it before use.", bySlot.getMessage());
+        assertEquals(bySlot.getMessage(), byName.getMessage());
+        assertThrows(EvalException.class, () -> env.get("never_seen"));
+    }
+
+    @Test
+    void growsBeyondInitialCapacity() {
+        Environment env = new Environment();
+        for (int i = 0; i < 1_000; i++) {
+            env.set("v" + i, (long) i);
+        }
+        assertEquals(1_000, env.values().size());
+        assertEquals(999L, env.get("v999"));
+        assertEquals(1_000, env.symbols().size());
+    }
+
+    @Test
+    void symbolTableInternsFromCharSequenceRanges() {
+        SymbolTable symbols = new SymbolTable();
+        int first = symbols.intern("total");
+        assertEquals(first, symbols.intern("x = total + 1", 4, 9));
+        assertSame(symbols.name(first), symbols.name(symbols.intern("total")));
+        assertEquals(-1, symbols.find("missing"));
+        assertTrue(symbols.holds(first, "total"));
+        assertFalse(symbols.holds(first, "other"));
+        assertFalse(symbols.holds(-1, "total"));
+    }
+}
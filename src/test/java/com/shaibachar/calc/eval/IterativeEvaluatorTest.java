@@ -0,0 +1,73 @@
+package com.shaibachar.calc.eval;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.CalculatorApp;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.parser.AssignOp;
+import com.shaibachar.calc.parser.BinaryOp;
+import com.shaibachar.calc.parser.PostfixOp;
+import com.shaibachar.calc.parser.UnaryOp;
+import com.shaibachar.calc.parser.expr.BinaryExpr;
+import com.shaibachar.calc.parser.expr.Expr;
+import com.shaibachar.calc.parser.expr.LiteralExpr;
+import com.shaibachar.calc.parser.expr.PostfixExpr;
+import com.shaibachar.calc.parser.expr.UnaryExpr;
+import com.shaibachar.calc.parser.expr.VarExpr;
+import com.shaibachar.calc.parser.stmt.AssignStmt;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IterativeEvaluatorTest {
+
+    @Test
+    void evaluatesLeftToRightWithPromotion() {
+        Environment env = new Environment();
+        IterativeEvaluator evaluator = new IterativeEvaluator(env);
+        evaluator.execute(new AssignStmt("i", AssignOp.ASSIGN, new LiteralExpr(3L)));
+        // i++ * 2 + i / 2.0 = 3 * 2 + 4 / 2.0
+        Expr expr = new BinaryExpr(
+                new BinaryExpr(new PostfixExpr(new VarExpr("i"), PostfixOp.POST_INC), BinaryOp.MUL, new LiteralExpr(2L)),
+                BinaryOp.ADD,
+                new BinaryExpr(new VarExpr("i"), BinaryOp.DIV, new LiteralExpr(2.0)));
+        evaluator.execute(new AssignStmt("x", AssignOp.ASSIGN, expr));
+        assertEquals(8.0, env.get("x"));
+        assertEquals(4L, env.get("i"));
+    }
+
+    @Test
+    void compoundAssignmentReadsTheTargetFirst() {
+        Environment env = new Environment();
+        IterativeEvaluator evaluator = new IterativeEvaluator(env);
+        assertThrows(EvalException.class, () -> evaluator.execute(
+                new AssignStmt("x", AssignOp.PLUS_ASSIGN, new UnaryExpr(UnaryOp.PRE_INC, new VarExpr("x")))));
+        assertEquals(0, env.size());
+    }
+
+    @Test
+    void evaluatesNestingThatOverflowsTheEvaluator() {
+        int depth = 200_000;
+        Expr expr = new LiteralExpr(1L);
+        for (int i = 0; i < depth; i++) {
+            expr = i % 2 == 0
+                    ? new BinaryExpr(new LiteralExpr(1L), BinaryOp.ADD, expr)
+                    : new UnaryExpr(UnaryOp.MINUS, expr);
+        }
+        AssignStmt stmt = new AssignStmt("x", AssignOp.ASSIGN, expr);
+        assertThrows(StackOverflowError.class, () -> new Evaluator(new Environment()).execute(stmt));
+
+        Environment env = new Environment();
+        new IterativeEvaluator(env).execute(stmt);
+        assertEquals(1L, env.get("x"));
+    }
+
+    @Test
+    void iterativeBackendRunsDeeplyNestedLines() {
+        int depth = 50_000;
+        String line = "y = " + "(".repeat(depth) + "x + 1" + ")".repeat(depth) + " * " + "- ".repeat(depth) + "2";
+        assertEquals("(x=3,y=8)", CalculatorApp.execute(List.of("x = 3", line), Backend.ITERATIVE));
+    }
+}
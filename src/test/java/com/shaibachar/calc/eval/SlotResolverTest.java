@@ -0,0 +1,91 @@
+package com.shaibachar.calc.eval;
+
+import com.shaibachar.calc.lexer.Lexer;
+import com.shaibachar.calc.parser.Parser;
+import com.shaibachar.calc.parser.expr.BinaryExpr;
+import com.shaibachar.calc.parser.expr.VarExpr;
+import com.shaibachar.calc.parser.stmt.AssignStmt;
+import com.shaibachar.calc.parser.stmt.Stmt;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlotResolverTest {
+    private static Stmt parse(String line) {
+        return new Parser(new Lexer(line).tokenize()).parseStatement();
+    }
+
+    @Test
+    void resolvesTargetAndVariables() {
+        Environment env = new Environment();
+        AssignStmt stmt = (AssignStmt) new SlotResolver(env.symbols()).resolve(parse("y = x * (x + 2)"));
+        BinaryExpr mul = (BinaryExpr) stmt.expr();
+        VarExpr x = (VarExpr) mul.left();
+        assertEquals(env.slot("y"), stmt.slot());
+        assertEquals(env.slot("x"), x.slot());
+        assertEquals(x.slot(), ((VarExpr) ((BinaryExpr) mul.right()).left()).slot());
+    }
+
+    @Test
+    void resolvedStatementEqualsOriginal() {
+        Stmt original = parse("i += ++j - k-- % 3");
+        Stmt resolved = new SlotResolver(new Environment().symbols()).resolve(original);
+        assertEquals(original, resolved);
+        assertEquals(original.hashCode(), resolved.hashCode());
+    }
+
+    @Test
+    void resolvingTwiceReturnsSameTree() {
+        SlotResolver resolver = new SlotResolver(new Environment().symbols());
+        Stmt resolved = resolver.resolve(parse("a = b + 1"));
+        assertSame(resolved, resolver.resolve(resolved));
+    }
+
+    @Test
+    void parserResolvesLikeResolver() {
+        Environment env = new Environment();
+        AssignStmt parsed = (AssignStmt) new Parser(new Lexer("z = q - z").tokenizeCompact(), env.symbols())
+                .parseStatement();
+        assertEquals(env.slot("z"), parsed.slot());
+        assertEquals(env.slot("q"), ((VarExpr) ((BinaryExpr) parsed.expr()).left()).slot());
+        assertSame(parsed, new SlotResolver(env.symbols()).resolve(parsed));
+    }
+
+    @Test
+    void evaluatorIgnoresSlotsOfAnotherEnvironment() {
+        Environment other = new Environment();
+        other.slot("padding");
+        Stmt foreign = new SlotResolver(other.symbols()).resolve(parse("x = 5"));
+
+        Environment env = new Environment();
+        env.set("first", 1L);
+        new Evaluator(env).execute(foreign);
+        assertEquals(5L, env.get("x"));
+        assertEquals(1L, env.get("first"));
+    }
+
+    @Test
+    void resolvedScriptRunsInEnvironmentsSharingTheTable() {
+        SymbolTable symbols = new SymbolTable();
+        Stmt define = new SlotResolver(symbols).resolve(parse("n = 1"));
+        Stmt update = new SlotResolver(symbols).resolve(parse("n += n"));
+        for (int run = 0; run < 3; run++) {
+            Environment env = new Environment(symbols);
+            Evaluator evaluator = new Evaluator(env);
+            evaluator.execute(define);
+            evaluator.execute(update);
+            assertEquals(2L, env.get("n"));
+        }
+    }
+
+    @Test
+    void executesResolvedScript() {
+        Environment env = new Environment();
+        Evaluator evaluator = new Evaluator(env);
+        SlotResolver resolver = new SlotResolver(env.symbols());
+        for (String line : new String[]{"i = 0", "j = ++i", "x = i++ + 5", "y = (5 + 3) * 10", "i += y", "d = 1.5", "d -= 0.25"}) {
+            evaluator.execute(resolver.resolve(parse(line)));
+        }
+        assertEquals("{i=82, j=1, x=6, y=80, d=1.25}", env.values().toString());
+    }
+}
@@ -0,0 +1,86 @@
+package com.shaibachar.calc.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedLineReaderTest {
+    private static final String TEXT = "x = 1\r\ny = x + 2\n\n   \nz = y * 3\rw = été\r\n\r\nlast = 42";
+
+    @TempDir
+    Path directory;
+
+    private Path write(String text) throws IOException {
+        Path file = directory.resolve("script.txt");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static List<String> readLines(Path file, int windowSize) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (MappedLineReader reader = new MappedLineReader(file, windowSize)) {
+            while (reader.next()) {
+                assertEquals(lines.size() + 1, reader.lineNumber());
+                lines.add(StandardCharsets.UTF_8.decode(reader.line()).toString());
+            }
+        }
+        return lines;
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {MappedLineReader.DEFAULT_WINDOW_SIZE, 64, 13, 11})
+    void splitsLinesLikeBufferedReaderAcrossWindows(int windowSize) throws IOException {
+        List<String> expected = new BufferedReader(new StringReader(TEXT)).lines().toList();
+        assertEquals(expected, readLines(write(TEXT), windowSize));
+        assertEquals(expected, readLines(write(TEXT + "\n"), windowSize));
+    }
+
+    @Test
+    void keepsCrLfTogetherWhenSplitByAWindow() throws IOException {
+        // The \r is the last byte of the first window and the \n the first of the next
+        Path file = write("a = 1\r\nb = 2\r\n");
+        assertEquals(List.of("a = 1", "b = 2"), readLines(file, 7));
+    }
+
+    @Test
+    void readsEmptyFile() throws IOException {
+        assertEquals(List.of(), readLines(write(""), 16));
+    }
+
+    @Test
+    void rejectsLineLongerThanWindow() throws IOException {
+        Path file = write("x = 1\ny = 1 + 2 + 3 + 4\n");
+        assertThrows(IOException.class, () -> readLines(file, 8));
+        // A \r at the end of a window needs the next byte to tell whether \n follows
+        assertThrows(IOException.class, () -> readLines(write("a = 1\r\nb = 2\r\n"), 6));
+        assertEquals(List.of("a = 1", "b = 2"), readLines(write("a = 1\nb = 2\n"), 6));
+    }
+
+    @Test
+    void detectsBlankLinesAndDecodesText() throws IOException {
+        try (MappedLineReader reader = new MappedLineReader(write(" \t\nw = été\n"))) {
+            assertTrue(reader.next());
+            assertTrue(reader.isBlank());
+            assertTrue(reader.next());
+            assertFalse(reader.isBlank());
+            assertEquals("w = été", reader.lineText());
+            assertFalse(reader.next());
+        }
+        assertEquals("w = été", MappedLineReader.readLine(directory.resolve("script.txt"), 2));
+    }
+}
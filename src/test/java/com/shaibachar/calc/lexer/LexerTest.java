@@ -1,10 +1,14 @@
 package com.shaibachar.calc.lexer;
 
 import com.shaibachar.calc.exceptions.ParseException;
+import com.shaibachar.calc.parser.Parser;
+import com.shaibachar.calc.parser.expr.LiteralExpr;
+import com.shaibachar.calc.parser.stmt.AssignStmt;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Nested;
 
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -104,6 +108,73 @@ class LexerTest {
         }
     }
 
+    @Nested
+    class NumberValues {
+        @Test
+        void integerLiteralCarriesLongValue() {
+            Token token = new Lexer("9223372036854775807").tokenize().get(0);
+            assertEquals(Long.MAX_VALUE, token.value());
+        }
+
+        @Test
+        void decimalLiteralCarriesDoubleValue() {
+            Token token = new Lexer("3.25").tokenize().get(0);
+            assertEquals(3.25, token.value());
+        }
+
+        @Test
+        void nonNumberTokensHaveNoValue() {
+            List<Token> tokens = new Lexer("x = (y)").tokenize();
+            for (Token token : tokens) {
+                assertNull(token.value());
+            }
+        }
+
+        @Test
+        void decimalValuesMatchDoubleParseDouble() {
+            Random random = new Random(11);
+            for (int i = 0; i < 5_000; i++) {
+                String literal = Math.abs(random.nextLong() >> random.nextInt(64))
+                        + "." + Math.abs(random.nextLong() >> random.nextInt(64));
+                assertEquals(Double.parseDouble(literal), new Lexer(literal).tokenize().get(0).value(), literal);
+            }
+        }
+
+        @Test
+        void longDecimalLiteralsUseSlowPath() {
+            String literal = "123456789012345678901234567890.000000000000000000000000000001";
+            assertEquals(Double.parseDouble(literal), new Lexer(literal).tokenize().get(0).value());
+        }
+
+        @Test
+        void leadingZerosDoNotOverflow() {
+            assertEquals(7L, new Lexer("00000000000000000000000007").tokenize().get(0).value());
+            assertEquals(0.5, new Lexer("0000000000000000000000000.5").tokenize().get(0).value());
+        }
+
+        @Test
+        void overflowMessageKeepsLiteral() {
+            ParseException longOverflow = assertThrows(ParseException.class,
+                    () -> new Lexer("x = 99999999999999999999").tokenize());
+            assertEquals("LEXER_003: Long overflow literal: 99999999999999999999", longOverflow.getMessage());
+
+            String huge = "9".repeat(400) + ".5";
+            ParseException doubleOverflow = assertThrows(ParseException.class, () -> new Lexer(huge).tokenize());
+            assertEquals("LEXER_003: Floating-point overflow literal: " + huge, doubleOverflow.getMessage());
+        }
+
+        @Test
+        void parserUsesTokenValue() {
+            List<Token> tokens = List.of(
+                    new Token(TokenType.IDENT, "x", 0),
+                    new Token(TokenType.EQUAL, "=", 2),
+                    new Token(TokenType.NUMBER, "ignored", 4, 12L),
+                    new Token(TokenType.EOF, "", 11));
+            AssignStmt stmt = (AssignStmt) new Parser(tokens).parseStatement();
+            assertEquals(new LiteralExpr(12L), stmt.expr());
+        }
+    }
+
     @Nested
     class SingleCharacterOperators {
         @Test
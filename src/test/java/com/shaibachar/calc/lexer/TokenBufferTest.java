@@ -0,0 +1,105 @@
+package com.shaibachar.calc.lexer;
+
+import com.shaibachar.calc.exceptions.ParseException;
+import com.shaibachar.calc.parser.Parser;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBufferTest {
+
+    @Test
+    void compactTokensMatchListTokens() {
+        String input = "total_1 += (x++ * 3.25) % --y / 42";
+        List<Token> expected = new Lexer(input).tokenize();
+        TokenBuffer buffer = new Lexer(input).tokenizeCompact();
+        assertEquals(expected.size(), buffer.size());
+        for (int i = 0; i < buffer.size(); i++) {
+            assertEquals(expected.get(i).type(), buffer.type(i));
+            assertEquals(expected.get(i).type().ordinal(), buffer.typeOrdinal(i));
+            assertEquals(expected.get(i).lexeme(), buffer.text(i));
+            assertEquals(expected.get(i).position(), buffer.position(i));
+            assertEquals(expected.get(i).position(), buffer.start(i));
+        }
+    }
+
+    @Test
+    void numberValuesArePreParsed() {
+        TokenBuffer buffer = new Lexer("x = 9223372036854775807 + 2.5").tokenizeCompact();
+        assertTrue(buffer.hasNumber(2));
+        assertFalse(buffer.isDecimal(2));
+        assertEquals(Long.MAX_VALUE, buffer.longValue(2));
+        assertTrue(buffer.isDecimal(4));
+        assertEquals(2.5, buffer.doubleValue(4));
+        assertFalse(buffer.hasNumber(0));
+    }
+
+    @Test
+    void lexemeIsViewIntoSource() {
+        String input = "alpha = beta";
+        TokenBuffer buffer = new Lexer(input).tokenizeCompact();
+        assertSame(input, buffer.source());
+        assertEquals("beta", buffer.lexeme(2).toString());
+        assertEquals(8, buffer.start(2));
+        assertEquals(4, buffer.length(2));
+    }
+
+    @Test
+    void eofTokenHasEmptyLexemeAtEndOfInput() {
+        TokenBuffer buffer = new Lexer("x = 1  ").tokenizeCompact();
+        int eof = buffer.size() - 1;
+        assertEquals(TokenType.EOF, buffer.type(eof));
+        assertEquals("", buffer.text(eof));
+        assertEquals(7, buffer.position(eof));
+    }
+
+    @Test
+    void bufferIsReusableAcrossInputs() {
+        TokenBuffer buffer = new TokenBuffer();
+        StringBuilder longLine = new StringBuilder("x = 0");
+        for (int i = 0; i < 100; i++) {
+            longLine.append(" + ").append(i);
+        }
+        new Lexer(longLine.toString()).tokenizeInto(buffer);
+        assertEquals(204, buffer.size());
+
+        new Lexer("y = 2").tokenizeInto(buffer);
+        assertEquals(4, buffer.size());
+        assertEquals("y", buffer.text(0));
+        assertEquals(2L, buffer.longValue(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.type(4));
+    }
+
+    @Test
+    void ofListKeepsOriginalPositions() {
+        List<Token> tokens = List.of(
+                new Token(TokenType.IDENT, "x", 3),
+                new Token(TokenType.EQUAL, "=", 10),
+                new Token(TokenType.NUMBER, "7", 20),
+                new Token(TokenType.EOF, "", 21));
+        TokenBuffer buffer = TokenBuffer.of(tokens);
+        assertEquals(tokens, buffer.toTokens());
+        assertFalse(buffer.hasNumber(2));
+    }
+
+    @Test
+    void parserConsumesBufferDirectly() {
+        String input = "i += 2 * (3 + 4.5)";
+        assertEquals(new Parser(new Lexer(input).tokenize()).parseStatement(),
+                new Parser(new Lexer(input).tokenizeCompact()).parseStatement());
+    }
+
+    @Test
+    void parserReportsOriginalPositionForListTokens() {
+        List<Token> tokens = List.of(
+                new Token(TokenType.IDENT, "x", 0),
+                new Token(TokenType.EQUAL, "=", 2),
+                new Token(TokenType.NUMBER, "1.2.3", 4),
+                new Token(TokenType.EOF, "", 9));
+        ParseException exception = assertThrows(ParseException.class, () -> new Parser(tokens).parseStatement());
+        assertTrue(exception.getMessage().contains("PARSE_005"));
+        assertTrue(exception.getMessage().contains("at position 4"));
+    }
+}
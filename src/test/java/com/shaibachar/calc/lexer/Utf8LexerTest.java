@@ -0,0 +1,109 @@
+package com.shaibachar.calc.lexer;
+
+import com.shaibachar.calc.exceptions.ParseException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Utf8LexerTest {
+    private static final String[] INPUTS = {
+            "",
+            "   ",
+            "x = 1",
+            "i += 2 * (3 + 4)",
+            "total_1 = x++ + --y - +z % 7 / 2.5",
+            "a-=b--*c++",
+            "x\t=\u000B1\u001C+\u001F2",
+            "x = 9223372036854775807",
+            "x = 123456789012345678901234567890.000000000000000000000000000001",
+            "x = 0000000000000000000000000.5",
+            "x = 12.",
+            "x = 1..2",
+            "x = .5",
+            "x = 99999999999999999999",
+            "x = " + "9".repeat(400) + ".5",
+            "x = y # 1",
+            "x = [1]",
+            "x = 1 ; y = 2",
+            "x ?= 1",
+            "x = 'a'",
+            "x = 1 & 2",
+            "x = @y",
+            "x = ~1",
+    };
+
+    @Test
+    void asciiInputMatchesLexer() {
+        for (String input : INPUTS) {
+            assertSameOutcome(input);
+        }
+    }
+
+    @Test
+    void randomAsciiInputMatchesLexer() {
+        String alphabet = "abcxyz_019 \t.+-*/%=()#!";
+        Random random = new Random(5);
+        for (int i = 0; i < 5_000; i++) {
+            StringBuilder input = new StringBuilder();
+            int length = random.nextInt(24);
+            for (int j = 0; j < length; j++) {
+                input.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertSameOutcome(input.toString());
+        }
+    }
+
+    @Test
+    void nonAsciiInputFallsBackToUnicodeLexer() {
+        assertSameOutcome("café = 1");
+        assertSameOutcome("x = ٣ + 1");
+        assertSameOutcome("x = 12٣");
+        assertSameOutcome("x = 1.٣");
+        assertSameOutcome("x = 1 € 2");
+        assertSameOutcome("x\u00A0= 1");
+        assertSameOutcome("x\u2003= 1");
+        assertSameOutcome("x = 99999999999999999999٣");
+    }
+
+    @Test
+    void asciiTokensAreViewsIntoTheBytes() {
+        byte[] bytes = "alpha = 12".getBytes(StandardCharsets.US_ASCII);
+        TokenBuffer tokens = new Utf8Lexer(bytes).tokenizeCompact();
+        assertFalse(tokens.source() instanceof String);
+        assertEquals("alpha", tokens.text(0));
+        assertEquals(12L, tokens.longValue(2));
+    }
+
+    @Test
+    void byteRangeAndBufferPositionsAreRespected() {
+        byte[] bytes = "junk|x = 4|junk".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(new Lexer("x = 4").tokenize(), new Utf8Lexer(bytes, 5, 5).tokenize());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes);
+        direct.position(5).limit(10);
+        assertEquals(new Lexer("x = 4").tokenize(), new Utf8Lexer(direct).tokenize());
+        assertEquals(5, direct.position());
+    }
+
+    private static void assertSameOutcome(String input) {
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        List<Token> expected;
+        try {
+            expected = new Lexer(input).tokenize();
+        } catch (ParseException e) {
+            ParseException actual = assertThrows(ParseException.class, () -> new Utf8Lexer(bytes).tokenize(), input);
+            assertEquals(e.getMessage(), actual.getMessage(), input);
+            return;
+        }
+        List<Token> actual = new Utf8Lexer(bytes).tokenize();
+        assertEquals(expected, actual, input);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).value(), actual.get(i).value(), input);
+        }
+    }
+}
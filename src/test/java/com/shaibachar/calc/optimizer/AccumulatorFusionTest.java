@@ -0,0 +1,120 @@
+package com.shaibachar.calc.optimizer;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.CalculatorApp;
+import com.shaibachar.calc.eval.Environment;
+import com.shaibachar.calc.eval.StatementExecutor;
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.lexer.Lexer;
+import com.shaibachar.calc.lexer.TokenBuffer;
+import com.shaibachar.calc.parser.stmt.Stmt;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccumulatorFusionTest {
+
+    private static List<Stmt> parse(List<String> lines, SymbolTable symbols) {
+        List<Stmt> statements = new ArrayList<>();
+        for (String line : lines) {
+            statements.add(Backend.TREE.parse(new Lexer(line).tokenizeInto(new TokenBuffer()), symbols));
+        }
+        return statements;
+    }
+
+    private static Map<String, Number> run(List<Stmt> statements, SymbolTable symbols) {
+        Environment env = new Environment(symbols);
+        StatementExecutor executor = Backend.TREE.create(env);
+        for (Stmt stmt : statements) {
+            executor.execute(stmt);
+        }
+        return env.values();
+    }
+
+    @Test
+    void mergesConsecutiveUpdatesOfOneVariable() {
+        List<String> lines = List.of("x = 10", "a = 3", "x += a * 2", "x -= 4", "x += a++", "x -= --a", "y = x");
+        SymbolTable symbols = new SymbolTable();
+        AccumulatorFusion fusion = new AccumulatorFusion(symbols);
+        List<Stmt> fused = fusion.fuse(parse(lines, symbols));
+
+        assertEquals(4, fused.size());
+        assertEquals(3, fusion.fusedCount());
+        assertEquals(2, fusion.sourceIndex(2));
+        assertEquals(6, fusion.sourceIndex(3));
+        assertEquals(run(parse(lines, new SymbolTable()), new SymbolTable()), run(fused, symbols));
+    }
+
+    @Test
+    void keepsUpdatesThatCouldChangeTheResultOrFail() {
+        List<List<String>> scripts = List.of(
+                List.of("x = 1.5", "x += 1", "x += 2"),
+                List.of("x = 1", "x += 0.5", "x += 2"),
+                List.of("x = 1", "x += x", "x += 2"),
+                List.of("x = 1", "x += 1", "x += x++"),
+                List.of("x = 1", "a = 0", "x += 1", "x += 5 / a"),
+                List.of("x = 1", "x += 1", "x += y"),
+                List.of("x = 1", "y = 2", "x += 1", "y += 1", "x += 1"),
+                List.of("x = 1", "x *= 2", "x += 1"));
+        for (List<String> script : scripts) {
+            SymbolTable symbols = new SymbolTable();
+            AccumulatorFusion fusion = new AccumulatorFusion(symbols);
+            List<Stmt> statements = parse(script, symbols);
+            assertSame(statements, fusion.fuse(statements), String.join("; ", script));
+            assertEquals(0, fusion.fusedCount());
+        }
+    }
+
+    @Test
+    void tracksTypesAcrossCalls() {
+        SymbolTable symbols = new SymbolTable();
+        AccumulatorFusion fusion = new AccumulatorFusion(symbols);
+        fusion.fuse(parse(List.of("x = 1", "y = 2.5"), symbols));
+
+        assertEquals(1, fusion.fuse(parse(List.of("x += 1", "x -= 7 % 3"), symbols)).size());
+        assertEquals(2, fusion.fuse(parse(List.of("y += 1", "y += 1"), symbols)).size());
+        assertEquals(3, fusion.fuse(parse(List.of("x = 0.5", "x += 1", "x += 1"), symbols)).size());
+    }
+
+    @Test
+    void matchesUnfusedExecutionIncludingOverflow() {
+        Random random = new Random(24);
+        String[] names = {"a", "b", "c"};
+        for (int round = 0; round < 50; round++) {
+            List<String> lines = new ArrayList<>(List.of("a = 9223372036854775800", "b = 7", "c = -3"));
+            for (int i = 0; i < 60; i++) {
+                String target = names[random.nextInt(names.length)];
+                String other = names[random.nextInt(names.length)];
+                String op = random.nextBoolean() ? " += " : " -= ";
+                String rhs = switch (random.nextInt(4)) {
+                    case 0 -> Long.toString(random.nextInt(1000));
+                    case 1 -> other + " * 3";
+                    case 2 -> other + "++ + 1";
+                    default -> "(" + other + " - 2) / 3";
+                };
+                lines.add(target + op + rhs);
+            }
+            SymbolTable symbols = new SymbolTable();
+            List<Stmt> fused = new AccumulatorFusion(symbols).fuse(parse(lines, symbols));
+            assertEquals(run(parse(lines, new SymbolTable()), new SymbolTable()), run(fused, symbols),
+                    String.join("\n", lines));
+        }
+    }
+
+    @Test
+    void reportsFailuresOnTheirOwnLine() {
+        List<String> lines = List.of("x = 1", "a = 0", "x += 1", "x += 2", "x += 1 / a", "x += 3");
+        for (Backend backend : List.of(Backend.BYTECODE, Backend.TREE)) {
+            EvalException e = assertThrows(EvalException.class, () -> CalculatorApp.executeDag(lines, backend));
+            assertTrue(e.getMessage().contains("line 5: x += 1 / a"), e.getMessage());
+        }
+        assertEquals("(x=10)", CalculatorApp.execute(
+                List.of("x = 1", "x += 1", "x += 2", "x -= 1", "x += 7"), Backend.BYTECODE));
+    }
+}
@@ -0,0 +1,115 @@
+package com.shaibachar.calc.optimizer;
+
+import com.shaibachar.calc.eval.Environment;
+import com.shaibachar.calc.eval.Evaluator;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.lexer.Lexer;
+import com.shaibachar.calc.parser.BinaryOp;
+import com.shaibachar.calc.parser.Parser;
+import com.shaibachar.calc.parser.expr.BinaryExpr;
+import com.shaibachar.calc.parser.expr.Expr;
+import com.shaibachar.calc.parser.expr.LiteralExpr;
+import com.shaibachar.calc.parser.expr.PostfixExpr;
+import com.shaibachar.calc.parser.expr.UnaryExpr;
+import com.shaibachar.calc.parser.expr.VarExpr;
+import com.shaibachar.calc.parser.stmt.AssignStmt;
+import com.shaibachar.calc.parser.stmt.Stmt;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OptimizerTest {
+    private final Optimizer optimizer = new Optimizer();
+
+    private static Stmt parse(String line) {
+        return new Parser(new Lexer(line).tokenize()).parseStatement();
+    }
+
+    private Expr optimized(String line) {
+        return ((AssignStmt) optimizer.optimize(parse(line))).expr();
+    }
+
+    private static Map<String, Number> run(List<String> lines, boolean optimize) {
+        Environment env = new Environment();
+        Evaluator evaluator = new Evaluator(env);
+        Optimizer optimizer = new Optimizer();
+        for (String line : lines) {
+            Stmt stmt = parse(line);
+            evaluator.execute(optimize ? optimizer.optimize(stmt) : stmt);
+        }
+        return env.values();
+    }
+
+    @Test
+    void foldsLiteralSubtrees() {
+        assertEquals(new LiteralExpr(80L), optimized("x = (5 + 3) * 10"));
+        assertEquals(new LiteralExpr(3.5), optimized("x = 7 / 2.0"));
+        assertEquals(new LiteralExpr(3L), optimized("x = 7 / 2"));
+        assertEquals(new LiteralExpr(-4L), optimized("x = -(1 + 3)"));
+        assertEquals(new LiteralExpr(Long.MIN_VALUE), optimized("x = 9223372036854775807 + 1"));
+    }
+
+    @Test
+    void foldsInsideExpressionsWithVariables() {
+        Expr expr = optimized("x = y + 2 * 3");
+        assertEquals(new BinaryExpr(new VarExpr("y"), BinaryOp.ADD, new LiteralExpr(6L)), expr);
+    }
+
+    @Test
+    void appliesExactIdentities() {
+        assertEquals(new VarExpr("y"), optimized("x = y * 1"));
+        assertEquals(new VarExpr("y"), optimized("x = 1 * y"));
+        assertEquals(new VarExpr("y"), optimized("x = y / (2 - 1)"));
+        assertEquals(new VarExpr("y"), optimized("x = y - 0"));
+        assertEquals(new VarExpr("y"), optimized("x = +y"));
+        assertEquals(new VarExpr("y"), optimized("x = -(-y)"));
+    }
+
+    @Test
+    void keepsIdentitiesThatChangeValueOrType() {
+        assertInstanceOf(BinaryExpr.class, optimized("x = y + 0"));
+        assertInstanceOf(BinaryExpr.class, optimized("x = y * 0"));
+        assertInstanceOf(BinaryExpr.class, optimized("x = y * 1.0"));
+    }
+
+    @Test
+    void keepsDivisionByLiteralZero() {
+        assertInstanceOf(BinaryExpr.class, optimized("x = 1 / 0"));
+        assertInstanceOf(BinaryExpr.class, optimized("x = 1 % (2 - 2)"));
+        assertInstanceOf(BinaryExpr.class, optimized("x = 1.5 / 0.0"));
+        EvalException e = assertThrows(EvalException.class, () -> run(List.of("x = 5 / (3 - 3)"), true));
+        assertTrue(e.getMessage().contains("EVAL_004"));
+        // the undefined left operand is still reported first
+        e = assertThrows(EvalException.class, () -> run(List.of("x = y / 0"), true));
+        assertTrue(e.getMessage().contains("ENV_001"));
+    }
+
+    @Test
+    void keepsSideEffects() {
+        assertInstanceOf(PostfixExpr.class, optimized("x = i++ * 1"));
+        assertInstanceOf(UnaryExpr.class, ((BinaryExpr) optimized("x = 0 - 0 + ++i * 1")).right());
+        List<String> lines = List.of("i = 1", "x = i++ * 1 + ++i - 0", "y = -(-i--) / 1", "z = +i++ * (2 - 1)");
+        assertEquals(run(lines, false), run(lines, true));
+    }
+
+    @Test
+    void preservesSemanticsOfMixedScripts() {
+        List<String> lines = List.of(
+                "a = 3",
+                "b = a * 1 + (2 * 3.5) - 0",
+                "c = -(-(a / 2)) * 1.0",
+                "a += (4 - 4) * 1 + 10 % 3",
+                "d = -0.0 * 1",
+                "e = 9223372036854775807 * (1 + 1)");
+        assertEquals(run(lines, false), run(lines, true));
+    }
+
+    @Test
+    void returnsSameTreeWhenNothingChanges() {
+        Stmt stmt = parse("x = y + z * 2");
+        assertSame(stmt, optimizer.optimize(stmt));
+    }
+}
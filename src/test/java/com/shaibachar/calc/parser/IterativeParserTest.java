@@ -0,0 +1,98 @@
+package com.shaibachar.calc.parser;
+
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.exceptions.ParseException;
+import com.shaibachar.calc.lexer.Lexer;
+import com.shaibachar.calc.parser.expr.BinaryExpr;
+import com.shaibachar.calc.parser.expr.Expr;
+import com.shaibachar.calc.parser.expr.LiteralExpr;
+import com.shaibachar.calc.parser.expr.UnaryExpr;
+import com.shaibachar.calc.parser.stmt.AssignStmt;
+import com.shaibachar.calc.parser.stmt.Stmt;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IterativeParserTest {
+
+    private static String outcome(String line, boolean iterative) {
+        try {
+            Stmt stmt = iterative
+                    ? new IterativeParser(new Lexer(line).tokenizeCompact()).parseStatement()
+                    : new Parser(new Lexer(line).tokenizeCompact()).parseStatement();
+            return stmt.toString();
+        } catch (ParseException e) {
+            return "ParseException: " + e.getMessage();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "x = 5",
+            "x += 1 + 2 * 3 - 4 / 5 % 6",
+            "x = a - b - c",
+            "x = a / b * c % d",
+            "x = (a + b) * (c - d)",
+            "x = ((1))",
+            "x = - - -a",
+            "x = -a * +b",
+            "x = ++i + i++ - --j - j--",
+            "x = -(a + b)++",
+            "x = ++-a",
+            "x = 1.5 * -(2 - 3.25)",
+            "x = a + + b",
+            "x = a - -b",
+            "x = (a)--"})
+    void producesTheSameTreeAsTheRecursiveParser(String line) {
+        assertEquals(outcome(line, false), outcome(line, true));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "5 = x",
+            "x 5",
+            "x =",
+            "x = (1 + 2",
+            "x = (1 + 2))",
+            "x = 1 +",
+            "x = 1 2",
+            "x = (1 2)",
+            "x = * 2",
+            "x = i++ ++",
+            "x = ()",
+            "x = ((1) + (2)"})
+    void reportsTheSameErrorsAsTheRecursiveParser(String line) {
+        assertEquals(outcome(line, false), outcome(line, true));
+    }
+
+    @Test
+    void resolvesIdentifiersToSlots() {
+        SymbolTable symbols = new SymbolTable();
+        AssignStmt stmt = (AssignStmt) new IterativeParser(new Lexer("y = x + y").tokenizeCompact(), symbols)
+                .parseStatement();
+        // like Parser, the target is resolved after the expression
+        assertEquals(1, stmt.slot());
+        assertEquals(2, symbols.size());
+        assertEquals("x", symbols.name(0));
+    }
+
+    @Test
+    void parsesNestingThatOverflowsTheRecursiveParser() {
+        int depth = 100_000;
+        String line = "x = " + "(".repeat(depth) + "1" + ")".repeat(depth) + " + " + "- ".repeat(depth) + "2";
+        assertThrows(StackOverflowError.class,
+                () -> new Parser(new Lexer(line).tokenizeCompact()).parseStatement());
+
+        AssignStmt stmt = (AssignStmt) new IterativeParser(new Lexer(line).tokenizeCompact()).parseStatement();
+        Expr right = ((BinaryExpr) stmt.expr()).right();
+        for (int i = 0; i < depth; i++) {
+            right = ((UnaryExpr) right).expr();
+        }
+        assertInstanceOf(LiteralExpr.class, right);
+    }
+}
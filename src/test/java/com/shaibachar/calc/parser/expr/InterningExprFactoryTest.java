@@ -0,0 +1,104 @@
+package com.shaibachar.calc.parser.expr;
+
+import com.shaibachar.calc.eval.Environment;
+import com.shaibachar.calc.eval.Evaluator;
+import com.shaibachar.calc.lexer.Lexer;
+import com.shaibachar.calc.parser.BinaryOp;
+import com.shaibachar.calc.parser.Parser;
+import com.shaibachar.calc.parser.PostfixOp;
+import com.shaibachar.calc.parser.UnaryOp;
+import com.shaibachar.calc.parser.stmt.AssignStmt;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InterningExprFactoryTest {
+
+    private static AssignStmt parse(String line, Environment env, ExprFactory factory) {
+        return (AssignStmt) new Parser(new Lexer(line).tokenizeCompact(), env.symbols(), factory).parseStatement();
+    }
+
+    @Test
+    void repeatedSubtreesShareOneInstance() {
+        Environment env = new Environment();
+        InterningExprFactory factory = new InterningExprFactory();
+        BinaryExpr product = (BinaryExpr) parse("x = (a + 1) * (a + 1)", env, factory).expr();
+        assertSame(product.left(), product.right());
+        // a, 1, a + 1 and the product
+        assertEquals(4, factory.size());
+
+        Expr sum = parse("y = a + 1", env, factory).expr();
+        assertSame(product.left(), sum);
+        assertEquals(4, factory.size());
+    }
+
+    @Test
+    void internedTreeEqualsPlainTree() {
+        Environment env = new Environment();
+        String line = "z = -(b * 2.5) + c++ % (b * 2.5)";
+        AssignStmt plain = parse(line, env, ExprFactory.PLAIN);
+        AssignStmt interned = parse(line, env, new InterningExprFactory());
+        assertEquals(plain, interned);
+        assertEquals(plain.hashCode(), interned.hashCode());
+    }
+
+    @Test
+    void sharedNodesEvaluateLikeDistinctOnes() {
+        Environment env = new Environment();
+        Evaluator evaluator = new Evaluator(env);
+        InterningExprFactory factory = new InterningExprFactory();
+        evaluator.execute(parse("a = 3", env, factory));
+        evaluator.execute(parse("x = (a++ + 1) * (a++ + 1)", env, factory));
+        assertEquals(20L, env.get("x"));
+        assertEquals(5L, env.get("a"));
+    }
+
+    @Test
+    void literalsOfDifferentTypesOrSignsStayDistinct() {
+        InterningExprFactory factory = new InterningExprFactory();
+        assertSame(factory.literal(1L), factory.literal(1L));
+        assertNotSame(factory.literal(1L), factory.literal(1.0));
+        assertNotSame(factory.literal(0.0), factory.literal(-0.0));
+        assertSame(factory.literal(Double.NaN), factory.literal(Double.NaN));
+    }
+
+    @Test
+    void variablesAreSharedOnlyForTheSameSlot() {
+        InterningExprFactory factory = new InterningExprFactory();
+        Expr resolved = factory.variable("a", 0);
+        assertSame(resolved, factory.variable("a", 0));
+        Expr other = factory.variable("a", 3);
+        assertNotSame(resolved, other);
+        assertEquals(3, ((VarExpr) other).slot());
+    }
+
+    @Test
+    void unaryAndPostfixOfSameOperandAreDistinct() {
+        InterningExprFactory factory = new InterningExprFactory();
+        Expr a = factory.variable("a", -1);
+        assertNotSame(factory.unary(UnaryOp.PRE_INC, a), factory.postfix(a, PostfixOp.POST_INC));
+        assertSame(factory.unary(UnaryOp.MINUS, a), factory.unary(UnaryOp.MINUS, a));
+    }
+
+    @Test
+    void hashOfDeepTreeDoesNotRecurse() {
+        int depth = 200_000;
+        Expr first = ExprFactory.PLAIN.literal(0L);
+        Expr second = ExprFactory.PLAIN.literal(0L);
+        InterningExprFactory factory = new InterningExprFactory();
+        Expr interned = factory.literal(0L);
+        Expr internedAgain = factory.literal(0L);
+        for (int i = 0; i < depth; i++) {
+            first = ExprFactory.PLAIN.binary(first, BinaryOp.ADD, ExprFactory.PLAIN.literal(1L));
+            second = ExprFactory.PLAIN.binary(second, BinaryOp.ADD, ExprFactory.PLAIN.literal(1L));
+            interned = factory.binary(interned, BinaryOp.ADD, factory.literal(1L));
+        }
+        for (int i = 0; i < depth; i++) {
+            internedAgain = factory.binary(internedAgain, BinaryOp.ADD, factory.literal(1L));
+        }
+        assertEquals(first.hashCode(), second.hashCode());
+        assertEquals(first.hashCode(), interned.hashCode());
+        assertSame(interned, internedAgain);
+        assertEquals(interned, internedAgain);
+    }
+}
@@ -0,0 +1,152 @@
+package com.shaibachar.calc.parser.flat;
+
+import com.shaibachar.calc.eval.Environment;
+import com.shaibachar.calc.eval.Evaluator;
+import com.shaibachar.calc.exceptions.ParseException;
+import com.shaibachar.calc.lexer.Lexer;
+import com.shaibachar.calc.optimizer.Optimizer;
+import com.shaibachar.calc.parser.AssignOp;
+import com.shaibachar.calc.parser.Parser;
+import com.shaibachar.calc.parser.expr.BinaryExpr;
+import com.shaibachar.calc.parser.expr.Expr;
+import com.shaibachar.calc.parser.UnaryOp;
+import com.shaibachar.calc.parser.expr.UnaryExpr;
+import com.shaibachar.calc.parser.stmt.AssignStmt;
+import com.shaibachar.calc.util.Formatter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AstArenaTest {
+    private static final List<List<String>> SCRIPTS = List.of(
+            List.of("i = 1", "x = i++ + ++i * i--", "i += i++ + 10", "y = i-- - --i", "z = -(-i) + +x % 3",
+                    "z *= z-- * 0.5"),
+            List.of("a = 7", "b = a / 2 * 1.5", "c = (a + 0.5) % 2", "d = 9223372036854775807 + a",
+                    "e = -a / 2.0 - -0.0", "a /= 2", "a /= 2.0"),
+            List.of("x = 2 * 3 + 1 * x0", "x0 = 1"),
+            List.of("x = 1", "y = x * 1 + 1 * x - 0 + x / 1 - -(-(-x)) + +(2 * 3)"),
+            List.of("x = 1", "y = x / (x - 1)"),
+            List.of("x = 1.5", "x %= 0"),
+            List.of("x = 5", "y = (1 / 0) + x"),
+            List.of("x = 1", "y = x + ++(x)"),
+            List.of("x = 1", "y = x + ++(x / 0)"),
+            List.of("x = 1", "y += 1"));
+
+    private static String runTree(List<String> lines) {
+        Environment env = new Environment();
+        Evaluator evaluator = new Evaluator(env);
+        try {
+            for (String line : lines) {
+                evaluator.execute(new Parser(new Lexer(line).tokenizeCompact(), env.symbols()).parseStatement());
+            }
+            return Formatter.format(env.values());
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static AstArena parse(List<String> lines, Environment env) {
+        AstArena arena = new AstArena(env.symbols());
+        for (String line : lines) {
+            new Parser(new Lexer(line).tokenizeCompact(), env.symbols()).parseStatement(arena);
+        }
+        return arena;
+    }
+
+    private static String runArena(List<String> lines, boolean optimize) {
+        Environment env = new Environment();
+        AstArena arena = parse(lines, env);
+        if (optimize) {
+            arena = new Optimizer().optimize(arena);
+        }
+        Evaluator evaluator = new Evaluator(env);
+        try {
+            for (int statement = 0; statement < arena.statementCount(); statement++) {
+                evaluator.execute(arena, statement);
+            }
+            return Formatter.format(env.values());
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
+    }
+
+    @Test
+    void evaluatesLikeTheObjectTree() {
+        for (List<String> script : SCRIPTS) {
+            assertEquals(runTree(script), runArena(script, false), String.join("\n", script));
+            assertEquals(runTree(script), runArena(script, true), String.join("\n", script));
+        }
+    }
+
+    @Test
+    void storesNodesInPostOrder() {
+        AstArena arena = parse(List.of("y = (a - 2.5) * -b++"), new Environment());
+        assertEquals(List.of(NodeKind.VARIABLE, NodeKind.DOUBLE_LITERAL, NodeKind.SUB, NodeKind.POST_INC,
+                NodeKind.NEGATE, NodeKind.MUL), kinds(arena, 0));
+        assertEquals(2, arena.operand(5));
+        assertEquals(3, arena.operand(4));
+        assertEquals(2.5, arena.doubleValue(1));
+        assertEquals(arena.slot(0), arena.symbols().find("a"));
+        assertEquals(arena.slot(3), arena.symbols().find("b"));
+        assertEquals(arena.symbols().find("y"), arena.target(0));
+        assertEquals(AssignOp.ASSIGN, arena.assignOp(0));
+    }
+
+    @Test
+    void incrementOfANonVariableDropsItsOperand() {
+        AstArena arena = parse(List.of("y = 1 + ++(x * 2)"), new Environment());
+        assertEquals(List.of(NodeKind.LONG_LITERAL, NodeKind.NOT_ASSIGNABLE, NodeKind.ADD), kinds(arena, 0));
+    }
+
+    @Test
+    void parseErrorLeavesOnlyCompleteStatements() {
+        Environment env = new Environment();
+        AstArena arena = parse(List.of("x = 1 + 2"), env);
+        Parser parser = new Parser(new Lexer("y = (3 * 4").tokenizeCompact(), env.symbols());
+        assertThrows(ParseException.class, () -> parser.parseStatement(arena));
+        assertEquals(1, arena.statementCount());
+        assertEquals(3, arena.size());
+        new Parser(new Lexer("z = 5").tokenizeCompact(), env.symbols()).parseStatement(arena);
+        assertEquals(List.of(NodeKind.LONG_LITERAL), kinds(arena, 1));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "y = 2 * 3 + x * 1",
+            "y = 1 * x - 0 + x / 1",
+            "y = -(-(-x)) + +(+x)",
+            "y = -(+(-x))",
+            "y = x / 0 + 0 % 0.0 - (1 / 0)",
+            "y = 1.0 * x + x * 1.0 - 0.0",
+            "y = ++x * 1 + --x * (2 - 1)",
+            "y = x++ - -(2 + 3) * -(-1)"})
+    void optimizesLikeTheTreeOptimizer(String line) {
+        Environment env = new Environment();
+        AstArena arena = new Optimizer().optimize(parse(List.of(line), env));
+        AssignStmt stmt = (AssignStmt) new Optimizer().optimize(
+                new Parser(new Lexer(line).tokenizeCompact(), env.symbols()).parseStatement());
+        assertEquals(nodeCount(stmt.expr()), arena.size(), line);
+    }
+
+    private static List<NodeKind> kinds(AstArena arena, int statement) {
+        return IntStream.rangeClosed(arena.start(statement), arena.root(statement))
+                .mapToObj(arena::kind).toList();
+    }
+
+    /** Counts nodes the way the arena stores them: ++/-- and their operand are one node. */
+    private static int nodeCount(Expr expr) {
+        if (expr instanceof BinaryExpr binary) {
+            return 1 + nodeCount(binary.left()) + nodeCount(binary.right());
+        }
+        if (expr instanceof UnaryExpr unary && (unary.op() == UnaryOp.PLUS || unary.op() == UnaryOp.MINUS)) {
+            return 1 + nodeCount(unary.expr());
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,73 @@
+package com.shaibachar.calc.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RingBufferTest {
+    @Test
+    void deliversInSequenceOrderWithSeveralProducers() throws Exception {
+        RingBuffer<Long> ring = new RingBuffer<>(8);
+        int count = 20_000;
+        AtomicLong next = new AtomicLong();
+        Runnable producer = () -> {
+            for (long sequence = next.getAndIncrement(); sequence < count; sequence = next.getAndIncrement()) {
+                ring.put(sequence, sequence * 3);
+            }
+        };
+        CompletableFuture<?>[] producers = new CompletableFuture<?>[3];
+        for (int i = 0; i < producers.length; i++) {
+            producers[i] = CompletableFuture.runAsync(producer, runnable -> new Thread(runnable).start());
+        }
+        for (long sequence = 0; sequence < count; sequence++) {
+            assertEquals(sequence * 3, ring.take(sequence));
+        }
+        CompletableFuture.allOf(producers).get(10, TimeUnit.SECONDS);
+
+        QueueStats stats = ring.stats("test");
+        assertEquals(count, stats.transfers());
+        assertTrue(stats.maxOccupancy() <= 8);
+        assertTrue(stats.averageOccupancy() >= 1);
+    }
+
+    @Test
+    void putWaitsWhileTheSlotIsStillFull() throws Exception {
+        RingBuffer<String> ring = new RingBuffer<>(2);
+        assertTrue(ring.put(0, "a"));
+        assertTrue(ring.put(1, "b"));
+        CompletableFuture<Boolean> third = CompletableFuture.supplyAsync(() -> ring.put(2, "c"),
+                runnable -> new Thread(runnable).start());
+        Thread.sleep(50);
+        assertFalse(third.isDone());
+        assertEquals("a", ring.take(0));
+        assertTrue(third.get(10, TimeUnit.SECONDS));
+        assertEquals("b", ring.take(1));
+        assertEquals("c", ring.take(2));
+        assertEquals(1, ring.stats("test").producerWaits());
+    }
+
+    @Test
+    void closeReleasesWaitingThreads() throws Exception {
+        RingBuffer<String> ring = new RingBuffer<>(4);
+        CompletableFuture<String> take = CompletableFuture.supplyAsync(() -> ring.take(0),
+                runnable -> new Thread(runnable).start());
+        Thread.sleep(20);
+        ring.close();
+        assertNull(take.get(10, TimeUnit.SECONDS));
+        assertEquals(1, ring.stats("test").consumerWaits());
+    }
+
+    @Test
+    void rejectsCapacityThatIsNotAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new RingBuffer<>(6));
+        assertThrows(IllegalArgumentException.class, () -> new RingBuffer<>(0));
+    }
+}
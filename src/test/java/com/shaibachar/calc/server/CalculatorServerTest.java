@@ -0,0 +1,135 @@
+package com.shaibachar.calc.server;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.CalculatorApp;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CalculatorServerTest {
+    @TempDir
+    Path directory;
+
+    private CalculatorServer server;
+
+    @AfterEach
+    void stop() throws IOException {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private SocketAddress start(Backend backend, SocketAddress address) throws IOException {
+        server = new CalculatorServer(backend);
+        return server.bind(address);
+    }
+
+    /**
+     * Sends the whole input at once, closes the sending side, and returns every response line.
+     */
+    private static List<String> exchange(SocketAddress address, String input) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            ByteBuffer request = ByteBuffer.wrap(input.getBytes(StandardCharsets.UTF_8));
+            while (request.hasRemaining()) {
+                channel.write(request);
+            }
+            channel.shutdownOutput();
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            List<String> responses = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                responses.add(line);
+            }
+            return responses;
+        }
+    }
+
+    @Test
+    void answersPipelinedRequestsInOrderOverUnixSocket() throws IOException {
+        SocketAddress address = start(Backend.TREE, UnixDomainSocketAddress.of(directory.resolve("calc.sock")));
+        List<String> responses = exchange(address,
+                "i = 0\nj = ++i\nx = i++ + 5\n.\nz = 1 / 0\nw = 2\n.\na = (1\n.\n.\nb = 2.5 * 2\n");
+        assertEquals(List.of(
+                "OK " + CalculatorApp.execute(List.of("i = 0", "j = ++i", "x = i++ + 5")),
+                "ERROR EVAL_004: Division by zero (line 1: z = 1 / 0)",
+                "ERROR PARSE_006: Expected ')' after expression at position 6 (line 1: a = (1)",
+                "OK ()",
+                "OK (b=5.0)"), responses);
+    }
+
+    @Test
+    void servesTcpWithEveryBackend() throws IOException {
+        for (Backend backend : Backend.values()) {
+            SocketAddress address = start(backend, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            List<String> lines = List.of("x = 3", "y = x * (x + 1)", "x -= y--");
+            String expected = "OK " + CalculatorApp.execute(lines, backend);
+            assertEquals(List.of(expected, expected), exchange(address, String.join("\n", lines) + "\n.\n"
+                    + String.join("\n", lines) + "\n.\n"));
+            server.close();
+        }
+    }
+
+    @Test
+    void sessionsAreIndependent() throws Exception {
+        SocketAddress address = start(Backend.VM, UnixDomainSocketAddress.of(directory.resolve("calc.sock")));
+        List<CompletableFuture<List<String>>> clients = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String request = "x = " + i + "\ny = x * 2\n.\n";
+            clients.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return exchange(address, request.repeat(50));
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+        }
+        for (int i = 0; i < clients.size(); i++) {
+            List<String> responses = clients.get(i).get(30, TimeUnit.SECONDS);
+            assertEquals(50, responses.size());
+            assertEquals("OK (x=" + i + ",y=" + (i * 2) + ")", responses.get(49));
+        }
+    }
+
+    @Test
+    void replacesStaleSocketFileAndRemovesItOnClose() throws IOException {
+        Path socket = directory.resolve("calc.sock");
+        Files.createFile(socket);
+        SocketAddress address = start(Backend.TREE, UnixDomainSocketAddress.of(socket));
+        assertEquals(List.of("OK (x=1)"), exchange(address, "x = 1\n"));
+
+        CalculatorServer second = new CalculatorServer(Backend.TREE);
+        assertThrows(IOException.class, () -> second.bind(UnixDomainSocketAddress.of(socket)));
+        server.close();
+        assertFalse(Files.exists(socket));
+    }
+
+    @Test
+    void endOfInputWithoutRequestGetsNoResponse() throws IOException {
+        SocketAddress address = start(Backend.TREE, UnixDomainSocketAddress.of(directory.resolve("calc.sock")));
+        assertEquals(List.of(), exchange(address, ""));
+        assertEquals(List.of("OK (x=1)"), exchange(address, "x = 1\n.\n"));
+    }
+}
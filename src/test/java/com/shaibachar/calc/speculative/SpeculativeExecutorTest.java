@@ -0,0 +1,77 @@
+package com.shaibachar.calc.speculative;
+
+import com.shaibachar.calc.Backend;
+import com.shaibachar.calc.bytecode.ScriptExecutionException;
+import com.shaibachar.calc.lexer.Lexer;
+import com.shaibachar.calc.parser.stmt.Stmt;
+import com.shaibachar.calc.util.Formatter;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpeculativeExecutorTest {
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterAll
+    static void shutDown() {
+        POOL.shutdown();
+    }
+
+    private static List<Stmt> parse(SpeculativeExecutor executor, List<String> lines) {
+        List<Stmt> statements = new ArrayList<>();
+        for (String line : lines) {
+            statements.add(Backend.TREE.parse(new Lexer(line).tokenizeCompact(), executor.symbols()));
+        }
+        return statements;
+    }
+
+    @Test
+    void independentChunksDoNotConflict() {
+        SpeculativeExecutor executor = new SpeculativeExecutor(Backend.TREE, POOL, 2);
+        executor.run(parse(executor, List.of("a = 1", "b = a + 1", "c = 2", "d = c * 3", "e = 5", "f = e")));
+        assertEquals("(a=1,b=2,c=2,d=6,e=5,f=5)", Formatter.format(executor.environment().values()));
+        assertEquals(3, executor.chunkCount());
+        assertEquals(0, executor.conflictCount());
+        assertEquals(0.0, executor.conflictRate());
+    }
+
+    @Test
+    void chunksReadingEarlierWritesRunAgain() {
+        SpeculativeExecutor executor = new SpeculativeExecutor(Backend.VM, POOL, 2);
+        executor.run(parse(executor, List.of("a = 1", "b = 2", "c = 3", "d = a + 1", "e = 4", "f = 5")));
+        assertEquals("(a=1,b=2,c=3,d=2,e=4,f=5)", Formatter.format(executor.environment().values()));
+        assertEquals(1, executor.conflictCount());
+        assertEquals(2, executor.reexecutedStatements());
+
+        // The second chunk of this window reads a, which its first chunk writes
+        executor.run(parse(executor, List.of("a = 10", "x = 0", "z = a++", "y = 0")));
+        assertEquals("(a=11,b=2,c=3,d=2,e=4,f=5,x=0,z=10,y=0)", Formatter.format(executor.environment().values()));
+        assertEquals(2, executor.conflictCount());
+        assertEquals(5, executor.chunkCount());
+    }
+
+    @Test
+    void undefinedReadsAreValidatedToo() {
+        SpeculativeExecutor executor = new SpeculativeExecutor(Backend.CLOSURE, POOL, 1);
+        // Speculatively, y = x fails since x is undefined before the window, but x is defined by then
+        executor.run(parse(executor, List.of("x = 7", "y = x")));
+        assertEquals("(x=7,y=7)", Formatter.format(executor.environment().values()));
+        assertEquals(1, executor.conflictCount());
+    }
+
+    @Test
+    void reportsTheFirstFailureInScriptOrder() {
+        SpeculativeExecutor executor = new SpeculativeExecutor(Backend.TREE, POOL, 2);
+        ScriptExecutionException e = assertThrows(ScriptExecutionException.class,
+                () -> executor.run(parse(executor, List.of("a = 1", "b = 2", "c = a / 0", "d = 1", "e = q", "f = 1"))));
+        assertEquals(2, e.statementIndex());
+        assertTrue(e.getMessage().startsWith("EVAL_004"));
+    }
+}
@@ -0,0 +1,105 @@
+package com.shaibachar.calc.vm;
+
+import com.shaibachar.calc.eval.Environment;
+import com.shaibachar.calc.eval.Evaluator;
+import com.shaibachar.calc.eval.SymbolTable;
+import com.shaibachar.calc.exceptions.EvalException;
+import com.shaibachar.calc.lexer.Lexer;
+import com.shaibachar.calc.parser.Parser;
+import com.shaibachar.calc.parser.stmt.Stmt;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VirtualMachineTest {
+    private static Stmt parse(String line) {
+        return new Parser(new Lexer(line).tokenize()).parseStatement();
+    }
+
+    private static List<Stmt> parseAll(String... lines) {
+        List<Stmt> stmts = new ArrayList<>();
+        for (String line : lines) {
+            stmts.add(parse(line));
+        }
+        return stmts;
+    }
+
+    @Test
+    void literalSubtreesUseTypedInstructions() {
+        Program program = new Compiler(new SymbolTable()).compile(parse("x = (1 + 2) * 0.5"));
+        assertEquals("""
+                PUSH_LONG 1
+                PUSH_LONG 2
+                ADD_L
+                L2D
+                PUSH_DOUBLE 0.5
+                MUL_D
+                STORE x
+                """, program.disassemble());
+    }
+
+    @Test
+    void compoundAssignmentLoadsTargetBeforeRightHandSide() {
+        Program program = new Compiler(new SymbolTable()).compile(parse("x += x++ - y"));
+        assertEquals("""
+                LOAD_SLOT x
+                POST_INC_SLOT x 1
+                LOAD_SLOT y
+                SUB
+                ADD
+                STORE x
+                """, program.disassemble());
+    }
+
+    @Test
+    void notAssignableOperandFailsAtRuntime() {
+        Program program = new Compiler(new SymbolTable()).compile(parse("x = y + ++(1)"));
+        assertTrue(program.disassemble().contains("FAIL_NOT_ASSIGNABLE"));
+        Environment env = new Environment(program.symbols());
+        // y is read first, so the undefined variable is reported
+        EvalException e = assertThrows(EvalException.class, () -> new VirtualMachine(env).run(program));
+        assertTrue(e.getMessage().startsWith("ENV_001"), e.getMessage());
+    }
+
+    @Test
+    void precompiledProgramMatchesEvaluator() {
+        List<Stmt> script = parseAll("a = 10", "b = a / 3 + 0.25", "a %= 4", "c = a++ * --b", "b -= -c");
+        SymbolTable symbols = new SymbolTable();
+        Program program = new Compiler(symbols).compile(script);
+        assertEquals(5, program.statementCount());
+
+        Environment expected = new Environment();
+        Evaluator evaluator = new Evaluator(expected);
+        script.forEach(evaluator::execute);
+        for (int run = 0; run < 2; run++) {
+            Environment env = new Environment(symbols);
+            new VirtualMachine(env).run(program);
+            assertEquals(expected.values(), env.values());
+        }
+    }
+
+    @Test
+    void deepExpressionsGrowTheStack() {
+        StringBuilder expr = new StringBuilder("1");
+        for (int i = 0; i < 100; i++) {
+            expr.insert(0, "(1 + ").append(" * x)");
+        }
+        Environment env = new Environment();
+        env.set("x", 2L);
+        VirtualMachine vm = new VirtualMachine(env);
+        vm.execute(parse("y = " + expr));
+        Environment reference = new Environment();
+        reference.set("x", 2L);
+        new Evaluator(reference).execute(parse("y = " + expr));
+        assertEquals(reference.values(), env.values());
+    }
+
+    @Test
+    void rejectsProgramOfAnotherSymbolTable() {
+        Program program = new Compiler(new SymbolTable()).compile(parse("x = 1"));
+        assertThrows(IllegalArgumentException.class, () -> new VirtualMachine(new Environment()).run(program));
+    }
+}